@@ -0,0 +1,286 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3;
+
+import au.gov.aims.aws.s3.checksum.ChecksumAlgorithm;
+import au.gov.aims.aws.s3.checksum.ChecksumCalculator;
+import au.gov.aims.aws.s3.checksum.Hasher;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compute the ETag S3 gives to a file once uploaded.
+ *
+ * <p>The ETag of an object uploaded with a single request is the MD5 of its content.
+ * The ETag of an object uploaded in parts is the MD5 of the concatenated
+ * (binary) MD5 of its parts, followed by "-" and the number of parts.
+ * For example: "d41d8cd98f00b204e9800998ecf8427e-3". To compute it,
+ * the size of the parts must be known.</p>
+ *
+ * <p>The parts are hashed in parallel, with the buffers
+ * of the {@link ChecksumCalculator}.</p>
+ *
+ * <p>NOTE: The ETag of objects encrypted with SSE-KMS or SSE-C is not a MD5.</p>
+ */
+public class ETagCalculator {
+    private static final Logger LOGGER = Logger.getLogger(ETagCalculator.class);
+    private static final long MB = 1024L * 1024;
+
+    private static final int BUFFER_SIZE = ChecksumCalculator.BUFFER_SIZE;
+
+    // Part sizes used by common tools, tried when the part size of a multipart object is unknown:
+    //   5 MB: S3 minimum part size
+    //   8 MB: AWS CLI and AWS SDK TransferManager
+    //   16 MB: s3cmd, rclone (multiple of 5 MB for large files)
+    private static final long[] COMMON_PART_SIZES = { 8 * MB, 5 * MB, 16 * MB, 15 * MB, 64 * MB,
+            TransferSettings.DEFAULT_PART_SIZE };
+
+    /**
+     * @return The MD5 of the file, which is the ETag of a file uploaded with a single request.
+     */
+    public static String getMd5(File file) throws IOException {
+        return ChecksumCalculator.toHex(ChecksumCalculator.checksum(file, ChecksumAlgorithm.MD5));
+    }
+
+    /**
+     * @param partSize The size of the parts, as uploaded.
+     * @param concurrency Number of parts hashed at the same time.
+     * @return The ETag of the file uploaded in parts of partSize bytes. Example: "9b2cf535f27731c974343645a3985328-5"
+     */
+    public static String getMultipartETag(File file, final long partSize, int concurrency) throws IOException {
+        if (partSize <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid part size: %d", partSize));
+        }
+
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            final int partCount = (int)Math.max(1, (fileSize + partSize - 1) / partSize);
+            final byte[][] partMd5s = new byte[partCount][];
+
+            int threadCount = Math.max(1, Math.min(concurrency, partCount));
+            if (threadCount == 1) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                for (int part = 0; part < partCount; part++) {
+                    long position = part * partSize;
+                    partMd5s[part] = ETagCalculator.md5(channel, position, Math.min(partSize, fileSize - position), buffer);
+                }
+            } else {
+                // Each thread takes the next part to hash, using its own buffer
+                final AtomicInteger nextPart = new AtomicInteger(0);
+                ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+                try {
+                    List<Future<Void>> futures = new ArrayList<Future<Void>>();
+                    for (int i = 0; i < threadCount; i++) {
+                        futures.add(executor.submit(new Callable<Void>() {
+                            @Override
+                            public Void call() throws IOException {
+                                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                                int part;
+                                while ((part = nextPart.getAndIncrement()) < partCount) {
+                                    long position = part * partSize;
+                                    partMd5s[part] = ETagCalculator.md5(channel, position, Math.min(partSize, fileSize - position), buffer);
+                                }
+                                return null;
+                            }
+                        }));
+                    }
+
+                    for (Future<Void> future : futures) {
+                        future.get();
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(String.format("Interrupted while computing the ETag of %s", file), ex);
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException(String.format("Could not compute the ETag of %s", file), cause);
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+
+            Hasher md5 = ChecksumAlgorithm.MD5.newHasher();
+            for (byte[] partMd5 : partMd5s) {
+                md5.update(partMd5, 0, partMd5.length);
+            }
+            return ChecksumCalculator.toHex(md5.getValue()) + "-" + partCount;
+        }
+    }
+
+    /**
+     * Compare a file with the ETag of a S3 object.
+     *
+     * <p>The part size of multipart objects is not recorded by S3, only the number of parts.
+     * The part sizes of the settings, the part sizes used by common tools, and the part size
+     * which split the file evenly are tried, if they give the right number of parts.
+     * None of them matching doesn't mean the file is different, since the object may have
+     * been uploaded with an other part size: use {@link #matches(File, String, Long, int, long...)}
+     * with the part size recorded at upload to get a definite answer.</p>
+     *
+     * @param eTag The ETag of the S3 object, with or without quotes.
+     * @param partSizes Part sizes to try first, for multipart ETags.
+     * @return True if the file matches the ETag, false if it doesn't,
+     *     null if it can't be determined (multipart ETag and unknown part size).
+     */
+    public static Boolean matches(File file, String eTag, int concurrency, long ... partSizes) throws IOException {
+        return ETagCalculator.matches(file, eTag, null, concurrency, partSizes);
+    }
+
+    /**
+     * Compare a file with the ETag of a S3 object, uploaded with a known part size.
+     *
+     * <p>When the upload part size is known, the result is definite: the file matches
+     * the ETag only if it gives the same ETag when split in parts of that size.</p>
+     *
+     * @param eTag The ETag of the S3 object, with or without quotes.
+     * @param uploadPartSize The part size recorded when the object was uploaded
+     *     (see {@link au.gov.aims.aws.s3.entity.S3File#getUploadPartSize(java.util.Map)}),
+     *     or null if unknown.
+     * @param partSizes Part sizes to try when the upload part size is unknown.
+     * @return True if the file matches the ETag, false if it doesn't,
+     *     null if it can't be determined (multipart ETag and unknown part size).
+     */
+    public static Boolean matches(File file, String eTag, Long uploadPartSize, int concurrency, long ... partSizes) throws IOException {
+        String cleanETag = ETagCalculator.clean(eTag);
+        if (cleanETag == null) {
+            return null;
+        }
+
+        int partCount = ETagCalculator.getPartCount(cleanETag);
+        if (partCount < 0) {
+            return null;
+        }
+        if (partCount == 0) {
+            return cleanETag.equalsIgnoreCase(ETagCalculator.getMd5(file));
+        }
+
+        if (uploadPartSize != null && uploadPartSize > 0) {
+            // A different number of parts means a different file size
+            if (Math.max(1, (file.length() + uploadPartSize - 1) / uploadPartSize) != partCount) {
+                return false;
+            }
+            return cleanETag.equalsIgnoreCase(ETagCalculator.getMultipartETag(file, uploadPartSize, concurrency));
+        }
+
+        for (long partSize : ETagCalculator.getCandidatePartSizes(file.length(), partCount, partSizes)) {
+            if (cleanETag.equalsIgnoreCase(ETagCalculator.getMultipartETag(file, partSize, concurrency))) {
+                return true;
+            }
+        }
+
+        LOGGER.debug(String.format("Could not find the part size of ETag %s for file %s", cleanETag, file));
+        return null;
+    }
+
+    /**
+     * @return True if the ETag is the ETag of an object uploaded in parts.
+     */
+    public static boolean isMultipart(String eTag) {
+        String cleanETag = ETagCalculator.clean(eTag);
+        return cleanETag != null && ETagCalculator.getPartCount(cleanETag) > 0;
+    }
+
+    /**
+     * @return True if the ETag can be compared with a file: a MD5, optionally followed by a part count.
+     */
+    public static boolean isComparable(String eTag) {
+        String cleanETag = ETagCalculator.clean(eTag);
+        return cleanETag != null && ETagCalculator.getPartCount(cleanETag) >= 0;
+    }
+
+    /**
+     * @return The number of parts of a multipart ETag, 0 for a single part ETag,
+     *     -1 if it's not a valid ETag.
+     */
+    static int getPartCount(String cleanETag) {
+        int dashIndex = cleanETag.indexOf('-');
+        String md5 = dashIndex < 0 ? cleanETag : cleanETag.substring(0, dashIndex);
+        if (!md5.matches("[0-9a-fA-F]{32}")) {
+            return -1;
+        }
+        if (dashIndex < 0) {
+            return 0;
+        }
+        try {
+            int partCount = Integer.parseInt(cleanETag.substring(dashIndex + 1));
+            return partCount > 0 ? partCount : -1;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return The part sizes which split a file of fileSize bytes in partCount parts,
+     *     in order of likelihood.
+     */
+    static List<Long> getCandidatePartSizes(long fileSize, int partCount, long ... preferredPartSizes) {
+        Set<Long> candidates = new LinkedHashSet<Long>();
+        for (long partSize : preferredPartSizes) {
+            candidates.add(partSize);
+        }
+        for (long partSize : COMMON_PART_SIZES) {
+            candidates.add(partSize);
+        }
+        // Smallest part size giving partCount parts, and the same rounded up to a MB
+        long evenPartSize = (fileSize + partCount - 1) / partCount;
+        candidates.add(evenPartSize);
+        candidates.add((evenPartSize + MB - 1) / MB * MB);
+
+        List<Long> partSizes = new ArrayList<Long>();
+        for (Long partSize : candidates) {
+            if (partSize > 0 && Math.max(1, (fileSize + partSize - 1) / partSize) == partCount) {
+                partSizes.add(partSize);
+            }
+        }
+        return partSizes;
+    }
+
+    private static String clean(String eTag) {
+        if (eTag == null) {
+            return null;
+        }
+        String cleanETag = eTag.replace("\"", "").trim();
+        return cleanETag.isEmpty() ? null : cleanETag;
+    }
+
+    private static byte[] md5(FileChannel channel, long position, long length, ByteBuffer buffer) throws IOException {
+        Hasher md5 = ChecksumAlgorithm.MD5.newHasher();
+        ChecksumCalculator.update(md5, channel, position, length, buffer);
+        return md5.getValue();
+    }
+}
@@ -18,26 +18,41 @@
  */
 package au.gov.aims.aws.s3;
 
+import au.gov.aims.aws.s3.entity.DeleteReport;
 import au.gov.aims.aws.s3.entity.S3ClientWrapper;
 import au.gov.aims.aws.s3.entity.S3File;
 import au.gov.aims.aws.s3.entity.S3List;
+import au.gov.aims.aws.s3.manager.CopyManager;
+import au.gov.aims.aws.s3.manager.DeleteManager;
 import au.gov.aims.aws.s3.manager.DownloadManager;
+import au.gov.aims.aws.s3.manager.HeadManager;
 import au.gov.aims.aws.s3.manager.ListManager;
 import au.gov.aims.aws.s3.manager.UploadManager;
-import org.apache.commons.io.FileUtils;
+import au.gov.aims.aws.s3.nio.S3FileSystemProvider;
 import org.apache.log4j.Logger;
 import software.amazon.awssdk.services.s3.S3Uri;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
 
 /**
  * This class can be used to handle both io.File and S3File.
@@ -114,15 +129,24 @@ public class FileWrapper implements Comparable<FileWrapper> {
         return false;
     }
 
-    public boolean exists(S3ClientWrapper client) {
+    public boolean exists(final S3ClientWrapper client) {
         if (this.uri != null) {
             String scheme = this.uri.getScheme();
             if ("s3".equals(scheme)) {
                 if (client == null) {
                     return false;
                 }
-                S3Uri s3URI = S3Utils.getS3URIFromURI(this.uri);
-                return S3File.fileExists(client, s3URI);
+                final S3Uri s3URI = S3Utils.getS3URIFromURI(this.uri);
+                try {
+                    return client.getSingleFlight().execute("exists", s3URI, new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() {
+                            return S3File.fileExists(client, s3URI);
+                        }
+                    });
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
             } else if ("file".equals(scheme)) {
                 return new File(this.uri).exists();
             }
@@ -135,6 +159,33 @@ public class FileWrapper implements Comparable<FileWrapper> {
         return false;
     }
 
+    /**
+     * Check the existence of many files at once. The S3 files are checked
+     * in parallel, see {@link HeadManager#exist(S3ClientWrapper, Collection)}.
+     * @return The existence of each file, in the order of the collection.
+     * @throws IOException If the existence of some S3 files could not be determined.
+     * @throws InterruptedException If the check was interrupted.
+     */
+    public static Map<FileWrapper, Boolean> exist(S3ClientWrapper client, Collection<FileWrapper> files)
+            throws IOException, InterruptedException {
+
+        Map<FileWrapper, S3Uri> s3Files = new LinkedHashMap<FileWrapper, S3Uri>();
+        for (FileWrapper file : files) {
+            if (client != null && file.uri != null && "s3".equals(file.uri.getScheme())) {
+                s3Files.put(file, S3Utils.getS3URIFromURI(file.uri));
+            }
+        }
+        Map<S3Uri, Boolean> s3Existence = s3Files.isEmpty() ? Collections.<S3Uri, Boolean>emptyMap() :
+                HeadManager.exist(client, s3Files.values());
+
+        Map<FileWrapper, Boolean> existence = new LinkedHashMap<FileWrapper, Boolean>();
+        for (FileWrapper file : files) {
+            S3Uri s3Uri = s3Files.get(file);
+            existence.put(file, s3Uri == null ? file.exists(client) : s3Existence.get(s3Uri));
+        }
+        return existence;
+    }
+
     public String getFilename() {
         if (this.uri != null) {
             return URIUtils.getFilename(this.uri);
@@ -151,6 +202,36 @@ public class FileWrapper implements Comparable<FileWrapper> {
         return this.ioFile;
     }
 
+    /**
+     * Get a NIO path to the file.
+     * S3 paths are bound to the file system of the bucket for the given client,
+     * and can be used with the standard {@code Files} methods
+     * (newByteChannel, walk, readAttributes, etc).
+     * @return The path, or null if the file has no URI nor local file.
+     */
+    public Path toPath(S3ClientWrapper client) {
+        if (this.uri != null) {
+            String scheme = this.uri.getScheme();
+            if ("s3".equals(scheme)) {
+                if (client == null) {
+                    return null;
+                }
+                S3Uri s3URI = S3Utils.getS3URIFromURI(this.uri);
+                return S3FileSystemProvider.getInstance()
+                        .getFileSystem(client, s3URI.bucket().orElse(null))
+                        .getPath("/" + s3URI.key().orElse(""));
+            } else if ("file".equals(scheme)) {
+                return Paths.get(this.uri);
+            }
+        }
+
+        if (this.ioFile != null) {
+            return this.ioFile.toPath();
+        }
+
+        return null;
+    }
+
     public S3Uri getS3URI() {
         if (this.uri != null && "s3".equals(this.uri.getScheme())) {
             return S3Utils.getS3URIFromURI(this.uri);
@@ -163,14 +244,23 @@ public class FileWrapper implements Comparable<FileWrapper> {
         return this.uri;
     }
 
-    public S3File getS3File(S3ClientWrapper client) {
+    public S3File getS3File(final S3ClientWrapper client) {
         if (this.uri != null) {
             if ("s3".equals(this.uri.getScheme())) {
                 if (client != null) {
-                    S3Uri s3URI = S3Utils.getS3URIFromURI(this.uri);
-
-                    S3List s3List = ListManager.ls(client, s3URI);
-                    return s3List.getFiles().get(s3URI.key().orElse(null));
+                    final S3Uri s3URI = S3Utils.getS3URIFromURI(this.uri);
+
+                    try {
+                        return client.getSingleFlight().execute("getS3File", s3URI, new Callable<S3File>() {
+                            @Override
+                            public S3File call() {
+                                S3List s3List = ListManager.ls(client, s3URI);
+                                return s3List.getFiles().get(s3URI.key().orElse(null));
+                            }
+                        });
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
                 }
             }
         }
@@ -268,6 +358,47 @@ public class FileWrapper implements Comparable<FileWrapper> {
     }
 
     public File downloadFile(S3ClientWrapper client, boolean forceDownload) throws IOException {
+        return this.downloadFile(client, forceDownload, LocalFileTransfer.Mode.COPY);
+    }
+
+    /**
+     * Download the file, if needed.
+     * Concurrent calls downloading the same S3 object to the same file share a single download,
+     * see {@link S3ClientWrapper#getSingleFlight()}. A forced download doesn't share the result
+     * of a download in progress: it waits for it to complete, then downloads the file.
+     * @param client The S3 client, used with s3:// URIs.
+     * @param forceDownload True to download the file even if the local file is up to date.
+     * @param localTransferMode Used with file:// URIs. Set to LINK to allow the local file to
+     *     be a hard link to the original file, or MOVE to allow the original file to be moved.
+     *     Ignored with s3:// URIs.
+     * @return The local file, or null if the file to download doesn't exist.
+     * @throws IOException If the file could not be downloaded.
+     */
+    public File downloadFile(final S3ClientWrapper client, final boolean forceDownload, final LocalFileTransfer.Mode localTransferMode) throws IOException {
+        if (client != null && this.uri != null && this.ioFile != null && "s3".equals(this.uri.getScheme())) {
+            // Concurrent downloads of the object to the file are done once,
+            // and downloads of other objects to the file, or forced downloads, wait for it
+            Boolean downloaded = client.getSingleFlight().execute("download", S3Utils.getS3URIFromURI(this.uri), this.ioFile.getAbsoluteFile(),
+                    forceDownload, new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() throws IOException {
+                            return FileWrapper.this.internalDownloadFile(client, forceDownload, localTransferMode);
+                        }
+                    });
+            if (downloaded == null) {
+                return null;
+            }
+            if (downloaded) {
+                this.downloaded = true;
+            }
+            return this.ioFile;
+        }
+
+        return this.internalDownloadFile(client, forceDownload, localTransferMode) == null ? null : this.ioFile;
+    }
+
+    // Return true if the file was downloaded, false if it was up to date, null if it doesn't exist
+    private Boolean internalDownloadFile(S3ClientWrapper client, boolean forceDownload, LocalFileTransfer.Mode localTransferMode) throws IOException {
         if (this.uri != null && this.ioFile != null) {
             boolean downloadedNeeded = false;
 
@@ -287,14 +418,15 @@ public class FileWrapper implements Comparable<FileWrapper> {
                     return null;
                 }
 
-                this.forceDownloadFile(client);
+                this.forceDownloadFile(client, localTransferMode);
+                return true;
             }
         }
 
-        return this.ioFile;
+        return false;
     }
 
-    private void forceDownloadFile(S3ClientWrapper client) throws IOException {
+    private void forceDownloadFile(S3ClientWrapper client, LocalFileTransfer.Mode localTransferMode) throws IOException {
         if (this.uri != null && this.ioFile != null) {
             String scheme = this.uri.getScheme();
             if ("s3".equals(scheme)) {
@@ -305,12 +437,65 @@ public class FileWrapper implements Comparable<FileWrapper> {
                 }
             } else if ("file".equals(scheme)) {
                 File file = new File(this.uri);
-                FileUtils.copyFile(file, this.ioFile);
+                LocalFileTransfer.transfer(file, this.ioFile, localTransferMode);
                 this.downloaded = true;
             }
         }
     }
 
+    /**
+     * Read the content of the file into memory, without writing it to disk.
+     * Small S3 objects are served from the client ObjectByteCache, when set.
+     * @param client The S3 client, used with s3:// URIs.
+     * @return The content of the file.
+     * @throws IOException If the file doesn't exist or could not be read.
+     */
+    public byte[] readBytes(S3ClientWrapper client) throws IOException {
+        S3Uri s3URI = this.getS3URI();
+        if (s3URI != null) {
+            return DownloadManager.readBytes(client, s3URI);
+        }
+
+        return Files.readAllBytes(this.getLocalFileToRead().toPath());
+    }
+
+    public ByteBuffer readByteBuffer(S3ClientWrapper client) throws IOException {
+        S3Uri s3URI = this.getS3URI();
+        if (s3URI != null) {
+            return DownloadManager.readByteBuffer(client, s3URI);
+        }
+
+        return ByteBuffer.wrap(Files.readAllBytes(this.getLocalFileToRead().toPath())).asReadOnlyBuffer();
+    }
+
+    /**
+     * Open an input stream on the file, without writing it to disk.
+     * @param client The S3 client, used with s3:// URIs.
+     * @return The content of the file. Must be closed by the caller.
+     * @throws IOException If the file doesn't exist or could not be read.
+     */
+    public InputStream openInputStream(S3ClientWrapper client) throws IOException {
+        S3Uri s3URI = this.getS3URI();
+        if (s3URI != null) {
+            return DownloadManager.openInputStream(client, s3URI);
+        }
+
+        return new FileInputStream(this.getLocalFileToRead());
+    }
+
+    private File getLocalFileToRead() throws IOException {
+        if (this.uri != null) {
+            if ("file".equals(this.uri.getScheme())) {
+                return new File(this.uri);
+            }
+            throw new IOException(String.format("Unsupported URI: %s", this.uri));
+        }
+        if (this.ioFile == null) {
+            throw new IOException("The file wrapper has no URI and no file.");
+        }
+        return this.ioFile;
+    }
+
     public boolean isOriginalOnS3() {
         if (this.uri == null) {
             return false;
@@ -344,6 +529,19 @@ public class FileWrapper implements Comparable<FileWrapper> {
     }
 
     public void uploadFile(S3ClientWrapper client) throws IOException, InterruptedException {
+        this.uploadFile(client, LocalFileTransfer.Mode.COPY);
+    }
+
+    /**
+     * Upload the local file.
+     * @param client The S3 client, used with s3:// URIs.
+     * @param localTransferMode Used with file:// URIs. Set to LINK to allow the destination to
+     *     be a hard link to the local file, or MOVE to allow the local file to be moved to
+     *     the destination. Ignored with s3:// URIs.
+     * @throws IOException If the file could not be uploaded.
+     * @throws InterruptedException If the upload was interrupted.
+     */
+    public void uploadFile(S3ClientWrapper client, LocalFileTransfer.Mode localTransferMode) throws IOException, InterruptedException {
         if (this.uri != null && this.ioFile != null) {
             String scheme = this.uri.getScheme();
             if ("s3".equals(scheme)) {
@@ -356,12 +554,85 @@ public class FileWrapper implements Comparable<FileWrapper> {
                 File file = new File(this.uri);
                 File directory = file.getParentFile();
                 directory.mkdirs();
-                FileUtils.copyFile(this.ioFile, file);
+                LocalFileTransfer.transfer(this.ioFile, file, localTransferMode);
                 this.uploaded = true;
             }
         }
     }
 
+    /**
+     * Copy the original file to the destination, without downloading it.
+     * S3 files are copied server side, local files are copied on disk.
+     * With s3:// URIs, a source ending with "/" copies every file of the prefix.
+     * @param client The S3 client, used with s3:// URIs.
+     * @throws IOException If the file could not be copied, or if the source and the destination
+     *     are not both on S3 or both on disk.
+     * @throws InterruptedException If the copy was interrupted.
+     */
+    public void copyTo(S3ClientWrapper client, FileWrapper destination) throws IOException, InterruptedException {
+        this.transferTo(client, destination, false);
+    }
+
+    /**
+     * Move the original file to the destination, without downloading it.
+     * @see #copyTo(S3ClientWrapper, FileWrapper)
+     */
+    public void moveTo(S3ClientWrapper client, FileWrapper destination) throws IOException, InterruptedException {
+        this.transferTo(client, destination, true);
+    }
+
+    /**
+     * Delete the original file. With s3:// URIs, a URI ending with "/" deletes
+     * every file of the prefix, with batched requests. The URI of a bucket,
+     * without key, is rejected: buckets are never emptied implicitly.
+     * The local copy of a S3 file is not deleted, see {@link #cleanup()}.
+     * @param client The S3 client, used with s3:// URIs.
+     * @throws IOException If some files could not be deleted.
+     * @throws InterruptedException If the delete was interrupted.
+     * @throws IllegalArgumentException If the s3:// URI has no key.
+     */
+    public void delete(S3ClientWrapper client) throws IOException, InterruptedException {
+        if (this.uri == null) {
+            return;
+        }
+
+        String scheme = this.uri.getScheme();
+        if ("s3".equals(scheme)) {
+            DeleteReport report = DeleteManager.delete(client, S3Utils.getS3URIFromURI(this.uri));
+            if (report.hasFailures()) {
+                throw new IOException(String.format("Could not delete %d files of %s. First error: %s",
+                        report.getFailures().size(), this.uri, report.getFailures().entrySet().iterator().next()));
+            }
+        } else if ("file".equals(scheme)) {
+            Files.deleteIfExists(new File(this.uri).toPath());
+        }
+    }
+
+    private void transferTo(S3ClientWrapper client, FileWrapper destination, boolean move) throws IOException, InterruptedException {
+        URI destinationUri = destination.getURI();
+        if (this.uri == null || destinationUri == null) {
+            throw new IOException("The source and the destination must have a URI.");
+        }
+
+        String scheme = this.uri.getScheme();
+        if ("s3".equals(scheme) && "s3".equals(destinationUri.getScheme())) {
+            S3Uri sourceS3Uri = S3Utils.getS3URIFromURI(this.uri);
+            S3Uri destinationS3Uri = S3Utils.getS3URIFromURI(destinationUri);
+            if (move) {
+                CopyManager.move(client, sourceS3Uri, destinationS3Uri);
+            } else {
+                CopyManager.copy(client, sourceS3Uri, destinationS3Uri);
+            }
+        } else if ("file".equals(scheme) && "file".equals(destinationUri.getScheme())) {
+            File file = new File(destinationUri);
+            file.getParentFile().mkdirs();
+            LocalFileTransfer.transfer(new File(this.uri), file,
+                    move ? LocalFileTransfer.Mode.MOVE : LocalFileTransfer.Mode.COPY);
+        } else {
+            throw new IOException(String.format("Can not %s %s to %s", move ? "move" : "copy", this.uri, destinationUri));
+        }
+    }
+
 
     // Similar to io.File.listFiles()
     public List<FileWrapper> listFiles(S3ClientWrapper client) {
@@ -405,7 +676,23 @@ public class FileWrapper implements Comparable<FileWrapper> {
         }, null, recursive);
     }
 
+    // Same as above, walking local sub-directories in parallel when "parallel" is true.
+    // The filters must be thread safe. S3 listings are not affected by this parameter.
+    public List<FileWrapper> listFiles(S3ClientWrapper client, boolean recursive, boolean parallel) {
+        return this.listFiles(client, null, null, recursive, parallel);
+    }
+    public List<FileWrapper> listFiles(S3ClientWrapper client, FilenameFilter filenameFilter, boolean recursive, boolean parallel) {
+        return this.listFiles(client, filenameFilter, null, recursive, parallel);
+    }
+    public List<FileWrapper> listFiles(S3ClientWrapper client, FileFilter fileFilter, boolean recursive, boolean parallel) {
+        return this.listFiles(client, null, fileFilter, recursive, parallel);
+    }
+
     private List<FileWrapper> listFiles(S3ClientWrapper client, FilenameFilter filenameFilter, FileFilter fileFilter, boolean recursive) {
+        return this.listFiles(client, filenameFilter, fileFilter, recursive, false);
+    }
+
+    private List<FileWrapper> listFiles(S3ClientWrapper client, FilenameFilter filenameFilter, FileFilter fileFilter, boolean recursive, boolean parallel) {
         List<FileWrapper> fileWrappers = null;
 
         if (this.uri != null) {
@@ -429,57 +716,25 @@ public class FileWrapper implements Comparable<FileWrapper> {
                 }
             } else if ("file".equals(scheme)) {
                 File file = new File(this.uri);
-                fileWrappers = this.listFiles(file, filenameFilter, fileFilter, recursive);
+                fileWrappers = this.listFiles(file, filenameFilter, fileFilter, recursive, parallel);
             }
 
         } else if (this.ioFile != null) {
-            fileWrappers = this.listFiles(this.ioFile, filenameFilter, fileFilter, recursive);
+            fileWrappers = this.listFiles(this.ioFile, filenameFilter, fileFilter, recursive, parallel);
         }
 
         return fileWrappers;
     }
 
-    private List<FileWrapper> listFiles(File file, FilenameFilter filenameFilter, FileFilter fileFilter, boolean recursive) {
-        List<FileWrapper> fileWrappers = null;
-
-        File[] files;
-        if (filenameFilter != null) {
-            files = file.listFiles(filenameFilter);
-        } else if (fileFilter != null) {
-            files = file.listFiles(fileFilter);
-        } else {
-            files = file.listFiles();
+    private List<FileWrapper> listFiles(File file, FilenameFilter filenameFilter, FileFilter fileFilter, boolean recursive, boolean parallel) {
+        List<File> files = LocalFileWalker.listFiles(file, filenameFilter, fileFilter, recursive, parallel);
+        if (files == null || files.isEmpty()) {
+            return null;
         }
 
-        if (files != null && files.length > 0) {
-            fileWrappers = new ArrayList<FileWrapper>(files.length);
-
-            for (File childFile : files) {
-                fileWrappers.add(new FileWrapper((URI)null, childFile));
-            }
-
-
-            if (recursive) {
-                // List all directories
-                // NOTE: This is not optimal but that seems
-                //   to be the best way to do it in java:
-                //   - https://stackoverflow.com/questions/5125242/java-list-only-subdirectories-from-a-directory-not-files
-                //   - https://stackoverflow.com/questions/1034977/how-to-retrieve-a-list-of-directories-quickly-in-java
-                File[] dirs = file.listFiles(new FilenameFilter() {
-                    @Override
-                    public boolean accept(File parent, String filename) {
-                        return new File(parent, filename).isDirectory();
-                    }
-                });
-
-                if (dirs != null) {
-                    for (File dir : dirs) {
-                        FileWrapper dirFileWrapper = new FileWrapper((URI)null, dir);
-                        fileWrappers.addAll(
-                                dirFileWrapper.listFiles(dir, filenameFilter, fileFilter, recursive));
-                    }
-                }
-            }
+        List<FileWrapper> fileWrappers = new ArrayList<FileWrapper>(files.size());
+        for (File childFile : files) {
+            fileWrappers.add(new FileWrapper((URI)null, childFile));
         }
 
         return fileWrappers;
@@ -0,0 +1,189 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Copy files between local paths (file:// URIs) as cheaply as possible.
+ *
+ * <p>Depending on what the caller allows, the transfer is done using,
+ * in order of preference:</p>
+ * <ol>
+ *   <li>a hard link ({@link Mode#LINK}) or an atomic move ({@link Mode#MOVE}),
+ *       when the source and the destination are on the same file system;</li>
+ *   <li>a zero-copy {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)};</li>
+ *   <li>a copy using a large direct buffer.</li>
+ * </ol>
+ *
+ * <p>The last modified date of the source is set on the destination,
+ * same as what is done when a file is downloaded from S3.</p>
+ */
+public class LocalFileTransfer {
+    private static final Logger LOGGER = Logger.getLogger(LocalFileTransfer.class);
+    private static final int MB = 1024 * 1024;
+
+    // Maximum number of bytes requested in a single transferTo call.
+    // Some platforms can not transfer more than 2 GB at once.
+    private static final long TRANSFER_CHUNK_SIZE = 512L * MB;
+
+    // Size of the buffer used when zero-copy is not available.
+    private static final int COPY_BUFFER_SIZE = 8 * MB;
+
+    public enum Mode {
+        // Always copy the content of the file. The source and the destination are independent.
+        COPY,
+
+        // Create a hard link when possible. The source and the destination share the same content:
+        // modifying one modifies the other. Falls back to COPY across file systems.
+        LINK,
+
+        // Move the source to the destination. The source is removed.
+        // Falls back to COPY followed by a delete across file systems.
+        MOVE
+    }
+
+    public static void transfer(File source, File destination) throws IOException {
+        LocalFileTransfer.transfer(source, destination, Mode.COPY);
+    }
+
+    public static void transfer(File source, File destination, Mode mode) throws IOException {
+        if (source == null || !source.isFile()) {
+            throw new FileNotFoundException(String.format("File not found: %s", source));
+        }
+        if (destination.isDirectory()) {
+            throw new IOException(String.format("The file %s already exists and is a directory.", destination.getAbsolutePath()));
+        }
+
+        Path sourcePath = source.toPath();
+        Path destinationPath = destination.toPath();
+        if (Files.exists(destinationPath) && Files.isSameFile(sourcePath, destinationPath)) {
+            return;
+        }
+
+        File destinationDirectory = destination.getAbsoluteFile().getParentFile();
+        if (destinationDirectory != null && !destinationDirectory.exists()) {
+            destinationDirectory.mkdirs();
+        }
+
+        long lastModified = source.lastModified();
+
+        if (mode == Mode.LINK && LocalFileTransfer.link(sourcePath, destinationPath)) {
+            // The destination is the same file, it already have the same last modified date.
+            return;
+        }
+        if (mode == Mode.MOVE && LocalFileTransfer.move(sourcePath, destinationPath)) {
+            return;
+        }
+
+        LocalFileTransfer.copy(sourcePath, destinationPath);
+
+        if (!destination.setLastModified(lastModified)) {
+            LOGGER.warn(String.format("Could not change the last modified date of file %s, last modified timestamp: %d.",
+                    destination.getAbsolutePath(), lastModified));
+        }
+
+        if (mode == Mode.MOVE) {
+            Files.delete(sourcePath);
+        }
+    }
+
+    private static boolean link(Path source, Path destination) {
+        try {
+            Files.deleteIfExists(destination);
+            Files.createLink(destination, source);
+            return true;
+        } catch (UnsupportedOperationException | IOException ex) {
+            // Different file system (cross-device link), hard links not supported, etc.
+            LOGGER.debug(String.format("Could not create a hard link from %s to %s. Copying the file instead.",
+                    source, destination), ex);
+            return false;
+        }
+    }
+
+    private static boolean move(Path source, Path destination) {
+        try {
+            Files.move(source, destination, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException ex) {
+            // Different file system (AtomicMoveNotSupportedException), platform refusing
+            // to atomically replace an existing file, etc.
+            LOGGER.debug(String.format("Could not move %s to %s. Copying the file instead.",
+                    source, destination), ex);
+            return false;
+        }
+    }
+
+    private static void copy(Path source, Path destination) throws IOException {
+        try (
+            FileChannel sourceChannel = FileChannel.open(source, StandardOpenOption.READ);
+            FileChannel destinationChannel = FileChannel.open(destination,
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)
+        ) {
+            long size = sourceChannel.size();
+            long position = 0;
+
+            // Zero-copy, done by the kernel when the platform supports it.
+            while (position < size) {
+                long transferred;
+                try {
+                    transferred = sourceChannel.transferTo(position, Math.min(TRANSFER_CHUNK_SIZE, size - position), destinationChannel);
+                } catch (IOException ex) {
+                    LOGGER.debug(String.format("Zero-copy transfer failed for file %s. Using a buffered copy.", source), ex);
+                    break;
+                }
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+
+            if (position < size) {
+                LocalFileTransfer.bufferedCopy(sourceChannel, destinationChannel, position);
+            }
+
+            if (destinationChannel.size() != size) {
+                throw new IOException(String.format("Failed to copy the file %s to %s. Expected size: %d bytes, actual size: %d bytes.",
+                        source, destination, size, destinationChannel.size()));
+            }
+        }
+    }
+
+    private static void bufferedCopy(FileChannel sourceChannel, FileChannel destinationChannel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+        sourceChannel.position(position);
+        destinationChannel.position(position);
+
+        while (sourceChannel.read(buffer) >= 0 || buffer.position() > 0) {
+            buffer.flip();
+            destinationChannel.write(buffer);
+            buffer.compact();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Lists the content of a local directory, optionally recursively.
+ *
+ * <p>Each directory is read exactly once with a {@link DirectoryStream}.
+ * When listing recursively, the attributes of each entry are read once
+ * to find sub-directories. Sub-directories can be walked in parallel
+ * using the fork/join common pool.</p>
+ *
+ * <p>The result is the same as recursively calling {@link File#listFiles()}:
+ * the matching entries of a directory, followed by the matching entries of
+ * each of its sub-directories, in directory order. The filters are applied
+ * to files and directories; sub-directories are always walked, even when
+ * they are rejected by the filter.</p>
+ */
+public class LocalFileWalker {
+    private static final Logger LOGGER = Logger.getLogger(LocalFileWalker.class);
+
+    public static List<File> listFiles(File directory, FilenameFilter filenameFilter, FileFilter fileFilter, boolean recursive) {
+        return LocalFileWalker.listFiles(directory, filenameFilter, fileFilter, recursive, false);
+    }
+
+    /**
+     * List the files found in a directory.
+     * @param directory The directory to list.
+     * @param filenameFilter Optional filename filter. Takes precedence over the fileFilter.
+     * @param fileFilter Optional file filter.
+     * @param recursive True to also list the content of sub-directories.
+     * @param parallel True to walk sub-directories in parallel.
+     *     The filters must be thread safe.
+     * @return The list of matching files, or null if the directory is not a directory
+     *     or can not be read (same as {@link File#listFiles()}).
+     */
+    public static List<File> listFiles(File directory, FilenameFilter filenameFilter, FileFilter fileFilter, boolean recursive, boolean parallel) {
+        if (directory == null || !directory.isDirectory()) {
+            return null;
+        }
+
+        BasicFileAttributes attributes = LocalFileWalker.readAttributes(directory.toPath());
+        Ancestor root = new Ancestor(null, attributes == null ? null : attributes.fileKey());
+
+        WalkTask task = new WalkTask(directory, root, filenameFilter, fileFilter, recursive, parallel);
+        if (parallel && recursive) {
+            return ForkJoinPool.commonPool().invoke(task);
+        }
+        return task.compute();
+    }
+
+    private static class WalkTask extends RecursiveTask<List<File>> {
+        private final File directory;
+        // Keys of this directory and the directories above it, used to detect symbolic link loops
+        private final Ancestor ancestor;
+        private final FilenameFilter filenameFilter;
+        private final FileFilter fileFilter;
+        private final boolean recursive;
+        private final boolean parallel;
+
+        public WalkTask(File directory, Ancestor ancestor, FilenameFilter filenameFilter, FileFilter fileFilter, boolean recursive, boolean parallel) {
+            this.directory = directory;
+            this.ancestor = ancestor;
+            this.filenameFilter = filenameFilter;
+            this.fileFilter = fileFilter;
+            this.recursive = recursive;
+            this.parallel = parallel;
+        }
+
+        @Override
+        protected List<File> compute() {
+            List<File> files = new ArrayList<File>();
+            List<WalkTask> subTasks = new ArrayList<WalkTask>();
+
+            try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(this.directory.toPath())) {
+                for (Path childPath : directoryStream) {
+                    String childName = childPath.getFileName().toString();
+                    File childFile = new File(this.directory, childName);
+
+                    if (this.accept(childFile, childName)) {
+                        files.add(childFile);
+                    }
+
+                    if (this.recursive) {
+                        BasicFileAttributes attributes = LocalFileWalker.readAttributes(childPath);
+                        if (attributes != null && attributes.isDirectory()) {
+                            Object fileKey = attributes.fileKey();
+                            if (this.ancestor.contains(fileKey)) {
+                                LOGGER.warn(String.format("Symbolic link loop detected, directory ignored: %s", childFile));
+                            } else {
+                                Ancestor childAncestor = new Ancestor(this.ancestor, fileKey);
+                                subTasks.add(new WalkTask(childFile, childAncestor,
+                                        this.filenameFilter, this.fileFilter, this.recursive, this.parallel));
+                            }
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                LOGGER.warn(String.format("Could not list the content of directory: %s", this.directory), ex);
+                // Same as File.listFiles(): null for the root directory, ignored for sub-directories
+                return this.ancestor.parent == null ? null : files;
+            }
+
+            if (!subTasks.isEmpty()) {
+                if (this.parallel && subTasks.size() > 1) {
+                    // Fork all the tasks, then join them in order to keep the directory order.
+                    ForkJoinTask.invokeAll(subTasks);
+                    for (WalkTask subTask : subTasks) {
+                        List<File> subFiles = subTask.join();
+                        if (subFiles != null) {
+                            files.addAll(subFiles);
+                        }
+                    }
+                } else {
+                    for (WalkTask subTask : subTasks) {
+                        List<File> subFiles = subTask.compute();
+                        if (subFiles != null) {
+                            files.addAll(subFiles);
+                        }
+                    }
+                }
+            }
+
+            return files;
+        }
+
+        private boolean accept(File childFile, String childName) {
+            if (this.filenameFilter != null) {
+                return this.filenameFilter.accept(this.directory, childName);
+            }
+            if (this.fileFilter != null) {
+                return this.fileFilter.accept(childFile);
+            }
+            return true;
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) {
+        try {
+            // Follow symbolic links, like File.isDirectory()
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException ex) {
+            // Broken symbolic link, file deleted while walking, etc.
+            return null;
+        }
+    }
+
+    private static class Ancestor {
+        private final Ancestor parent;
+        private final Object fileKey;
+
+        public Ancestor(Ancestor parent, Object fileKey) {
+            this.parent = parent;
+            this.fileKey = fileKey;
+        }
+
+        public boolean contains(Object fileKey) {
+            if (fileKey == null) {
+                // Some file systems do not provide file keys
+                return false;
+            }
+            for (Ancestor current = this; current != null; current = current.parent) {
+                if (fileKey.equals(current.fileKey)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -18,50 +18,17 @@
  */
 package au.gov.aims.aws.s3;
 
+import au.gov.aims.aws.s3.checksum.ChecksumAlgorithm;
+import au.gov.aims.aws.s3.checksum.ChecksumCalculator;
+
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
-import java.security.DigestInputStream;
-import java.security.MessageDigest;
 
+/**
+ * @see ChecksumCalculator
+ */
 public class Md5 {
 
-    // Inspired from:
-    //   http://www.rgagnon.com/javadetails/java-0416.html
     public static String md5sum(File file) throws Exception {
-        MessageDigest md5 = MessageDigest.getInstance("MD5");
-
-        InputStream inputStream = null;
-        DigestInputStream digestStream = null;
-        try {
-            inputStream = new FileInputStream(file);
-            digestStream = new DigestInputStream(inputStream, md5);
-
-            byte[] buffer = new byte[1024];
-            int numRead;
-            do {
-                numRead = inputStream.read(buffer);
-                if (numRead > 0) {
-                    md5.update(buffer, 0, numRead);
-                }
-            } while (numRead > 0);
-        } finally {
-            if (digestStream != null) {
-                digestStream.close();
-            }
-            if (inputStream != null) {
-                inputStream.close();
-            }
-        }
-
-        byte[] bytes = md5.digest();
-
-        // Create a HEX string from the bytes array
-        StringBuilder md5sum = new StringBuilder();
-        for (byte aByte : bytes) {
-            md5sum.append(Integer.toString( ( aByte & 0xff ) + 0x100, 16).substring( 1 ));
-        }
-
-        return md5sum.toString();
+        return ChecksumCalculator.toHex(ChecksumCalculator.checksum(file, ChecksumAlgorithm.MD5));
     }
 }
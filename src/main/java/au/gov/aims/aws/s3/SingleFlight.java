@@ -0,0 +1,212 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3;
+
+import org.apache.log4j.Logger;
+import software.amazon.awssdk.services.s3.S3Uri;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesce identical concurrent requests: when a thread calls an operation
+ * on a S3 URI which is already in progress in another thread, it waits
+ * for the result of the call in progress instead of sending its own request.
+ * The first thread does the work, and its result (or its exception) is shared.
+ * A call made after the call in progress has completed is executed again.
+ *
+ * <p>Operations which write to a target (a download to a local file) are
+ * identified by their target. A call writing another object to a target
+ * in use waits for the call in progress to complete, then runs:
+ * the writes to a target are serialised.</p>
+ *
+ * <p>Exclusive calls (a forced download) never receive the result of a call
+ * in progress, which may not satisfy them: they wait for it to complete, then run.</p>
+ *
+ * <p>Calls must not wait on an identical call, in the same thread: it would never complete.</p>
+ */
+public class SingleFlight {
+    private static final Logger LOGGER = Logger.getLogger(SingleFlight.class);
+
+    private final ConcurrentMap<Key, Flight> flights = new ConcurrentHashMap<Key, Flight>();
+
+    private final AtomicLong executedCount = new AtomicLong(0);
+    private final AtomicLong sharedCount = new AtomicLong(0);
+
+    /**
+     * @param operation The name of the operation. Example: "exists".
+     * @param s3Uri The URI the operation is applied to.
+     * @param call The operation, executed unless an identical call is in progress.
+     * @return The result of the call, or of the identical call in progress.
+     * @throws IOException If the call failed, or if the thread was interrupted while waiting.
+     */
+    public <V> V execute(String operation, S3Uri s3Uri, Callable<V> call) throws IOException {
+        return this.execute(operation, s3Uri, null, call);
+    }
+
+    /**
+     * @param target The target the operation writes to, for example the destination file
+     *     of a download. Concurrent calls with the same target and a different URI are serialised.
+     *     Null if the operation doesn't write anything.
+     */
+    public <V> V execute(String operation, S3Uri s3Uri, Object target, Callable<V> call) throws IOException {
+        return this.execute(operation, s3Uri, target, false, call);
+    }
+
+    /**
+     * @param exclusive True if the call must not receive the result of an identical call in progress.
+     *     It waits for the call in progress to complete, then runs. Its own result can be shared.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V execute(String operation, S3Uri s3Uri, Object target, boolean exclusive, Callable<V> call) throws IOException {
+        Key key = new Key(operation, target == null ? s3Uri : target);
+        while (true) {
+            Flight flight = new Flight(s3Uri);
+            Flight inProgress = this.flights.putIfAbsent(key, flight);
+            if (inProgress == null) {
+                return this.run(key, flight, call);
+            }
+
+            if (!exclusive && inProgress.s3Uri.equals(s3Uri)) {
+                this.sharedCount.incrementAndGet();
+                return (V) inProgress.await();
+            }
+
+            // The target is being written with another object, or the call can not be shared: wait, then run
+            LOGGER.debug(String.format("Waiting for %s of %s to %s to complete", operation, inProgress.s3Uri, target == null ? s3Uri : target));
+            try {
+                inProgress.await();
+            } catch (IOException | RuntimeException ex) {
+                // Failures of the other call are reported to its caller
+                if (Thread.currentThread().isInterrupted()) {
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of calls in progress.
+     */
+    public int getInFlightCount() {
+        return this.flights.size();
+    }
+
+    /**
+     * @return The number of calls executed.
+     */
+    public long getExecutedCount() {
+        return this.executedCount.get();
+    }
+
+    /**
+     * @return The number of calls which received the result of an identical call in progress.
+     */
+    public long getSharedCount() {
+        return this.sharedCount.get();
+    }
+
+    private <V> V run(Key key, Flight flight, Callable<V> call) throws IOException {
+        this.executedCount.incrementAndGet();
+        try {
+            V result = call.call();
+            // Removed before completion: later calls are executed again
+            this.flights.remove(key, flight);
+            flight.future.complete(result);
+            return result;
+        } catch (Throwable ex) {
+            this.flights.remove(key, flight);
+            flight.future.completeExceptionally(ex);
+            throw SingleFlight.rethrow(ex);
+        }
+    }
+
+    private static IOException rethrow(Throwable ex) throws IOException {
+        if (ex instanceof IOException) {
+            throw (IOException) ex;
+        }
+        if (ex instanceof RuntimeException) {
+            throw (RuntimeException) ex;
+        }
+        if (ex instanceof Error) {
+            throw (Error) ex;
+        }
+        if (ex instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interruptedException = new InterruptedIOException(ex.getMessage());
+            interruptedException.initCause(ex);
+            throw interruptedException;
+        }
+        throw new IOException(ex);
+    }
+
+    private static class Flight {
+        private final S3Uri s3Uri;
+        private final CompletableFuture<Object> future = new CompletableFuture<Object>();
+
+        public Flight(S3Uri s3Uri) {
+            this.s3Uri = s3Uri;
+        }
+
+        public Object await() throws IOException {
+            try {
+                return this.future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(String.format("Interrupted while waiting for a request on %s", this.s3Uri));
+            } catch (ExecutionException ex) {
+                throw SingleFlight.rethrow(ex.getCause());
+            }
+        }
+    }
+
+    private static class Key {
+        private final String operation;
+        private final Object target;
+
+        public Key(String operation, Object target) {
+            this.operation = operation;
+            this.target = target;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key otherKey = (Key) other;
+            return this.operation.equals(otherKey.operation) && this.target.equals(otherKey.target);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.operation, this.target);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterate over the files of a local directory tree, recursively,
+ * in the order S3 lists the keys.
+ *
+ * <p>S3 sorts keys by their UTF-8 bytes, so "a.txt" comes before "a/b.txt"
+ * ('.' &lt; '/'). The entries of each directory are sorted by name, with a "/"
+ * appended to the directory names, and the directories are walked depth first:
+ * the files come out in the same order as the keys of a S3 listing, which
+ * allows to compare a directory with a S3 prefix without holding either in memory.
+ * Only the entries of the directories being walked are held in memory.</p>
+ *
+ * <p>Symbolic links to directories are not followed.</p>
+ */
+public class SortedFileIterator implements Iterator<SortedFileIterator.Entry> {
+    private static final Logger LOGGER = Logger.getLogger(SortedFileIterator.class);
+
+    // Order of S3 keys: UTF-8 byte order, which is the same as the code point order
+    public static final Comparator<String> KEY_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(String key1, String key2) {
+            int index1 = 0, index2 = 0;
+            while (index1 < key1.length() && index2 < key2.length()) {
+                int codePoint1 = key1.codePointAt(index1);
+                int codePoint2 = key2.codePointAt(index2);
+                if (codePoint1 != codePoint2) {
+                    return Integer.compare(codePoint1, codePoint2);
+                }
+                index1 += Character.charCount(codePoint1);
+                index2 += Character.charCount(codePoint2);
+            }
+            return Integer.compare(key1.length() - index1, key2.length() - index2);
+        }
+    };
+
+    private final Path root;
+
+    // Entries of the directories being walked, not yet returned
+    private final Deque<Iterator<Entry>> stack = new ArrayDeque<Iterator<Entry>>();
+    private Entry next = null;
+
+    /**
+     * @param root The directory to walk.
+     * @throws IOException If the directory can not be read.
+     */
+    public SortedFileIterator(Path root) throws IOException {
+        this.root = root;
+        this.stack.push(this.listDirectory(root, ""));
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (this.next == null && !this.stack.isEmpty()) {
+            Iterator<Entry> entries = this.stack.peek();
+            if (!entries.hasNext()) {
+                this.stack.pop();
+                continue;
+            }
+
+            Entry entry = entries.next();
+            if (entry.directory) {
+                try {
+                    this.stack.push(this.listDirectory(entry.path, entry.key));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            } else {
+                this.next = entry;
+            }
+        }
+        return this.next != null;
+    }
+
+    @Override
+    public Entry next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Entry entry = this.next;
+        this.next = null;
+        return entry;
+    }
+
+    public Path getRoot() {
+        return this.root;
+    }
+
+    private Iterator<Entry> listDirectory(Path directory, String keyPrefix) throws IOException {
+        List<Entry> entries = new ArrayList<Entry>();
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory)) {
+            for (Path path : directoryStream) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isSymbolicLink()) {
+                        // Files are followed, directories are not
+                        attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                        if (attributes.isDirectory()) {
+                            LOGGER.debug(String.format("Ignoring the symbolic link to the directory %s", path));
+                            continue;
+                        }
+                    }
+                } catch (IOException ex) {
+                    LOGGER.warn(String.format("Could not read the attributes of %s. Ignored.", path), ex);
+                    continue;
+                }
+
+                String name = path.getFileName().toString();
+                if (attributes.isDirectory()) {
+                    entries.add(new Entry(keyPrefix + name + "/", path, true, 0, 0));
+                } else if (attributes.isRegularFile()) {
+                    entries.add(new Entry(keyPrefix + name, path, false,
+                            attributes.size(), attributes.lastModifiedTime().toMillis()));
+                }
+            }
+        }
+
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry entry1, Entry entry2) {
+                return KEY_ORDER.compare(entry1.key, entry2.key);
+            }
+        });
+        return entries.iterator();
+    }
+
+    public static class Entry {
+        private final String key;
+        private final Path path;
+        private final boolean directory;
+        private final long size;
+        private final long lastModified;
+
+        private Entry(String key, Path path, boolean directory, long size, long lastModified) {
+            this.key = key;
+            this.path = path;
+            this.directory = directory;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return The path of the file relative to the root, with "/" separators.
+         */
+        public String getKey() {
+            return this.key;
+        }
+
+        public Path getPath() {
+            return this.path;
+        }
+
+        public long getSize() {
+            return this.size;
+        }
+
+        public long getLastModified() {
+            return this.lastModified;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.cache;
+
+/**
+ * Set of strings which can answer "definitely not in the set" with a few bits per element.
+ * Elements can not be removed, and "might be in the set" answers are wrong
+ * with a probability close to the false positive rate given at creation.
+ *
+ * <p>The bit indexes are derived from a single 64 bits hash (Kirsch and Mitzenmacher):
+ * index(i) = hash1 + i * hash2. Not thread safe.</p>
+ */
+public class BloomFilter {
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedElements Number of elements expected in the set.
+     * @param falsePositiveRate Probability of a wrong "might contain" answer, once the set is full.
+     */
+    public BloomFilter(long expectedElements, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException(String.format("Invalid false positive rate: %f", falsePositiveRate));
+        }
+        long elements = Math.max(1, expectedElements);
+        long optimalBitCount = (long)Math.ceil(-elements * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int)Math.min(Integer.MAX_VALUE - 8, Math.max(1, (optimalBitCount + 63) / 64));
+
+        this.bits = new long[wordCount];
+        this.bitCount = wordCount * 64L;
+        this.hashCount = (int)Math.max(1, Math.min(16, Math.round((double)this.bitCount / elements * Math.log(2))));
+    }
+
+    public void put(String element) {
+        long hash = BloomFilter.hash(element);
+        int hash1 = (int)hash;
+        int hash2 = (int)(hash >>> 32);
+        for (int i = 0; i < this.hashCount; i++) {
+            long index = this.getIndex(hash1 + i * hash2);
+            this.bits[(int)(index >>> 6)] |= 1L << index;
+        }
+    }
+
+    /**
+     * @return False if the element was never added, true if it may have been.
+     */
+    public boolean mightContain(String element) {
+        long hash = BloomFilter.hash(element);
+        int hash1 = (int)hash;
+        int hash2 = (int)(hash >>> 32);
+        for (int i = 0; i < this.hashCount; i++) {
+            long index = this.getIndex(hash1 + i * hash2);
+            if ((this.bits[(int)(index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getBitCount() {
+        return this.bitCount;
+    }
+
+    public int getHashCount() {
+        return this.hashCount;
+    }
+
+    private long getIndex(int combinedHash) {
+        return (combinedHash & 0xffffffffL) % this.bitCount;
+    }
+
+    // FNV-1a over the characters, followed by the MurmurHash3 finalizer to spread the bits
+    private static long hash(String element) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < element.length(); i++) {
+            hash ^= element.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.cache;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lock shared between threads and processes.
+ *
+ * <p>File locks are held on behalf of the whole JVM: two threads can not
+ * lock the same file. Each lock file is therefore also protected by a
+ * JVM-wide {@link ReentrantLock}, picked from a fixed set of stripes
+ * using the lock file path.</p>
+ */
+class CacheLock implements Closeable {
+    private static final int JVM_LOCK_STRIPES = 256;
+    private static final ReentrantLock[] JVM_LOCKS = new ReentrantLock[JVM_LOCK_STRIPES];
+    static {
+        for (int i=0; i<JVM_LOCK_STRIPES; i++) {
+            JVM_LOCKS[i] = new ReentrantLock();
+        }
+    }
+
+    private final ReentrantLock jvmLock;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+
+    private CacheLock(ReentrantLock jvmLock, FileChannel channel, FileLock fileLock) {
+        this.jvmLock = jvmLock;
+        this.channel = channel;
+        this.fileLock = fileLock;
+    }
+
+    /**
+     * Wait until the lock is acquired.
+     */
+    public static CacheLock lock(File lockFile) throws IOException {
+        ReentrantLock jvmLock = CacheLock.getJvmLock(lockFile);
+        jvmLock.lock();
+        try {
+            FileChannel channel = CacheLock.openChannel(lockFile);
+            try {
+                return new CacheLock(jvmLock, channel, channel.lock());
+            } catch (IOException | RuntimeException ex) {
+                channel.close();
+                throw ex;
+            }
+        } catch (IOException | RuntimeException ex) {
+            jvmLock.unlock();
+            throw ex;
+        }
+    }
+
+    /**
+     * Acquire the lock only if it's free.
+     * @return The lock, or null if it's held by another thread or process.
+     */
+    public static CacheLock tryLock(File lockFile) throws IOException {
+        ReentrantLock jvmLock = CacheLock.getJvmLock(lockFile);
+        if (!jvmLock.tryLock()) {
+            return null;
+        }
+        try {
+            FileChannel channel = CacheLock.openChannel(lockFile);
+            FileLock fileLock;
+            try {
+                fileLock = channel.tryLock();
+            } catch (IOException | RuntimeException ex) {
+                channel.close();
+                throw ex;
+            }
+            if (fileLock == null) {
+                channel.close();
+                jvmLock.unlock();
+                return null;
+            }
+            return new CacheLock(jvmLock, channel, fileLock);
+        } catch (IOException | RuntimeException ex) {
+            jvmLock.unlock();
+            throw ex;
+        }
+    }
+
+    private static ReentrantLock getJvmLock(File lockFile) {
+        int hash = lockFile.getAbsolutePath().hashCode();
+        return JVM_LOCKS[(hash & 0x7fffffff) % JVM_LOCK_STRIPES];
+    }
+
+    private static FileChannel openChannel(File lockFile) throws IOException {
+        File parent = lockFile.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        return FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.fileLock.release();
+        } finally {
+            try {
+                this.channel.close();
+            } finally {
+                this.jvmLock.unlock();
+            }
+        }
+    }
+}
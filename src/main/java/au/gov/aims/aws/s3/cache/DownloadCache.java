@@ -0,0 +1,473 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.cache;
+
+import au.gov.aims.aws.s3.LocalFileTransfer;
+import org.apache.log4j.Logger;
+import org.json.JSONObject;
+import software.amazon.awssdk.services.s3.S3Uri;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Download cache shared by all the jobs running on a host.
+ *
+ * <p>Objects are stored once in the cache directory, identified by their
+ * bucket, key and ETag, then copied or hard linked to the file requested
+ * by the caller. When the object changes on S3, its ETag changes and the
+ * old version is eventually evicted.</p>
+ *
+ * <p>The cache can be used by several threads and several processes at
+ * the same time. Entries are protected by file locks, so an object is only
+ * downloaded once even when it's requested concurrently.</p>
+ *
+ * <p>Directory layout:</p>
+ * <pre>
+ * cacheDirectory/
+ *     cache.lock            Lock used during eviction
+ *     locks/00.lock ...     Entry locks (one lock file per stripe)
+ *     objects/ab/abcd...    Cached objects, named after the SHA-256 of bucket, key and ETag
+ *     objects/ab/abcd....properties  Entry metadata (access time, number of hits, etc)
+ *     tmp/                  Downloads in progress
+ * </pre>
+ *
+ * <p>The size of the cache is checked after each download. If it exceeds
+ * the quota, entries are evicted using the LRU or LFU policy. Entries
+ * added by other processes are counted when the cache directory is
+ * scanned, which happens when the quota is exceeded.</p>
+ */
+public class DownloadCache {
+    private static final Logger LOGGER = Logger.getLogger(DownloadCache.class);
+
+    private static final String OBJECTS_DIRECTORY = "objects";
+    private static final String LOCKS_DIRECTORY = "locks";
+    private static final String TMP_DIRECTORY = "tmp";
+    private static final String CACHE_LOCK_FILENAME = "cache.lock";
+    private static final String METADATA_EXTENSION = ".properties";
+
+    private static final String METADATA_BUCKET = "bucket";
+    private static final String METADATA_KEY = "key";
+    private static final String METADATA_ETAG = "eTag";
+    private static final String METADATA_SIZE = "size";
+    private static final String METADATA_LAST_ACCESS = "lastAccess";
+    private static final String METADATA_HITS = "hits";
+
+    public enum EvictionPolicy {
+        // Least recently used
+        LRU,
+        // Least frequently used. Entries used the same number of times are evicted LRU.
+        LFU
+    }
+
+    /**
+     * Write the content of the object in the provided file.
+     */
+    public interface Loader {
+        void load(File file) throws IOException;
+    }
+
+    private final File directory;
+    private final long maxSize;
+    private final EvictionPolicy evictionPolicy;
+    private final LocalFileTransfer.Mode materializationMode;
+
+    private final AtomicLong estimatedSize;
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+    private final AtomicLong evictionCount = new AtomicLong(0);
+    private final AtomicLong evictedBytes = new AtomicLong(0);
+
+    public DownloadCache(File directory, long maxSize) throws IOException {
+        this(directory, maxSize, EvictionPolicy.LRU, LocalFileTransfer.Mode.COPY);
+    }
+
+    /**
+     * @param directory The cache directory. Can be shared between processes.
+     * @param maxSize Size quota, in bytes.
+     * @param evictionPolicy Policy used to choose which entries to delete when the quota is exceeded.
+     * @param materializationMode COPY to give the caller its own copy of the file,
+     *     LINK to create hard links to the cached object when possible.
+     *     Hard linked files must not be modified, otherwise the cache entry is modified too.
+     */
+    public DownloadCache(File directory, long maxSize, EvictionPolicy evictionPolicy, LocalFileTransfer.Mode materializationMode) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("The cache directory can not be null.");
+        }
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid cache size: %d", maxSize));
+        }
+        if (materializationMode == LocalFileTransfer.Mode.MOVE) {
+            throw new IllegalArgumentException("Cached objects can not be moved out of the cache.");
+        }
+
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.evictionPolicy = evictionPolicy == null ? EvictionPolicy.LRU : evictionPolicy;
+        this.materializationMode = materializationMode == null ? LocalFileTransfer.Mode.COPY : materializationMode;
+
+        DownloadCache.createDirectory(new File(this.directory, OBJECTS_DIRECTORY));
+        DownloadCache.createDirectory(new File(this.directory, LOCKS_DIRECTORY));
+        DownloadCache.createDirectory(new File(this.directory, TMP_DIRECTORY));
+
+        long size = 0;
+        for (Entry entry : this.listEntries()) {
+            size += entry.size;
+        }
+        this.estimatedSize = new AtomicLong(size);
+    }
+
+    /**
+     * Copy (or link) the object to the destination file, downloading it into the cache first if needed.
+     * @param s3Uri The object URI.
+     * @param eTag The current ETag of the object.
+     * @param size The size of the object, used to detect incomplete entries. Ignored if null.
+     * @param destinationFile The file requested by the caller.
+     * @param loader Called to download the object when it's not in the cache.
+     * @return True if the object was found in the cache, false if it was downloaded.
+     * @throws IOException If the object could not be downloaded or copied.
+     */
+    public boolean get(S3Uri s3Uri, String eTag, Long size, File destinationFile, Loader loader) throws IOException {
+        String bucket = s3Uri.bucket().orElse("");
+        String key = s3Uri.key().orElse("");
+        String entryId = DownloadCache.getEntryId(bucket, key, eTag);
+
+        File objectFile = this.getObjectFile(entryId);
+        File metadataFile = this.getMetadataFile(entryId);
+
+        boolean hit;
+        try (CacheLock lock = CacheLock.lock(this.getEntryLockFile(entryId))) {
+            hit = objectFile.isFile() && (size == null || objectFile.length() == size);
+
+            Properties metadata;
+            if (hit) {
+                this.hitCount.incrementAndGet();
+                metadata = DownloadCache.readMetadata(metadataFile);
+                long hits = DownloadCache.getLong(metadata, METADATA_HITS, 0);
+                metadata.setProperty(METADATA_HITS, String.valueOf(hits + 1));
+            } else {
+                this.missCount.incrementAndGet();
+                this.load(s3Uri, objectFile, loader);
+                this.estimatedSize.addAndGet(objectFile.length());
+
+                metadata = new Properties();
+                metadata.setProperty(METADATA_BUCKET, bucket);
+                metadata.setProperty(METADATA_KEY, key);
+                metadata.setProperty(METADATA_ETAG, eTag);
+                metadata.setProperty(METADATA_SIZE, String.valueOf(objectFile.length()));
+                metadata.setProperty(METADATA_HITS, "0");
+            }
+            metadata.setProperty(METADATA_LAST_ACCESS, String.valueOf(System.currentTimeMillis()));
+            DownloadCache.writeMetadata(metadataFile, metadata);
+
+            LocalFileTransfer.transfer(objectFile, destinationFile, this.materializationMode);
+        }
+
+        if (!hit) {
+            this.evictIfNeeded();
+        }
+
+        return hit;
+    }
+
+    private void load(S3Uri s3Uri, File objectFile, Loader loader) throws IOException {
+        File tmpFile = new File(new File(this.directory, TMP_DIRECTORY), objectFile.getName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            LOGGER.debug(String.format("Cache miss, downloading %s to the cache %s", s3Uri, this.directory));
+            loader.load(tmpFile);
+            if (!tmpFile.isFile()) {
+                throw new IOException(String.format("The file %s was not downloaded.", s3Uri));
+            }
+
+            DownloadCache.createDirectory(objectFile.getParentFile());
+            Files.move(tmpFile.toPath(), objectFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            if (tmpFile.exists() && !tmpFile.delete()) {
+                LOGGER.warn(String.format("Could not delete the temporary file %s", tmpFile));
+            }
+        }
+    }
+
+    /**
+     * Delete entries until the cache size is within the quota.
+     * Entries in use by another thread or process are skipped.
+     */
+    public void evictIfNeeded() throws IOException {
+        if (this.estimatedSize.get() <= this.maxSize) {
+            return;
+        }
+
+        try (CacheLock cacheLock = CacheLock.tryLock(new File(this.directory, CACHE_LOCK_FILENAME))) {
+            if (cacheLock == null) {
+                // Another thread or process is already evicting entries
+                return;
+            }
+
+            List<Entry> entries = this.listEntries();
+            long size = 0;
+            for (Entry entry : entries) {
+                size += entry.size;
+            }
+
+            if (size > this.maxSize) {
+                Collections.sort(entries, this.getEvictionComparator());
+
+                for (Entry entry : entries) {
+                    if (size <= this.maxSize) {
+                        break;
+                    }
+
+                    try (CacheLock entryLock = CacheLock.tryLock(this.getEntryLockFile(entry.id))) {
+                        if (entryLock != null && this.delete(entry)) {
+                            size -= entry.size;
+                            this.evictionCount.incrementAndGet();
+                            this.evictedBytes.addAndGet(entry.size);
+                        }
+                    }
+                }
+            }
+
+            this.estimatedSize.set(size);
+        }
+    }
+
+    private boolean delete(Entry entry) {
+        File objectFile = this.getObjectFile(entry.id);
+        File metadataFile = this.getMetadataFile(entry.id);
+
+        boolean deleted = !objectFile.exists() || objectFile.delete();
+        if (deleted) {
+            if (metadataFile.exists() && !metadataFile.delete()) {
+                LOGGER.warn(String.format("Could not delete the cache metadata file %s", metadataFile));
+            }
+            LOGGER.debug(String.format("Evicted s3://%s/%s (%d bytes) from the cache %s",
+                    entry.bucket, entry.key, entry.size, this.directory));
+        } else {
+            LOGGER.warn(String.format("Could not delete the cache entry %s", objectFile));
+        }
+        return deleted;
+    }
+
+    private Comparator<Entry> getEvictionComparator() {
+        if (this.evictionPolicy == EvictionPolicy.LFU) {
+            return new Comparator<Entry>() {
+                @Override
+                public int compare(Entry entry1, Entry entry2) {
+                    int cmp = Long.compare(entry1.hits, entry2.hits);
+                    return cmp != 0 ? cmp : Long.compare(entry1.lastAccess, entry2.lastAccess);
+                }
+            };
+        }
+
+        return new Comparator<Entry>() {
+            @Override
+            public int compare(Entry entry1, Entry entry2) {
+                return Long.compare(entry1.lastAccess, entry2.lastAccess);
+            }
+        };
+    }
+
+    private List<Entry> listEntries() {
+        List<Entry> entries = new ArrayList<Entry>();
+
+        File[] prefixDirectories = new File(this.directory, OBJECTS_DIRECTORY).listFiles();
+        if (prefixDirectories != null) {
+            for (File prefixDirectory : prefixDirectories) {
+                File[] files = prefixDirectory.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        String filename = file.getName();
+                        if (!filename.endsWith(METADATA_EXTENSION)) {
+                            File metadataFile = new File(prefixDirectory, filename + METADATA_EXTENSION);
+                            Properties metadata;
+                            try {
+                                metadata = DownloadCache.readMetadata(metadataFile);
+                            } catch (IOException ex) {
+                                LOGGER.warn(String.format("Could not read the cache metadata file %s", metadataFile), ex);
+                                metadata = new Properties();
+                            }
+
+                            Entry entry = new Entry(filename);
+                            entry.bucket = metadata.getProperty(METADATA_BUCKET);
+                            entry.key = metadata.getProperty(METADATA_KEY);
+                            entry.size = file.length();
+                            entry.hits = DownloadCache.getLong(metadata, METADATA_HITS, 0);
+                            entry.lastAccess = DownloadCache.getLong(metadata, METADATA_LAST_ACCESS, file.lastModified());
+                            entries.add(entry);
+                        }
+                    }
+                }
+            }
+        }
+
+        return entries;
+    }
+
+    public File getDirectory() {
+        return this.directory;
+    }
+
+    public long getMaxSize() {
+        return this.maxSize;
+    }
+
+    public EvictionPolicy getEvictionPolicy() {
+        return this.evictionPolicy;
+    }
+
+    /**
+     * @return The size of the cache, as last seen by this instance.
+     */
+    public long getSize() {
+        return this.estimatedSize.get();
+    }
+
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+    public long getEvictedBytes() {
+        return this.evictedBytes.get();
+    }
+
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+
+        json.put("directory", this.directory);
+        json.put("maxSize", this.maxSize);
+        json.put("size", this.getSize());
+        json.put("evictionPolicy", this.evictionPolicy.name());
+        json.put("hits", this.getHitCount());
+        json.put("misses", this.getMissCount());
+        json.put("evictions", this.getEvictionCount());
+        json.put("evictedBytes", this.getEvictedBytes());
+
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return this.toJSON().toString(4);
+    }
+
+    private File getObjectFile(String entryId) {
+        return new File(new File(new File(this.directory, OBJECTS_DIRECTORY), entryId.substring(0, 2)), entryId);
+    }
+
+    private File getMetadataFile(String entryId) {
+        File objectFile = this.getObjectFile(entryId);
+        return new File(objectFile.getParentFile(), objectFile.getName() + METADATA_EXTENSION);
+    }
+
+    private File getEntryLockFile(String entryId) {
+        return new File(new File(this.directory, LOCKS_DIRECTORY), entryId.substring(0, 2) + ".lock");
+    }
+
+    private static String getEntryId(String bucket, String key, String eTag) {
+        if (eTag == null || eTag.isEmpty()) {
+            throw new IllegalArgumentException(String.format("Can not cache s3://%s/%s, the ETag is missing.", bucket, key));
+        }
+
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            // SHA-256 is available on every Java platform
+            throw new IllegalStateException(ex);
+        }
+        sha256.update((bucket + '\n' + key + '\n' + eTag).getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder entryId = new StringBuilder();
+        for (byte aByte : sha256.digest()) {
+            entryId.append(Integer.toString((aByte & 0xff) + 0x100, 16).substring(1));
+        }
+        return entryId.toString();
+    }
+
+    private static Properties readMetadata(File metadataFile) throws IOException {
+        Properties metadata = new Properties();
+        if (metadataFile.isFile()) {
+            try (InputStream inputStream = new FileInputStream(metadataFile)) {
+                metadata.load(inputStream);
+            }
+        }
+        return metadata;
+    }
+
+    private static void writeMetadata(File metadataFile, Properties metadata) throws IOException {
+        try (OutputStream outputStream = new FileOutputStream(metadataFile)) {
+            metadata.store(outputStream, null);
+        }
+    }
+
+    private static long getLong(Properties properties, String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException ex) {
+                LOGGER.warn(String.format("Invalid cache metadata value for %s: %s", key, value));
+            }
+        }
+        return defaultValue;
+    }
+
+    private static void createDirectory(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException(String.format("The directory %s could not be created.", directory.getAbsolutePath()));
+        }
+    }
+
+    private static class Entry {
+        private final String id;
+        private String bucket;
+        private String key;
+        private long size;
+        private long hits;
+        private long lastAccess;
+
+        public Entry(String id) {
+            this.id = id;
+        }
+    }
+}
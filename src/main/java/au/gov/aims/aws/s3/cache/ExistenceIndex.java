@@ -0,0 +1,284 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.cache;
+
+import au.gov.aims.aws.s3.SortedFileIterator;
+import au.gov.aims.aws.s3.entity.MutationListener;
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.manager.ListManager;
+import org.apache.log4j.Logger;
+import software.amazon.awssdk.services.s3.S3Uri;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory index of the keys of some prefixes, used to answer existence
+ * checks without a HEAD request. Most useful when the checked objects
+ * usually don't exist: a missing object costs a HEAD request and a 404.
+ *
+ * <p>A prefix is indexed with a listing. Its keys are kept in a sorted array,
+ * with a Bloom filter in front of it which answers most lookups of missing
+ * keys without searching the array. The objects written or deleted through
+ * the client are added to (or removed from) the index, see
+ * {@link S3ClientWrapper#setExistenceIndex(ExistenceIndex)}.</p>
+ *
+ * <p>Objects changed by other clients are not seen: the index of a prefix
+ * is not used once it's older than the maximum staleness, until it's rebuilt.</p>
+ */
+public class ExistenceIndex implements MutationListener {
+    private static final Logger LOGGER = Logger.getLogger(ExistenceIndex.class);
+
+    public static final long DEFAULT_MAX_STALENESS = 5 * 60 * 1000L;
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    private final long maxStaleness;
+    private final double falsePositiveRate;
+
+    // Indexed prefixes, by "bucket/prefix"
+    private final Map<String, PrefixIndex> prefixIndexes;
+
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+    private final AtomicLong filteredCount = new AtomicLong(0);
+
+    public ExistenceIndex() {
+        this(DEFAULT_MAX_STALENESS, DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * @param maxStaleness Number of milliseconds the index of a prefix is used after its listing.
+     * @param falsePositiveRate False positive rate of the Bloom filters.
+     */
+    public ExistenceIndex(long maxStaleness, double falsePositiveRate) {
+        this.maxStaleness = Math.max(0, maxStaleness);
+        this.falsePositiveRate = falsePositiveRate;
+        this.prefixIndexes = new LinkedHashMap<String, PrefixIndex>();
+    }
+
+    /**
+     * List a prefix (recursively) and index its keys, replacing the previous index of the prefix.
+     * Objects written or deleted during the listing are taken into account.
+     * @param prefixUri The prefix. Ending with "/" to index a directory.
+     * @return The number of keys indexed.
+     */
+    public long index(S3ClientWrapper client, S3Uri prefixUri) {
+        String bucket = prefixUri.bucket().orElseThrow(() -> new IllegalArgumentException("Missing bucket"));
+        String prefix = prefixUri.key().orElse("");
+
+        long startTime = System.currentTimeMillis();
+        PrefixIndex prefixIndex = new PrefixIndex(bucket, prefix, startTime);
+        synchronized (this) {
+            // Receive the mutations while listing, but don't answer until the listing is done
+            this.prefixIndexes.put(ExistenceIndex.getIndexKey(bucket, prefix), prefixIndex);
+        }
+
+        // S3 returns the keys in order
+        List<String> keys = new ArrayList<String>();
+        try {
+            Iterator<S3Object> objects = ListManager.listObjects(client, bucket, prefix);
+            while (objects.hasNext()) {
+                keys.add(objects.next().key());
+            }
+        } catch (RuntimeException ex) {
+            synchronized (this) {
+                this.prefixIndexes.remove(ExistenceIndex.getIndexKey(bucket, prefix));
+            }
+            throw ex;
+        }
+
+        BloomFilter bloomFilter = new BloomFilter(keys.size(), this.falsePositiveRate);
+        for (String key : keys) {
+            bloomFilter.put(key);
+        }
+        synchronized (this) {
+            prefixIndex.setKeys(keys.toArray(new String[0]), bloomFilter);
+        }
+
+        LOGGER.debug(String.format("Indexed %d keys of s3://%s/%s in %d ms", keys.size(), bucket, prefix,
+                System.currentTimeMillis() - startTime));
+        return keys.size();
+    }
+
+    /**
+     * @return True if the object exists, false if it doesn't, null if
+     *     the object is not in an indexed prefix or if the index is stale.
+     */
+    public synchronized Boolean exists(S3Uri s3Uri) {
+        String key = s3Uri.key().orElse("");
+        PrefixIndex prefixIndex = this.getPrefixIndex(s3Uri.bucket().orElse(""), key);
+        if (prefixIndex == null || !prefixIndex.isReady() ||
+                System.currentTimeMillis() - prefixIndex.created > this.maxStaleness) {
+            this.missCount.incrementAndGet();
+            return null;
+        }
+
+        this.hitCount.incrementAndGet();
+        Boolean overridden = prefixIndex.getMutation(key);
+        if (overridden != null) {
+            return overridden;
+        }
+        if (!prefixIndex.bloomFilter.mightContain(key)) {
+            this.filteredCount.incrementAndGet();
+            return false;
+        }
+        return Arrays.binarySearch(prefixIndex.keys, key, SortedFileIterator.KEY_ORDER) >= 0;
+    }
+
+    /**
+     * @return True if the object is in an indexed prefix whose index can be used.
+     */
+    public synchronized boolean isIndexed(S3Uri s3Uri) {
+        PrefixIndex prefixIndex = this.getPrefixIndex(s3Uri.bucket().orElse(""), s3Uri.key().orElse(""));
+        return prefixIndex != null && prefixIndex.isReady() &&
+                System.currentTimeMillis() - prefixIndex.created <= this.maxStaleness;
+    }
+
+    public synchronized void remove(S3Uri prefixUri) {
+        this.prefixIndexes.remove(ExistenceIndex.getIndexKey(prefixUri.bucket().orElse(""), prefixUri.key().orElse("")));
+    }
+
+    public synchronized void clear() {
+        this.prefixIndexes.clear();
+    }
+
+    @Override
+    public synchronized void objectWritten(S3Uri s3Uri) {
+        this.mutate(s3Uri, true);
+    }
+
+    @Override
+    public synchronized void objectDeleted(S3Uri s3Uri) {
+        this.mutate(s3Uri, false);
+    }
+
+    private void mutate(S3Uri s3Uri, boolean exists) {
+        String bucket = s3Uri.bucket().orElse("");
+        String key = s3Uri.key().orElse("");
+        // Every prefix containing the object, including the ones being listed
+        for (PrefixIndex prefixIndex : this.prefixIndexes.values()) {
+            if (prefixIndex.bucket.equals(bucket) && key.startsWith(prefixIndex.prefix)) {
+                prefixIndex.setMutation(key, exists);
+            }
+        }
+    }
+
+    public long getMaxStaleness() {
+        return this.maxStaleness;
+    }
+
+    public synchronized int getPrefixCount() {
+        return this.prefixIndexes.size();
+    }
+
+    /**
+     * @return The number of lookups answered by the index.
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * @return The number of lookups which could not be answered (not indexed, or stale).
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * @return The number of lookups answered by the Bloom filters alone.
+     */
+    public long getFilteredCount() {
+        return this.filteredCount.get();
+    }
+
+    // The index of the longest indexed prefix containing the key
+    private PrefixIndex getPrefixIndex(String bucket, String key) {
+        PrefixIndex found = null;
+        for (PrefixIndex prefixIndex : this.prefixIndexes.values()) {
+            if (prefixIndex.bucket.equals(bucket) && key.startsWith(prefixIndex.prefix) &&
+                    (found == null || prefixIndex.prefix.length() > found.prefix.length())) {
+                found = prefixIndex;
+            }
+        }
+        return found;
+    }
+
+    private static String getIndexKey(String bucket, String prefix) {
+        return bucket + "/" + prefix;
+    }
+
+    private static class PrefixIndex {
+        private final String bucket;
+        private final String prefix;
+        private final long created;
+
+        // Null until the listing is done
+        private String[] keys = null;
+        private BloomFilter bloomFilter = null;
+
+        // Keys written or deleted since the listing started
+        private final Set<String> written = new HashSet<String>();
+        private final Set<String> deleted = new HashSet<String>();
+
+        public PrefixIndex(String bucket, String prefix, long created) {
+            this.bucket = bucket;
+            this.prefix = prefix;
+            this.created = created;
+        }
+
+        public void setKeys(String[] keys, BloomFilter bloomFilter) {
+            this.keys = keys;
+            this.bloomFilter = bloomFilter;
+        }
+
+        public boolean isReady() {
+            return this.keys != null;
+        }
+
+        public void setMutation(String key, boolean exists) {
+            if (exists) {
+                this.deleted.remove(key);
+                this.written.add(key);
+            } else {
+                this.written.remove(key);
+                this.deleted.add(key);
+            }
+        }
+
+        // True if the key was written, false if it was deleted, null if unchanged since the listing
+        public Boolean getMutation(String key) {
+            if (this.written.contains(key)) {
+                return true;
+            }
+            if (this.deleted.contains(key)) {
+                return false;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,509 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.cache;
+
+import au.gov.aims.aws.s3.S3Utils;
+import au.gov.aims.aws.s3.SortedFileIterator;
+import au.gov.aims.aws.s3.entity.MutationListener;
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.manager.ListManager;
+import org.apache.log4j.Logger;
+import software.amazon.awssdk.services.s3.S3Uri;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory copy of the listing of some prefixes, used by
+ * {@link ListManager#ls(S3ClientWrapper, S3Uri, boolean)} (and therefore
+ * by FileWrapper.listFiles) to list the directories of an indexed prefix
+ * without a ListObjectsV2 request.
+ *
+ * <p>A prefix is indexed with a single recursive listing. Its objects are kept
+ * in a {@link ListingSnapshot}, in S3 order: the keys of a directory are contiguous,
+ * so a directory is found with a binary search, and its sub-directories
+ * are skipped with a binary search. Recursive and non-recursive listings,
+ * filters and patterns are all served from the same snapshot.</p>
+ *
+ * <p>The objects written or deleted with the client are recorded on top of the snapshot,
+ * see {@link S3ClientWrapper#setListingIndex(ListingIndex)}.
+ * Objects changed by other clients are only seen when the index is refreshed:
+ * the prefix is listed again the first time it's used after its time to live.</p>
+ *
+ * <p>An indexed prefix can be saved to a file ({@link #save(S3Uri, File)}) and
+ * loaded at the next start ({@link #load(File)}), without listing the prefix again.
+ * The loaded file is memory mapped, not read. It can then be brought up to date with
+ * {@link #refresh(S3ClientWrapper, S3Uri)}, which only lists the keys after the last known key.</p>
+ */
+public class ListingIndex implements MutationListener {
+    private static final Logger LOGGER = Logger.getLogger(ListingIndex.class);
+
+    public static final long DEFAULT_TIME_TO_LIVE = 5 * 60 * 1000L;
+
+    private final long timeToLive;
+    private boolean appendOnly = false;
+
+    // Indexed prefixes, by "bucket/prefix"
+    private final Map<String, PrefixIndex> prefixIndexes;
+
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+    private final AtomicLong refreshCount = new AtomicLong(0);
+
+    public ListingIndex() {
+        this(DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * @param timeToLive Number of milliseconds after which an indexed prefix is listed again.
+     */
+    public ListingIndex(long timeToLive) {
+        this.timeToLive = Math.max(0, timeToLive);
+        this.prefixIndexes = new LinkedHashMap<String, PrefixIndex>();
+    }
+
+    /**
+     * List a prefix (recursively) and index its objects, replacing the previous index of the prefix.
+     * Objects written or deleted during the listing are taken into account.
+     * @param prefixUri The prefix. Ending with "/" to index a directory.
+     * @return The number of objects indexed.
+     */
+    public long index(S3ClientWrapper client, S3Uri prefixUri) {
+        String bucket = prefixUri.bucket().orElseThrow(() -> new IllegalArgumentException("Missing bucket"));
+        String prefix = prefixUri.key().orElse("");
+
+        long startTime = System.currentTimeMillis();
+        PrefixIndex prefixIndex = new PrefixIndex(bucket, prefix, startTime);
+        synchronized (this) {
+            // Receive the mutations while listing, but don't serve listings until it's done
+            this.prefixIndexes.put(ListingIndex.getIndexKey(bucket, prefix), prefixIndex);
+        }
+
+        ListingSnapshot snapshot;
+        try {
+            // S3 returns the keys in order
+            snapshot = ListingSnapshot.build(bucket, prefix, startTime, ListManager.listObjects(client, bucket, prefix));
+        } catch (RuntimeException ex) {
+            synchronized (this) {
+                this.prefixIndexes.remove(ListingIndex.getIndexKey(bucket, prefix));
+            }
+            throw ex;
+        }
+
+        synchronized (this) {
+            prefixIndex.snapshot = snapshot;
+        }
+
+        LOGGER.debug(String.format("Indexed the listing of %d keys of s3://%s/%s in %d ms", snapshot.size(), bucket, prefix,
+                System.currentTimeMillis() - startTime));
+        return snapshot.size();
+    }
+
+    /**
+     * Bring an indexed prefix up to date by listing the keys which come after
+     * the last known key, using StartAfter. Objects added before the last key,
+     * changed or deleted by other clients are not seen: this is enough for
+     * prefixes where other clients only add keys in increasing order (time stamped keys).
+     * The prefix is indexed from scratch if it's not indexed.
+     * @return The number of objects added to the index.
+     */
+    public long refresh(S3ClientWrapper client, S3Uri prefixUri) {
+        String bucket = prefixUri.bucket().orElseThrow(() -> new IllegalArgumentException("Missing bucket"));
+        String prefix = prefixUri.key().orElse("");
+
+        PrefixIndex prefixIndex;
+        String startAfter;
+        synchronized (this) {
+            prefixIndex = this.prefixIndexes.get(ListingIndex.getIndexKey(bucket, prefix));
+            if (prefixIndex == null || !prefixIndex.isReady()) {
+                prefixIndex = null;
+                startAfter = null;
+            } else {
+                startAfter = prefixIndex.getLastKey();
+            }
+        }
+        if (prefixIndex == null) {
+            return this.index(client, prefixUri);
+        }
+
+        long startTime = System.currentTimeMillis();
+        List<S3Object> added = new ArrayList<S3Object>();
+        Iterator<S3Object> objects = startAfter == null ?
+                ListManager.listObjects(client, bucket, prefix) :
+                ListManager.listObjects(client, bucket, prefix, startAfter);
+        while (objects.hasNext()) {
+            added.add(objects.next());
+        }
+
+        synchronized (this) {
+            for (S3Object s3Object : added) {
+                // The mutations made during the listing are more recent
+                if (!prefixIndex.mutations.containsKey(s3Object.key())) {
+                    prefixIndex.mutations.put(s3Object.key(), s3Object);
+                }
+            }
+            prefixIndex.refreshed = startTime;
+        }
+
+        LOGGER.debug(String.format("Refreshed the listing of s3://%s/%s after %s: %d keys added in %d ms", bucket, prefix,
+                startAfter, added.size(), System.currentTimeMillis() - startTime));
+        return added.size();
+    }
+
+    /**
+     * Answer a listing request from the index. The indexed prefix is listed again
+     * if its time to live has expired.
+     * @param prefix The prefix of the listing, or null for the whole bucket.
+     * @param delimiter The delimiter ("/" to list a single directory), or null for a recursive listing.
+     * @return The whole listing, as a single page, or null if the prefix is not indexed.
+     */
+    public ListObjectsV2Response list(S3ClientWrapper client, String bucket, String prefix, String delimiter) {
+        if (prefix == null) {
+            prefix = "";
+        }
+
+        PrefixIndex prefixIndex;
+        synchronized (this) {
+            prefixIndex = this.getPrefixIndex(bucket, prefix);
+            if (prefixIndex == null || !prefixIndex.isReady() || prefixIndex.refreshing) {
+                this.missCount.incrementAndGet();
+                return null;
+            }
+            if (!this.isExpired(prefixIndex)) {
+                this.hitCount.incrementAndGet();
+                return prefixIndex.list(prefix, delimiter);
+            }
+            // Other threads use S3 while the prefix is listed again
+            prefixIndex.refreshing = true;
+        }
+
+        this.refreshCount.incrementAndGet();
+        LOGGER.debug(String.format("Refreshing the listing index of s3://%s/%s", prefixIndex.bucket, prefixIndex.prefix));
+        try {
+            S3Uri prefixUri = S3Utils.getS3URI(prefixIndex.bucket, prefixIndex.prefix);
+            if (this.appendOnly) {
+                this.refresh(client, prefixUri);
+            } else {
+                this.index(client, prefixUri);
+            }
+        } finally {
+            prefixIndex.refreshing = false;
+        }
+
+        synchronized (this) {
+            prefixIndex = this.getPrefixIndex(bucket, prefix);
+            if (prefixIndex == null || !prefixIndex.isReady()) {
+                this.missCount.incrementAndGet();
+                return null;
+            }
+            this.hitCount.incrementAndGet();
+            return prefixIndex.list(prefix, delimiter);
+        }
+    }
+
+    /**
+     * Save the index of a prefix to a file, to be loaded with {@link #load(File)}.
+     * The objects written and deleted since the listing are merged into the saved snapshot,
+     * which then replaces the snapshot of the prefix.
+     * @param prefixUri The indexed prefix.
+     * @return The number of objects saved.
+     * @throws IllegalStateException If the prefix is not indexed.
+     */
+    public long save(S3Uri prefixUri, File file) throws IOException {
+        String bucket = prefixUri.bucket().orElse("");
+        String prefix = prefixUri.key().orElse("");
+
+        ListingSnapshot snapshot;
+        synchronized (this) {
+            PrefixIndex prefixIndex = this.prefixIndexes.get(ListingIndex.getIndexKey(bucket, prefix));
+            if (prefixIndex == null || !prefixIndex.isReady()) {
+                throw new IllegalStateException(String.format("The prefix s3://%s/%s is not indexed", bucket, prefix));
+            }
+            snapshot = prefixIndex.compact();
+        }
+
+        snapshot.save(file);
+        LOGGER.debug(String.format("Saved the listing index of s3://%s/%s to %s: %d keys, %d bytes", bucket, prefix,
+                file, snapshot.size(), snapshot.getByteSize()));
+        return snapshot.size();
+    }
+
+    /**
+     * Load a prefix index saved with {@link #save(S3Uri, File)}, replacing the index of the prefix.
+     * The file is memory mapped. The time to live of the index starts at the time of its listing,
+     * use {@link #refresh(S3ClientWrapper, S3Uri)} to bring it up to date.
+     * @return The prefix of the loaded index.
+     */
+    public S3Uri load(File file) throws IOException {
+        ListingSnapshot snapshot = ListingSnapshot.load(file);
+        PrefixIndex prefixIndex = new PrefixIndex(snapshot.getBucket(), snapshot.getPrefix(), snapshot.getCreated());
+        prefixIndex.snapshot = snapshot;
+        synchronized (this) {
+            this.prefixIndexes.put(ListingIndex.getIndexKey(snapshot.getBucket(), snapshot.getPrefix()), prefixIndex);
+        }
+
+        LOGGER.debug(String.format("Loaded the listing index of s3://%s/%s from %s: %d keys", snapshot.getBucket(),
+                snapshot.getPrefix(), file, snapshot.size()));
+        return S3Utils.getS3URI(snapshot.getBucket(), snapshot.getPrefix());
+    }
+
+    /**
+     * @return True if a listing of the prefix would be answered by the index
+     *     without listing S3 (indexed and not expired).
+     */
+    public synchronized boolean isIndexed(S3Uri prefixUri) {
+        PrefixIndex prefixIndex = this.getPrefixIndex(prefixUri.bucket().orElse(""), prefixUri.key().orElse(""));
+        return prefixIndex != null && prefixIndex.isReady() && !this.isExpired(prefixIndex);
+    }
+
+    public synchronized void remove(S3Uri prefixUri) {
+        this.prefixIndexes.remove(ListingIndex.getIndexKey(prefixUri.bucket().orElse(""), prefixUri.key().orElse("")));
+    }
+
+    public synchronized void clear() {
+        this.prefixIndexes.clear();
+    }
+
+    @Override
+    public synchronized void objectWritten(S3Uri s3Uri) {
+        String key = s3Uri.key().orElse("");
+        this.mutate(s3Uri.bucket().orElse(""), key, S3Object.builder().key(key).build());
+    }
+
+    @Override
+    public synchronized void objectDeleted(S3Uri s3Uri) {
+        this.mutate(s3Uri.bucket().orElse(""), s3Uri.key().orElse(""), null);
+    }
+
+    private void mutate(String bucket, String key, S3Object s3Object) {
+        // Every prefix containing the object, including the ones being listed
+        for (PrefixIndex prefixIndex : this.prefixIndexes.values()) {
+            if (prefixIndex.bucket.equals(bucket) && key.startsWith(prefixIndex.prefix)) {
+                prefixIndex.mutations.put(key, s3Object);
+            }
+        }
+    }
+
+    public long getTimeToLive() {
+        return this.timeToLive;
+    }
+
+    public boolean isAppendOnly() {
+        return this.appendOnly;
+    }
+
+    /**
+     * @param appendOnly True to refresh the expired prefixes with {@link #refresh(S3ClientWrapper, S3Uri)},
+     *     which only lists the keys after the last known key, instead of listing the whole prefix again.
+     */
+    public void setAppendOnly(boolean appendOnly) {
+        this.appendOnly = appendOnly;
+    }
+
+    public synchronized int getPrefixCount() {
+        return this.prefixIndexes.size();
+    }
+
+    /**
+     * @return The number of listings answered by the index.
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * @return The number of listings which could not be answered (not indexed, or being indexed).
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * @return The number of times an expired prefix was listed again.
+     */
+    public long getRefreshCount() {
+        return this.refreshCount.get();
+    }
+
+    private boolean isExpired(PrefixIndex prefixIndex) {
+        return System.currentTimeMillis() - prefixIndex.refreshed > this.timeToLive;
+    }
+
+    // The index of the longest indexed prefix containing the listed prefix
+    private PrefixIndex getPrefixIndex(String bucket, String prefix) {
+        PrefixIndex found = null;
+        for (PrefixIndex prefixIndex : this.prefixIndexes.values()) {
+            if (prefixIndex.bucket.equals(bucket) && prefix.startsWith(prefixIndex.prefix) &&
+                    (found == null || prefixIndex.prefix.length() > found.prefix.length())) {
+                found = prefixIndex;
+            }
+        }
+        return found;
+    }
+
+    private static String getIndexKey(String bucket, String prefix) {
+        return bucket + "/" + prefix;
+    }
+
+    private static class PrefixIndex {
+        private final String bucket;
+        private final String prefix;
+        private long refreshed;
+        private volatile boolean refreshing = false;
+
+        // Null until the listing is done
+        private ListingSnapshot snapshot = null;
+
+        // Objects added (or null if deleted) since the listing started, in S3 order
+        private final TreeMap<String, S3Object> mutations = new TreeMap<String, S3Object>(SortedFileIterator.KEY_ORDER);
+
+        public PrefixIndex(String bucket, String prefix, long refreshed) {
+            this.bucket = bucket;
+            this.prefix = prefix;
+            this.refreshed = refreshed;
+        }
+
+        public boolean isReady() {
+            return this.snapshot != null;
+        }
+
+        public String getLastKey() {
+            String lastKey = this.snapshot.size() == 0 ? null : this.snapshot.getKey(this.snapshot.size() - 1);
+            if (!this.mutations.isEmpty()) {
+                String lastMutation = this.mutations.lastKey();
+                if (lastKey == null || SortedFileIterator.KEY_ORDER.compare(lastMutation, lastKey) > 0) {
+                    lastKey = lastMutation;
+                }
+            }
+            return lastKey;
+        }
+
+        // Merge the mutations into a new snapshot
+        public ListingSnapshot compact() throws IOException {
+            ListingSnapshot.Builder builder = new ListingSnapshot.Builder();
+            MergedIterator objects = new MergedIterator("");
+            while (objects.hasNext()) {
+                builder.add(objects.next());
+            }
+            this.snapshot = builder.build(this.bucket, this.prefix, this.refreshed);
+            this.mutations.clear();
+            return this.snapshot;
+        }
+
+        public ListObjectsV2Response list(String listPrefix, String delimiter) {
+            List<S3Object> contents = new ArrayList<S3Object>();
+            List<CommonPrefix> commonPrefixes = new ArrayList<CommonPrefix>();
+
+            MergedIterator objects = new MergedIterator(listPrefix);
+            while (objects.hasNext()) {
+                S3Object s3Object = objects.next();
+                String key = s3Object.key();
+                int delimiterIndex = delimiter == null || delimiter.isEmpty() ? -1 : key.indexOf(delimiter, listPrefix.length());
+                if (delimiterIndex < 0) {
+                    contents.add(s3Object);
+                } else {
+                    // Sub-directory: its keys are contiguous, skip them all
+                    String commonPrefix = key.substring(0, delimiterIndex + delimiter.length());
+                    commonPrefixes.add(CommonPrefix.builder().prefix(commonPrefix).build());
+                    objects.skip(commonPrefix);
+                }
+            }
+
+            return ListObjectsV2Response.builder()
+                    .contents(contents)
+                    .commonPrefixes(commonPrefixes)
+                    .keyCount(contents.size() + commonPrefixes.size())
+                    .isTruncated(false)
+                    .build();
+        }
+
+        // The objects of the snapshot and the mutations starting with a prefix, in S3 order
+        private class MergedIterator implements Iterator<S3Object> {
+            private final String listPrefix;
+            // Next object of the snapshot, and next mutation
+            private int index;
+            private Map.Entry<String, S3Object> mutation;
+            private S3Object next = null;
+
+            public MergedIterator(String listPrefix) {
+                this.listPrefix = listPrefix;
+                this.index = PrefixIndex.this.snapshot.lowerBound(listPrefix);
+                this.mutation = PrefixIndex.this.mutations.ceilingEntry(listPrefix);
+            }
+
+            @Override
+            public boolean hasNext() {
+                ListingSnapshot snapshot = PrefixIndex.this.snapshot;
+                while (this.next == null) {
+                    boolean hasObject = this.index < snapshot.size() && snapshot.startsWith(this.index, this.listPrefix);
+                    boolean hasMutation = this.mutation != null && this.mutation.getKey().startsWith(this.listPrefix);
+                    if (!hasObject && !hasMutation) {
+                        return false;
+                    }
+
+                    int comparison = !hasObject ? 1 : !hasMutation ? -1 :
+                            SortedFileIterator.KEY_ORDER.compare(snapshot.getKey(this.index), this.mutation.getKey());
+                    if (comparison < 0) {
+                        this.next = snapshot.getObject(this.index++);
+                    } else {
+                        if (comparison == 0) {
+                            this.index++;
+                        }
+                        // Null if the object was deleted
+                        this.next = this.mutation.getValue();
+                        this.mutation = PrefixIndex.this.mutations.higherEntry(this.mutation.getKey());
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public S3Object next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                S3Object s3Object = this.next;
+                this.next = null;
+                return s3Object;
+            }
+
+            // Skip the objects starting with the prefix
+            public void skip(String prefix) {
+                ListingSnapshot snapshot = PrefixIndex.this.snapshot;
+                if (this.index < snapshot.size() && snapshot.startsWith(this.index, prefix)) {
+                    this.index = snapshot.skip(prefix, this.index);
+                }
+                while (this.mutation != null && this.mutation.getKey().startsWith(prefix)) {
+                    this.mutation = PrefixIndex.this.mutations.higherEntry(this.mutation.getKey());
+                }
+            }
+        }
+    }
+}
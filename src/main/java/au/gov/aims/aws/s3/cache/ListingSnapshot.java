@@ -0,0 +1,363 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.cache;
+
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Immutable listing of a prefix, in a compact binary form: the objects
+ * (key, size, last modified and ETag) in S3 order, preceded by a table
+ * of their offsets. Lookups are binary searches on the UTF-8 bytes
+ * of the keys, which sort like the keys.
+ *
+ * <p>A snapshot is built in memory from a listing, and can be saved to a file.
+ * A saved snapshot is memory mapped when loaded, so it can be used as soon as it's
+ * loaded, without reading it, and its pages are shared with the file system cache.
+ * NOTE: On Windows, a mapped file stays locked until the snapshot is garbage collected.</p>
+ *
+ * <p>File format (big endian):</p>
+ * <pre>
+ * int     magic ("S3LS")
+ * int     version
+ * long    created (time of the listing)
+ * int     object count
+ * short   bucket length, followed by the bucket (UTF-8)
+ * short   prefix length, followed by the prefix (UTF-8)
+ * int[]   offset of each object, relative to the first object
+ * objects:
+ *   short   key length, followed by the key (UTF-8)
+ *   long    size, -1 if unknown
+ *   long    last modified, -1 if unknown
+ *   byte    ETag length, followed by the ETag (ASCII)
+ * </pre>
+ */
+public class ListingSnapshot {
+    private static final int MAGIC = 0x53334C53;
+    private static final int VERSION = 1;
+
+    private final ByteBuffer buffer;
+    private final String bucket;
+    private final String prefix;
+    private final long created;
+    private final int count;
+    private final int offsetTablePosition;
+    private final int objectsPosition;
+
+    private ListingSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < 20 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Invalid listing snapshot");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported listing snapshot version: %d", version));
+        }
+        this.created = buffer.getLong(8);
+        this.count = buffer.getInt(16);
+
+        int position = 20;
+        int bucketLength = buffer.getShort(position) & 0xffff;
+        this.bucket = this.getString(position + 2, bucketLength);
+        position += 2 + bucketLength;
+        int prefixLength = buffer.getShort(position) & 0xffff;
+        this.prefix = this.getString(position + 2, prefixLength);
+        position += 2 + prefixLength;
+
+        this.offsetTablePosition = position;
+        this.objectsPosition = position + 4 * this.count;
+        if (this.count < 0 || this.objectsPosition > buffer.limit()) {
+            throw new IOException("Truncated listing snapshot");
+        }
+    }
+
+    /**
+     * Memory map a snapshot file.
+     */
+    public static ListingSnapshot load(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(String.format("Listing snapshot too large: %s", file));
+            }
+            // The mapping stays valid once the channel is closed
+            return new ListingSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Build a snapshot in memory.
+     * @param objects The objects, in S3 order (as listed).
+     */
+    public static ListingSnapshot build(String bucket, String prefix, long created, Iterator<S3Object> objects) {
+        Builder builder = new Builder();
+        while (objects.hasNext()) {
+            builder.add(objects.next());
+        }
+        try {
+            return builder.build(bucket, prefix, created);
+        } catch (IOException ex) {
+            // Written in memory
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Save the snapshot to a file. The file is written next to the
+     * destination, then renamed, to never leave a truncated snapshot.
+     */
+    public void save(File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException(String.format("Can not create the snapshot directory %s", directory));
+        }
+
+        File tmpFile = new File(directory, file.getName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmpFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer content = this.buffer.duplicate();
+            content.clear();
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+        }
+        Files.move(tmpFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public String getBucket() {
+        return this.bucket;
+    }
+
+    public String getPrefix() {
+        return this.prefix;
+    }
+
+    /**
+     * @return The time of the listing, in milliseconds.
+     */
+    public long getCreated() {
+        return this.created;
+    }
+
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * @return The size of the snapshot, in bytes.
+     */
+    public int getByteSize() {
+        return this.buffer.limit();
+    }
+
+    public String getKey(int index) {
+        int position = this.getPosition(index);
+        return this.getString(position + 2, this.buffer.getShort(position) & 0xffff);
+    }
+
+    public S3Object getObject(int index) {
+        int position = this.getPosition(index);
+        int keyLength = this.buffer.getShort(position) & 0xffff;
+        String key = this.getString(position + 2, keyLength);
+        position += 2 + keyLength;
+
+        long size = this.buffer.getLong(position);
+        long lastModified = this.buffer.getLong(position + 8);
+        int eTagLength = this.buffer.get(position + 16) & 0xff;
+
+        S3Object.Builder objectBuilder = S3Object.builder().key(key);
+        if (size >= 0) {
+            objectBuilder.size(size);
+        }
+        if (lastModified >= 0) {
+            objectBuilder.lastModified(Instant.ofEpochMilli(lastModified));
+        }
+        if (eTagLength > 0) {
+            objectBuilder.eTag(this.getString(position + 17, eTagLength));
+        }
+        return objectBuilder.build();
+    }
+
+    /**
+     * @return The index of the first key greater than or equal to the given key.
+     */
+    public int lowerBound(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = this.count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.compare(middle, keyBytes) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return True if the key of the object at index starts with the prefix.
+     */
+    public boolean startsWith(int index, String prefix) {
+        return this.startsWith(index, prefix.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param from Index of a key starting with the prefix.
+     * @return The index of the first key after "from" which doesn't start with the prefix.
+     */
+    public int skip(String prefix, int from) {
+        byte[] prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+        int low = from;
+        int high = this.count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.startsWith(middle, prefixBytes)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Unsigned comparison of the UTF-8 bytes gives the order of the code points (SortedFileIterator.KEY_ORDER)
+    private int compare(int index, byte[] keyBytes) {
+        int position = this.getPosition(index);
+        int keyLength = this.buffer.getShort(position) & 0xffff;
+        position += 2;
+        int length = Math.min(keyLength, keyBytes.length);
+        for (int i = 0; i < length; i++) {
+            int difference = (this.buffer.get(position + i) & 0xff) - (keyBytes[i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return keyLength - keyBytes.length;
+    }
+
+    private boolean startsWith(int index, byte[] prefixBytes) {
+        int position = this.getPosition(index);
+        int keyLength = this.buffer.getShort(position) & 0xffff;
+        if (keyLength < prefixBytes.length) {
+            return false;
+        }
+        position += 2;
+        for (int i = 0; i < prefixBytes.length; i++) {
+            if (this.buffer.get(position + i) != prefixBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int getPosition(int index) {
+        if (index < 0 || index >= this.count) {
+            throw new IndexOutOfBoundsException(String.format("Index: %d, size: %d", index, this.count));
+        }
+        return this.objectsPosition + this.buffer.getInt(this.offsetTablePosition + 4 * index);
+    }
+
+    private String getString(int position, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = this.buffer.get(position + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Build a snapshot in memory, one object at a time, in S3 order.
+     */
+    public static class Builder {
+        private final ByteArrayOutputStream objectBytes = new ByteArrayOutputStream();
+        private final DataOutputStream objectOutput = new DataOutputStream(this.objectBytes);
+        private int[] offsets = new int[1024];
+        private int count = 0;
+
+        public Builder add(S3Object s3Object) {
+            Long size = s3Object.size();
+            Instant lastModified = s3Object.lastModified();
+            return this.add(s3Object.key(), size == null ? -1 : size,
+                    lastModified == null ? -1 : lastModified.toEpochMilli(), s3Object.eTag());
+        }
+
+        public Builder add(String key, long size, long lastModified, String eTag) {
+            if (this.count == this.offsets.length) {
+                this.offsets = Arrays.copyOf(this.offsets, this.offsets.length * 2);
+            }
+            this.offsets[this.count++] = this.objectBytes.size();
+
+            byte[] eTagBytes = eTag == null ? new byte[0] : eTag.getBytes(StandardCharsets.UTF_8);
+            try {
+                ListingSnapshot.writeString(this.objectOutput, key);
+                this.objectOutput.writeLong(size);
+                this.objectOutput.writeLong(lastModified);
+                this.objectOutput.writeByte(Math.min(eTagBytes.length, 255));
+                this.objectOutput.write(eTagBytes, 0, Math.min(eTagBytes.length, 255));
+            } catch (IOException ex) {
+                // Written in memory
+                throw new UncheckedIOException(ex);
+            }
+            return this;
+        }
+
+        public ListingSnapshot build(String bucket, String prefix, long created) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(this.objectBytes.size() + 4 * this.count + 1024);
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(created);
+            output.writeInt(this.count);
+            ListingSnapshot.writeString(output, bucket);
+            ListingSnapshot.writeString(output, prefix == null ? "" : prefix);
+            for (int i = 0; i < this.count; i++) {
+                output.writeInt(this.offsets[i]);
+            }
+            this.objectBytes.writeTo(output);
+            output.flush();
+
+            return new ListingSnapshot(ByteBuffer.wrap(bytes.toByteArray()).asReadOnlyBuffer());
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xffff) {
+            throw new IOException(String.format("Key too long: %s", value));
+        }
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+}
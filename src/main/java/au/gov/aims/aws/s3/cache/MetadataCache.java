@@ -0,0 +1,209 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.cache;
+
+import org.json.JSONObject;
+import software.amazon.awssdk.services.s3.S3Uri;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache of S3 object metadata (size, last modified, ETag),
+ * used to avoid sending a HEAD request for every attribute lookup.
+ *
+ * <p>Entries are filled from HEAD responses and from listing pages,
+ * which return the metadata of up to 1000 objects per request.
+ * The cache also remembers directories (common prefixes) and
+ * missing objects. Entries expire after the time to live and,
+ * when the cache is full, the least recently used entries are evicted.</p>
+ */
+public class MetadataCache {
+    public static final long DEFAULT_TIME_TO_LIVE = 60 * 1000L;
+    public static final int DEFAULT_MAX_ENTRIES = 100000;
+
+    private final long timeToLive;
+    private final int maxEntries;
+
+    // Access ordered, the first entry is the least recently used
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+    private final AtomicLong evictionCount = new AtomicLong(0);
+
+    public MetadataCache() {
+        this(DEFAULT_TIME_TO_LIVE, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param timeToLive Number of milliseconds an entry is used before it expires.
+     * @param maxEntries Maximum number of entries held by the cache.
+     */
+    public MetadataCache(long timeToLive, int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid number of entries: %d", maxEntries));
+        }
+        this.timeToLive = Math.max(0, timeToLive);
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    }
+
+    /**
+     * @return The cached entry, or null if the object is not in the cache or its entry expired.
+     */
+    public synchronized Entry get(S3Uri s3Uri) {
+        String cacheKey = MetadataCache.getCacheKey(s3Uri);
+        Entry entry = this.entries.get(cacheKey);
+        if (entry != null && System.currentTimeMillis() - entry.created >= this.timeToLive) {
+            this.entries.remove(cacheKey);
+            entry = null;
+        }
+
+        if (entry == null) {
+            this.missCount.incrementAndGet();
+        } else {
+            this.hitCount.incrementAndGet();
+        }
+        return entry;
+    }
+
+    public void putFile(S3Uri s3Uri, Long size, Long lastModified, String eTag) {
+        this.put(s3Uri, new Entry(Type.FILE, size, lastModified, eTag));
+    }
+
+    public void putDirectory(S3Uri s3Uri) {
+        this.put(s3Uri, new Entry(Type.DIRECTORY, null, null, null));
+    }
+
+    public void putMissing(S3Uri s3Uri) {
+        this.put(s3Uri, new Entry(Type.MISSING, null, null, null));
+    }
+
+    private synchronized void put(S3Uri s3Uri, Entry entry) {
+        this.entries.put(MetadataCache.getCacheKey(s3Uri), entry);
+
+        Iterator<Map.Entry<String, Entry>> iterator = this.entries.entrySet().iterator();
+        while (this.entries.size() > this.maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            this.evictionCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Remove an object from the cache. Called when the object is modified or deleted.
+     */
+    public synchronized void remove(S3Uri s3Uri) {
+        this.entries.remove(MetadataCache.getCacheKey(s3Uri));
+    }
+
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    public long getTimeToLive() {
+        return this.timeToLive;
+    }
+
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    public synchronized int getEntryCount() {
+        return this.entries.size();
+    }
+
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+
+        json.put("timeToLive", this.timeToLive);
+        json.put("maxEntries", this.maxEntries);
+        json.put("entries", this.getEntryCount());
+        json.put("hits", this.getHitCount());
+        json.put("misses", this.getMissCount());
+        json.put("evictions", this.getEvictionCount());
+
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return this.toJSON().toString(4);
+    }
+
+    private static String getCacheKey(S3Uri s3Uri) {
+        String key = s3Uri.key().orElse("");
+        // "dir" and "dir/" are the same directory
+        if (key.endsWith("/")) {
+            key = key.substring(0, key.length() - 1);
+        }
+        return s3Uri.bucket().orElse("") + "/" + key;
+    }
+
+    public enum Type {
+        FILE, DIRECTORY, MISSING
+    }
+
+    public static class Entry {
+        private final Type type;
+        private final Long size;
+        private final Long lastModified;
+        private final String eTag;
+        private final long created;
+
+        private Entry(Type type, Long size, Long lastModified, String eTag) {
+            this.type = type;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.eTag = eTag;
+            this.created = System.currentTimeMillis();
+        }
+
+        public Type getType() {
+            return this.type;
+        }
+
+        public Long getSize() {
+            return this.size;
+        }
+
+        public Long getLastModified() {
+            return this.lastModified;
+        }
+
+        public String getETag() {
+            return this.eTag;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.cache;
+
+import org.json.JSONObject;
+import software.amazon.awssdk.services.s3.S3Uri;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache for small S3 objects (JSON, config files, indexes, etc).
+ *
+ * <p>The cache is bounded by the total number of bytes it holds.
+ * Objects larger than the per-object limit are never cached.
+ * When the cache is full, the least recently used objects are evicted.</p>
+ *
+ * <p>Entries are identified by the object URI and validated using the
+ * object ETag: after the validation interval, the object is requested
+ * again with a conditional GET (If-None-Match), which only returns the
+ * content when the object has changed.</p>
+ */
+public class ObjectByteCache {
+    private final long maxSize;
+    private final int maxObjectSize;
+    private final long validationInterval;
+
+    // Access ordered, the first entry is the least recently used
+    private final LinkedHashMap<String, Entry> entries;
+    private long size;
+
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+    private final AtomicLong validationCount = new AtomicLong(0);
+    private final AtomicLong evictionCount = new AtomicLong(0);
+
+    /**
+     * @param maxSize Maximum number of bytes held by the cache.
+     * @param maxObjectSize Objects larger than this number of bytes are not cached.
+     * @param validationInterval Number of milliseconds an entry is used without checking its ETag on S3.
+     *     Set to 0 to validate the ETag every time the entry is used.
+     */
+    public ObjectByteCache(long maxSize, int maxObjectSize, long validationInterval) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid cache size: %d", maxSize));
+        }
+        if (maxObjectSize <= 0 || maxObjectSize > maxSize) {
+            throw new IllegalArgumentException(String.format("Invalid maximum object size: %d", maxObjectSize));
+        }
+
+        this.maxSize = maxSize;
+        this.maxObjectSize = maxObjectSize;
+        this.validationInterval = Math.max(0, validationInterval);
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+        this.size = 0;
+    }
+
+    public synchronized Entry get(S3Uri s3Uri) {
+        return this.entries.get(ObjectByteCache.getCacheKey(s3Uri));
+    }
+
+    /**
+     * Add an object to the cache.
+     * @return True if the object was added, false if it's too large to be cached.
+     */
+    public synchronized boolean put(S3Uri s3Uri, String eTag, byte[] content) {
+        String cacheKey = ObjectByteCache.getCacheKey(s3Uri);
+        Entry oldEntry = this.entries.remove(cacheKey);
+        if (oldEntry != null) {
+            this.size -= oldEntry.content.length;
+        }
+
+        if (eTag == null || !this.isCacheable(content.length)) {
+            return false;
+        }
+
+        this.entries.put(cacheKey, new Entry(eTag, content, System.currentTimeMillis()));
+        this.size += content.length;
+
+        Iterator<Map.Entry<String, Entry>> iterator = this.entries.entrySet().iterator();
+        while (this.size > this.maxSize && iterator.hasNext()) {
+            Entry evictedEntry = iterator.next().getValue();
+            iterator.remove();
+            this.size -= evictedEntry.content.length;
+            this.evictionCount.incrementAndGet();
+        }
+
+        return true;
+    }
+
+    public synchronized void remove(S3Uri s3Uri) {
+        Entry oldEntry = this.entries.remove(ObjectByteCache.getCacheKey(s3Uri));
+        if (oldEntry != null) {
+            this.size -= oldEntry.content.length;
+        }
+    }
+
+    public synchronized void clear() {
+        this.entries.clear();
+        this.size = 0;
+    }
+
+    public boolean isCacheable(long objectSize) {
+        return objectSize >= 0 && objectSize <= this.maxObjectSize;
+    }
+
+    /**
+     * @return True if the entry can be used without checking its ETag on S3.
+     */
+    public boolean isFresh(Entry entry) {
+        return System.currentTimeMillis() - entry.validated < this.validationInterval;
+    }
+
+    /**
+     * Called when S3 confirmed the entry ETag is still valid.
+     */
+    public void validated(Entry entry) {
+        entry.validated = System.currentTimeMillis();
+        this.validationCount.incrementAndGet();
+    }
+
+    public void hit() {
+        this.hitCount.incrementAndGet();
+    }
+
+    public void miss() {
+        this.missCount.incrementAndGet();
+    }
+
+    public long getMaxSize() {
+        return this.maxSize;
+    }
+
+    public int getMaxObjectSize() {
+        return this.maxObjectSize;
+    }
+
+    public long getValidationInterval() {
+        return this.validationInterval;
+    }
+
+    public synchronized long getSize() {
+        return this.size;
+    }
+
+    public synchronized int getEntryCount() {
+        return this.entries.size();
+    }
+
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    public long getValidationCount() {
+        return this.validationCount.get();
+    }
+
+    public long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+
+        json.put("maxSize", this.maxSize);
+        json.put("maxObjectSize", this.maxObjectSize);
+        json.put("size", this.getSize());
+        json.put("entries", this.getEntryCount());
+        json.put("hits", this.getHitCount());
+        json.put("misses", this.getMissCount());
+        json.put("validations", this.getValidationCount());
+        json.put("evictions", this.getEvictionCount());
+
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return this.toJSON().toString(4);
+    }
+
+    private static String getCacheKey(S3Uri s3Uri) {
+        return s3Uri.bucket().orElse("") + "/" + s3Uri.key().orElse("");
+    }
+
+    public static class Entry {
+        private final String eTag;
+        private final byte[] content;
+        private volatile long validated;
+
+        private Entry(String eTag, byte[] content, long validated) {
+            this.eTag = eTag;
+            this.content = content;
+            this.validated = validated;
+        }
+
+        public String getETag() {
+            return this.eTag;
+        }
+
+        /**
+         * @return The cached content. Shared with the cache, it must not be modified.
+         */
+        public byte[] getContent() {
+            return this.content;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.checksum;
+
+import org.apache.log4j.Logger;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Checksum algorithms supported by S3 (MD5 is the ETag of single part uploads).
+ *
+ * <p>The CRCs can be combined: the CRC of a file can be computed from the
+ * CRC of its chunks, so it can be computed in parallel.
+ * MD5 and SHA-256 have to be computed one byte after the other.</p>
+ */
+public enum ChecksumAlgorithm {
+    MD5("MD5", 16) {
+        @Override
+        public Hasher newHasher() {
+            return new DigestHasher(this, "MD5");
+        }
+    },
+
+    SHA256("SHA-256", 32) {
+        @Override
+        public Hasher newHasher() {
+            return new DigestHasher(this, "SHA-256");
+        }
+    },
+
+    // java.util.zip.CRC32 is implemented with CPU instructions by the JVM
+    CRC32("CRC32", 4, Crc.CRC32) {
+        @Override
+        public Hasher newHasher() {
+            return new ChecksumHasher(this, new CRC32(), null);
+        }
+    },
+
+    // java.util.zip.CRC32C was introduced in Java 9, use it when available
+    CRC32C("CRC32C", 4, Crc.CRC32C) {
+        @Override
+        public Hasher newHasher() {
+            if (JDK_CRC32C_CLASS != null) {
+                try {
+                    return new ChecksumHasher(this, (Checksum) JDK_CRC32C_CLASS.getDeclaredConstructor().newInstance(), JDK_CRC32C_UPDATE);
+                } catch (ReflectiveOperationException ex) {
+                    LOGGER.warn("Could not instantiate java.util.zip.CRC32C. Falling back to the Java implementation.", ex);
+                }
+            }
+            return new CrcHasher(this, Crc.CRC32C);
+        }
+    },
+
+    CRC64NVME("CRC64NVME", 8, Crc.CRC64NVME) {
+        @Override
+        public Hasher newHasher() {
+            return new CrcHasher(this, Crc.CRC64NVME);
+        }
+    };
+
+    private static final Logger LOGGER = Logger.getLogger(ChecksumAlgorithm.class);
+
+    private static final Class<?> JDK_CRC32C_CLASS;
+    private static final Method JDK_CRC32C_UPDATE;
+    static {
+        Class<?> crc32cClass = null;
+        Method updateMethod = null;
+        try {
+            crc32cClass = Class.forName("java.util.zip.CRC32C");
+            updateMethod = crc32cClass.getMethod("update", ByteBuffer.class);
+        } catch (ClassNotFoundException | NoSuchMethodException ex) {
+            // Java 8
+            crc32cClass = null;
+        }
+        JDK_CRC32C_CLASS = crc32cClass;
+        JDK_CRC32C_UPDATE = updateMethod;
+    }
+
+    private final String name;
+    private final int length;
+    private final Crc crc;
+
+    ChecksumAlgorithm(String name, int length) {
+        this(name, length, null);
+    }
+
+    ChecksumAlgorithm(String name, int length, Crc crc) {
+        this.name = name;
+        this.length = length;
+        this.crc = crc;
+    }
+
+    public abstract Hasher newHasher();
+
+    /**
+     * @return The name of the algorithm, as used by S3 and Java.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return The length of the checksum, in bytes.
+     */
+    public int getLength() {
+        return this.length;
+    }
+
+    /**
+     * @return True if the checksums of consecutive blocks can be
+     *     combined with {@link #combine(byte[], byte[], long)}.
+     */
+    public boolean isComposable() {
+        return this.crc != null;
+    }
+
+    /**
+     * @param checksum1 The checksum of the first block.
+     * @param checksum2 The checksum of the second block.
+     * @param length2 The length of the second block, in bytes.
+     * @return The checksum of the first block followed by the second block.
+     * @throws UnsupportedOperationException If the algorithm is not composable.
+     */
+    public byte[] combine(byte[] checksum1, byte[] checksum2, long length2) {
+        if (this.crc == null) {
+            throw new UnsupportedOperationException(String.format("%s checksums can not be combined.", this.name));
+        }
+        return ChecksumAlgorithm.toBytes(this.crc.combine(ChecksumAlgorithm.toLong(checksum1), ChecksumAlgorithm.toLong(checksum2), length2), this.length);
+    }
+
+    private static byte[] toBytes(long value, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = length - 1; i >= 0; i--) {
+            bytes[i] = (byte)value;
+            value >>>= 8;
+        }
+        return bytes;
+    }
+
+    private static long toLong(byte[] bytes) {
+        long value = 0;
+        for (byte aByte : bytes) {
+            value = (value << 8) | (aByte & 0xff);
+        }
+        return value;
+    }
+
+    private static class DigestHasher implements Hasher {
+        private final ChecksumAlgorithm algorithm;
+        private final MessageDigest digest;
+
+        public DigestHasher(ChecksumAlgorithm algorithm, String digestAlgorithm) {
+            this.algorithm = algorithm;
+            try {
+                this.digest = MessageDigest.getInstance(digestAlgorithm);
+            } catch (NoSuchAlgorithmException ex) {
+                // Every Java platform is required to support MD5 and SHA-256
+                throw new IllegalStateException(String.format("%s is not supported", digestAlgorithm), ex);
+            }
+        }
+
+        @Override
+        public ChecksumAlgorithm getAlgorithm() {
+            return this.algorithm;
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            this.digest.update(buffer);
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            this.digest.update(bytes, offset, length);
+        }
+
+        @Override
+        public byte[] getValue() {
+            return this.digest.digest();
+        }
+    }
+
+    private static class CrcHasher implements Hasher {
+        private final ChecksumAlgorithm algorithm;
+        private final Crc crc;
+        private long value = 0;
+
+        public CrcHasher(ChecksumAlgorithm algorithm, Crc crc) {
+            this.algorithm = algorithm;
+            this.crc = crc;
+        }
+
+        @Override
+        public ChecksumAlgorithm getAlgorithm() {
+            return this.algorithm;
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            this.value = this.crc.update(this.value, buffer);
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            this.value = this.crc.update(this.value, bytes, offset, length);
+        }
+
+        @Override
+        public byte[] getValue() {
+            return ChecksumAlgorithm.toBytes(this.value, this.algorithm.length);
+        }
+    }
+
+    // Wrap a java.util.zip.Checksum. Java 8 doesn't define Checksum.update(ByteBuffer),
+    // it's called by reflection for CRC32C.
+    private static class ChecksumHasher implements Hasher {
+        private final ChecksumAlgorithm algorithm;
+        private final Checksum checksum;
+        private final Method updateMethod;
+
+        public ChecksumHasher(ChecksumAlgorithm algorithm, Checksum checksum, Method updateMethod) {
+            this.algorithm = algorithm;
+            this.checksum = checksum;
+            this.updateMethod = updateMethod;
+        }
+
+        @Override
+        public ChecksumAlgorithm getAlgorithm() {
+            return this.algorithm;
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            if (this.checksum instanceof CRC32) {
+                ((CRC32) this.checksum).update(buffer);
+            } else if (this.updateMethod != null) {
+                try {
+                    this.updateMethod.invoke(this.checksum, buffer);
+                } catch (IllegalAccessException | InvocationTargetException ex) {
+                    throw new IllegalStateException(String.format("Could not compute the %s checksum", this.algorithm.name), ex);
+                }
+            } else if (buffer.hasArray()) {
+                this.checksum.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                buffer.position(buffer.limit());
+            } else {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                this.checksum.update(bytes, 0, bytes.length);
+            }
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            this.checksum.update(bytes, offset, length);
+        }
+
+        @Override
+        public byte[] getValue() {
+            return ChecksumAlgorithm.toBytes(this.checksum.getValue(), this.algorithm.length);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.checksum;
+
+import au.gov.aims.aws.s3.SortedFileIterator;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compute the checksum of files.
+ *
+ * <p>Files are read with large direct buffers (one per thread), to avoid
+ * copying the file content to the Java heap. Files are not memory mapped:
+ * a mapped file stays locked on Windows until the mapping is garbage collected.</p>
+ *
+ * <p>With a composable algorithm (the CRCs), large files are split in chunks
+ * which are hashed in parallel, then the checksums of the chunks are combined.
+ * With MD5 and SHA-256, a file is hashed by a single thread, but the
+ * files of a directory are hashed in parallel
+ * ({@link #checksumDirectory(File, ChecksumAlgorithm, int)}).</p>
+ */
+public class ChecksumCalculator {
+    private static final Logger LOGGER = Logger.getLogger(ChecksumCalculator.class);
+    private static final long MB = 1024L * 1024;
+
+    public static final int BUFFER_SIZE = 1024 * 1024;
+
+    // Size of the chunks hashed in parallel. Smaller files are hashed by a single thread.
+    public static final long CHUNK_SIZE = 32 * MB;
+
+    // One read buffer per thread of the pools
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    };
+
+    /**
+     * Compute the checksum of a file, with a single thread.
+     * @return The checksum, in big endian.
+     */
+    public static byte[] checksum(File file, ChecksumAlgorithm algorithm) throws IOException {
+        return ChecksumCalculator.checksum(file, algorithm, 1);
+    }
+
+    /**
+     * @param concurrency Number of chunks hashed at the same time, for composable algorithms.
+     * @return The checksum, in big endian.
+     */
+    public static byte[] checksum(File file, ChecksumAlgorithm algorithm, int concurrency) throws IOException {
+        return ChecksumCalculator.checksum(file, algorithm, concurrency, CHUNK_SIZE);
+    }
+
+    static byte[] checksum(File file, final ChecksumAlgorithm algorithm, int concurrency, long chunkSize) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (concurrency <= 1 || !algorithm.isComposable() || fileSize <= chunkSize) {
+                Hasher hasher = algorithm.newHasher();
+                ChecksumCalculator.update(hasher, channel, 0, fileSize, ByteBuffer.allocateDirect(BUFFER_SIZE));
+                return hasher.getValue();
+            }
+
+            final int chunkCount = (int)((fileSize + chunkSize - 1) / chunkSize);
+            final long[] chunkLengths = new long[chunkCount];
+            List<Callable<byte[]>> tasks = new ArrayList<Callable<byte[]>>();
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                final long position = chunk * chunkSize;
+                final long length = Math.min(chunkSize, fileSize - position);
+                chunkLengths[chunk] = length;
+                tasks.add(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        Hasher hasher = algorithm.newHasher();
+                        ChecksumCalculator.update(hasher, channel, position, length, BUFFERS.get());
+                        return hasher.getValue();
+                    }
+                });
+            }
+
+            List<byte[]> chunkChecksums = ChecksumCalculator.invokeAll(tasks, Math.min(concurrency, chunkCount),
+                    String.format("Could not compute the checksum of %s", file));
+
+            byte[] checksum = chunkChecksums.get(0);
+            for (int chunk = 1; chunk < chunkCount; chunk++) {
+                checksum = algorithm.combine(checksum, chunkChecksums.get(chunk), chunkLengths[chunk]);
+            }
+            return checksum;
+        }
+    }
+
+    /**
+     * Compute the checksum of every file of a directory, recursively.
+     * The files are hashed in parallel, each one by a single thread.
+     * @param concurrency Number of files hashed at the same time.
+     * @return The checksums, indexed by path relative to the directory (with "/" separators),
+     *     in the order of a S3 listing.
+     */
+    public static Map<String, byte[]> checksumDirectory(File directory, final ChecksumAlgorithm algorithm, int concurrency) throws IOException {
+        List<String> keys = new ArrayList<String>();
+        List<Callable<byte[]>> tasks = new ArrayList<Callable<byte[]>>();
+        try {
+            SortedFileIterator iterator = new SortedFileIterator(directory.toPath());
+            while (iterator.hasNext()) {
+                final SortedFileIterator.Entry entry = iterator.next();
+                keys.add(entry.getKey());
+                tasks.add(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        try (FileChannel channel = FileChannel.open(entry.getPath(), StandardOpenOption.READ)) {
+                            Hasher hasher = algorithm.newHasher();
+                            ChecksumCalculator.update(hasher, channel, 0, channel.size(), BUFFERS.get());
+                            return hasher.getValue();
+                        }
+                    }
+                });
+            }
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        long startTime = System.currentTimeMillis();
+        List<byte[]> checksums = ChecksumCalculator.invokeAll(tasks, concurrency,
+                String.format("Could not compute the checksums of the directory %s", directory));
+
+        Map<String, byte[]> checksumMap = new LinkedHashMap<String, byte[]>();
+        for (int i = 0; i < keys.size(); i++) {
+            checksumMap.put(keys.get(i), checksums.get(i));
+        }
+        LOGGER.debug(String.format("%s checksum of %d files computed in %d ms", algorithm.getName(), keys.size(),
+                System.currentTimeMillis() - startTime));
+        return checksumMap;
+    }
+
+    /**
+     * Add a region of a file to a checksum.
+     * @param buffer Buffer used to read the file. Direct buffers are faster.
+     */
+    public static void update(Hasher hasher, FileChannel channel, long position, long length, ByteBuffer buffer) throws IOException {
+        long end = position + length;
+        while (position < end) {
+            buffer.clear();
+            if (end - position < buffer.capacity()) {
+                buffer.limit((int)(end - position));
+            }
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException(String.format("Unexpected end of file at position %d, expected %d bytes.", position, end));
+            }
+            buffer.flip();
+            hasher.update(buffer);
+            position += read;
+        }
+    }
+
+    public static String toHex(byte[] checksum) {
+        StringBuilder hex = new StringBuilder();
+        for (byte aByte : checksum) {
+            hex.append(Integer.toString((aByte & 0xff) + 0x100, 16).substring(1));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * @return The checksum encoded in base64, as used in the S3 checksum headers.
+     */
+    public static String toBase64(byte[] checksum) {
+        return Base64.getEncoder().encodeToString(checksum);
+    }
+
+    private static <T> List<T> invokeAll(List<Callable<T>> tasks, int concurrency, String errorMessage) throws IOException {
+        List<T> results = new ArrayList<T>();
+        if (tasks.isEmpty()) {
+            return results;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, tasks.size())));
+        try {
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(errorMessage, ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(errorMessage, cause);
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.checksum;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Compute the checksum of the bytes read from a stream, while they are read.
+ * Skipped bytes are read, so they are included in the checksum.
+ * Mark and reset are not supported.
+ */
+public class ChecksumInputStream extends FilterInputStream {
+    private final Hasher hasher;
+    private long bytesRead = 0;
+
+    public ChecksumInputStream(InputStream inputStream, Hasher hasher) {
+        super(inputStream);
+        this.hasher = hasher;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        if (value >= 0) {
+            this.hasher.update(new byte[]{ (byte)value }, 0, 1);
+            this.bytesRead++;
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        int read = super.read(bytes, offset, length);
+        if (read > 0) {
+            this.hasher.update(bytes, offset, read);
+            this.bytesRead += read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long length) throws IOException {
+        byte[] buffer = new byte[(int)Math.min(8192, Math.max(1, length))];
+        long skipped = 0;
+        while (skipped < length) {
+            int read = this.read(buffer, 0, (int)Math.min(buffer.length, length - skipped));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    public long getBytesRead() {
+        return this.bytesRead;
+    }
+
+    /**
+     * @return The checksum of the bytes read. The stream should not be read afterward.
+     */
+    public byte[] getChecksum() {
+        return this.hasher.getValue();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.checksum;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Table driven implementation of the reflected CRCs used by S3
+ * (initial value and final XOR with all bits set), up to 64 bits.
+ *
+ * <p>The bytes are processed 8 at a time ("slicing-by-8"), which is several
+ * times faster than the classic byte by byte implementation.</p>
+ *
+ * <p>The CRC of the concatenation of 2 blocks can be computed from the CRC of
+ * each block and the length of the second one ({@link #combine(long, long, long)}),
+ * which allows to compute the CRC of a large file in parallel.
+ * The algorithm is the one used by zlib (crc32_combine).</p>
+ */
+class Crc {
+    // Reflected polynomials
+    static final Crc CRC32 = new Crc(32, 0xEDB88320L);
+    static final Crc CRC32C = new Crc(32, 0x82F63B78L);
+    static final Crc CRC64NVME = new Crc(64, 0x9A6C9329AC4BC9B5L);
+
+    private final int width;
+    private final long polynomial;
+    private final long mask;
+    private final long[][] tables;
+
+    private Crc(int width, long polynomial) {
+        this.width = width;
+        this.polynomial = polynomial;
+        this.mask = width == 64 ? -1L : (1L << width) - 1;
+
+        this.tables = new long[8][256];
+        for (int n = 0; n < 256; n++) {
+            long crc = n;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ polynomial : crc >>> 1;
+            }
+            this.tables[0][n] = crc;
+        }
+        for (int n = 0; n < 256; n++) {
+            for (int k = 1; k < 8; k++) {
+                long previous = this.tables[k - 1][n];
+                this.tables[k][n] = (previous >>> 8) ^ this.tables[0][(int)(previous & 0xff)];
+            }
+        }
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * @param crc The CRC of the previous bytes.
+     * @param buffer The bytes to add, from the position to the limit. The position is moved to the limit.
+     * @return The CRC of the previous bytes followed by the bytes of the buffer.
+     */
+    public long update(long crc, ByteBuffer buffer) {
+        long[][] t = this.tables;
+        long register = ~crc & this.mask;
+
+        // Read the longs in little endian, without changing the order of the caller's buffer
+        ByteBuffer littleEndian = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int length = littleEndian.remaining();
+        while (littleEndian.remaining() >= 8) {
+            long x = register ^ littleEndian.getLong();
+            register = t[7][(int)(x & 0xff)] ^
+                    t[6][(int)((x >>> 8) & 0xff)] ^
+                    t[5][(int)((x >>> 16) & 0xff)] ^
+                    t[4][(int)((x >>> 24) & 0xff)] ^
+                    t[3][(int)((x >>> 32) & 0xff)] ^
+                    t[2][(int)((x >>> 40) & 0xff)] ^
+                    t[1][(int)((x >>> 48) & 0xff)] ^
+                    t[0][(int)(x >>> 56)];
+        }
+        while (littleEndian.hasRemaining()) {
+            register = (register >>> 8) ^ t[0][(int)((register ^ littleEndian.get()) & 0xff)];
+        }
+        buffer.position(buffer.position() + length);
+
+        return ~register & this.mask;
+    }
+
+    public long update(long crc, byte[] bytes, int offset, int length) {
+        return this.update(crc, ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /**
+     * @param crc1 The CRC of the first block.
+     * @param crc2 The CRC of the second block.
+     * @param length2 The length of the second block, in bytes.
+     * @return The CRC of the first block followed by the second block.
+     */
+    public long combine(long crc1, long crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+
+        // Operator for one zero bit, then 2 and 4 zero bits
+        long[] odd = new long[this.width];
+        long[] even = new long[this.width];
+        odd[0] = this.polynomial;
+        long row = 1;
+        for (int n = 1; n < this.width; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        this.square(even, odd);
+        this.square(odd, even);
+
+        // Apply length2 zero bytes to crc1, one bit of length2 at a time
+        do {
+            this.square(even, odd);
+            if ((length2 & 1) != 0) {
+                crc1 = Crc.times(even, crc1);
+            }
+            length2 >>>= 1;
+            if (length2 == 0) {
+                break;
+            }
+
+            this.square(odd, even);
+            if ((length2 & 1) != 0) {
+                crc1 = Crc.times(odd, crc1);
+            }
+            length2 >>>= 1;
+        } while (length2 != 0);
+
+        return (crc1 ^ crc2) & this.mask;
+    }
+
+    private void square(long[] square, long[] matrix) {
+        for (int n = 0; n < this.width; n++) {
+            square[n] = Crc.times(matrix, matrix[n]);
+        }
+    }
+
+    private static long times(long[] matrix, long vector) {
+        long sum = 0;
+        int index = 0;
+        while (vector != 0) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[index];
+            }
+            vector >>>= 1;
+            index++;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.checksum;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compute the checksum of a sequence of bytes, one block at a time.
+ * Instances are created with {@link ChecksumAlgorithm#newHasher()}. Not thread safe.
+ */
+public interface Hasher {
+
+    ChecksumAlgorithm getAlgorithm();
+
+    /**
+     * Add the bytes of the buffer, from its position to its limit.
+     * The position of the buffer is moved to its limit.
+     */
+    void update(ByteBuffer buffer);
+
+    void update(byte[] bytes, int offset, int length);
+
+    /**
+     * @return The checksum of the bytes added so far, in big endian.
+     *     The hasher can not be used afterward.
+     */
+    byte[] getValue();
+}
@@ -0,0 +1,57 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.checksum;
+
+/**
+ * Checksum of the content of a S3 object (or of a part),
+ * as returned by S3: encoded in base64.
+ */
+public class ObjectChecksum {
+    private final ChecksumAlgorithm algorithm;
+    private final String value;
+
+    public ObjectChecksum(ChecksumAlgorithm algorithm, String value) {
+        this.algorithm = algorithm;
+        this.value = value;
+    }
+
+    public ObjectChecksum(ChecksumAlgorithm algorithm, byte[] checksum) {
+        this(algorithm, ChecksumCalculator.toBase64(checksum));
+    }
+
+    public ChecksumAlgorithm getAlgorithm() {
+        return this.algorithm;
+    }
+
+    /**
+     * @return The checksum, encoded in base64.
+     */
+    public String getValue() {
+        return this.value;
+    }
+
+    public boolean matches(byte[] checksum) {
+        return this.value.equals(ChecksumCalculator.toBase64(checksum));
+    }
+
+    @Override
+    public String toString() {
+        return this.algorithm.getName() + ":" + this.value;
+    }
+}
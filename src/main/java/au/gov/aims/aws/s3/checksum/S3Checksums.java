@@ -0,0 +1,181 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.checksum;
+
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.Part;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.util.Base64;
+
+/**
+ * Read and write the S3 additional checksums (x-amz-checksum-*) of the SDK requests and responses.
+ * The SDK has a different method for each algorithm.
+ *
+ * <p>S3 computes the checksum of every part of a multipart upload. The checksum of the object is
+ * either the checksum of the whole content (FULL_OBJECT, the CRCs, which can be combined)
+ * or the checksum of the checksums of the parts followed by the number of parts
+ * (COMPOSITE, SHA-256). Example: "Ui/nyA==-3"</p>
+ */
+public class S3Checksums {
+
+    /**
+     * @return The SDK value of the algorithm.
+     * @throws IllegalArgumentException If the algorithm is not supported by S3 (MD5 is not an additional checksum).
+     */
+    public static software.amazon.awssdk.services.s3.model.ChecksumAlgorithm toSdkAlgorithm(ChecksumAlgorithm algorithm) {
+        switch (algorithm) {
+            case CRC32:
+                return software.amazon.awssdk.services.s3.model.ChecksumAlgorithm.CRC32;
+            case CRC32C:
+                return software.amazon.awssdk.services.s3.model.ChecksumAlgorithm.CRC32_C;
+            case CRC64NVME:
+                return software.amazon.awssdk.services.s3.model.ChecksumAlgorithm.CRC64_NVME;
+            case SHA256:
+                return software.amazon.awssdk.services.s3.model.ChecksumAlgorithm.SHA256;
+            default:
+                throw new IllegalArgumentException(String.format("%s is not a S3 additional checksum.", algorithm.getName()));
+        }
+    }
+
+    public static String getChecksum(UploadPartResponse response, ChecksumAlgorithm algorithm) {
+        switch (algorithm) {
+            case CRC32:
+                return response.checksumCRC32();
+            case CRC32C:
+                return response.checksumCRC32C();
+            case CRC64NVME:
+                return response.checksumCRC64NVME();
+            case SHA256:
+                return response.checksumSHA256();
+            default:
+                return null;
+        }
+    }
+
+    public static String getChecksum(Part part, ChecksumAlgorithm algorithm) {
+        switch (algorithm) {
+            case CRC32:
+                return part.checksumCRC32();
+            case CRC32C:
+                return part.checksumCRC32C();
+            case CRC64NVME:
+                return part.checksumCRC64NVME();
+            case SHA256:
+                return part.checksumSHA256();
+            default:
+                return null;
+        }
+    }
+
+    public static String getChecksum(CompletedPart part, ChecksumAlgorithm algorithm) {
+        switch (algorithm) {
+            case CRC32:
+                return part.checksumCRC32();
+            case CRC32C:
+                return part.checksumCRC32C();
+            case CRC64NVME:
+                return part.checksumCRC64NVME();
+            case SHA256:
+                return part.checksumSHA256();
+            default:
+                return null;
+        }
+    }
+
+    public static CompletedPart.Builder setChecksum(CompletedPart.Builder builder, ChecksumAlgorithm algorithm, String checksum) {
+        switch (algorithm) {
+            case CRC32:
+                return builder.checksumCRC32(checksum);
+            case CRC32C:
+                return builder.checksumCRC32C(checksum);
+            case CRC64NVME:
+                return builder.checksumCRC64NVME(checksum);
+            case SHA256:
+                return builder.checksumSHA256(checksum);
+            default:
+                return builder;
+        }
+    }
+
+    public static CompleteMultipartUploadRequest.Builder setChecksum(CompleteMultipartUploadRequest.Builder builder,
+            ChecksumAlgorithm algorithm, String checksum) {
+        switch (algorithm) {
+            case CRC32:
+                return builder.checksumCRC32(checksum);
+            case CRC32C:
+                return builder.checksumCRC32C(checksum);
+            case CRC64NVME:
+                return builder.checksumCRC64NVME(checksum);
+            case SHA256:
+                return builder.checksumSHA256(checksum);
+            default:
+                return builder;
+        }
+    }
+
+    /**
+     * The metadata must be requested with the checksum mode enabled.
+     * @return The checksum of the whole content of the object, or null if the
+     *     object has no checksum, or only a checksum of its parts (COMPOSITE).
+     */
+    public static ObjectChecksum getFullObjectChecksum(HeadObjectResponse metadata) {
+        ChecksumAlgorithm[] algorithms = { ChecksumAlgorithm.CRC64NVME, ChecksumAlgorithm.CRC32C,
+                ChecksumAlgorithm.CRC32, ChecksumAlgorithm.SHA256 };
+        String[] checksums = { metadata.checksumCRC64NVME(), metadata.checksumCRC32C(),
+                metadata.checksumCRC32(), metadata.checksumSHA256() };
+
+        for (int i = 0; i < algorithms.length; i++) {
+            // Composite checksums end with the number of parts
+            if (checksums[i] != null && !checksums[i].contains("-")) {
+                return new ObjectChecksum(algorithms[i], checksums[i]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Combine the checksums of the parts of a multipart upload.
+     * @param partChecksums The checksums of the parts, in order, encoded in base64.
+     * @param partSize The size of the parts, except the last one.
+     * @param objectSize The size of the object.
+     * @return The checksum of the object, encoded in base64, or null if a checksum
+     *     is missing or if the algorithm can't be combined.
+     */
+    public static String combine(ChecksumAlgorithm algorithm, Iterable<String> partChecksums, long partSize, long objectSize) {
+        if (!algorithm.isComposable()) {
+            return null;
+        }
+
+        byte[] checksum = null;
+        long position = 0;
+        for (String partChecksum : partChecksums) {
+            if (partChecksum == null) {
+                return null;
+            }
+            long length = Math.min(partSize, objectSize - position);
+            byte[] partChecksumBytes = Base64.getDecoder().decode(partChecksum);
+            checksum = checksum == null ? partChecksumBytes : algorithm.combine(checksum, partChecksumBytes, length);
+            position += length;
+        }
+        return checksum == null || position != objectSize ? null : ChecksumCalculator.toBase64(checksum);
+    }
+}
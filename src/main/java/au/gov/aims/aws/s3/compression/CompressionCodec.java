@@ -0,0 +1,53 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compression format of the objects uploaded with a compression policy.
+ *
+ * <p>The name of the codec is the value of the Content-Encoding header of the compressed objects,
+ * and is used to find the codec when the objects are downloaded.
+ * Codecs other than gzip are registered with the Java service loader: add the name
+ * of the implementation class to the file
+ * META-INF/services/au.gov.aims.aws.s3.compression.CompressionCodec of the jar,
+ * or register them with {@link CompressionCodecs#register(CompressionCodec)}.</p>
+ */
+public interface CompressionCodec {
+
+    /**
+     * @return The content coding of the format, as used in the Content-Encoding header. Example: "gzip", "zstd"
+     */
+    String getName();
+
+    /**
+     * @param outputStream Stream receiving the compressed data.
+     * @return A stream compressing the data written to it. Closing it closes the output stream.
+     */
+    OutputStream compress(OutputStream outputStream) throws IOException;
+
+    /**
+     * @param inputStream Stream of compressed data.
+     * @return A stream of the decompressed data. Closing it closes the input stream.
+     */
+    InputStream decompress(InputStream inputStream) throws IOException;
+}
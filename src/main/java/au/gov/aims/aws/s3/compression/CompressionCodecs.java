@@ -0,0 +1,99 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.compression;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the compression codecs, indexed by name.
+ * Gzip is always available. The other codecs are found with the Java
+ * service loader the first time the registry is used.
+ */
+public class CompressionCodecs {
+    private static final Logger LOGGER = Logger.getLogger(CompressionCodecs.class);
+
+    // Key: name of the codec, in lower case
+    private static final Map<String, CompressionCodec> CODECS = CompressionCodecs.loadCodecs();
+
+    private static Map<String, CompressionCodec> loadCodecs() {
+        Map<String, CompressionCodec> codecs = new ConcurrentHashMap<String, CompressionCodec>();
+        GzipCodec gzipCodec = new GzipCodec();
+        codecs.put(gzipCodec.getName(), gzipCodec);
+        // Legacy name of gzip (RFC 7230)
+        codecs.put("x-gzip", gzipCodec);
+
+        Iterator<CompressionCodec> codecIterator = ServiceLoader.load(CompressionCodec.class).iterator();
+        while (true) {
+            try {
+                if (!codecIterator.hasNext()) {
+                    break;
+                }
+                CompressionCodec codec = codecIterator.next();
+                codecs.put(codec.getName().toLowerCase(Locale.ENGLISH), codec);
+                LOGGER.debug(String.format("Compression codec %s registered: %s", codec.getName(), codec.getClass().getName()));
+            } catch (ServiceConfigurationError ex) {
+                // A codec which can't be loaded (missing library) doesn't prevent the other codecs from loading
+                LOGGER.warn("Could not load a compression codec.", ex);
+            }
+        }
+        return codecs;
+    }
+
+    /**
+     * Register a codec, replacing the codec of the same name.
+     */
+    public static void register(CompressionCodec codec) {
+        CODECS.put(codec.getName().toLowerCase(Locale.ENGLISH), codec);
+    }
+
+    /**
+     * @param name The name of the codec, or the value of a Content-Encoding header.
+     * @return The codec, or null if no codec has that name.
+     */
+    public static CompressionCodec getCodec(String name) {
+        if (name == null) {
+            return null;
+        }
+        String cleanName = name.trim().toLowerCase(Locale.ENGLISH);
+        if (cleanName.isEmpty()) {
+            return null;
+        }
+        return CODECS.get(cleanName);
+    }
+
+    public static Collection<CompressionCodec> getCodecs() {
+        List<CompressionCodec> codecs = new ArrayList<CompressionCodec>();
+        for (CompressionCodec codec : CODECS.values()) {
+            if (!codecs.contains(codec)) {
+                codecs.add(codec);
+            }
+        }
+        return codecs;
+    }
+}
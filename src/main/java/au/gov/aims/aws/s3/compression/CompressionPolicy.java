@@ -0,0 +1,132 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.compression;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Choose the codec used to compress a file before it's uploaded,
+ * from the extension of the file and its size.
+ *
+ * <p>Only the files with a listed extension are compressed: files which are
+ * already compressed (NetCDF, images, archives) would not get smaller.
+ * Files smaller than the minimum size are not compressed, the compression
+ * headers would use more space than what is saved.</p>
+ *
+ * <p>Example, to compress CSV and JSON files larger than 10 kB with gzip, and CDL files with zstd
+ * (if a zstd codec is registered):</p>
+ * <pre>
+ * CompressionPolicy policy = new CompressionPolicy(GzipCodec.NAME, "csv", "json")
+ *         .setCodec("cdl", "zstd")
+ *         .setMinSize(10 * 1024);
+ * </pre>
+ */
+public class CompressionPolicy {
+    public static final long DEFAULT_MIN_SIZE = 1024;
+    // Text formats produced by our workflows
+    public static final String[] DEFAULT_EXTENSIONS = { "csv", "tsv", "txt", "json", "geojson", "xml", "cdl", "html", "log" };
+
+    // Key: file extension, in lower case, value: name of the codec
+    private final Map<String, String> extensionCodecs = new TreeMap<String, String>();
+    private long minSize;
+
+    /**
+     * Compress the text formats ({@link #DEFAULT_EXTENSIONS}) with gzip.
+     */
+    public CompressionPolicy() {
+        this(GzipCodec.NAME, DEFAULT_EXTENSIONS);
+    }
+
+    /**
+     * @param codec The name of the codec used for the extensions.
+     * @param extensions The extensions of the files to compress, without dot. Example: "csv"
+     */
+    public CompressionPolicy(String codec, String ... extensions) {
+        for (String extension : extensions) {
+            this.setCodec(extension, codec);
+        }
+        this.minSize = DEFAULT_MIN_SIZE;
+    }
+
+    /**
+     * @param extension The extension of the files, without dot. Example: "json"
+     * @param codec The name of the codec used to compress the files with that extension,
+     *     or null to not compress them.
+     */
+    public CompressionPolicy setCodec(String extension, String codec) {
+        String cleanExtension = CompressionPolicy.cleanExtension(extension);
+        if (codec == null) {
+            this.extensionCodecs.remove(cleanExtension);
+        } else {
+            this.extensionCodecs.put(cleanExtension, codec);
+        }
+        return this;
+    }
+
+    public long getMinSize() {
+        return this.minSize;
+    }
+
+    /**
+     * @param minSize Files smaller than this are not compressed, in bytes.
+     */
+    public CompressionPolicy setMinSize(long minSize) {
+        this.minSize = minSize;
+        return this;
+    }
+
+    /**
+     * @param filename The name of the file, with its extension.
+     * @param size The size of the file, in bytes.
+     * @return The codec to compress the file with, or null if the file should not be compressed.
+     * @throws IllegalStateException If the codec chosen for the file is not registered.
+     */
+    public CompressionCodec getCodec(String filename, long size) {
+        if (filename == null || size < this.minSize) {
+            return null;
+        }
+
+        int dotIndex = filename.lastIndexOf('.');
+        if (dotIndex < 0) {
+            return null;
+        }
+        String codecName = this.extensionCodecs.get(CompressionPolicy.cleanExtension(filename.substring(dotIndex + 1)));
+        if (codecName == null) {
+            return null;
+        }
+
+        CompressionCodec codec = CompressionCodecs.getCodec(codecName);
+        if (codec == null) {
+            throw new IllegalStateException(String.format("The compression codec %s is not registered.", codecName));
+        }
+        return codec;
+    }
+
+    private static String cleanExtension(String extension) {
+        String cleanExtension = extension.trim().toLowerCase(Locale.ENGLISH);
+        return cleanExtension.startsWith(".") ? cleanExtension.substring(1) : cleanExtension;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s, files of %d bytes or more", this.extensionCodecs, this.minSize);
+    }
+}
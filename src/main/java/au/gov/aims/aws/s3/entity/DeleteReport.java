@@ -0,0 +1,115 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.entity;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Result of a bulk delete: the number of objects deleted, the keys which
+ * could not be deleted and the number of requests sent.
+ * Updated concurrently by the delete threads.
+ */
+public class DeleteReport {
+    private final String bucket;
+    private final Map<String, String> failures;
+    private long deletedCount = 0;
+    private int requestCount = 0;
+    private int retriedCount = 0;
+    private Long executionTime = null;
+
+    public DeleteReport(String bucket) {
+        this.bucket = bucket;
+        this.failures = new LinkedHashMap<String, String>();
+    }
+
+    public String getBucket() {
+        return this.bucket;
+    }
+
+    public synchronized void addDeleted(long count) {
+        this.deletedCount += count;
+    }
+
+    /**
+     * @param error The error code and message returned by S3.
+     */
+    public synchronized void addFailure(String key, String error) {
+        this.failures.put(key, error);
+    }
+
+    public synchronized void requestSent() {
+        this.requestCount++;
+    }
+
+    /**
+     * @param count Number of keys sent again, after a transient error.
+     */
+    public synchronized void keysRetried(int count) {
+        this.retriedCount += count;
+    }
+
+    public synchronized long getDeletedCount() {
+        return this.deletedCount;
+    }
+
+    /**
+     * @return The keys which could not be deleted, with the error returned by S3.
+     */
+    public synchronized Map<String, String> getFailures() {
+        return new LinkedHashMap<String, String>(this.failures);
+    }
+
+    public synchronized boolean hasFailures() {
+        return !this.failures.isEmpty();
+    }
+
+    public synchronized int getRequestCount() {
+        return this.requestCount;
+    }
+
+    public synchronized int getRetriedCount() {
+        return this.retriedCount;
+    }
+
+    public void setExecutionTime(Long executionTime) {
+        this.executionTime = executionTime;
+    }
+    public Long getExecutionTime() {
+        return this.executionTime;
+    }
+
+    /**
+     * @return The number of objects deleted per second, or null if the execution time is unknown.
+     */
+    public synchronized Double getThroughput() {
+        if (this.executionTime == null) {
+            return null;
+        }
+        return this.deletedCount * 1000.0 / Math.max(1, this.executionTime);
+    }
+
+    @Override
+    public synchronized String toString() {
+        Double throughput = this.getThroughput();
+        return String.format("Delete s3://%s: %d deleted, %d FAILED, %d requests, %d keys retried, in %s ms (%s objects/s)",
+                this.bucket, this.deletedCount, this.failures.size(), this.requestCount, this.retriedCount,
+                this.executionTime, throughput == null ? null : String.format("%.1f", throughput));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.entity;
+
+import software.amazon.awssdk.services.s3.S3Uri;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+/**
+ * Result of the HEAD request of a batch: the metadata of the object,
+ * nothing if the object doesn't exist, or the error which prevented the request.
+ */
+public class HeadResult {
+    private final S3Uri s3Uri;
+    private final HeadObjectResponse metadata;
+    private final Throwable error;
+
+    public HeadResult(S3Uri s3Uri, HeadObjectResponse metadata, Throwable error) {
+        this.s3Uri = s3Uri;
+        this.metadata = metadata;
+        this.error = error;
+    }
+
+    public S3Uri getS3Uri() {
+        return this.s3Uri;
+    }
+
+    /**
+     * @return The metadata of the object, or null if it doesn't exist or if the request failed.
+     */
+    public HeadObjectResponse getMetadata() {
+        return this.metadata;
+    }
+
+    /**
+     * @return The error, or null if the request succeeded.
+     */
+    public Throwable getError() {
+        return this.error;
+    }
+
+    public boolean isFailed() {
+        return this.error != null;
+    }
+
+    public boolean exists() {
+        return this.metadata != null;
+    }
+
+    @Override
+    public String toString() {
+        if (this.error != null) {
+            return String.format("%s: FAILED %s", this.s3Uri, this.error.getMessage());
+        }
+        return String.format("%s: %s", this.s3Uri, this.metadata == null ? "MISSING" :
+                String.format("%d bytes, ETag %s", this.metadata.contentLength(), this.metadata.eTag()));
+    }
+
+    /**
+     * Receive the results of a batch, as they arrive.
+     */
+    public interface Handler {
+        void handle(HeadResult result);
+    }
+}
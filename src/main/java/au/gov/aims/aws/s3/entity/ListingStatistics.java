@@ -0,0 +1,157 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.entity;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Statistics of the listings and HEAD requests done by a client, used to
+ * estimate the cost of a request strategy before choosing it.
+ *
+ * <p>The latency of listing pages and of HEAD requests is averaged
+ * (exponential moving average). The number of objects of the prefixes
+ * listed completely is remembered, for the most recently listed prefixes.</p>
+ */
+public class ListingStatistics {
+    // Used until measured
+    public static final long DEFAULT_PAGE_LATENCY = 200;
+    public static final long DEFAULT_HEAD_LATENCY = 30;
+    public static final int DEFAULT_MAX_PREFIXES = 10000;
+
+    // Weight of the last measure in the average latency
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    private final int maxPrefixes;
+
+    // Object count of the listed prefixes ("bucket/prefix"), in listing order
+    private final LinkedHashMap<String, Long> prefixSizes;
+
+    // Milliseconds, 0 until measured
+    private double pageLatency = 0;
+    private double headLatency = 0;
+    private long pageCount = 0;
+    private long headCount = 0;
+
+    public ListingStatistics() {
+        this(DEFAULT_MAX_PREFIXES);
+    }
+
+    /**
+     * @param maxPrefixes Maximum number of prefixes whose size is remembered.
+     */
+    public ListingStatistics(int maxPrefixes) {
+        this.maxPrefixes = maxPrefixes;
+        this.prefixSizes = new LinkedHashMap<String, Long>();
+    }
+
+    /**
+     * @param latency Time spent waiting for the page, in milliseconds.
+     */
+    public synchronized void pageListed(long latency) {
+        this.pageCount++;
+        this.pageLatency = ListingStatistics.average(this.pageLatency, latency);
+    }
+
+    /**
+     * @param latency Time spent waiting for the HEAD response, in milliseconds.
+     */
+    public synchronized void headCompleted(long latency) {
+        this.headCount++;
+        this.headLatency = ListingStatistics.average(this.headLatency, latency);
+    }
+
+    /**
+     * Record the number of objects found by a complete, recursive listing of a prefix.
+     */
+    public synchronized void prefixListed(String bucket, String prefix, long objectCount) {
+        String cacheKey = ListingStatistics.getCacheKey(bucket, prefix);
+        // Move the prefix to the end of the order
+        this.prefixSizes.remove(cacheKey);
+        this.prefixSizes.put(cacheKey, objectCount);
+
+        Iterator<Map.Entry<String, Long>> iterator = this.prefixSizes.entrySet().iterator();
+        while (this.prefixSizes.size() > this.maxPrefixes && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * @return The number of objects of the prefix. If the prefix was not listed, the number of objects
+     *     of its closest listed parent (an upper bound). Null if neither was listed.
+     */
+    public synchronized Long getPrefixSize(String bucket, String prefix) {
+        String parentPrefix = prefix == null ? "" : prefix;
+        while (true) {
+            Long size = this.prefixSizes.get(ListingStatistics.getCacheKey(bucket, parentPrefix));
+            if (size != null || parentPrefix.isEmpty()) {
+                return size;
+            }
+            // "a/b/" => "a/", "a/b" => "a/"
+            int slashIndex = parentPrefix.lastIndexOf('/', parentPrefix.length() - 2);
+            parentPrefix = slashIndex < 0 ? "" : parentPrefix.substring(0, slashIndex + 1);
+        }
+    }
+
+    /**
+     * @return The average latency of a listing page, in milliseconds.
+     */
+    public synchronized double getPageLatency() {
+        return this.pageLatency > 0 ? this.pageLatency : DEFAULT_PAGE_LATENCY;
+    }
+
+    /**
+     * @return The average latency of a HEAD request, in milliseconds.
+     */
+    public synchronized double getHeadLatency() {
+        return this.headLatency > 0 ? this.headLatency : DEFAULT_HEAD_LATENCY;
+    }
+
+    public synchronized long getPageCount() {
+        return this.pageCount;
+    }
+
+    public synchronized long getHeadCount() {
+        return this.headCount;
+    }
+
+    public synchronized void reset() {
+        this.prefixSizes.clear();
+        this.pageLatency = 0;
+        this.headLatency = 0;
+        this.pageCount = 0;
+        this.headCount = 0;
+    }
+
+    private static double average(double average, double measure) {
+        return average <= 0 ? measure : average + LATENCY_SMOOTHING * (measure - average);
+    }
+
+    private static String getCacheKey(String bucket, String prefix) {
+        return bucket + "/" + (prefix == null ? "" : prefix);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d pages listed (%.0f ms average), %d HEAD requests (%.0f ms average), %d prefix sizes known",
+                this.pageCount, this.getPageLatency(), this.headCount, this.getHeadLatency(), this.prefixSizes.size());
+    }
+}
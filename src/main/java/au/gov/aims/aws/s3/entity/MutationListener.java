@@ -0,0 +1,36 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.entity;
+
+import software.amazon.awssdk.services.s3.S3Uri;
+
+/**
+ * Notified when an object is written or deleted through a client,
+ * see {@link S3ClientWrapper#addMutationListener(MutationListener)}.
+ * Called from the transfer threads, once the request succeeded.
+ */
+public interface MutationListener {
+
+    /**
+     * The object was uploaded, copied or replaced.
+     */
+    void objectWritten(S3Uri s3Uri);
+
+    void objectDeleted(S3Uri s3Uri);
+}
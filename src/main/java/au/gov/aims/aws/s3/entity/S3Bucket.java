@@ -77,13 +77,14 @@ public class S3Bucket {
 
         GetBucketAclResponse aclResponse = null;
         for (int i=0; i<S3_ATTEMPT; i++) {
+            long generation = client.getGeneration();
             try {
                 aclResponse = client.getS3Client().getBucketAcl(aclRequest);
                 return aclResponse.grants();
             } catch(Throwable ex) {
                 LOGGER.warn(String.format("Error occurred while accessing a bucket ACL on S3: %s. Attempting to reconnect.",
                         bucket), ex);
-                client.reconnect();
+                client.reconnect(generation);
             }
         }
         // Try a last time, to throw the exception
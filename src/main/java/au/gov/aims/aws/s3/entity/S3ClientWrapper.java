@@ -20,6 +20,12 @@ package au.gov.aims.aws.s3.entity;
 
 import au.gov.aims.aws.s3.PropertiesLoader;
 import au.gov.aims.aws.s3.S3Utils;
+import au.gov.aims.aws.s3.SingleFlight;
+import au.gov.aims.aws.s3.cache.DownloadCache;
+import au.gov.aims.aws.s3.cache.ExistenceIndex;
+import au.gov.aims.aws.s3.cache.ListingIndex;
+import au.gov.aims.aws.s3.cache.MetadataCache;
+import au.gov.aims.aws.s3.cache.ObjectByteCache;
 import org.apache.log4j.Logger;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
@@ -27,12 +33,15 @@ import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Uri;
 
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.security.InvalidParameterException;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class S3ClientWrapper implements Closeable {
     private static final Logger LOGGER = Logger.getLogger(S3ClientWrapper.class);
@@ -45,8 +54,25 @@ public class S3ClientWrapper implements Closeable {
     private StaticCredentialsProvider awsCredentials;
     private DefaultCredentialsProvider defaultCredentialsProvider;
 
-    private S3Client s3Client;
-    private S3AsyncClient s3AsyncClient;
+    private volatile S3Client s3Client;
+    private volatile S3AsyncClient s3AsyncClient;
+    // Incremented every time the clients are replaced, see reconnect(long)
+    private volatile long generation = 0;
+
+    // Optional, shared by all the downloads done with this client
+    private DownloadCache downloadCache;
+    private ObjectByteCache objectByteCache;
+    private MetadataCache metadataCache;
+    private ExistenceIndex existenceIndex;
+    private ListingIndex listingIndex;
+
+    // Notified of the objects written and deleted with this client
+    private final List<MutationListener> mutationListeners = new CopyOnWriteArrayList<MutationListener>();
+
+    private TransferSettings transferSettings = new TransferSettings();
+    private final TransferMetrics transferMetrics = new TransferMetrics();
+    private final ListingStatistics listingStatistics = new ListingStatistics();
+    private final SingleFlight singleFlight = new SingleFlight();
 
     public static S3ClientWrapper parse(File credentialsPropertiesFile) throws IOException {
         if (credentialsPropertiesFile == null) {
@@ -117,8 +143,14 @@ public class S3ClientWrapper implements Closeable {
         ));
     }
 
-    public void reconnect() {
+    /**
+     * Close the S3 clients and create new ones.
+     * Requests in progress on other threads, with the old clients, fail.
+     * Threads which share the client should use {@link #reconnect(long)}.
+     */
+    public synchronized void reconnect() {
         this.shutdown();
+        this.generation++;
 
         // Creates a S3Client and a S3AsyncClient
         if (this.awsCredentials != null) {
@@ -144,26 +176,209 @@ public class S3ClientWrapper implements Closeable {
         }
     }
 
-    public S3Client getS3Client() {
-        if (this.s3Client == null) {
+    /**
+     * Reconnect, unless the clients were already replaced since the failed request was sent.
+     * When a request fails on many threads at once, only the first failure replaces
+     * the clients: the other threads retry with the new clients instead of closing them.
+     * @param generation The generation of the clients used by the failed request,
+     *     returned by {@link #getGeneration()} before the request was sent.
+     */
+    public synchronized void reconnect(long generation) {
+        if (generation == this.generation) {
             this.reconnect();
         }
-        return this.s3Client;
+    }
+
+    /**
+     * @return The number of times the clients were replaced.
+     */
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    public S3Client getS3Client() {
+        S3Client client = this.s3Client;
+        if (client == null) {
+            synchronized (this) {
+                if (this.s3Client == null) {
+                    this.reconnect();
+                }
+                client = this.s3Client;
+            }
+        }
+        return client;
     }
 
     public S3AsyncClient getS3AsyncClient() {
-        if (this.s3AsyncClient == null) {
-            this.reconnect();
+        S3AsyncClient client = this.s3AsyncClient;
+        if (client == null) {
+            synchronized (this) {
+                if (this.s3AsyncClient == null) {
+                    this.reconnect();
+                }
+                client = this.s3AsyncClient;
+            }
+        }
+        return client;
+    }
+
+    public DownloadCache getDownloadCache() {
+        return this.downloadCache;
+    }
+
+    /**
+     * Set a download cache, used by the DownloadManager and the FileWrapper
+     * to avoid downloading the same object version more than once.
+     * @param downloadCache The cache, or null to disable caching.
+     */
+    public void setDownloadCache(DownloadCache downloadCache) {
+        this.downloadCache = downloadCache;
+    }
+
+    public ObjectByteCache getObjectByteCache() {
+        return this.objectByteCache;
+    }
+
+    /**
+     * Set an in-memory cache, used by the DownloadManager and the FileWrapper
+     * when small objects are read directly into memory.
+     * @param objectByteCache The cache, or null to disable caching.
+     */
+    public void setObjectByteCache(ObjectByteCache objectByteCache) {
+        this.objectByteCache = objectByteCache;
+    }
+
+    public MetadataCache getMetadataCache() {
+        return this.metadataCache;
+    }
+
+    /**
+     * Set a metadata cache, used by the S3 file systems to
+     * avoid a HEAD request for every attribute lookup.
+     * @param metadataCache The cache, or null to use a cache per file system.
+     */
+    public void setMetadataCache(MetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
+    public ExistenceIndex getExistenceIndex() {
+        return this.existenceIndex;
+    }
+
+    /**
+     * Set an index of the keys of some prefixes, used by {@link S3File#fileExists(S3ClientWrapper, S3Uri)}
+     * to check the existence of objects without a HEAD request. The index is kept up to date
+     * with the objects written and deleted with this client.
+     * @param existenceIndex The index, or null to disable it.
+     */
+    public void setExistenceIndex(ExistenceIndex existenceIndex) {
+        if (this.existenceIndex != null) {
+            this.removeMutationListener(this.existenceIndex);
+        }
+        this.existenceIndex = existenceIndex;
+        if (existenceIndex != null) {
+            this.addMutationListener(existenceIndex);
         }
-        return this.s3AsyncClient;
+    }
+
+    public ListingIndex getListingIndex() {
+        return this.listingIndex;
+    }
+
+    /**
+     * Set an in-memory copy of the listing of some prefixes, used by the
+     * {@link au.gov.aims.aws.s3.manager.ListManager} to list indexed directories
+     * without a ListObjectsV2 request. The index is kept up to date
+     * with the objects written and deleted with this client.
+     * @param listingIndex The index, or null to disable it.
+     */
+    public void setListingIndex(ListingIndex listingIndex) {
+        if (this.listingIndex != null) {
+            this.removeMutationListener(this.listingIndex);
+        }
+        this.listingIndex = listingIndex;
+        if (listingIndex != null) {
+            this.addMutationListener(listingIndex);
+        }
+    }
+
+    public void addMutationListener(MutationListener listener) {
+        this.mutationListeners.add(listener);
+    }
+
+    public void removeMutationListener(MutationListener listener) {
+        this.mutationListeners.remove(listener);
+    }
+
+    /**
+     * Called by the managers once an object was written (uploaded, copied) with this client.
+     * Removes the object from the metadata and byte caches and notifies the mutation listeners.
+     */
+    public void objectWritten(S3Uri s3Uri) {
+        if (this.metadataCache != null) {
+            this.metadataCache.remove(s3Uri);
+        }
+        if (this.objectByteCache != null) {
+            this.objectByteCache.remove(s3Uri);
+        }
+        for (MutationListener listener : this.mutationListeners) {
+            listener.objectWritten(s3Uri);
+        }
+    }
+
+    /**
+     * Called by the managers once an object was deleted with this client.
+     */
+    public void objectDeleted(S3Uri s3Uri) {
+        if (this.metadataCache != null) {
+            this.metadataCache.remove(s3Uri);
+        }
+        if (this.objectByteCache != null) {
+            this.objectByteCache.remove(s3Uri);
+        }
+        for (MutationListener listener : this.mutationListeners) {
+            listener.objectDeleted(s3Uri);
+        }
+    }
+
+    public TransferSettings getTransferSettings() {
+        return this.transferSettings;
+    }
+
+    public void setTransferSettings(TransferSettings transferSettings) {
+        if (transferSettings == null) {
+            throw new IllegalArgumentException("Transfer settings can not be null");
+        }
+        this.transferSettings = transferSettings;
+    }
+
+    /**
+     * @return The counters of the multipart transfers done with this client.
+     */
+    public TransferMetrics getTransferMetrics() {
+        return this.transferMetrics;
+    }
+
+    /**
+     * @return The statistics of the listings and HEAD requests done with this client.
+     */
+    public ListingStatistics getListingStatistics() {
+        return this.listingStatistics;
+    }
+
+    /**
+     * @return The coalescing of the identical requests made concurrently with this client.
+     */
+    public SingleFlight getSingleFlight() {
+        return this.singleFlight;
     }
 
     @Override
-    public void close() throws IOException {
+    public synchronized void close() throws IOException {
         this.shutdown();
     }
 
-    private void shutdown() {
+    private synchronized void shutdown() {
         if (this.s3Client != null) {
             try {
                 this.s3Client.close();
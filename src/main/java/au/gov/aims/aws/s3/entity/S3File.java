@@ -19,6 +19,9 @@
 package au.gov.aims.aws.s3.entity;
 
 import au.gov.aims.aws.s3.S3Utils;
+import au.gov.aims.aws.s3.cache.ExistenceIndex;
+import au.gov.aims.aws.s3.io.S3SeekableByteChannel;
+import au.gov.aims.aws.s3.io.S3SeekableInputStream;
 import org.apache.log4j.Logger;
 import org.json.JSONObject;
 import software.amazon.awssdk.core.ResponseInputStream;
@@ -28,15 +31,20 @@ import software.amazon.awssdk.services.s3.model.GetObjectAclResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.Grant;
+import software.amazon.awssdk.services.s3.model.ChecksumMode;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -45,6 +53,8 @@ public class S3File implements Comparable<S3File> {
     private static final int S3_ATTEMPT = 5;
 
     public static final String USER_METADATA_LAST_MODIFIED_KEY = "lastmodified";
+    // Part size of objects uploaded in parts, needed to compute their ETag
+    public static final String USER_METADATA_PART_SIZE_KEY = "partsize";
 
     private final S3Uri s3Uri;
     private final S3Bucket bucket;
@@ -111,18 +121,28 @@ public class S3File implements Comparable<S3File> {
     }
 
     public static boolean fileExists(S3ClientWrapper client, S3Uri sourceUri) {
+        // Answered locally when the object is in a prefix indexed recently
+        ExistenceIndex existenceIndex = client.getExistenceIndex();
+        if (existenceIndex != null) {
+            Boolean indexed = existenceIndex.exists(sourceUri);
+            if (indexed != null) {
+                return indexed;
+            }
+        }
+
         HeadObjectRequest request = HeadObjectRequest.builder()
                 .bucket(sourceUri.bucket().orElse(null))
                 .key(sourceUri.key().orElse(null))
                 .build();
 
         for (int i=0; i<S3_ATTEMPT; i++) {
+            long generation = client.getGeneration();
             try {
                 return S3File.internalFileExists(client, request);
             } catch(Throwable ex) {
                 LOGGER.warn(String.format("Error occurred while checking the existence of a file on S3: %s. Attempting to reconnect.",
                         sourceUri), ex);
-                client.reconnect();
+                client.reconnect(generation);
             }
         }
         // Try a last time, to throw the exception
@@ -144,23 +164,117 @@ public class S3File implements Comparable<S3File> {
     }
 
 
+    /**
+     * @param metadata The user metadata of the object, may be null.
+     * @param partSize The size of the parts the object is uploaded in.
+     * @return A copy of the user metadata, with the part size of the upload.
+     */
+    public static Map<String, String> withUploadPartSize(Map<String, String> metadata, long partSize) {
+        Map<String, String> newMetadata = new HashMap<String, String>();
+        if (metadata != null) {
+            newMetadata.putAll(metadata);
+        }
+        newMetadata.put(S3File.USER_METADATA_PART_SIZE_KEY, ""+partSize);
+        return newMetadata;
+    }
+
+    /**
+     * @param metadata The user metadata of the object, may be null.
+     * @return The part size recorded when the object was uploaded in parts,
+     *     or null if it was not recorded.
+     */
+    public static Long getUploadPartSize(Map<String, String> metadata) {
+        if (metadata == null) {
+            return null;
+        }
+        String partSizeStr = metadata.get(S3File.USER_METADATA_PART_SIZE_KEY);
+        if (partSizeStr == null) {
+            return null;
+        }
+        try {
+            long partSize = Long.parseLong(partSizeStr.trim());
+            return partSize > 0 ? partSize : null;
+        } catch (NumberFormatException ex) {
+            LOGGER.warn(String.format("Invalid part size in the object metadata: %s", partSizeStr));
+            return null;
+        }
+    }
+
+    /**
+     * Request the metadata of an object to get the part size it was uploaded with.
+     * @return The part size recorded when the object was uploaded in parts,
+     *     or null if it was not recorded or the object doesn't exist.
+     */
+    public static Long getUploadPartSize(S3ClientWrapper client, S3Uri s3Uri) {
+        HeadObjectResponse objectMetadata = S3File.getS3ObjectMetadataIfExists(client, s3Uri);
+        return objectMetadata == null ? null : S3File.getUploadPartSize(objectMetadata.metadata());
+    }
+
     public static HeadObjectResponse getS3ObjectMetadata(S3ClientWrapper client, S3Uri sourceUri) {
+        return S3File.getS3ObjectMetadata(client, sourceUri, false);
+    }
+
+    /**
+     * @param checksumMode True to include the additional checksums (x-amz-checksum-*) of the object in the response.
+     */
+    public static HeadObjectResponse getS3ObjectMetadata(S3ClientWrapper client, S3Uri sourceUri, boolean checksumMode) {
+        HeadObjectRequest.Builder requestBuilder = HeadObjectRequest.builder()
+            .bucket(sourceUri.bucket().orElse(null))
+            .key(sourceUri.key().orElse(null));
+        if (checksumMode) {
+            requestBuilder.checksumMode(ChecksumMode.ENABLED);
+        }
+        HeadObjectRequest request = requestBuilder.build();
+
+        for (int i=0; i<S3_ATTEMPT; i++) {
+            long generation = client.getGeneration();
+            try {
+                return client.getS3Client().headObject(request);
+            } catch(Throwable ex) {
+                LOGGER.warn(String.format("Error occurred while trying to access a file on S3: %s. Attempting to reconnect.",
+                        sourceUri), ex);
+                client.reconnect(generation);
+            }
+        }
+        // Try a last time, to throw the exception
+        return client.getS3Client().headObject(request);
+    }
+
+    /**
+     * Same as getS3ObjectMetadata, but returns null when the object doesn't exist,
+     * instead of retrying the request.
+     */
+    public static HeadObjectResponse getS3ObjectMetadataIfExists(S3ClientWrapper client, S3Uri sourceUri) {
         HeadObjectRequest request = HeadObjectRequest.builder()
             .bucket(sourceUri.bucket().orElse(null))
             .key(sourceUri.key().orElse(null))
             .build();
 
         for (int i=0; i<S3_ATTEMPT; i++) {
+            long generation = client.getGeneration();
             try {
-                return client.getS3Client().headObject(request);
+                return S3File.internalGetS3ObjectMetadataIfExists(client, request);
             } catch(Throwable ex) {
                 LOGGER.warn(String.format("Error occurred while trying to access a file on S3: %s. Attempting to reconnect.",
                         sourceUri), ex);
-                client.reconnect();
+                client.reconnect(generation);
             }
         }
         // Try a last time, to throw the exception
-        return client.getS3Client().headObject(request);
+        return S3File.internalGetS3ObjectMetadataIfExists(client, request);
+    }
+
+    private static HeadObjectResponse internalGetS3ObjectMetadataIfExists(S3ClientWrapper client, HeadObjectRequest request) {
+        try {
+            return client.getS3Client().headObject(request);
+        } catch (NoSuchKeyException ex) {
+            return null;
+        } catch (S3Exception ex) {
+            if (ex.statusCode() == 404) {
+                return null;
+            }
+            throw ex;
+        }
     }
 
     public static ResponseInputStream<GetObjectResponse> getS3ObjectInputStream(S3ClientWrapper client, S3Uri sourceUri) {
@@ -170,18 +284,142 @@ public class S3File implements Comparable<S3File> {
             .build();
 
         for (int i=0; i<S3_ATTEMPT; i++) {
+            long generation = client.getGeneration();
             try {
                 return client.getS3Client().getObject(request);
             } catch(Throwable ex) {
                 LOGGER.warn(String.format("Error occurred while trying to access a file on S3: %s. Attempting to reconnect.",
                         sourceUri), ex);
-                client.reconnect();
+                client.reconnect(generation);
             }
         }
         // Try a last time, to throw the exception
         return client.getS3Client().getObject(request);
     }
 
+    /**
+     * Get the content of an object, only if its ETag is different from the provided ETag.
+     * @param client The S3 client.
+     * @param sourceUri The object URI.
+     * @param eTag The ETag of the version already known by the caller, or null to always get the object.
+     * @return The object input stream, or null if the object was not modified.
+     * @throws FileNotFoundException If the object doesn't exist.
+     */
+    public static ResponseInputStream<GetObjectResponse> getS3ObjectInputStreamIfModified(S3ClientWrapper client, S3Uri sourceUri, String eTag) throws FileNotFoundException {
+        GetObjectRequest.Builder requestBuilder = GetObjectRequest.builder()
+            .bucket(sourceUri.bucket().orElse(null))
+            .key(sourceUri.key().orElse(null));
+        if (eTag != null) {
+            requestBuilder.ifNoneMatch(eTag);
+        }
+        GetObjectRequest request = requestBuilder.build();
+
+        for (int i=0; i<S3_ATTEMPT; i++) {
+            long generation = client.getGeneration();
+            try {
+                return S3File.internalGetS3ObjectInputStreamIfModified(client, sourceUri, request);
+            } catch(FileNotFoundException ex) {
+                throw ex;
+            } catch(Throwable ex) {
+                LOGGER.warn(String.format("Error occurred while trying to access a file on S3: %s. Attempting to reconnect.",
+                        sourceUri), ex);
+                client.reconnect(generation);
+            }
+        }
+        // Try a last time, to throw the exception
+        return S3File.internalGetS3ObjectInputStreamIfModified(client, sourceUri, request);
+    }
+
+    private static ResponseInputStream<GetObjectResponse> internalGetS3ObjectInputStreamIfModified(S3ClientWrapper client, S3Uri sourceUri, GetObjectRequest request) throws FileNotFoundException {
+        try {
+            return client.getS3Client().getObject(request);
+        } catch (NoSuchKeyException ex) {
+            throw new FileNotFoundException(String.format("File not found: %s", sourceUri.toString()));
+        } catch (S3Exception ex) {
+            if (ex.statusCode() == 304) {
+                return null; // Not modified
+            }
+            if (ex.statusCode() == 404) {
+                throw new FileNotFoundException(String.format("File not found: %s", sourceUri.toString()));
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Get a range of bytes of an object.
+     * @param client The S3 client.
+     * @param sourceUri The object URI.
+     * @param start Index of the first byte.
+     * @param end Index of the last byte (inclusive).
+     * @param eTag The expected ETag of the object, or null to accept any version.
+     * @return The input stream of the requested range.
+     * @throws IOException If the object changed (ETag mismatch) or doesn't exist.
+     */
+    public static ResponseInputStream<GetObjectResponse> getS3ObjectRangeInputStream(S3ClientWrapper client, S3Uri sourceUri, long start, long end, String eTag) throws IOException {
+        GetObjectRequest request = S3File.getRangeRequest(sourceUri, start, end, eTag);
+
+        for (int i=0; i<S3_ATTEMPT; i++) {
+            long generation = client.getGeneration();
+            try {
+                return S3File.internalGetS3ObjectRangeInputStream(client, sourceUri, request);
+            } catch(IOException ex) {
+                throw ex;
+            } catch(Throwable ex) {
+                LOGGER.warn(String.format("Error occurred while trying to access a file on S3: %s. Attempting to reconnect.",
+                        sourceUri), ex);
+                client.reconnect(generation);
+            }
+        }
+        // Try a last time, to throw the exception
+        return S3File.internalGetS3ObjectRangeInputStream(client, sourceUri, request);
+    }
+
+    /**
+     * Get a range of bytes of an object, with a single request.
+     * The client is never reconnected: used by the threads which share the client,
+     * and retry on their own.
+     * @see #getS3ObjectRangeInputStream(S3ClientWrapper, S3Uri, long, long, String)
+     */
+    public static ResponseInputStream<GetObjectResponse> requestS3ObjectRange(S3ClientWrapper client, S3Uri sourceUri, long start, long end, String eTag) throws IOException {
+        return S3File.internalGetS3ObjectRangeInputStream(client, sourceUri, S3File.getRangeRequest(sourceUri, start, end, eTag));
+    }
+
+    private static GetObjectRequest getRangeRequest(S3Uri sourceUri, long start, long end, String eTag) {
+        GetObjectRequest.Builder requestBuilder = GetObjectRequest.builder()
+            .bucket(sourceUri.bucket().orElse(null))
+            .key(sourceUri.key().orElse(null))
+            .range(String.format("bytes=%d-%d", start, end));
+        if (eTag != null) {
+            requestBuilder.ifMatch(eTag);
+        }
+        return requestBuilder.build();
+    }
+
+    private static ResponseInputStream<GetObjectResponse> internalGetS3ObjectRangeInputStream(S3ClientWrapper client, S3Uri sourceUri, GetObjectRequest request) throws IOException {
+        try {
+            return client.getS3Client().getObject(request);
+        } catch (NoSuchKeyException ex) {
+            throw new FileNotFoundException(String.format("File not found: %s", sourceUri.toString()));
+        } catch (S3Exception ex) {
+            if (ex.statusCode() == 412) {
+                throw new ObjectModifiedException(String.format("The file %s was modified while being read.", sourceUri.toString()));
+            }
+            if (ex.statusCode() == 404) {
+                throw new FileNotFoundException(String.format("File not found: %s", sourceUri.toString()));
+            }
+            throw ex;
+        }
+    }
+
+    public S3SeekableByteChannel newByteChannel(S3ClientWrapper client) {
+        return new S3SeekableByteChannel(client, this);
+    }
+
+    public InputStream newInputStream(S3ClientWrapper client) {
+        return new S3SeekableInputStream(this.newByteChannel(client));
+    }
+
     public S3Bucket getBucket() {
         return this.bucket;
     }
@@ -286,13 +524,14 @@ public class S3File implements Comparable<S3File> {
             .build();
 
         for (int i=0; i<S3_ATTEMPT; i++) {
+            long generation = client.getGeneration();
             try {
                 GetObjectAclResponse aclResponse = client.getS3Client().getObjectAcl(aclRequest);
                 return aclResponse.grants();
             } catch(Throwable ex) {
                 LOGGER.warn(String.format("Error occurred while accessing a file ACL on S3: %s. Attempting to reconnect.",
                         this.s3Uri), ex);
-                client.reconnect();
+                client.reconnect(generation);
             }
         }
         // Try a last time, to throw the exception
@@ -340,4 +579,13 @@ public class S3File implements Comparable<S3File> {
     public int compareTo(S3File o) {
         return this.toString().compareTo(o.toString());
     }
+
+    /**
+     * Thrown when the ETag of an object changed while it was being read.
+     */
+    public static class ObjectModifiedException extends IOException {
+        public ObjectModifiedException(String message) {
+            super(message);
+        }
+    }
 }
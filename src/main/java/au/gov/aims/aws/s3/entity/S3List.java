@@ -27,10 +27,12 @@ public class S3List {
     private Long executionTime = null;
     private Map<String, S3File> dirs;
     private Map<String, S3File> files;
+    private Map<String, S3File> skipped;
 
     public S3List() {
         this.dirs = new TreeMap<String, S3File>();
         this.files = new TreeMap<String, S3File>();
+        this.skipped = new TreeMap<String, S3File>();
     }
 
     public S3File putFile(S3File s3File) {
@@ -47,6 +49,16 @@ public class S3List {
         return this.dirs;
     }
 
+    /**
+     * Files which were not transferred, because they were already up to date.
+     */
+    public S3File putSkipped(S3File s3File) {
+        return this.skipped.put(s3File.getS3Uri().key().orElse(""), s3File);
+    }
+    public Map<String, S3File> getSkipped() {
+        return this.skipped;
+    }
+
     public void setExecutionTime(Long executionTime) {
         this.executionTime = executionTime;
     }
@@ -57,6 +69,7 @@ public class S3List {
     public void putAll(S3List otherList) {
         this.dirs.putAll(otherList.dirs);
         this.files.putAll(otherList.files);
+        this.skipped.putAll(otherList.skipped);
     }
 
     public JSONObject toJSON() {
@@ -71,6 +84,11 @@ public class S3List {
         }
 
 
+        JSONObject jsonSkipped = new JSONObject();
+        for (Map.Entry<String, S3File> file : this.skipped.entrySet()) {
+            jsonSkipped.put(file.getKey(), file.getValue().toJSON());
+        }
+
         JSONObject json = new JSONObject();
 
         if (jsonDirs.length() > 0) {
@@ -81,6 +99,10 @@ public class S3List {
             json.put("files", jsonFiles);
         }
 
+        if (jsonSkipped.length() > 0) {
+            json.put("skipped", jsonSkipped);
+        }
+
         json.put("executionTime", this.executionTime);
 
         return json;
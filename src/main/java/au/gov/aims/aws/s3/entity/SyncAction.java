@@ -0,0 +1,84 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.entity;
+
+import software.amazon.awssdk.services.s3.S3Uri;
+
+import java.io.File;
+
+/**
+ * An action of a synchronisation between a local directory and a S3 prefix.
+ */
+public class SyncAction {
+    public enum Type {
+        // Local file copied to S3
+        UPLOAD,
+        // S3 object copied to the local directory
+        DOWNLOAD,
+        // Local file which doesn't exist on S3
+        DELETE_LOCAL,
+        // S3 object which doesn't exist in the local directory
+        DELETE_REMOTE,
+        // Up to date
+        SKIP
+    }
+
+    private final Type type;
+    private final String relativePath;
+    private final File localFile;
+    private final S3Uri s3Uri;
+    private final long size;
+
+    /**
+     * @param relativePath Path of the file, relative to the synchronised directory, with "/" separators.
+     * @param size Number of bytes to transfer, 0 for deletions.
+     */
+    public SyncAction(Type type, String relativePath, File localFile, S3Uri s3Uri, long size) {
+        this.type = type;
+        this.relativePath = relativePath;
+        this.localFile = localFile;
+        this.s3Uri = s3Uri;
+        this.size = size;
+    }
+
+    public Type getType() {
+        return this.type;
+    }
+
+    public String getRelativePath() {
+        return this.relativePath;
+    }
+
+    public File getLocalFile() {
+        return this.localFile;
+    }
+
+    public S3Uri getS3Uri() {
+        return this.s3Uri;
+    }
+
+    public long getSize() {
+        return this.size;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s", this.type, this.relativePath);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.entity;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a synchronisation: the actions done (or planned, in dry run mode)
+ * and the actions which failed. Updated concurrently by the synchronisation threads.
+ */
+public class SyncReport {
+    private final boolean dryRun;
+    private final Map<SyncAction.Type, List<SyncAction>> actions;
+    private final Map<SyncAction, Throwable> failures;
+    private long bytesTransferred = 0;
+    private Long executionTime = null;
+
+    public SyncReport(boolean dryRun) {
+        this.dryRun = dryRun;
+        this.actions = new EnumMap<SyncAction.Type, List<SyncAction>>(SyncAction.Type.class);
+        for (SyncAction.Type type : SyncAction.Type.values()) {
+            this.actions.put(type, new ArrayList<SyncAction>());
+        }
+        this.failures = new LinkedHashMap<SyncAction, Throwable>();
+    }
+
+    public synchronized void addAction(SyncAction action) {
+        this.actions.get(action.getType()).add(action);
+        if (!this.dryRun) {
+            this.bytesTransferred += action.getSize();
+        }
+    }
+
+    public synchronized void addFailure(SyncAction action, Throwable cause) {
+        this.failures.put(action, cause);
+    }
+
+    public boolean isDryRun() {
+        return this.dryRun;
+    }
+
+    /**
+     * @return The actions of a type which succeeded, or which would be done in dry run mode.
+     */
+    public synchronized List<SyncAction> getActions(SyncAction.Type type) {
+        return new ArrayList<SyncAction>(this.actions.get(type));
+    }
+
+    public synchronized Map<SyncAction, Throwable> getFailures() {
+        return new LinkedHashMap<SyncAction, Throwable>(this.failures);
+    }
+
+    public synchronized boolean hasFailures() {
+        return !this.failures.isEmpty();
+    }
+
+    public synchronized long getBytesTransferred() {
+        return this.bytesTransferred;
+    }
+
+    public void setExecutionTime(Long executionTime) {
+        this.executionTime = executionTime;
+    }
+    public Long getExecutionTime() {
+        return this.executionTime;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder summary = new StringBuilder(this.dryRun ? "Dry run:" : "Sync:");
+        for (Map.Entry<SyncAction.Type, List<SyncAction>> typeActions : this.actions.entrySet()) {
+            summary.append(String.format(" %d %s,", typeActions.getValue().size(), typeActions.getKey()));
+        }
+        summary.append(String.format(" %d FAILED, %d bytes transferred in %s ms",
+                this.failures.size(), this.bytesTransferred, this.executionTime));
+        return summary.toString();
+    }
+}
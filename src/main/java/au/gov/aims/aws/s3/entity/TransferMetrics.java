@@ -0,0 +1,202 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.entity;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the parts transferred by the multipart transfers of a client.
+ * The counters are updated concurrently by the transfer threads.
+ *
+ * <p>The throughput of a single connection is measured for every part,
+ * and averaged (exponential moving average) separately for uploads and downloads.</p>
+ *
+ * <p>The size of the files compressed or decompressed during the transfers
+ * is recorded before and after compression.</p>
+ */
+public class TransferMetrics {
+    // Weight of the last measure in the average throughput
+    private static final double THROUGHPUT_SMOOTHING = 0.3;
+    // Parts transferred faster are too small for a meaningful measure
+    private static final long MIN_MEASURED_DURATION = 100;
+
+    private final AtomicLong partsTransferred = new AtomicLong();
+    private final AtomicLong partRetries = new AtomicLong();
+    private final AtomicLong partsFailed = new AtomicLong();
+    private final AtomicLong bytesTransferred = new AtomicLong();
+    private final AtomicLong bytesRetried = new AtomicLong();
+    private final AtomicLong filesCompressed = new AtomicLong();
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+
+    // Bytes per second, 0 until measured
+    private double uploadThroughput = 0;
+    private double downloadThroughput = 0;
+
+    /**
+     * @param duration Time spent sending the part, in milliseconds.
+     */
+    public void partUploaded(long bytes, long duration) {
+        this.partTransferred(bytes);
+        if (duration >= MIN_MEASURED_DURATION) {
+            synchronized (this) {
+                this.uploadThroughput = TransferMetrics.average(this.uploadThroughput, bytes * 1000.0 / duration);
+            }
+        }
+    }
+
+    /**
+     * @param duration Time spent receiving the part, in milliseconds.
+     */
+    public void partDownloaded(long bytes, long duration) {
+        this.partTransferred(bytes);
+        if (duration >= MIN_MEASURED_DURATION) {
+            synchronized (this) {
+                this.downloadThroughput = TransferMetrics.average(this.downloadThroughput, bytes * 1000.0 / duration);
+            }
+        }
+    }
+
+    private void partTransferred(long bytes) {
+        this.partsTransferred.incrementAndGet();
+        this.bytesTransferred.addAndGet(bytes);
+    }
+
+    private static double average(double average, double measure) {
+        return average <= 0 ? measure : average + THROUGHPUT_SMOOTHING * (measure - average);
+    }
+
+    public void partRetried(long bytes) {
+        this.partRetries.incrementAndGet();
+        this.bytesRetried.addAndGet(bytes);
+    }
+
+    public void partFailed() {
+        this.partsFailed.incrementAndGet();
+    }
+
+    /**
+     * Record a file compressed for an upload, or decompressed after a download.
+     * @param uncompressedBytes The size of the file.
+     * @param compressedBytes The size of the S3 object.
+     */
+    public void fileCompressed(long uncompressedBytes, long compressedBytes) {
+        this.filesCompressed.incrementAndGet();
+        this.uncompressedBytes.addAndGet(uncompressedBytes);
+        this.compressedBytes.addAndGet(compressedBytes);
+    }
+
+    public long getPartsTransferred() {
+        return this.partsTransferred.get();
+    }
+
+    /**
+     * @return Number of times a part was sent again after a failure.
+     */
+    public long getPartRetries() {
+        return this.partRetries.get();
+    }
+
+    /**
+     * @return Number of parts which failed after the last attempt.
+     */
+    public long getPartsFailed() {
+        return this.partsFailed.get();
+    }
+
+    public long getBytesTransferred() {
+        return this.bytesTransferred.get();
+    }
+
+    /**
+     * @return Number of bytes sent again after a failure.
+     */
+    public long getBytesRetried() {
+        return this.bytesRetried.get();
+    }
+
+    /**
+     * @return Average upload throughput of a connection, in bytes per second, or 0 if not measured yet.
+     */
+    public synchronized double getUploadThroughput() {
+        return this.uploadThroughput;
+    }
+
+    /**
+     * @return Average download throughput of a connection, in bytes per second, or 0 if not measured yet.
+     */
+    public synchronized double getDownloadThroughput() {
+        return this.downloadThroughput;
+    }
+
+    public long getFilesCompressed() {
+        return this.filesCompressed.get();
+    }
+
+    public long getUncompressedBytes() {
+        return this.uncompressedBytes.get();
+    }
+
+    public long getCompressedBytes() {
+        return this.compressedBytes.get();
+    }
+
+    /**
+     * @return Number of bytes which were not transferred thanks to the compression.
+     */
+    public long getBytesSaved() {
+        return this.getUncompressedBytes() - this.getCompressedBytes();
+    }
+
+    /**
+     * @return The size of the files divided by the size of the compressed objects
+     *     (example: 4.0 if the objects are 4 times smaller), or 0 if no file was compressed.
+     */
+    public double getCompressionRatio() {
+        long compressed = this.getCompressedBytes();
+        return compressed <= 0 ? 0 : this.getUncompressedBytes() / (double) compressed;
+    }
+
+    public void reset() {
+        this.partsTransferred.set(0);
+        this.partRetries.set(0);
+        this.partsFailed.set(0);
+        this.bytesTransferred.set(0);
+        this.bytesRetried.set(0);
+        this.filesCompressed.set(0);
+        this.uncompressedBytes.set(0);
+        this.compressedBytes.set(0);
+        synchronized (this) {
+            this.uploadThroughput = 0;
+            this.downloadThroughput = 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        String metrics = String.format("%d parts transferred (%d bytes), %d retries (%d bytes), %d failed",
+                this.getPartsTransferred(), this.getBytesTransferred(),
+                this.getPartRetries(), this.getBytesRetried(), this.getPartsFailed());
+        if (this.getFilesCompressed() > 0) {
+            metrics += String.format(", %d files compressed (ratio %.2f, %d bytes saved)",
+                    this.getFilesCompressed(), this.getCompressionRatio(), this.getBytesSaved());
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.entity;
+
+import au.gov.aims.aws.s3.checksum.ChecksumAlgorithm;
+import au.gov.aims.aws.s3.compression.CompressionPolicy;
+
+import java.io.File;
+
+/**
+ * Settings used by the UploadManager and the DownloadManager for large transfers.
+ * Each client has its own settings, which can be overridden for a single call.
+ */
+public class TransferSettings {
+    private static final long MB = 1024L * 1024;
+
+    // S3 limits for the parts of multipart uploads
+    public static final long MIN_PART_SIZE = 5 * MB;
+    public static final long MAX_PART_SIZE = 5 * 1024 * MB;
+
+    // S3 have a 5 GB limit for file upload in a single request.
+    // Larger files needs to be uploaded by chunks (minimum file size of 5 MB).
+    // The following limit is used to determine if a file should be uploaded at once
+    // or using the multithreaded multipart upload.
+    //   IMPORTANT: Must be between 5 MB and 5 GB
+    public static final long DEFAULT_MULTIPART_THRESHOLD = 500 * MB;
+
+    // Set the size of upload parts.
+    // - Must be large enough to upload the file in 10,000 parts or less.
+    // - Small parts will result in large amount of requests, increasing S3 PUT cost.
+    // - Large parts may result in less concurrent upload and larger retry when a part fail.
+    public static final long DEFAULT_PART_SIZE = 100 * MB;
+
+    // Large objects are downloaded with ranged requests of this size.
+    // The progress is recorded after each range, so an interrupted download
+    // can resume from the last completed range.
+    public static final long DEFAULT_DOWNLOAD_RANGE_SIZE = 16 * MB;
+
+
+    public static final File DEFAULT_JOURNAL_DIRECTORY =
+            new File(System.getProperty("java.io.tmpdir"), "s3wrapper-journal");
+    // Stale uploads are not aborted automatically, unless requested
+    public static final long DEFAULT_STALE_UPLOAD_AGE = 0;
+    public static final int DEFAULT_CONCURRENCY = 4;
+    public static final int DEFAULT_REQUEST_CONCURRENCY = 64;
+    public static final int DEFAULT_PART_ATTEMPTS = 5;
+    public static final long DEFAULT_RETRY_BASE_DELAY = 500;
+    public static final long DEFAULT_RETRY_MAX_DELAY = 30 * 1000;
+
+    private File journalDirectory;
+    private long staleUploadAge;
+    private int concurrency;
+    private int requestConcurrency;
+    private int partAttempts;
+    private long retryBaseDelay;
+    private long retryMaxDelay;
+    private long multipartThreshold;
+    private long partSize;
+    private long downloadRangeSize;
+    private boolean adaptive;
+    private boolean skipUnchanged;
+    private boolean compareContent;
+    private boolean dryRun;
+    private boolean deleteExtraneous;
+    private boolean verifyETag;
+    private ChecksumAlgorithm checksumAlgorithm;
+    private CompressionPolicy compressionPolicy;
+    private boolean decompress;
+
+    public TransferSettings() {
+        this.journalDirectory = DEFAULT_JOURNAL_DIRECTORY;
+        this.staleUploadAge = DEFAULT_STALE_UPLOAD_AGE;
+        this.concurrency = DEFAULT_CONCURRENCY;
+        this.requestConcurrency = DEFAULT_REQUEST_CONCURRENCY;
+        this.partAttempts = DEFAULT_PART_ATTEMPTS;
+        this.retryBaseDelay = DEFAULT_RETRY_BASE_DELAY;
+        this.retryMaxDelay = DEFAULT_RETRY_MAX_DELAY;
+        this.multipartThreshold = DEFAULT_MULTIPART_THRESHOLD;
+        this.partSize = DEFAULT_PART_SIZE;
+        this.downloadRangeSize = DEFAULT_DOWNLOAD_RANGE_SIZE;
+        this.adaptive = false;
+        this.skipUnchanged = false;
+        this.compareContent = false;
+        this.dryRun = false;
+        this.deleteExtraneous = false;
+        this.verifyETag = false;
+        this.checksumAlgorithm = null;
+        this.compressionPolicy = null;
+        this.decompress = false;
+    }
+
+    public TransferSettings(TransferSettings other) {
+        this.journalDirectory = other.journalDirectory;
+        this.staleUploadAge = other.staleUploadAge;
+        this.concurrency = other.concurrency;
+        this.requestConcurrency = other.requestConcurrency;
+        this.partAttempts = other.partAttempts;
+        this.retryBaseDelay = other.retryBaseDelay;
+        this.retryMaxDelay = other.retryMaxDelay;
+        this.multipartThreshold = other.multipartThreshold;
+        this.partSize = other.partSize;
+        this.downloadRangeSize = other.downloadRangeSize;
+        this.adaptive = other.adaptive;
+        this.skipUnchanged = other.skipUnchanged;
+        this.compareContent = other.compareContent;
+        this.dryRun = other.dryRun;
+        this.deleteExtraneous = other.deleteExtraneous;
+        this.verifyETag = other.verifyETag;
+        this.checksumAlgorithm = other.checksumAlgorithm;
+        this.compressionPolicy = other.compressionPolicy;
+        this.decompress = other.decompress;
+    }
+
+    public File getJournalDirectory() {
+        return this.journalDirectory;
+    }
+
+    /**
+     * Directory where the state of multipart uploads is recorded,
+     * used to resume them after a failure or a restart.
+     * @param journalDirectory The directory, or null to disable resuming.
+     */
+    public TransferSettings setJournalDirectory(File journalDirectory) {
+        this.journalDirectory = journalDirectory;
+        return this;
+    }
+
+    public long getStaleUploadAge() {
+        return this.staleUploadAge;
+    }
+
+    /**
+     * Multipart uploads older than this number of milliseconds are considered abandoned
+     * and are aborted, so S3 doesn't keep (and charge for) their parts.
+     * Before starting a multipart upload, only the uploads recorded in the journal
+     * directory are aborted: uploads started by other applications are left alone.
+     * @param staleUploadAge The age, or 0 to never abort uploads (default).
+     */
+    public TransferSettings setStaleUploadAge(long staleUploadAge) {
+        this.staleUploadAge = Math.max(0, staleUploadAge);
+        return this;
+    }
+
+    public int getConcurrency() {
+        return this.concurrency;
+    }
+
+    /**
+     * @param concurrency Number of parts transferred at the same time.
+     */
+    public TransferSettings setConcurrency(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid concurrency: %d", concurrency));
+        }
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    public int getRequestConcurrency() {
+        return this.requestConcurrency;
+    }
+
+    /**
+     * @param requestConcurrency Number of small requests (HEAD, etc) in flight at the same time,
+     *     for batch operations on many objects.
+     */
+    public TransferSettings setRequestConcurrency(int requestConcurrency) {
+        if (requestConcurrency <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid request concurrency: %d", requestConcurrency));
+        }
+        this.requestConcurrency = requestConcurrency;
+        return this;
+    }
+
+    public int getPartAttempts() {
+        return this.partAttempts;
+    }
+
+    /**
+     * @param partAttempts Maximum number of times a part is sent before the transfer fails.
+     */
+    public TransferSettings setPartAttempts(int partAttempts) {
+        if (partAttempts <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid number of attempts: %d", partAttempts));
+        }
+        this.partAttempts = partAttempts;
+        return this;
+    }
+
+    public long getRetryBaseDelay() {
+        return this.retryBaseDelay;
+    }
+
+    public long getRetryMaxDelay() {
+        return this.retryMaxDelay;
+    }
+
+    /**
+     * Delay between the attempts of a failed part. The delay doubles after every attempt,
+     * up to the maximum delay, and a random fraction of it is used (jitter) so the
+     * parts which failed at the same time are not sent again at the same time.
+     * @param retryBaseDelay Delay before the second attempt, in milliseconds.
+     * @param retryMaxDelay Maximum delay, in milliseconds.
+     */
+    public TransferSettings setRetryDelay(long retryBaseDelay, long retryMaxDelay) {
+        if (retryBaseDelay < 0 || retryMaxDelay < retryBaseDelay) {
+            throw new IllegalArgumentException(String.format("Invalid retry delay: %d - %d", retryBaseDelay, retryMaxDelay));
+        }
+        this.retryBaseDelay = retryBaseDelay;
+        this.retryMaxDelay = retryMaxDelay;
+        return this;
+    }
+
+    public long getMultipartThreshold() {
+        return this.multipartThreshold;
+    }
+
+    /**
+     * @param multipartThreshold Files larger than this number of bytes are uploaded
+     *     using a multipart upload. Must be between 5 MB and 5 GB.
+     */
+    public TransferSettings setMultipartThreshold(long multipartThreshold) {
+        if (multipartThreshold < MIN_PART_SIZE || multipartThreshold > MAX_PART_SIZE) {
+            throw new IllegalArgumentException(String.format("Invalid multipart threshold: %d", multipartThreshold));
+        }
+        this.multipartThreshold = multipartThreshold;
+        return this;
+    }
+
+    public long getPartSize() {
+        return this.partSize;
+    }
+
+    /**
+     * The part size is increased when needed, to upload the file in 10,000 parts or less.
+     * @param partSize Size of the parts of multipart uploads, in bytes. Must be between 5 MB and 5 GB.
+     */
+    public TransferSettings setPartSize(long partSize) {
+        if (partSize < MIN_PART_SIZE || partSize > MAX_PART_SIZE) {
+            throw new IllegalArgumentException(String.format("Invalid part size: %d", partSize));
+        }
+        this.partSize = partSize;
+        return this;
+    }
+
+    public long getDownloadRangeSize() {
+        return this.downloadRangeSize;
+    }
+
+    /**
+     * @param downloadRangeSize Size of the ranged requests used to download large objects, in bytes.
+     */
+    public TransferSettings setDownloadRangeSize(long downloadRangeSize) {
+        if (downloadRangeSize <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid download range size: %d", downloadRangeSize));
+        }
+        this.downloadRangeSize = downloadRangeSize;
+        return this;
+    }
+
+    public boolean isAdaptive() {
+        return this.adaptive;
+    }
+
+    /**
+     * In adaptive mode, the part size and the download range size are chosen for each
+     * transfer, from the throughput measured on the previous transfers of the client
+     * and the available memory. The configured sizes are used until a throughput is measured.
+     * See {@link au.gov.aims.aws.s3.manager.PartSizePolicy}.
+     */
+    public TransferSettings setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+        return this;
+    }
+
+    public boolean isSkipUnchanged() {
+        return this.skipUnchanged;
+    }
+
+    /**
+     * Incremental upload: files which are already on S3, with the same size and
+     * a last modified date older than the S3 object, are not uploaded again.
+     * The S3 objects are found with a single listing of the destination.
+     */
+    public TransferSettings setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+        return this;
+    }
+
+    public boolean isCompareContent() {
+        return this.compareContent;
+    }
+
+    /**
+     * With incremental uploads, compare the MD5 of the files with the ETag of the
+     * S3 objects instead of the last modified date. Slower (the files are read),
+     * but files touched without being modified are not uploaded again.
+     * The ETag of objects uploaded in parts depends on the part size, which is
+     * not recorded by S3. This library records it in the user metadata of the objects
+     * it uploads; for other objects, common part sizes are tried, and when none matches
+     * the last modified date is used. The date is also used for compressed files and
+     * for ETags which are not a MD5.
+     */
+    public TransferSettings setCompareContent(boolean compareContent) {
+        this.compareContent = compareContent;
+        return this;
+    }
+
+    public boolean isDryRun() {
+        return this.dryRun;
+    }
+
+    /**
+     * @param dryRun True to only report the actions a synchronisation would do, without doing them.
+     */
+    public TransferSettings setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+        return this;
+    }
+
+    public boolean isDeleteExtraneous() {
+        return this.deleteExtraneous;
+    }
+
+    /**
+     * @param deleteExtraneous True to delete, at the destination of a synchronisation,
+     *     the files which don't exist at the source.
+     */
+    public TransferSettings setDeleteExtraneous(boolean deleteExtraneous) {
+        this.deleteExtraneous = deleteExtraneous;
+        return this;
+    }
+
+    public boolean isVerifyETag() {
+        return this.verifyETag;
+    }
+
+    /**
+     * Compare the transferred files with the ETag of the S3 objects, after
+     * each upload and download. The file is read again to compute its ETag.
+     * A file which doesn't match is reported as a failed transfer.
+     * A download which can't be verified, because the object was uploaded in parts
+     * of an unknown size (not uploaded by this library), also fails. Large downloads are
+     * resumable: downloading it again without verifyETag completes it without transferring it again.
+     * Don't use it with buckets encrypted with SSE-KMS or SSE-C:
+     * the ETag of their objects is not a MD5 of the content.
+     * @see au.gov.aims.aws.s3.ETagCalculator
+     */
+    public TransferSettings setVerifyETag(boolean verifyETag) {
+        this.verifyETag = verifyETag;
+        return this;
+    }
+
+    public ChecksumAlgorithm getChecksumAlgorithm() {
+        return this.checksumAlgorithm;
+    }
+
+    /**
+     * S3 additional checksum computed while the files are transferred.
+     * Uploaded parts are hashed while they are sent, and compared with the
+     * checksum computed by S3. Downloads are hashed while they are written to disk,
+     * and compared with the checksum of the object, when S3 has one for the whole object.
+     * The files are not read again.
+     * @param checksumAlgorithm CRC32, CRC32C, CRC64NVME, SHA256, or null to disable the checksums.
+     */
+    public TransferSettings setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+        if (checksumAlgorithm == ChecksumAlgorithm.MD5) {
+            throw new IllegalArgumentException("MD5 is not a S3 additional checksum.");
+        }
+        this.checksumAlgorithm = checksumAlgorithm;
+        return this;
+    }
+
+    public CompressionPolicy getCompressionPolicy() {
+        return this.compressionPolicy;
+    }
+
+    /**
+     * Compress the files chosen by the policy while they are uploaded.
+     * The objects have the Content-Encoding of the codec, and the size of the compressed content.
+     * @param compressionPolicy The policy, or null to upload the files as they are.
+     */
+    public TransferSettings setCompressionPolicy(CompressionPolicy compressionPolicy) {
+        this.compressionPolicy = compressionPolicy;
+        return this;
+    }
+
+    public boolean isDecompress() {
+        return this.decompress;
+    }
+
+    /**
+     * Decompress the downloaded objects which have the Content-Encoding
+     * of a registered codec, while they are written to disk.
+     */
+    public TransferSettings setDecompress(boolean decompress) {
+        this.decompress = decompress;
+        return this;
+    }
+}
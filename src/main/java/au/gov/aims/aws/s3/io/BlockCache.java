@@ -0,0 +1,87 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.io;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of fixed size blocks of an object, identified by their index.
+ */
+public class BlockCache {
+    private final int maxBlocks;
+    private final LinkedHashMap<Long, byte[]> blocks;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    public BlockCache(final int maxBlocks) {
+        if (maxBlocks <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid number of blocks: %d", maxBlocks));
+        }
+        this.maxBlocks = maxBlocks;
+        this.blocks = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return this.size() > maxBlocks;
+            }
+        };
+    }
+
+    public synchronized byte[] get(long blockIndex) {
+        byte[] block = this.blocks.get(blockIndex);
+        if (block == null) {
+            this.missCount++;
+        } else {
+            this.hitCount++;
+        }
+        return block;
+    }
+
+    /**
+     * Same as get, without affecting the LRU order or the statistics.
+     */
+    public synchronized boolean contains(long blockIndex) {
+        return this.blocks.containsKey(blockIndex);
+    }
+
+    public synchronized void put(long blockIndex, byte[] block) {
+        this.blocks.put(blockIndex, block);
+    }
+
+    public synchronized void clear() {
+        this.blocks.clear();
+    }
+
+    public int getMaxBlocks() {
+        return this.maxBlocks;
+    }
+
+    public synchronized int size() {
+        return this.blocks.size();
+    }
+
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+}
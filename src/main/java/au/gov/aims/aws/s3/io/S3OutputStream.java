@@ -0,0 +1,431 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.io;
+
+import au.gov.aims.aws.s3.checksum.S3Checksums;
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.entity.S3File;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import au.gov.aims.aws.s3.manager.MultipartUploader;
+import au.gov.aims.aws.s3.manager.PartSizePolicy;
+import org.apache.log4j.Logger;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.ContentStreamProvider;
+import software.amazon.awssdk.services.s3.S3Uri;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stream uploading the data written to it to a S3 object,
+ * for content which is generated on the fly and which length may not be known in advance.
+ *
+ * <p>The data is buffered in parts. When the first part is full, a multipart
+ * upload is started and the parts are uploaded concurrently while the producer
+ * keeps writing. The part buffers are reused: at most one buffer per part in flight,
+ * plus the one being filled, are allocated. The producer waits when all of them
+ * are in use, so the memory used doesn't depend on the size of the object.
+ * When the stream is closed before the first part is full, the content is uploaded
+ * with a single PUT request.</p>
+ *
+ * <p>The object is only created when the stream is closed. If the producer fails,
+ * call {@link #abort()} to discard the parts already uploaded.</p>
+ *
+ * <p>This class is not thread safe: the stream must be written by a single thread.</p>
+ */
+public class S3OutputStream extends OutputStream implements WritableByteChannel {
+    private static final Logger LOGGER = Logger.getLogger(S3OutputStream.class);
+    private static final int MB = 1024 * 1024;
+
+    private final S3ClientWrapper client;
+    private final S3Uri destinationUri;
+    private final String bucket;
+    private final String key;
+    private final boolean publicRead;
+    private final Map<String, String> metadata;
+    private final String contentEncoding;
+    private final TransferSettings settings;
+
+    private final int partSize;
+    private final int maxBuffers;
+    private final BlockingQueue<byte[]> freeBuffers;
+    private int allocatedBuffers = 0;
+
+    // Part being filled
+    private byte[] buffer = null;
+    private int bufferPosition = 0;
+
+    private String uploadId = null;
+    private int partCount = 0;
+    private ExecutorService executor = null;
+    private final List<Future<CompletedPart>> parts = new ArrayList<Future<CompletedPart>>();
+
+    private long size = 0;
+    private boolean closed = false;
+    private String eTag = null;
+
+    /**
+     * @param expectedSize The expected size of the object, in bytes, or -1 if unknown.
+     *     Used to choose a part size large enough to upload the object in 10,000 parts or less.
+     *     When unknown, the maximum size of the object is 10,000 times the part size.
+     * @param settings Settings of the upload (part size, concurrency, part attempts).
+     */
+    public S3OutputStream(S3ClientWrapper client, S3Uri destinationUri, boolean publicRead, long expectedSize, TransferSettings settings) {
+        this(client, destinationUri, publicRead, expectedSize, null, null, settings);
+    }
+
+    /**
+     * @param metadata User metadata of the object, or null.
+     * @param contentEncoding Content-Encoding of the object (example: "gzip"), or null.
+     */
+    public S3OutputStream(S3ClientWrapper client, S3Uri destinationUri, boolean publicRead, long expectedSize,
+            Map<String, String> metadata, String contentEncoding, TransferSettings settings) {
+        this.client = client;
+        this.destinationUri = destinationUri;
+        this.bucket = destinationUri.bucket().orElseThrow(() -> new IllegalArgumentException("Missing bucket"));
+        this.key = destinationUri.key().orElseThrow(() -> new IllegalArgumentException("Missing key"));
+        this.publicRead = publicRead;
+        this.metadata = metadata;
+        this.contentEncoding = contentEncoding;
+        this.settings = settings;
+
+        this.partSize = PartSizePolicy.getStreamingPartSize(settings, client.getTransferMetrics(), expectedSize);
+        this.maxBuffers = settings.getConcurrency() + 1;
+        this.freeBuffers = new ArrayBlockingQueue<byte[]>(this.maxBuffers);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        this.ensureOpen();
+        this.nextBuffer();
+        this.buffer[this.bufferPosition++] = (byte)b;
+        this.size++;
+        this.flushPartIfFull();
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        this.ensureOpen();
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        while (length > 0) {
+            this.nextBuffer();
+            int written = Math.min(length, this.partSize - this.bufferPosition);
+            System.arraycopy(bytes, offset, this.buffer, this.bufferPosition, written);
+            this.bufferPosition += written;
+            this.size += written;
+            offset += written;
+            length -= written;
+            this.flushPartIfFull();
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer source) throws IOException {
+        if (this.closed) {
+            throw new ClosedChannelException();
+        }
+
+        int total = source.remaining();
+        while (source.hasRemaining()) {
+            this.nextBuffer();
+            int written = Math.min(source.remaining(), this.partSize - this.bufferPosition);
+            source.get(this.buffer, this.bufferPosition, written);
+            this.bufferPosition += written;
+            this.size += written;
+            this.flushPartIfFull();
+        }
+        return total;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !this.closed;
+    }
+
+    /**
+     * Upload the remaining data and complete the upload.
+     * The object is not created if an error occurred.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+
+        try {
+            if (this.uploadId == null) {
+                this.putObject();
+            } else {
+                if (this.bufferPosition > 0) {
+                    this.uploadPart();
+                }
+                this.completeUpload();
+            }
+            this.client.objectWritten(this.destinationUri);
+        } catch (IOException | RuntimeException ex) {
+            this.abortUpload();
+            throw ex;
+        } finally {
+            this.release();
+        }
+    }
+
+    /**
+     * Discard the data written to the stream: the parts already uploaded
+     * are deleted and the object is not created.
+     */
+    public void abort() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+
+        this.abortUpload();
+        this.release();
+    }
+
+    /**
+     * @return The number of bytes written to the stream.
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+    public int getPartSize() {
+        return this.partSize;
+    }
+
+    /**
+     * @return The ETag of the object, once the stream is closed.
+     */
+    public String getETag() {
+        return this.eTag;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (this.closed) {
+            throw new IOException(String.format("The stream to %s is closed.", this.destinationUri));
+        }
+    }
+
+    // Get a buffer for the next part, waiting for a part upload to finish if all the buffers are in use.
+    private void nextBuffer() throws IOException {
+        if (this.buffer != null) {
+            return;
+        }
+
+        byte[] newBuffer = this.freeBuffers.poll();
+        if (newBuffer == null && this.allocatedBuffers < this.maxBuffers) {
+            newBuffer = new byte[this.partSize];
+            this.allocatedBuffers++;
+        }
+        while (newBuffer == null) {
+            // The buffers are returned when the parts are uploaded, or when their upload failed
+            this.checkFailedParts();
+            try {
+                newBuffer = this.freeBuffers.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(String.format("The upload to %s was interrupted.", this.destinationUri));
+            }
+        }
+
+        this.buffer = newBuffer;
+        this.bufferPosition = 0;
+    }
+
+    private void flushPartIfFull() throws IOException {
+        if (this.bufferPosition >= this.partSize) {
+            this.uploadPart();
+        }
+    }
+
+    private void uploadPart() throws IOException {
+        this.checkFailedParts();
+
+        if (this.uploadId == null) {
+            this.startUpload();
+        }
+        if (this.partCount >= MultipartUploader.MAX_PARTS) {
+            throw new IOException(String.format("The content uploaded to %s is too large for parts of %d MB. Specify the expected size.",
+                    this.destinationUri, this.partSize / MB));
+        }
+
+        final int partNumber = ++this.partCount;
+        final byte[] partBuffer = this.buffer;
+        final int partLength = this.bufferPosition;
+        this.buffer = null;
+        this.bufferPosition = 0;
+
+        LOGGER.debug(String.format("Uploading part %d of %s (%d MB)", partNumber, this.destinationUri, partLength / MB));
+        this.parts.add(this.executor.submit(new Callable<CompletedPart>() {
+            @Override
+            public CompletedPart call() throws IOException, InterruptedException {
+                try {
+                    return MultipartUploader.uploadPart(S3OutputStream.this.client,
+                            S3OutputStream.this.bucket, S3OutputStream.this.key, S3OutputStream.this.uploadId,
+                            partNumber, S3OutputStream.getContentProvider(partBuffer, partLength), partLength,
+                            S3OutputStream.this.settings);
+                } finally {
+                    S3OutputStream.this.freeBuffers.offer(partBuffer);
+                }
+            }
+        }));
+    }
+
+    private void startUpload() {
+        CreateMultipartUploadRequest.Builder requestBuilder = CreateMultipartUploadRequest.builder()
+                .bucket(this.bucket)
+                .key(this.key)
+                .metadata(S3File.withUploadPartSize(this.metadata, this.partSize))
+                .contentEncoding(this.contentEncoding);
+        if (this.publicRead) {
+            requestBuilder.acl(ObjectCannedACL.PUBLIC_READ);
+        }
+        MultipartUploader.setChecksumAlgorithm(requestBuilder, this.settings.getChecksumAlgorithm());
+
+        this.uploadId = this.client.getS3Client().createMultipartUpload(requestBuilder.build()).uploadId();
+        this.executor = Executors.newFixedThreadPool(this.settings.getConcurrency());
+        LOGGER.debug(String.format("Multipart upload %s started for %s (parts of %d MB)", this.uploadId, this.destinationUri, this.partSize / MB));
+    }
+
+    // Fail as soon as a part failed, instead of waiting for the end of the stream
+    private void checkFailedParts() throws IOException {
+        Iterator<Future<CompletedPart>> partIterator = this.parts.iterator();
+        while (partIterator.hasNext()) {
+            Future<CompletedPart> part = partIterator.next();
+            if (!part.isDone()) {
+                continue;
+            }
+            try {
+                part.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(String.format("The upload to %s was interrupted.", this.destinationUri));
+            } catch (ExecutionException ex) {
+                throw this.toIOException(ex);
+            }
+        }
+    }
+
+    private void completeUpload() throws IOException {
+        List<CompletedPart> completedParts = new ArrayList<CompletedPart>();
+        for (Future<CompletedPart> part : this.parts) {
+            try {
+                completedParts.add(part.get());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(String.format("The upload to %s was interrupted.", this.destinationUri));
+            } catch (ExecutionException ex) {
+                throw this.toIOException(ex);
+            }
+        }
+
+        this.eTag = MultipartUploader.complete(this.client, this.bucket, this.key, this.uploadId,
+                completedParts, this.partSize, this.size, this.settings.getChecksumAlgorithm());
+        this.uploadId = null;
+
+        LOGGER.debug(String.format("Upload of %s completed: %d bytes in %d parts.", this.destinationUri, this.size, completedParts.size()));
+    }
+
+    private void putObject() {
+        int length = this.bufferPosition;
+        PutObjectRequest.Builder requestBuilder = PutObjectRequest.builder()
+                .bucket(this.bucket)
+                .key(this.key)
+                .metadata(this.metadata)
+                .contentEncoding(this.contentEncoding)
+                .contentLength((long)length);
+        if (this.publicRead) {
+            requestBuilder.acl(ObjectCannedACL.PUBLIC_READ);
+        }
+        if (this.settings.getChecksumAlgorithm() != null) {
+            // The SDK computes the checksum while sending the content, S3 rejects the request if it doesn't match
+            requestBuilder.checksumAlgorithm(S3Checksums.toSdkAlgorithm(this.settings.getChecksumAlgorithm()));
+        }
+
+        byte[] content = this.buffer == null ? new byte[0] : this.buffer;
+        RequestBody requestBody = RequestBody.fromContentProvider(
+                S3OutputStream.getContentProvider(content, length), length, "application/octet-stream");
+
+        LOGGER.debug(String.format("Uploading %d bytes to %s", length, this.destinationUri));
+        this.eTag = this.client.getS3Client().putObject(requestBuilder.build(), requestBody).eTag();
+    }
+
+    private void abortUpload() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+        if (this.uploadId != null) {
+            MultipartUploader.abort(this.client, this.bucket, this.key, this.uploadId);
+            this.uploadId = null;
+        }
+    }
+
+    private void release() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+        this.buffer = null;
+        this.freeBuffers.clear();
+    }
+
+    private IOException toIOException(ExecutionException ex) {
+        Throwable cause = ex.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        return new IOException(String.format("Error occurred while uploading a part of %s", this.destinationUri), cause);
+    }
+
+    private static ContentStreamProvider getContentProvider(final byte[] content, final int length) {
+        return new ContentStreamProvider() {
+            @Override
+            public InputStream newStream() {
+                return new ByteArrayInputStream(content, 0, length);
+            }
+        };
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.io;
+
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.entity.S3File;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import software.amazon.awssdk.services.s3.S3Uri;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Read-only random access to an S3 object, using ranged GET requests.
+ *
+ * <p>The object is read in blocks of fixed size, kept in a LRU {@link BlockCache}.
+ * Only the blocks containing the requested bytes are transferred.</p>
+ *
+ * <ul>
+ *   <li>When a read needs several consecutive blocks which are not in the cache,
+ *       they are requested with a single ranged GET.</li>
+ *   <li>When the blocks are read sequentially, following blocks are read ahead,
+ *       doubling the read-ahead window on each sequential miss,
+ *       up to the maximum read-ahead. A random access resets the window.</li>
+ *   <li>Every request is made with the ETag of the object (If-Match).
+ *       If the object is replaced while being read, the read fails with an
+ *       {@link S3File.ObjectModifiedException}, instead of mixing the content
+ *       of two versions.</li>
+ * </ul>
+ *
+ * <p>Reads are synchronised: the channel can be shared between threads,
+ * but each read moves the shared position.</p>
+ */
+public class S3SeekableByteChannel implements SeekableByteChannel {
+    private static final Logger LOGGER = Logger.getLogger(S3SeekableByteChannel.class);
+    private static final int MB = 1024 * 1024;
+
+    public static final int DEFAULT_BLOCK_SIZE = MB;
+    public static final int DEFAULT_CACHE_BLOCKS = 32;
+    public static final int DEFAULT_MAX_READ_AHEAD_BLOCKS = 8;
+
+    private final S3ClientWrapper client;
+    private final S3Uri s3Uri;
+    private final long size;
+    private final String eTag;
+
+    private final int blockSize;
+    private final int maxReadAheadBlocks;
+    private final BlockCache blockCache;
+
+    private boolean open = true;
+    private long position = 0;
+
+    // Sequential read detection
+    private long lastBlockIndex = -1;
+    private int readAheadBlocks = 0;
+
+    // Statistics
+    private long requestCount = 0;
+    private long bytesTransferred = 0;
+
+    public S3SeekableByteChannel(S3ClientWrapper client, S3File s3File) {
+        this(client, s3File, DEFAULT_BLOCK_SIZE, DEFAULT_CACHE_BLOCKS, DEFAULT_MAX_READ_AHEAD_BLOCKS);
+    }
+
+    /**
+     * @param client The S3 client.
+     * @param s3File The object to read. Its size and ETag are fetched if needed.
+     * @param blockSize Size of the blocks, in bytes.
+     * @param cacheBlocks Maximum number of blocks kept in memory.
+     * @param maxReadAheadBlocks Maximum number of blocks read ahead when the object is read sequentially.
+     *     Set to 0 to disable read-ahead.
+     */
+    public S3SeekableByteChannel(S3ClientWrapper client, S3File s3File, int blockSize, int cacheBlocks, int maxReadAheadBlocks) {
+        this(client, s3File.getS3Uri(), s3File.getFileSize(client), s3File.getETag(client),
+                blockSize, cacheBlocks, maxReadAheadBlocks);
+    }
+
+    /**
+     * Used when the size and ETag of the object are already known,
+     * from a listing for example.
+     */
+    public S3SeekableByteChannel(S3ClientWrapper client, S3Uri s3Uri, Long size, String eTag, int blockSize, int cacheBlocks, int maxReadAheadBlocks) {
+        if (size == null) {
+            throw new IllegalArgumentException(String.format("The size of the file %s is unknown.", s3Uri));
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid block size: %d", blockSize));
+        }
+        if (maxReadAheadBlocks < 0 || maxReadAheadBlocks >= cacheBlocks) {
+            throw new IllegalArgumentException(String.format("Invalid read-ahead: %d blocks. It must be smaller than the cache size (%d blocks).",
+                    maxReadAheadBlocks, cacheBlocks));
+        }
+
+        this.client = client;
+        this.s3Uri = s3Uri;
+        this.size = size;
+        this.eTag = eTag;
+        this.blockSize = blockSize;
+        this.maxReadAheadBlocks = maxReadAheadBlocks;
+        this.blockCache = new BlockCache(cacheBlocks);
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer destination) throws IOException {
+        this.ensureOpen();
+
+        if (this.position >= this.size) {
+            return -1;
+        }
+
+        long requestedEnd = Math.min(this.size, this.position + destination.remaining());
+        int total = 0;
+        while (destination.hasRemaining() && this.position < this.size) {
+            long blockIndex = this.position / this.blockSize;
+            byte[] block = this.getBlock(blockIndex, requestedEnd);
+
+            int offset = (int)(this.position - blockIndex * this.blockSize);
+            int length = Math.min(destination.remaining(), block.length - offset);
+            destination.put(block, offset, length);
+
+            this.position += length;
+            total += length;
+        }
+
+        return total;
+    }
+
+    private byte[] getBlock(long blockIndex, long requestedEnd) throws IOException {
+        boolean sequential = blockIndex == this.lastBlockIndex + 1;
+        this.lastBlockIndex = blockIndex;
+
+        byte[] block = this.blockCache.get(blockIndex);
+        if (block != null) {
+            return block;
+        }
+
+        if (sequential) {
+            this.readAheadBlocks = Math.min(this.maxReadAheadBlocks, Math.max(1, this.readAheadBlocks * 2));
+        } else {
+            this.readAheadBlocks = 0;
+        }
+
+        // Blocks needed for this read, plus the read-ahead blocks
+        long lastBlock = (this.size - 1) / this.blockSize;
+        long endBlockIndex = Math.max(
+                (requestedEnd - 1) / this.blockSize,
+                blockIndex + this.readAheadBlocks);
+        endBlockIndex = Math.min(Math.min(endBlockIndex, lastBlock),
+                blockIndex + this.blockCache.getMaxBlocks() - 1);
+
+        // Stop at the first block already in the cache
+        for (long index = blockIndex + 1; index <= endBlockIndex; index++) {
+            if (this.blockCache.contains(index)) {
+                endBlockIndex = index - 1;
+                break;
+            }
+        }
+
+        return this.fetchBlocks(blockIndex, endBlockIndex);
+    }
+
+    // Fetch consecutive blocks with a single request. Returns the first block.
+    private byte[] fetchBlocks(long firstBlockIndex, long lastBlockIndex) throws IOException {
+        long start = firstBlockIndex * this.blockSize;
+        long end = Math.min(this.size, (lastBlockIndex + 1) * this.blockSize) - 1;
+
+        LOGGER.debug(String.format("Reading bytes %d-%d of %s (blocks %d-%d)",
+                start, end, this.s3Uri, firstBlockIndex, lastBlockIndex));
+
+        byte[] firstBlock = null;
+        try (InputStream inputStream = this.openRange(start, end)) {
+            this.requestCount++;
+            for (long index = firstBlockIndex; index <= lastBlockIndex; index++) {
+                long blockStart = index * this.blockSize;
+                int blockLength = (int)(Math.min(this.size, blockStart + this.blockSize) - blockStart);
+
+                byte[] block = new byte[blockLength];
+                IOUtils.readFully(inputStream, block);
+                this.bytesTransferred += blockLength;
+
+                this.blockCache.put(index, block);
+                if (firstBlock == null) {
+                    firstBlock = block;
+                }
+            }
+        }
+
+        return firstBlock;
+    }
+
+    /**
+     * Open a stream on a range of bytes of the object.
+     * @param start Index of the first byte.
+     * @param end Index of the last byte (inclusive).
+     */
+    protected InputStream openRange(long start, long end) throws IOException {
+        return S3File.getS3ObjectRangeInputStream(this.client, this.s3Uri, start, end, this.eTag);
+    }
+
+    @Override
+    public int write(ByteBuffer source) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        this.ensureOpen();
+        return this.position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        this.ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException(String.format("Invalid position: %d", newPosition));
+        }
+        this.position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        this.ensureOpen();
+        return this.size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return this.open;
+    }
+
+    @Override
+    public synchronized void close() {
+        this.open = false;
+        this.blockCache.clear();
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!this.open) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    public S3Uri getS3Uri() {
+        return this.s3Uri;
+    }
+
+    public String getETag() {
+        return this.eTag;
+    }
+
+    public int getBlockSize() {
+        return this.blockSize;
+    }
+
+    public BlockCache getBlockCache() {
+        return this.blockCache;
+    }
+
+    /**
+     * @return Number of ranged GET requests sent to S3.
+     */
+    public synchronized long getRequestCount() {
+        return this.requestCount;
+    }
+
+    /**
+     * @return Number of bytes transferred from S3.
+     */
+    public synchronized long getBytesTransferred() {
+        return this.bytesTransferred;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Input stream over a {@link SeekableByteChannel}.
+ * Skip, mark and reset only move the channel position.
+ */
+public class S3SeekableInputStream extends InputStream {
+    private final SeekableByteChannel channel;
+    private long mark = 0;
+
+    public S3SeekableInputStream(SeekableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] buffer = new byte[1];
+        int read = this.read(buffer, 0, 1);
+        return read <= 0 ? -1 : (buffer[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        return this.channel.read(ByteBuffer.wrap(buffer, offset, length));
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        long position = this.channel.position();
+        long newPosition = Math.min(this.channel.size(), position + n);
+        this.channel.position(newPosition);
+        return newPosition - position;
+    }
+
+    @Override
+    public int available() throws IOException {
+        long remaining = this.channel.size() - this.channel.position();
+        return (int)Math.max(0, Math.min(Integer.MAX_VALUE, remaining));
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        try {
+            this.mark = this.channel.position();
+        } catch (IOException ex) {
+            // The channel is closed, reset will fail
+            this.mark = 0;
+        }
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        this.channel.position(this.mark);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
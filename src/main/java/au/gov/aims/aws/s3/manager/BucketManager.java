@@ -67,12 +67,13 @@ public class BucketManager {
                 .build();
 
         for (int i=0; i<S3_ATTEMPT; i++) {
+            long generation = client.getGeneration();
             try {
                 return BucketManager.internalBucketExists(client, request);
             } catch(Throwable ex) {
                 LOGGER.warn(String.format("Error occurred while checking the existence of a bucket on S3: %s. Attempting to reconnect.",
                         bucket), ex);
-                client.reconnect();
+                client.reconnect(generation);
             }
         }
 
@@ -98,12 +99,13 @@ public class BucketManager {
             .build();
 
         for (int i=0; i<S3_ATTEMPT; i++) {
+            long generation = client.getGeneration();
             try {
                 return client.getS3Client().createBucket(request);
             } catch(Throwable ex) {
                 LOGGER.warn(String.format("Error occurred while creating a new bucket on S3: %s. Attempting to reconnect.",
                         bucket), ex);
-                client.reconnect();
+                client.reconnect(generation);
             }
         }
 
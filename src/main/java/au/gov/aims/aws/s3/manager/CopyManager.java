@@ -0,0 +1,358 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.manager;
+
+import au.gov.aims.aws.s3.S3Utils;
+import au.gov.aims.aws.s3.entity.DeleteReport;
+import au.gov.aims.aws.s3.entity.S3Bucket;
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.entity.S3File;
+import au.gov.aims.aws.s3.entity.S3List;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import org.apache.log4j.Logger;
+import software.amazon.awssdk.services.s3.S3Uri;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.MetadataDirective;
+import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copy and move objects within S3, without transferring their content through this host.
+ *
+ * <p>Objects up to the multipart threshold are copied with a single CopyObject request.
+ * Larger objects (and every object over 5 GB, the CopyObject limit) are copied
+ * in parts, with UploadPartCopy requests sent in parallel.
+ * The content type, the content encoding and the user metadata (including
+ * the last modified date of the original file) are preserved.</p>
+ *
+ * <p>A source URI ending with "/" denotes a prefix: every object under the prefix
+ * is copied under the destination prefix, with bounded concurrency. When moving a prefix,
+ * the sources are deleted once copied, with batched DeleteObjects requests.</p>
+ */
+public class CopyManager {
+    private static final Logger LOGGER = Logger.getLogger(CopyManager.class);
+    private static final int MB = 1024 * 1024;
+
+    // S3 limit of CopyObject
+    public static final long MAX_COPY_OBJECT_SIZE = 5L * 1024 * MB;
+
+    public static S3List copy(S3ClientWrapper client, S3Uri sourceUri, S3Uri destinationUri) throws IOException, InterruptedException {
+        return CopyManager.copy(client, sourceUri, destinationUri, client.getTransferSettings());
+    }
+
+    /**
+     * Copy an object, or every object under a prefix.
+     * @param sourceUri The object to copy, or a prefix ending with "/".
+     * @param destinationUri The destination object, or the destination prefix.
+     * @param settings Settings for this copy (multipart threshold, part size, concurrency), overriding the client settings.
+     * @return The copied objects, at their destination.
+     */
+    public static S3List copy(S3ClientWrapper client, S3Uri sourceUri, S3Uri destinationUri, TransferSettings settings)
+            throws IOException, InterruptedException {
+        return CopyManager.copy(client, sourceUri, destinationUri, false, settings);
+    }
+
+    public static S3List move(S3ClientWrapper client, S3Uri sourceUri, S3Uri destinationUri) throws IOException, InterruptedException {
+        return CopyManager.move(client, sourceUri, destinationUri, client.getTransferSettings());
+    }
+
+    /**
+     * Copy an object, or every object under a prefix, then delete the sources.
+     * Sources which could not be copied are not deleted.
+     * @see #copy(S3ClientWrapper, S3Uri, S3Uri, TransferSettings)
+     */
+    public static S3List move(S3ClientWrapper client, S3Uri sourceUri, S3Uri destinationUri, TransferSettings settings)
+            throws IOException, InterruptedException {
+        return CopyManager.copy(client, sourceUri, destinationUri, true, settings);
+    }
+
+    private static S3List copy(S3ClientWrapper client, S3Uri sourceUri, S3Uri destinationUri, boolean move, TransferSettings settings)
+            throws IOException, InterruptedException {
+
+        String sourceBucket = sourceUri.bucket().orElseThrow(() -> new IllegalArgumentException("Missing source bucket"));
+        String destinationBucket = destinationUri.bucket().orElseThrow(() -> new IllegalArgumentException("Missing destination bucket"));
+        String sourceKey = sourceUri.key().orElse("");
+        String destinationKey = destinationUri.key().orElse("");
+        boolean prefix = sourceKey.isEmpty() || sourceKey.endsWith("/");
+        if (prefix) {
+            if (!destinationKey.isEmpty() && !destinationKey.endsWith("/")) {
+                destinationKey += "/";
+            }
+        } else if (S3Utils.getFilename(destinationUri) == null) {
+            destinationUri = S3Utils.getS3URI(destinationBucket, destinationKey, S3Utils.getFilename(sourceUri));
+            destinationKey = destinationUri.key().orElse("");
+        }
+
+        // The listing of a prefix would return the copies made under it
+        if (sourceBucket.equals(destinationBucket) &&
+                (prefix ? destinationKey.startsWith(sourceKey) : destinationKey.equals(sourceKey))) {
+            throw new IllegalArgumentException(String.format("Can not copy %s to %s", sourceUri, destinationUri));
+        }
+        if (!BucketManager.bucketExists(client, destinationBucket)) {
+            throw new IOException(String.format("Bucket %s doesn't exist.", destinationBucket));
+        }
+        boolean publicRead = new S3Bucket(destinationBucket).isPublic(client);
+
+        long startTime = System.currentTimeMillis();
+        S3List s3List;
+        if (prefix) {
+            s3List = CopyManager.copyPrefix(client, sourceBucket, sourceKey, destinationBucket, destinationKey, publicRead, move, settings);
+        } else {
+            HeadObjectResponse metadata = S3File.getS3ObjectMetadata(client, sourceUri);
+            CopyManager.copyObject(client, sourceUri, destinationUri, metadata.contentLength(), metadata.eTag(), publicRead, settings);
+            if (move) {
+                DeleteManager.delete(client, sourceUri, settings);
+            }
+
+            s3List = new S3List();
+            s3List.putFile(new S3File(destinationUri));
+        }
+
+        s3List.setExecutionTime(System.currentTimeMillis() - startTime);
+        return s3List;
+    }
+
+    private static S3List copyPrefix(final S3ClientWrapper client, String sourceBucket, String sourcePrefix,
+            String destinationBucket, String destinationPrefix, final boolean publicRead, boolean move,
+            final TransferSettings settings) throws IOException, InterruptedException {
+
+        final S3List s3List = new S3List();
+        // Keys of the sources copied, deleted at the end of a move
+        final List<String> copiedKeys = Collections.synchronizedList(new ArrayList<String>());
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+
+        int concurrency = settings.getConcurrency();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        // Limit the number of copies waiting in the queue, the listing is paused when it's full
+        final Semaphore pendingCopies = new Semaphore(concurrency * 2);
+        try {
+            Iterator<S3Object> objectIterator = ListManager.listObjects(client, sourceBucket, sourcePrefix);
+            while (objectIterator.hasNext()) {
+                final S3Object s3Object = objectIterator.next();
+                final S3Uri objectUri = S3Utils.getS3URI(sourceBucket, s3Object.key());
+                final S3Uri objectDestinationUri = S3Utils.getS3URI(destinationBucket,
+                        destinationPrefix + s3Object.key().substring(sourcePrefix.length()));
+
+                pendingCopies.acquire();
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            CopyManager.copyObject(client, objectUri, objectDestinationUri,
+                                    s3Object.size(), s3Object.eTag(), publicRead, settings);
+                            copiedKeys.add(s3Object.key());
+                            synchronized (s3List) {
+                                s3List.putFile(new S3File(objectDestinationUri));
+                            }
+                        } catch (Throwable ex) {
+                            LOGGER.error(String.format("Could not copy %s to %s", objectUri, objectDestinationUri), ex);
+                            failures.add(ex);
+                        } finally {
+                            pendingCopies.release();
+                        }
+                    }
+                });
+            }
+
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (move && !copiedKeys.isEmpty()) {
+            DeleteReport deleteReport = DeleteManager.deleteKeys(client, sourceBucket, copiedKeys, settings);
+            if (deleteReport.hasFailures()) {
+                failures.add(new IOException(String.format("Could not delete %d objects of s3://%s/%s after they were copied. Example: %s",
+                        deleteReport.getFailures().size(), sourceBucket, sourcePrefix, deleteReport.getFailures().keySet().iterator().next())));
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            throw new IOException(String.format("%d objects of s3://%s/%s could not be %s, %d were.",
+                    failures.size(), sourceBucket, sourcePrefix, move ? "moved" : "copied", copiedKeys.size()), failures.get(0));
+        }
+        return s3List;
+    }
+
+    /**
+     * Copy a single object. The copy fails if the source doesn't have the expected ETag anymore.
+     * @param size The size of the source object.
+     * @param eTag The ETag of the source object, or null.
+     * @param publicRead True to make the copy public.
+     */
+    static void copyObject(S3ClientWrapper client, S3Uri sourceUri, S3Uri destinationUri, long size, String eTag,
+            boolean publicRead, TransferSettings settings) throws IOException, InterruptedException {
+
+        if (size > Math.min(settings.getMultipartThreshold(), MAX_COPY_OBJECT_SIZE)) {
+            CopyManager.multipartCopy(client, sourceUri, destinationUri, size, eTag, publicRead, settings);
+            client.objectWritten(destinationUri);
+            return;
+        }
+
+        // The metadata, the content type and the content encoding are copied with the object
+        CopyObjectRequest.Builder requestBuilder = CopyObjectRequest.builder()
+                .sourceBucket(sourceUri.bucket().orElse(null))
+                .sourceKey(sourceUri.key().orElse(null))
+                .destinationBucket(destinationUri.bucket().orElse(null))
+                .destinationKey(destinationUri.key().orElse(null))
+                .metadataDirective(MetadataDirective.COPY)
+                .copySourceIfMatch(eTag);
+        if (publicRead) {
+            requestBuilder.acl(ObjectCannedACL.PUBLIC_READ);
+        }
+        CopyObjectRequest request = requestBuilder.build();
+
+        // The objects of a prefix are copied in parallel with the same client:
+        // a failed copy waits and retries, it never reconnects the client under the other copies
+        LOGGER.debug(String.format("Copying %s to %s", sourceUri, destinationUri));
+        for (int attempt = 1; ; attempt++) {
+            try {
+                client.getS3Client().copyObject(request);
+                client.objectWritten(destinationUri);
+                return;
+            } catch (RuntimeException ex) {
+                if (attempt >= settings.getPartAttempts() || !MultipartUploader.isRetryable(ex)) {
+                    throw ex;
+                }
+
+                long delay = MultipartUploader.getRetryDelay(settings, attempt, ThreadLocalRandom.current());
+                LOGGER.warn(String.format("Error occurred while copying %s to %s (attempt %d of %d). Retrying in %d ms.",
+                        sourceUri, destinationUri, attempt, settings.getPartAttempts(), delay), ex);
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * Copy an object in parts, sent in parallel. The multipart upload is created with the
+     * metadata of the source, which are not copied by UploadPartCopy.
+     */
+    private static void multipartCopy(final S3ClientWrapper client, final S3Uri sourceUri, final S3Uri destinationUri,
+            final long size, final String eTag, boolean publicRead, final TransferSettings settings)
+            throws IOException, InterruptedException {
+
+        final String bucket = destinationUri.bucket().orElse(null);
+        final String key = destinationUri.key().orElse(null);
+        final long partSize = PartSizePolicy.getUploadPartSize(settings, client.getTransferMetrics(), size);
+        int partCount = (int)((size + partSize - 1) / partSize);
+
+        HeadObjectResponse metadata = S3File.getS3ObjectMetadata(client, sourceUri);
+        CreateMultipartUploadRequest.Builder createRequestBuilder = CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .metadata(S3File.withUploadPartSize(metadata.metadata(), partSize))
+                .contentType(metadata.contentType())
+                .contentEncoding(metadata.contentEncoding());
+        if (publicRead) {
+            createRequestBuilder.acl(ObjectCannedACL.PUBLIC_READ);
+        }
+        final String uploadId = client.getS3Client().createMultipartUpload(createRequestBuilder.build()).uploadId();
+
+        LOGGER.debug(String.format("Copying %s to %s in %d parts of %d MB", sourceUri, destinationUri, partCount, partSize / MB));
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(settings.getConcurrency(), partCount)));
+        try {
+            List<Future<CompletedPart>> futures = new ArrayList<Future<CompletedPart>>();
+            for (int part = 1; part <= partCount; part++) {
+                final int partNumber = part;
+                final long start = (partNumber - 1) * partSize;
+                final long end = Math.min(start + partSize, size) - 1;
+                futures.add(executor.submit(new Callable<CompletedPart>() {
+                    @Override
+                    public CompletedPart call() throws InterruptedException {
+                        return CopyManager.copyPart(client, sourceUri, uploadId, bucket, key, partNumber, start, end, eTag, settings);
+                    }
+                }));
+            }
+
+            List<CompletedPart> parts = new ArrayList<CompletedPart>();
+            for (Future<CompletedPart> future : futures) {
+                try {
+                    parts.add(future.get());
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IOException(String.format("Error occurred while copying a part of %s", sourceUri), cause);
+                }
+            }
+
+            MultipartUploader.complete(client, bucket, key, uploadId, parts, partSize, size, null);
+        } catch (IOException | InterruptedException | RuntimeException ex) {
+            MultipartUploader.abort(client, bucket, key, uploadId);
+            throw ex;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Copy a part, sending it again (after a delay) when a transient error occurs
+    private static CompletedPart copyPart(S3ClientWrapper client, S3Uri sourceUri, String uploadId, String bucket, String key,
+            int partNumber, long start, long end, String eTag, TransferSettings settings) throws InterruptedException {
+
+        UploadPartCopyRequest request = UploadPartCopyRequest.builder()
+                .sourceBucket(sourceUri.bucket().orElse(null))
+                .sourceKey(sourceUri.key().orElse(null))
+                .destinationBucket(bucket)
+                .destinationKey(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .copySourceRange(String.format("bytes=%d-%d", start, end))
+                .copySourceIfMatch(eTag)
+                .build();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                String partETag = client.getS3Client().uploadPartCopy(request).copyPartResult().eTag();
+                return CompletedPart.builder()
+                        .partNumber(partNumber)
+                        .eTag(partETag)
+                        .build();
+            } catch (RuntimeException ex) {
+                if (attempt >= settings.getPartAttempts() || !MultipartUploader.isRetryable(ex)) {
+                    throw ex;
+                }
+
+                long delay = MultipartUploader.getRetryDelay(settings, attempt, ThreadLocalRandom.current());
+                LOGGER.warn(String.format("Error occurred while copying the part %d of %s (attempt %d of %d). Retrying in %d ms.",
+                        partNumber, sourceUri, attempt, settings.getPartAttempts(), delay), ex);
+                Thread.sleep(delay);
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.manager;
+
+import au.gov.aims.aws.s3.S3Utils;
+import au.gov.aims.aws.s3.entity.DeleteReport;
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import org.apache.log4j.Logger;
+import software.amazon.awssdk.services.s3.S3Uri;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delete objects from S3.
+ *
+ * <p>Keys are sent in DeleteObjects requests of up to 1000 keys, which are
+ * sent in parallel. The keys can be given as a collection, a prefix or
+ * a lazy listing: the listing is consumed as the batches are sent, so
+ * prefixes with millions of objects are deleted with a bounded memory usage.</p>
+ *
+ * <p>A DeleteObjects request can succeed while some of its keys fail.
+ * Only the keys which failed with a transient error (throttling, server error)
+ * are sent again, in a new request.</p>
+ */
+public class DeleteManager {
+    private static final Logger LOGGER = Logger.getLogger(DeleteManager.class);
+    private static final int S3_ATTEMPT = 5;
+
+    // S3 limit of DeleteObjects
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    // Error codes, returned for each key, which are worth another attempt
+    private static final Set<String> RETRYABLE_ERROR_CODES = new HashSet<String>(Arrays.asList(
+            "InternalError", "ServiceUnavailable", "SlowDown", "RequestTimeout", "OperationAborted"));
+
+    public static DeleteReport delete(S3ClientWrapper client, S3Uri s3Uri) throws InterruptedException {
+        return DeleteManager.delete(client, s3Uri, client.getTransferSettings());
+    }
+
+    /**
+     * Delete an object, or every object under a prefix.
+     * @param s3Uri The object to delete, or a prefix ending with "/".
+     *     An URI without key is rejected: to empty a bucket, use
+     *     {@link #deleteListing(S3ClientWrapper, String, Iterator, TransferSettings)}.
+     * @param settings Settings for this delete (concurrency, attempts), overriding the client settings.
+     * @throws IllegalArgumentException If the URI has no key.
+     */
+    public static DeleteReport delete(S3ClientWrapper client, S3Uri s3Uri, TransferSettings settings) throws InterruptedException {
+        String bucket = s3Uri.bucket().orElseThrow(() -> new IllegalArgumentException("Missing bucket"));
+        String key = s3Uri.key().orElse("");
+        if (key.isEmpty() || "/".equals(key)) {
+            throw new IllegalArgumentException(String.format("Missing key, refusing to delete every object of the bucket %s", bucket));
+        }
+        if (key.endsWith("/")) {
+            return DeleteManager.deleteListing(client, bucket, ListManager.listObjects(client, bucket, key), settings);
+        }
+
+        long startTime = System.currentTimeMillis();
+        DeleteReport report = new DeleteReport(bucket);
+        DeleteManager.deleteObject(client, bucket, key);
+        report.requestSent();
+        report.addDeleted(1);
+        report.setExecutionTime(System.currentTimeMillis() - startTime);
+        return report;
+    }
+
+    public static DeleteReport deleteKeys(S3ClientWrapper client, String bucket, Collection<String> keys) throws InterruptedException {
+        return DeleteManager.deleteKeys(client, bucket, keys.iterator(), client.getTransferSettings());
+    }
+
+    public static DeleteReport deleteKeys(S3ClientWrapper client, String bucket, Collection<String> keys, TransferSettings settings)
+            throws InterruptedException {
+        return DeleteManager.deleteKeys(client, bucket, keys.iterator(), settings);
+    }
+
+    /**
+     * Delete the objects of a listing, such as the one returned by {@link ListManager#listObjects(S3ClientWrapper, String, String)}.
+     */
+    public static DeleteReport deleteListing(S3ClientWrapper client, String bucket, final Iterator<S3Object> objects,
+            TransferSettings settings) throws InterruptedException {
+
+        return DeleteManager.deleteKeys(client, bucket, new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return objects.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return objects.next().key();
+            }
+        }, settings);
+    }
+
+    /**
+     * Delete objects, in batches of up to 1000 keys.
+     * @param keys The keys of the objects to delete. Consumed as the batches are sent.
+     * @return The report of the delete. Keys which could not be deleted are listed in the failures,
+     *     they are not thrown.
+     */
+    public static DeleteReport deleteKeys(final S3ClientWrapper client, final String bucket, Iterator<String> keys,
+            final TransferSettings settings) throws InterruptedException {
+
+        long startTime = System.currentTimeMillis();
+        final DeleteReport report = new DeleteReport(bucket);
+
+        int concurrency = settings.getConcurrency();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        // Limit the number of batches waiting in the queue, the listing is paused when it's full
+        final Semaphore pendingBatches = new Semaphore(concurrency * 2);
+        try {
+            while (keys.hasNext()) {
+                final List<String> batch = new ArrayList<String>(MAX_BATCH_SIZE);
+                while (batch.size() < MAX_BATCH_SIZE && keys.hasNext()) {
+                    batch.add(keys.next());
+                }
+
+                pendingBatches.acquire();
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            DeleteManager.deleteBatch(client, bucket, batch, settings, report);
+                        } catch (Throwable ex) {
+                            LOGGER.error(String.format("Could not delete a batch of %d objects from bucket %s", batch.size(), bucket), ex);
+                            for (String key : batch) {
+                                report.addFailure(key, String.valueOf(ex.getMessage()));
+                            }
+                        } finally {
+                            pendingBatches.release();
+                        }
+                    }
+                });
+            }
+
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        report.setExecutionTime(System.currentTimeMillis() - startTime);
+        LOGGER.debug(report);
+        return report;
+    }
+
+    // Send a batch, then send again the keys which failed with a transient error
+    private static void deleteBatch(S3ClientWrapper client, String bucket, List<String> keys,
+            TransferSettings settings, DeleteReport report) throws InterruptedException {
+
+        List<String> pendingKeys = keys;
+        for (int attempt = 1; ; attempt++) {
+            List<ObjectIdentifier> objects = new ArrayList<ObjectIdentifier>(pendingKeys.size());
+            for (String key : pendingKeys) {
+                objects.add(ObjectIdentifier.builder().key(key).build());
+            }
+            // Quiet mode: only the errors are returned
+            DeleteObjectsRequest request = DeleteObjectsRequest.builder()
+                    .bucket(bucket)
+                    .delete(Delete.builder().objects(objects).quiet(true).build())
+                    .build();
+
+            List<S3Error> errors;
+            try {
+                report.requestSent();
+                DeleteObjectsResponse response = client.getS3Client().deleteObjects(request);
+                errors = response.errors() == null ? Collections.<S3Error>emptyList() : response.errors();
+            } catch (RuntimeException ex) {
+                if (attempt >= settings.getPartAttempts() || !MultipartUploader.isRetryable(ex)) {
+                    throw ex;
+                }
+                long delay = MultipartUploader.getRetryDelay(settings, attempt, ThreadLocalRandom.current());
+                LOGGER.warn(String.format("Error occurred while deleting %d objects from bucket %s (attempt %d of %d). Retrying in %d ms.",
+                        pendingKeys.size(), bucket, attempt, settings.getPartAttempts(), delay), ex);
+                report.keysRetried(pendingKeys.size());
+                Thread.sleep(delay);
+                continue;
+            }
+
+            Set<String> failedKeys = new HashSet<String>();
+            List<String> retryKeys = new ArrayList<String>();
+            for (S3Error error : errors) {
+                failedKeys.add(error.key());
+                if (attempt < settings.getPartAttempts() && RETRYABLE_ERROR_CODES.contains(error.code())) {
+                    retryKeys.add(error.key());
+                } else {
+                    LOGGER.warn(String.format("Could not delete s3://%s/%s: %s %s", bucket, error.key(), error.code(), error.message()));
+                    report.addFailure(error.key(), String.format("%s %s", error.code(), error.message()));
+                }
+            }
+            report.addDeleted(pendingKeys.size() - errors.size());
+            for (String key : pendingKeys) {
+                if (!failedKeys.contains(key)) {
+                    client.objectDeleted(S3Utils.getS3URI(bucket, key));
+                }
+            }
+
+            if (retryKeys.isEmpty()) {
+                return;
+            }
+            long delay = MultipartUploader.getRetryDelay(settings, attempt, ThreadLocalRandom.current());
+            LOGGER.debug(String.format("%d objects of bucket %s could not be deleted (attempt %d of %d). Retrying in %d ms.",
+                    retryKeys.size(), bucket, attempt, settings.getPartAttempts(), delay));
+            report.keysRetried(retryKeys.size());
+            Thread.sleep(delay);
+            pendingKeys = retryKeys;
+        }
+    }
+
+    private static void deleteObject(S3ClientWrapper client, String bucket, String key) {
+        DeleteObjectRequest request = DeleteObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build();
+
+        for (int i=0; i<S3_ATTEMPT; i++) {
+            long generation = client.getGeneration();
+            try {
+                client.getS3Client().deleteObject(request);
+                client.objectDeleted(S3Utils.getS3URI(bucket, key));
+                return;
+            } catch(RuntimeException ex) {
+                LOGGER.warn(String.format("Error occurred while deleting s3://%s/%s. Attempting to reconnect.", bucket, key), ex);
+                client.reconnect(generation);
+            }
+        }
+        // Try a last time, to throw the exception
+        client.getS3Client().deleteObject(request);
+        client.objectDeleted(S3Utils.getS3URI(bucket, key));
+    }
+}
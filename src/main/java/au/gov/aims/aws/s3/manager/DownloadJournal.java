@@ -0,0 +1,304 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.manager;
+
+import au.gov.aims.aws.s3.checksum.ChecksumAlgorithm;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Sidecar file of a download in progress, recording the ETag of the
+ * object and the byte ranges already written to the temporary file.
+ *
+ * <p>The sidecar is a small properties file, rewritten (atomically) after
+ * every range. A download is only resumed when the object still has the
+ * same ETag and size. When the journal file is null, the journal only lives in memory.</p>
+ *
+ * <p>When the download is verified with a checksum, the checksum of each range
+ * is recorded with it. The checksums of adjacent ranges are combined when the ranges
+ * are merged (CRCs only), so once the download is complete, the checksum of the whole
+ * file is known without reading it again.</p>
+ */
+public class DownloadJournal {
+    private static final Logger LOGGER = Logger.getLogger(DownloadJournal.class);
+
+    private static final String PROPERTY_ETAG = "eTag";
+    private static final String PROPERTY_SIZE = "size";
+    private static final String PROPERTY_RANGES = "ranges";
+    private static final String PROPERTY_CHECKSUM_ALGORITHM = "checksumAlgorithm";
+    private static final String PROPERTY_CHECKSUMS = "checksums";
+
+    private final File journalFile;
+    private final String eTag;
+    private final long size;
+    private final ChecksumAlgorithm checksumAlgorithm;
+
+    // Key: first byte of the range, value: last byte + 1. The ranges are merged, they never overlap.
+    private final TreeMap<Long, Long> ranges = new TreeMap<Long, Long>();
+    // Key: first byte of the range, value: checksum of the range, when known.
+    private final TreeMap<Long, byte[]> checksums = new TreeMap<Long, byte[]>();
+
+    public DownloadJournal(File journalFile, String eTag, long size) {
+        this(journalFile, eTag, size, null);
+    }
+
+    /**
+     * @param checksumAlgorithm Algorithm of the checksums of the ranges, or null if the download is not verified.
+     */
+    public DownloadJournal(File journalFile, String eTag, long size, ChecksumAlgorithm checksumAlgorithm) {
+        this.journalFile = journalFile;
+        this.eTag = eTag;
+        this.size = size;
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
+    /**
+     * @return The journal, or null if the file doesn't exist or can't be read.
+     */
+    public static DownloadJournal load(File journalFile) {
+        if (journalFile == null || !journalFile.isFile()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream inputStream = new FileInputStream(journalFile)) {
+            properties.load(inputStream);
+
+            String eTag = properties.getProperty(PROPERTY_ETAG);
+            if (eTag == null) {
+                throw new IOException("Missing ETag");
+            }
+            String checksumAlgorithm = properties.getProperty(PROPERTY_CHECKSUM_ALGORITHM);
+            DownloadJournal journal = new DownloadJournal(journalFile, eTag,
+                    Long.parseLong(properties.getProperty(PROPERTY_SIZE)),
+                    checksumAlgorithm == null ? null : ChecksumAlgorithm.valueOf(checksumAlgorithm));
+
+            String rangesStr = properties.getProperty(PROPERTY_RANGES, "");
+            for (String range : rangesStr.split(",")) {
+                if (!range.isEmpty()) {
+                    int dashIndex = range.indexOf('-');
+                    journal.putRange(Long.parseLong(range.substring(0, dashIndex)), Long.parseLong(range.substring(dashIndex + 1)), null);
+                }
+            }
+
+            String checksumsStr = properties.getProperty(PROPERTY_CHECKSUMS, "");
+            for (String checksum : checksumsStr.split(",")) {
+                if (!checksum.isEmpty()) {
+                    int colonIndex = checksum.indexOf(':');
+                    long start = Long.parseLong(checksum.substring(0, colonIndex));
+                    if (journal.ranges.containsKey(start)) {
+                        journal.checksums.put(start, Base64.getDecoder().decode(checksum.substring(colonIndex + 1)));
+                    }
+                }
+            }
+            return journal;
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.warn(String.format("Invalid download journal %s. Ignored.", journalFile), ex);
+            return null;
+        }
+    }
+
+    /**
+     * @return True if the journal was made for that version of the object.
+     */
+    public boolean matches(String eTag, long size) {
+        return this.eTag != null && this.eTag.equals(eTag) && this.size == size;
+    }
+
+    /**
+     * Record a range written to the temporary file.
+     * @param start Index of the first byte.
+     * @param end Index of the last byte + 1.
+     */
+    public synchronized void addRange(long start, long end) throws IOException {
+        this.addRange(start, end, null);
+    }
+
+    /**
+     * @param checksum The checksum of the range, computed with the checksum algorithm of the journal, or null.
+     */
+    public synchronized void addRange(long start, long end, byte[] checksum) throws IOException {
+        this.putRange(start, end, this.checksumAlgorithm == null ? null : checksum);
+        this.save();
+    }
+
+    private void putRange(long start, long end, byte[] checksum) {
+        if (end <= start) {
+            return;
+        }
+
+        // Merge with the overlapping and adjacent ranges.
+        // The checksum of the merged range is only known if the ranges are adjacent.
+        Map.Entry<Long, Long> previous = this.ranges.floorEntry(start);
+        if (previous != null && previous.getValue() >= start) {
+            byte[] previousChecksum = this.checksums.remove(previous.getKey());
+            checksum = previous.getValue() == start ? this.combine(previousChecksum, checksum, end - start) : null;
+            start = previous.getKey();
+            end = Math.max(end, previous.getValue());
+            this.ranges.remove(previous.getKey());
+        }
+        Map.Entry<Long, Long> next = this.ranges.ceilingEntry(start);
+        while (next != null && next.getKey() <= end) {
+            byte[] nextChecksum = this.checksums.remove(next.getKey());
+            checksum = next.getKey() == end ? this.combine(checksum, nextChecksum, next.getValue() - next.getKey()) : null;
+            end = Math.max(end, next.getValue());
+            this.ranges.remove(next.getKey());
+            next = this.ranges.ceilingEntry(start);
+        }
+
+        this.ranges.put(start, end);
+        if (checksum != null) {
+            this.checksums.put(start, checksum);
+        }
+    }
+
+    private byte[] combine(byte[] checksum1, byte[] checksum2, long length2) {
+        if (checksum1 == null || checksum2 == null || !this.checksumAlgorithm.isComposable()) {
+            return null;
+        }
+        return this.checksumAlgorithm.combine(checksum1, checksum2, length2);
+    }
+
+    /**
+     * @return The ranges which are not downloaded yet, split in ranges of at most rangeSize bytes.
+     *     Each range is an array of 2 values: the first byte and the last byte + 1.
+     */
+    public synchronized List<long[]> getMissingRanges(long rangeSize) {
+        List<long[]> missingRanges = new ArrayList<long[]>();
+
+        long position = 0;
+        while (position < this.size) {
+            Map.Entry<Long, Long> range = this.ranges.floorEntry(position);
+            if (range != null && range.getValue() > position) {
+                position = range.getValue();
+                continue;
+            }
+
+            Long nextStart = this.ranges.higherKey(position);
+            long gapEnd = nextStart == null ? this.size : Math.min(nextStart, this.size);
+            long end = Math.min(gapEnd, position + rangeSize);
+            missingRanges.add(new long[]{ position, end });
+            position = end;
+        }
+
+        return missingRanges;
+    }
+
+    public synchronized long getDownloadedBytes() {
+        long downloaded = 0;
+        for (Map.Entry<Long, Long> range : this.ranges.entrySet()) {
+            downloaded += range.getValue() - range.getKey();
+        }
+        return downloaded;
+    }
+
+    public synchronized boolean isComplete() {
+        Map.Entry<Long, Long> first = this.ranges.firstEntry();
+        return this.size == 0 || (first != null && first.getKey() == 0 && first.getValue() >= this.size);
+    }
+
+    /**
+     * @return The checksum of the whole file, or null if the download is not
+     *     complete or if the checksum is unknown (ranges downloaded in parallel
+     *     with an algorithm which can't be combined, ranges downloaded without checksum).
+     */
+    public synchronized byte[] getChecksum() {
+        if (!this.isComplete()) {
+            return null;
+        }
+        if (this.size == 0 && this.checksumAlgorithm != null) {
+            return this.checksumAlgorithm.newHasher().getValue();
+        }
+        return this.checksums.get(0L);
+    }
+
+    public synchronized void save() throws IOException {
+        if (this.journalFile == null) {
+            return;
+        }
+
+        StringBuilder rangesStr = new StringBuilder();
+        for (Map.Entry<Long, Long> range : this.ranges.entrySet()) {
+            if (rangesStr.length() > 0) {
+                rangesStr.append(',');
+            }
+            rangesStr.append(range.getKey()).append('-').append(range.getValue());
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty(PROPERTY_ETAG, this.eTag);
+        properties.setProperty(PROPERTY_SIZE, String.valueOf(this.size));
+        properties.setProperty(PROPERTY_RANGES, rangesStr.toString());
+        if (this.checksumAlgorithm != null) {
+            StringBuilder checksumsStr = new StringBuilder();
+            for (Map.Entry<Long, byte[]> checksum : this.checksums.entrySet()) {
+                if (checksumsStr.length() > 0) {
+                    checksumsStr.append(',');
+                }
+                checksumsStr.append(checksum.getKey()).append(':').append(Base64.getEncoder().encodeToString(checksum.getValue()));
+            }
+            properties.setProperty(PROPERTY_CHECKSUM_ALGORITHM, this.checksumAlgorithm.name());
+            properties.setProperty(PROPERTY_CHECKSUMS, checksumsStr.toString());
+        }
+
+        // Write a temporary file, then rename it, to never leave a truncated journal
+        File tmpFile = new File(this.journalFile.getParentFile(), this.journalFile.getName() + ".tmp");
+        try (OutputStream outputStream = new FileOutputStream(tmpFile)) {
+            properties.store(outputStream, null);
+        }
+        Files.move(tmpFile.toPath(), this.journalFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public void delete() {
+        if (this.journalFile != null && this.journalFile.exists() && !this.journalFile.delete()) {
+            LOGGER.warn(String.format("Could not delete the download journal %s", this.journalFile));
+        }
+    }
+
+    public File getJournalFile() {
+        return this.journalFile;
+    }
+
+    public String getETag() {
+        return this.eTag;
+    }
+
+    public long getSize() {
+        return this.size;
+    }
+
+    public ChecksumAlgorithm getChecksumAlgorithm() {
+        return this.checksumAlgorithm;
+    }
+}
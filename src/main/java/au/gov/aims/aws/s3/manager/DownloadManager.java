@@ -19,10 +19,19 @@
 package au.gov.aims.aws.s3.manager;
 
 import au.gov.aims.aws.s3.S3Utils;
+import au.gov.aims.aws.s3.cache.DownloadCache;
+import au.gov.aims.aws.s3.cache.ObjectByteCache;
+import au.gov.aims.aws.s3.checksum.ChecksumInputStream;
+import au.gov.aims.aws.s3.checksum.ChecksumMismatchException;
+import au.gov.aims.aws.s3.checksum.ObjectChecksum;
+import au.gov.aims.aws.s3.checksum.S3Checksums;
+import au.gov.aims.aws.s3.compression.CompressionCodec;
+import au.gov.aims.aws.s3.compression.CompressionCodecs;
 import au.gov.aims.aws.s3.entity.S3ClientWrapper;
 import au.gov.aims.aws.s3.entity.S3File;
 import au.gov.aims.aws.s3.entity.S3List;
-import org.apache.commons.io.FileUtils;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.services.s3.S3Uri;
@@ -30,9 +39,15 @@ import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Map;
 
 public class DownloadManager {
@@ -40,6 +55,16 @@ public class DownloadManager {
 
     // See: https://docs.aws.amazon.com/sdk-for-java/v1/developer-guide/examples-s3-objects.html#download-object
     public static S3List download(S3ClientWrapper client, S3Uri sourceUri, File destinationFile) throws IOException {
+        return DownloadManager.download(client, sourceUri, destinationFile, client.getTransferSettings());
+    }
+
+    /**
+     * Download a file, or the files matching a pattern.
+     * Large files are downloaded with ranged requests, and their download is resumed
+     * where it stopped when the download is retried. The range size is chosen by the {@link PartSizePolicy}.
+     * @param settings Settings for this download, overriding the client settings.
+     */
+    public static S3List download(S3ClientWrapper client, S3Uri sourceUri, File destinationFile, TransferSettings settings) throws IOException {
         S3List s3List = new S3List();
 
         String bucket = sourceUri.bucket().orElseThrow(() -> new IllegalArgumentException("Missing bucket"));
@@ -72,7 +97,7 @@ public class DownloadManager {
                 if (filteredFileSet != null && !filteredFileSet.isEmpty()) {
                     for (S3File filteredFile : filteredFileSet.values()) {
                         String filteredFilename = S3Utils.getFilename(filteredFile.getS3Uri());
-                        s3List.putAll(DownloadManager.download(client, filteredFile.getS3Uri(), new File(destinationFile, filteredFilename)));
+                        s3List.putAll(DownloadManager.download(client, filteredFile.getS3Uri(), new File(destinationFile, filteredFilename), settings));
                     }
                 }
             }
@@ -83,7 +108,7 @@ public class DownloadManager {
             // The destinationFile must denote a file (not a directory)
             File finalDestinationFile = destinationFile.isDirectory() ? new File(destinationFile, filename) : destinationFile;
 
-            s3List.putFile(DownloadManager.downloadFile(client, sourceUri, finalDestinationFile));
+            s3List.putFile(DownloadManager.downloadFile(client, sourceUri, finalDestinationFile, settings));
         }
 
         long endTime = System.currentTimeMillis();
@@ -94,7 +119,115 @@ public class DownloadManager {
         return s3List;
     }
 
-    private static S3File downloadFile(S3ClientWrapper client, S3Uri sourceUri, File destinationFile) throws IOException {
+    /**
+     * Read the content of an object into memory, without writing it to disk.
+     * The object is served from the client ObjectByteCache when possible.
+     * @param client The S3 client.
+     * @param sourceUri The object URI.
+     * @return The content of the object.
+     * @throws IOException If the object doesn't exist or could not be read.
+     */
+    public static byte[] readBytes(S3ClientWrapper client, S3Uri sourceUri) throws IOException {
+        ObjectContent objectContent = DownloadManager.readObject(client, sourceUri);
+        if (objectContent.cachedContent != null) {
+            // Do not let the caller modify the cached content
+            return objectContent.cachedContent.clone();
+        }
+
+        try (InputStream inputStream = objectContent.inputStream) {
+            return IOUtils.toByteArray(inputStream);
+        }
+    }
+
+    /**
+     * Same as readBytes, without copying the cached content.
+     * @return A read-only buffer containing the content of the object.
+     */
+    public static ByteBuffer readByteBuffer(S3ClientWrapper client, S3Uri sourceUri) throws IOException {
+        ObjectContent objectContent = DownloadManager.readObject(client, sourceUri);
+        if (objectContent.cachedContent != null) {
+            return ByteBuffer.wrap(objectContent.cachedContent).asReadOnlyBuffer();
+        }
+
+        try (InputStream inputStream = objectContent.inputStream) {
+            return ByteBuffer.wrap(IOUtils.toByteArray(inputStream)).asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Open an input stream on an object.
+     * Small objects are served from the client ObjectByteCache when possible.
+     * Larger objects are streamed from S3.
+     * @param client The S3 client.
+     * @param sourceUri The object URI.
+     * @return The content of the object. Must be closed by the caller.
+     * @throws IOException If the object doesn't exist or could not be read.
+     */
+    public static InputStream openInputStream(S3ClientWrapper client, S3Uri sourceUri) throws IOException {
+        ObjectContent objectContent = DownloadManager.readObject(client, sourceUri);
+        if (objectContent.cachedContent != null) {
+            return new ByteArrayInputStream(objectContent.cachedContent);
+        }
+        return objectContent.inputStream;
+    }
+
+    private static ObjectContent readObject(S3ClientWrapper client, S3Uri sourceUri) throws IOException {
+        ObjectByteCache objectByteCache = client.getObjectByteCache();
+
+        ObjectByteCache.Entry entry = objectByteCache == null ? null : objectByteCache.get(sourceUri);
+        if (entry != null && objectByteCache.isFresh(entry)) {
+            objectByteCache.hit();
+            return new ObjectContent(entry.getContent(), null);
+        }
+
+        // Conditional GET: S3 only sends the content if the cached version is outdated
+        ResponseInputStream<GetObjectResponse> inputStream =
+                S3File.getS3ObjectInputStreamIfModified(client, sourceUri, entry == null ? null : entry.getETag());
+        if (inputStream == null) {
+            if (entry == null) {
+                throw new IOException(String.format("Can not read the file %s, input stream is null.", sourceUri.toString()));
+            }
+            objectByteCache.validated(entry);
+            objectByteCache.hit();
+            return new ObjectContent(entry.getContent(), null);
+        }
+
+        if (objectByteCache == null) {
+            return new ObjectContent(null, inputStream);
+        }
+
+        objectByteCache.miss();
+        GetObjectResponse response = inputStream.response();
+        Long contentLength = response == null ? null : response.contentLength();
+        if (contentLength == null || !objectByteCache.isCacheable(contentLength)) {
+            // Too large to be cached, stream it from S3
+            objectByteCache.remove(sourceUri);
+            return new ObjectContent(null, inputStream);
+        }
+
+        byte[] content;
+        try {
+            content = IOUtils.toByteArray(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        objectByteCache.put(sourceUri, response.eTag(), content);
+
+        return new ObjectContent(content, null);
+    }
+
+    // Either the content of a small object (possibly shared with the cache), or a stream from S3.
+    private static class ObjectContent {
+        private final byte[] cachedContent;
+        private final InputStream inputStream;
+
+        public ObjectContent(byte[] cachedContent, InputStream inputStream) {
+            this.cachedContent = cachedContent;
+            this.inputStream = inputStream;
+        }
+    }
+
+    private static S3File downloadFile(S3ClientWrapper client, S3Uri sourceUri, File destinationFile, TransferSettings settings) throws IOException {
         // Download a single file
         if (destinationFile.exists()) {
             if (destinationFile.isDirectory()) {
@@ -113,28 +246,41 @@ public class DownloadManager {
         if (!S3File.fileExists(client, sourceUri)) {
             throw new FileNotFoundException(String.format("File not found: %s", sourceUri.toString()));
         } else {
-            HeadObjectResponse metadata = S3File.getS3ObjectMetadata(client, sourceUri);
+            // The checksums of the object are only returned when requested
+            HeadObjectResponse metadata = S3File.getS3ObjectMetadata(client, sourceUri, settings.getChecksumAlgorithm() != null);
             if (metadata != null) {
                 s3File = new S3File(sourceUri, metadata);
                 s3File.setLocalFile(destinationFile);
 
-                LOGGER.debug(String.format("Downloading %s to %s", sourceUri, destinationFile));
-
-                try (ResponseInputStream<GetObjectResponse> s3FileInputStream = S3File.getS3ObjectInputStream(client, sourceUri)) {
-                    if (s3FileInputStream != null) {
-                        FileUtils.copyToFile(s3FileInputStream, destinationFile);
+                DownloadCache downloadCache = client.getDownloadCache();
+                String eTag = metadata.eTag();
+                boolean downloaded;
+                // The cache holds the content of the objects, not the decompressed content
+                if (downloadCache != null && eTag != null && DownloadManager.getDecompressionCodec(metadata, settings) == null) {
+                    LOGGER.debug(String.format("Downloading %s to %s using the cache %s", sourceUri, destinationFile, downloadCache.getDirectory()));
+                    downloadCache.get(sourceUri, eTag, metadata.contentLength(), destinationFile, new DownloadCache.Loader() {
+                        @Override
+                        public void load(File file) throws IOException {
+                            DownloadManager.downloadObject(client, sourceUri, metadata, file, settings);
+                        }
+                    });
+                    downloaded = true;
+                } else {
+                    LOGGER.debug(String.format("Downloading %s to %s", sourceUri, destinationFile));
+                    downloaded = DownloadManager.downloadObject(client, sourceUri, metadata, destinationFile, settings);
+                }
 
-                        Long lastModified = s3File.getLastModified(client);
-                        if (lastModified != null) {
-                            boolean lastModifiedSet = destinationFile.setLastModified(lastModified);
-                            if (!lastModifiedSet) {
-                                LOGGER.warn(String.format("Could not change the last modified date of file %s, last modified timestamp: %d.",
-                                        destinationFile.getAbsolutePath(), lastModified));
-                            }
+                if (downloaded) {
+                    Long lastModified = s3File.getLastModified(client);
+                    if (lastModified != null) {
+                        boolean lastModifiedSet = destinationFile.setLastModified(lastModified);
+                        if (!lastModifiedSet) {
+                            LOGGER.warn(String.format("Could not change the last modified date of file %s, last modified timestamp: %d.",
+                                    destinationFile.getAbsolutePath(), lastModified));
                         }
-                    } else {
-                        LOGGER.error(String.format("Can not download the file %s, input stream is null.", sourceUri.toString()));
                     }
+                } else {
+                    LOGGER.error(String.format("Can not download the file %s, input stream is null.", sourceUri.toString()));
                 }
             } else {
                 LOGGER.error(String.format("Can not download the file %s, file object is null.", sourceUri.toString()));
@@ -144,6 +290,89 @@ public class DownloadManager {
         return s3File;
     }
 
+    private static boolean downloadObject(S3ClientWrapper client, S3Uri sourceUri, HeadObjectResponse metadata,
+            File destinationFile, TransferSettings settings) throws IOException {
+        Long size = metadata.contentLength();
+        if (size == null) {
+            return false;
+        }
+
+        long rangeSize = PartSizePolicy.getDownloadRangeSize(settings, client.getTransferMetrics(), size);
+        try {
+            // Verified with the checksum S3 has for the object, which may not use the algorithm of the settings
+            ObjectChecksum expectedChecksum = settings.getChecksumAlgorithm() == null ? null :
+                    S3Checksums.getFullObjectChecksum(metadata);
+            if (settings.getChecksumAlgorithm() != null && expectedChecksum == null) {
+                LOGGER.debug(String.format("The object %s has no checksum of its whole content. The download will not be verified.", sourceUri));
+            }
+            CompressionCodec codec = DownloadManager.getDecompressionCodec(metadata, settings);
+            if (codec != null) {
+                DownloadManager.downloadDecompressed(client, sourceUri, metadata, destinationFile, codec, expectedChecksum);
+            } else {
+                ResumableDownloader.download(client, sourceUri, metadata.eTag(), size, destinationFile,
+                        rangeSize, PartSizePolicy.getConcurrency(settings, size, rangeSize), expectedChecksum, settings);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format("The download of %s was interrupted.", sourceUri));
+        }
+        return true;
+    }
+
+    /**
+     * @return The codec to decompress the object with, or null if it's downloaded as is.
+     */
+    private static CompressionCodec getDecompressionCodec(HeadObjectResponse metadata, TransferSettings settings) {
+        if (!settings.isDecompress() || metadata.contentEncoding() == null) {
+            return null;
+        }
+        CompressionCodec codec = CompressionCodecs.getCodec(metadata.contentEncoding());
+        if (codec == null) {
+            LOGGER.warn(String.format("No compression codec for the Content-Encoding %s. The object is downloaded as is.",
+                    metadata.contentEncoding()));
+        }
+        return codec;
+    }
+
+    /**
+     * Decompress an object while it's downloaded. The compressed content has to be read in order,
+     * so it's downloaded with a single request, and the download can't be resumed.
+     * The checksum of the object, if any, is the checksum of the compressed content.
+     */
+    private static void downloadDecompressed(S3ClientWrapper client, S3Uri sourceUri, HeadObjectResponse metadata,
+            File destinationFile, CompressionCodec codec, ObjectChecksum expectedChecksum) throws IOException {
+
+        long size = metadata.contentLength();
+        File temporaryFile = ResumableDownloader.getTemporaryFile(destinationFile);
+        LOGGER.debug(String.format("Downloading %s to %s, decompressed with %s", sourceUri, destinationFile, codec.getName()));
+
+        long uncompressedSize;
+        try (InputStream inputStream = size > 0 ?
+                S3File.getS3ObjectRangeInputStream(client, sourceUri, 0, size - 1, metadata.eTag()) :
+                S3File.getS3ObjectInputStream(client, sourceUri)) {
+
+            ChecksumInputStream checksumInputStream = expectedChecksum == null ? null :
+                    new ChecksumInputStream(inputStream, expectedChecksum.getAlgorithm().newHasher());
+            InputStream decompressedInputStream = codec.decompress(checksumInputStream == null ? inputStream : checksumInputStream);
+            uncompressedSize = Files.copy(decompressedInputStream, temporaryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+            if (checksumInputStream != null) {
+                // The codec may stop before the end of the compressed content
+                checksumInputStream.skip(Long.MAX_VALUE);
+                if (!expectedChecksum.matches(checksumInputStream.getChecksum())) {
+                    throw new ChecksumMismatchException(String.format("The downloaded content doesn't match the checksum %s of %s",
+                            expectedChecksum, sourceUri));
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temporaryFile.toPath());
+            throw ex;
+        }
+
+        ResumableDownloader.move(temporaryFile, destinationFile);
+        client.getTransferMetrics().fileCompressed(uncompressedSize, size);
+    }
+
     private static void createWritableDirectory(File directory) throws IOException {
         if (directory.exists()) {
             if (!directory.isDirectory()) {
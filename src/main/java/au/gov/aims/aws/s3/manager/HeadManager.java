@@ -0,0 +1,409 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.manager;
+
+import au.gov.aims.aws.s3.SortedFileIterator;
+import au.gov.aims.aws.s3.cache.ExistenceIndex;
+import au.gov.aims.aws.s3.cache.MetadataCache;
+import au.gov.aims.aws.s3.entity.HeadResult;
+import au.gov.aims.aws.s3.entity.ListingStatistics;
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.entity.S3File;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import org.apache.log4j.Logger;
+import software.amazon.awssdk.services.s3.S3Uri;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Get the metadata, or check the existence, of many objects at once.
+ *
+ * <p>The HEAD requests are sent with the asynchronous client, with up to
+ * {@link TransferSettings#getRequestConcurrency()} requests in flight.
+ * Requests which fail with a transient error are sent again after a delay.
+ * The responses are added to the client metadata cache, when it has one.</p>
+ *
+ * <p>When checking the existence of many objects sharing a prefix, a single
+ * listing of the prefix can be much faster than a HEAD per object. The strategy is
+ * chosen for each prefix, from the latencies and the prefix sizes observed by the client
+ * ({@link S3ClientWrapper#getListingStatistics()}).</p>
+ */
+public class HeadManager {
+    private static final Logger LOGGER = Logger.getLogger(HeadManager.class);
+    private static final int LIST_PAGE_SIZE = 1000;
+
+    // Ratio between the size of a prefix never listed and the number of objects requested in it
+    static final int UNKNOWN_PREFIX_SIZE_FACTOR = 4;
+
+    /**
+     * How the existence of the objects of a prefix is checked.
+     */
+    public enum Strategy {
+        HEAD, LIST
+    }
+
+    public static Map<S3Uri, HeadResult> headObjects(S3ClientWrapper client, Collection<S3Uri> s3Uris) throws InterruptedException {
+        return HeadManager.headObjects(client, s3Uris, client.getTransferSettings());
+    }
+
+    /**
+     * @return The result of each object, in the order of the collection.
+     */
+    public static Map<S3Uri, HeadResult> headObjects(S3ClientWrapper client, Collection<S3Uri> s3Uris, TransferSettings settings)
+            throws InterruptedException {
+
+        final Map<S3Uri, HeadResult> results = new LinkedHashMap<S3Uri, HeadResult>();
+        // Reserve the order of the map, and skip duplicates
+        for (S3Uri s3Uri : s3Uris) {
+            results.put(s3Uri, null);
+        }
+
+        HeadManager.headObjects(client, new ArrayList<S3Uri>(results.keySet()).iterator(), settings, new HeadResult.Handler() {
+            @Override
+            public void handle(HeadResult result) {
+                results.put(result.getS3Uri(), result);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Send a HEAD request for every object of the iterator.
+     * The iterator is consumed as requests complete, so it can be a lazy stream.
+     * @param handler Receives the results in the order they arrive, from the SDK threads.
+     *     The handler is not called concurrently.
+     */
+    public static void headObjects(S3ClientWrapper client, Iterator<S3Uri> s3Uris, TransferSettings settings,
+            final HeadResult.Handler handler) throws InterruptedException {
+
+        final int maxInFlight = settings.getRequestConcurrency();
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            HeadResult.Handler releasingHandler = new HeadResult.Handler() {
+                @Override
+                public void handle(HeadResult result) {
+                    try {
+                        synchronized (handler) {
+                            handler.handle(result);
+                        }
+                    } catch (RuntimeException ex) {
+                        LOGGER.error(String.format("Error occurred while handling the metadata of %s", result.getS3Uri()), ex);
+                    } finally {
+                        inFlight.release();
+                    }
+                }
+            };
+
+            while (s3Uris.hasNext()) {
+                S3Uri s3Uri = s3Uris.next();
+                inFlight.acquire();
+                HeadManager.send(client, s3Uri, 1, settings, retryScheduler, releasingHandler);
+            }
+
+            // Wait for the requests in flight
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+        } finally {
+            retryScheduler.shutdownNow();
+        }
+    }
+
+    public static Map<S3Uri, Boolean> exist(S3ClientWrapper client, Collection<S3Uri> s3Uris) throws IOException, InterruptedException {
+        return HeadManager.exist(client, s3Uris, client.getTransferSettings());
+    }
+
+    /**
+     * Check the existence of objects. Objects found in the client existence index
+     * or in its metadata cache are not requested.
+     * Like {@link S3File#fileExists(S3ClientWrapper, S3Uri)}, a prefix is not an object.
+     *
+     * <p>The objects are grouped by parent prefix. The existence of the objects of a group
+     * is checked with parallel HEAD requests, or with a listing of the prefix when it's
+     * expected to be faster, see {@link #chooseStrategy(int, Long, ListingStatistics, TransferSettings)}.</p>
+     *
+     * @return The existence of each object, in the order of the collection.
+     * @throws IOException If the existence of some objects could not be determined.
+     */
+    public static Map<S3Uri, Boolean> exist(final S3ClientWrapper client, Collection<S3Uri> s3Uris, TransferSettings settings)
+            throws IOException, InterruptedException {
+
+        final Map<S3Uri, Boolean> existence = new LinkedHashMap<S3Uri, Boolean>();
+        // Objects to request, grouped by bucket and parent prefix
+        Map<String, List<S3Uri>> groups = new LinkedHashMap<String, List<S3Uri>>();
+        MetadataCache metadataCache = client.getMetadataCache();
+        ExistenceIndex existenceIndex = client.getExistenceIndex();
+        for (S3Uri s3Uri : s3Uris) {
+            if (existence.containsKey(s3Uri)) {
+                continue;
+            }
+            Boolean indexed = existenceIndex == null ? null : existenceIndex.exists(s3Uri);
+            if (indexed != null) {
+                existence.put(s3Uri, indexed);
+                continue;
+            }
+            MetadataCache.Entry entry = metadataCache == null ? null : metadataCache.get(s3Uri);
+            if (entry != null) {
+                existence.put(s3Uri, entry.getType() == MetadataCache.Type.FILE);
+                continue;
+            }
+
+            existence.put(s3Uri, null);
+            String groupKey = s3Uri.bucket().orElse("") + "/" + HeadManager.getParentPrefix(s3Uri.key().orElse(""));
+            List<S3Uri> group = groups.get(groupKey);
+            if (group == null) {
+                group = new ArrayList<S3Uri>();
+                groups.put(groupKey, group);
+            }
+            group.add(s3Uri);
+        }
+
+        ListingStatistics statistics = client.getListingStatistics();
+        List<S3Uri> headUris = new ArrayList<S3Uri>();
+        List<Callable<Map<S3Uri, Boolean>>> listings = new ArrayList<Callable<Map<S3Uri, Boolean>>>();
+        for (final List<S3Uri> group : groups.values()) {
+            final String bucket = group.get(0).bucket().orElse(null);
+            final String prefix = HeadManager.getParentPrefix(group.get(0).key().orElse(""));
+            Long prefixSize = statistics.getPrefixSize(bucket, prefix);
+            Strategy strategy = HeadManager.chooseStrategy(group.size(), prefixSize, statistics, settings);
+            LOGGER.debug(String.format("Checking the existence of %d objects of s3://%s/%s (%s objects) with %s",
+                    group.size(), bucket, prefix, prefixSize, strategy));
+
+            if (strategy == Strategy.LIST) {
+                listings.add(new Callable<Map<S3Uri, Boolean>>() {
+                    @Override
+                    public Map<S3Uri, Boolean> call() {
+                        return HeadManager.listExistence(client, bucket, prefix, group);
+                    }
+                });
+            } else {
+                headUris.addAll(group);
+            }
+        }
+
+        // The listings run while the HEAD requests are sent
+        ExecutorService executor = listings.isEmpty() ? null :
+                Executors.newFixedThreadPool(Math.min(listings.size(), settings.getConcurrency()));
+        try {
+            List<Future<Map<S3Uri, Boolean>>> futures = new ArrayList<Future<Map<S3Uri, Boolean>>>();
+            for (Callable<Map<S3Uri, Boolean>> listing : listings) {
+                futures.add(executor.submit(listing));
+            }
+
+            List<HeadResult> failures = new ArrayList<HeadResult>();
+            for (HeadResult result : HeadManager.headObjects(client, headUris, settings).values()) {
+                if (result.isFailed()) {
+                    failures.add(result);
+                } else {
+                    existence.put(result.getS3Uri(), result.exists());
+                }
+            }
+
+            for (Future<Map<S3Uri, Boolean>> future : futures) {
+                try {
+                    existence.putAll(future.get());
+                } catch (ExecutionException ex) {
+                    throw new IOException("Error occurred while listing objects to check their existence", ex.getCause());
+                }
+            }
+
+            if (!failures.isEmpty()) {
+                HeadResult failure = failures.get(0);
+                throw new IOException(String.format("The existence of %d objects could not be determined. First error: %s",
+                        failures.size(), failure), failure.getError());
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        return existence;
+    }
+
+    /**
+     * Estimate the time needed by each strategy, and choose the fastest.
+     * <ul>
+     *   <li>HEAD: the requests are sent in parallel, each one takes the average HEAD latency.</li>
+     *   <li>LIST: the pages (1000 objects each) are requested one after the other, each one
+     *     takes the average page latency. The listing goes through the whole prefix, in the worst case.</li>
+     * </ul>
+     * When the size of the prefix has never been observed, it's assumed to hold
+     * {@link #UNKNOWN_PREFIX_SIZE_FACTOR} times more objects than the number requested.
+     *
+     * @param keyCount Number of objects requested in the prefix.
+     * @param prefixSize Number of objects in the prefix (or an upper bound), null if unknown.
+     */
+    static Strategy chooseStrategy(int keyCount, Long prefixSize, ListingStatistics statistics, TransferSettings settings) {
+        long estimatedSize = prefixSize == null ? (long)keyCount * UNKNOWN_PREFIX_SIZE_FACTOR : Math.max(prefixSize, keyCount);
+
+        int rounds = (keyCount + settings.getRequestConcurrency() - 1) / settings.getRequestConcurrency();
+        double headTime = rounds * statistics.getHeadLatency();
+        long pages = Math.max(1, (estimatedSize + LIST_PAGE_SIZE - 1) / LIST_PAGE_SIZE);
+        double listTime = pages * statistics.getPageLatency();
+
+        return listTime < headTime ? Strategy.LIST : Strategy.HEAD;
+    }
+
+    // Check the existence of objects of a prefix by listing the range of keys between the first and the last object
+    private static Map<S3Uri, Boolean> listExistence(S3ClientWrapper client, String bucket, String prefix, List<S3Uri> s3Uris) {
+        TreeMap<String, S3Uri> remaining = new TreeMap<String, S3Uri>(SortedFileIterator.KEY_ORDER);
+        for (S3Uri s3Uri : s3Uris) {
+            remaining.put(s3Uri.key().orElse(""), s3Uri);
+        }
+        String lastKey = remaining.lastKey();
+        // Any key before the first key, its parent prefix will do
+        String firstKey = remaining.firstKey();
+        String startAfter = firstKey.length() > prefix.length() ? firstKey.substring(0, firstKey.length() - 1) : null;
+
+        MetadataCache metadataCache = client.getMetadataCache();
+        Map<S3Uri, Boolean> existence = new LinkedHashMap<S3Uri, Boolean>();
+        Iterator<S3Object> objects = ListManager.listObjects(client, bucket, prefix, startAfter);
+        while (!remaining.isEmpty() && objects.hasNext()) {
+            S3Object s3Object = objects.next();
+            if (SortedFileIterator.KEY_ORDER.compare(s3Object.key(), lastKey) > 0) {
+                break;
+            }
+            S3Uri s3Uri = remaining.remove(s3Object.key());
+            if (s3Uri != null) {
+                existence.put(s3Uri, true);
+                if (metadataCache != null) {
+                    metadataCache.putFile(s3Uri, s3Object.size(),
+                            s3Object.lastModified() == null ? null : s3Object.lastModified().toEpochMilli(),
+                            s3Object.eTag());
+                }
+            }
+        }
+
+        for (S3Uri s3Uri : remaining.values()) {
+            existence.put(s3Uri, false);
+            if (metadataCache != null) {
+                metadataCache.putMissing(s3Uri);
+            }
+        }
+        return existence;
+    }
+
+    // "a/b/c.txt" => "a/b/", "c.txt" => ""
+    private static String getParentPrefix(String key) {
+        int slashIndex = key.lastIndexOf('/');
+        return slashIndex < 0 ? "" : key.substring(0, slashIndex + 1);
+    }
+
+    private static void send(final S3ClientWrapper client, final S3Uri s3Uri, final int attempt, final TransferSettings settings,
+            final ScheduledExecutorService retryScheduler, final HeadResult.Handler handler) {
+
+        HeadObjectRequest request = HeadObjectRequest.builder()
+                .bucket(s3Uri.bucket().orElse(null))
+                .key(s3Uri.key().orElse(null))
+                .build();
+
+        final long startTime = System.currentTimeMillis();
+        CompletableFuture<HeadObjectResponse> future;
+        try {
+            future = client.getS3AsyncClient().headObject(request);
+        } catch (RuntimeException ex) {
+            future = new CompletableFuture<HeadObjectResponse>();
+            future.completeExceptionally(ex);
+        }
+
+        future.whenComplete(new BiConsumer<HeadObjectResponse, Throwable>() {
+            @Override
+            public void accept(HeadObjectResponse response, Throwable error) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause == null || HeadManager.isMissing(cause)) {
+                    client.getListingStatistics().headCompleted(System.currentTimeMillis() - startTime);
+                }
+                if (cause == null) {
+                    HeadManager.cacheMetadata(client, s3Uri, response);
+                    handler.handle(new HeadResult(s3Uri, response, null));
+                    return;
+                }
+                if (HeadManager.isMissing(cause)) {
+                    HeadManager.cacheMetadata(client, s3Uri, null);
+                    handler.handle(new HeadResult(s3Uri, null, null));
+                    return;
+                }
+
+                if (attempt < settings.getPartAttempts() && cause instanceof RuntimeException &&
+                        MultipartUploader.isRetryable((RuntimeException) cause)) {
+                    long delay = MultipartUploader.getRetryDelay(settings, attempt, ThreadLocalRandom.current());
+                    LOGGER.debug(String.format("Error occurred while accessing %s (attempt %d of %d). Retrying in %d ms.",
+                            s3Uri, attempt, settings.getPartAttempts(), delay));
+                    try {
+                        retryScheduler.schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                HeadManager.send(client, s3Uri, attempt + 1, settings, retryScheduler, handler);
+                            }
+                        }, delay, TimeUnit.MILLISECONDS);
+                        return;
+                    } catch (RejectedExecutionException ex) {
+                        // The batch was interrupted
+                    }
+                }
+
+                LOGGER.warn(String.format("Error occurred while accessing %s", s3Uri), cause);
+                handler.handle(new HeadResult(s3Uri, null, cause));
+            }
+        });
+    }
+
+    private static boolean isMissing(Throwable error) {
+        return error instanceof NoSuchKeyException ||
+                (error instanceof S3Exception && ((S3Exception) error).statusCode() == 404);
+    }
+
+    private static void cacheMetadata(S3ClientWrapper client, S3Uri s3Uri, HeadObjectResponse metadata) {
+        MetadataCache metadataCache = client.getMetadataCache();
+        if (metadataCache == null) {
+            return;
+        }
+        if (metadata == null) {
+            metadataCache.putMissing(s3Uri);
+        } else {
+            S3File s3File = new S3File(s3Uri, metadata);
+            metadataCache.putFile(s3Uri, s3File.getFileSize(client), s3File.getLastModified(client), s3File.getETag(client));
+        }
+    }
+}
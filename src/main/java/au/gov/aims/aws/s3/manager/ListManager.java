@@ -19,6 +19,7 @@
 package au.gov.aims.aws.s3.manager;
 
 import au.gov.aims.aws.s3.S3Utils;
+import au.gov.aims.aws.s3.cache.ListingIndex;
 import au.gov.aims.aws.s3.entity.S3ClientWrapper;
 import au.gov.aims.aws.s3.entity.S3File;
 import au.gov.aims.aws.s3.entity.S3List;
@@ -32,6 +33,8 @@ import software.amazon.awssdk.services.s3.model.S3Object;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FilenameFilter;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.regex.Pattern;
 
 public class ListManager {
@@ -61,12 +64,13 @@ public class ListManager {
 
     private static S3List ls(S3ClientWrapper client, S3Uri s3Uri, FilenameFilter filenameFilter, FileFilter fileFilter, boolean recursive) {
         for (int i=0; i<S3_ATTEMPT; i++) {
+            long generation = client.getGeneration();
             try {
                 return rawLs(client, s3Uri, filenameFilter, fileFilter, recursive);
             } catch(Throwable ex) {
                 LOGGER.warn(String.format("Error occurred while trying to list files on S3: %s. Attempting to reconnect.",
                         s3Uri), ex);
-                client.reconnect();
+                client.reconnect(generation);
             }
         }
         // Try a last time, to throw the exception
@@ -92,6 +96,12 @@ public class ListManager {
         String bucket = s3Uri.bucket().orElse(null);
         String key = s3Uri.key().orElse(null);
 
+        // The whole listing, as a single page, when the prefix is indexed
+        ListingIndex listingIndex = client.getListingIndex();
+        ListObjectsV2Response indexedPage = listingIndex == null ? null :
+                listingIndex.list(client, bucket, key, recursive ? null : "/");
+
+        long objectCount = 0;
         String continuationToken = null;
         do {
 
@@ -108,7 +118,8 @@ public class ListManager {
 
             ListObjectsV2Request pageRequest = pageBuilder.build();
 
-            ListObjectsV2Response page = ListManager.rawLsPage(client, pageRequest);
+            ListObjectsV2Response page = indexedPage != null ? indexedPage : ListManager.lsPage(client, pageRequest);
+            objectCount += page.contents().size();
 
             for (S3Object s3Object : page.contents()) {
                 S3Uri fileS3Uri = S3Utils.getS3URI(bucket, s3Object.key());
@@ -173,6 +184,10 @@ public class ListManager {
             continuationToken = page.nextContinuationToken();
         } while (continuationToken != null);
 
+        if (recursive && indexedPage == null) {
+            client.getListingStatistics().prefixListed(bucket, key, objectCount);
+        }
+
         long endTime = System.currentTimeMillis();
 
         s3List.setExecutionTime(endTime - startTime);
@@ -180,16 +195,97 @@ public class ListManager {
         return s3List;
     }
 
-    private static ListObjectsV2Response rawLsPage(S3ClientWrapper client, ListObjectsV2Request pageRequest) {
+    /**
+     * Request a single page of a listing, with retries.
+     */
+    public static ListObjectsV2Response lsPage(S3ClientWrapper client, ListObjectsV2Request pageRequest) {
         for (int i=0; i<S3_ATTEMPT; i++) {
+            long generation = client.getGeneration();
             try {
-                return client.getS3Client().listObjectsV2(pageRequest);
+                return ListManager.internalLsPage(client, pageRequest);
             } catch(Throwable ex) {
                 LOGGER.warn("Error occurred while listing a page of S3 files. Attempting to reconnect.", ex);
-                client.reconnect();
+                client.reconnect(generation);
             }
         }
         // Try a last time, to throw the exception
-        return client.getS3Client().listObjectsV2(pageRequest);
+        return ListManager.internalLsPage(client, pageRequest);
+    }
+
+    private static ListObjectsV2Response internalLsPage(S3ClientWrapper client, ListObjectsV2Request pageRequest) {
+        long startTime = System.currentTimeMillis();
+        ListObjectsV2Response page = client.getS3Client().listObjectsV2(pageRequest);
+        client.getListingStatistics().pageListed(System.currentTimeMillis() - startTime);
+        return page;
+    }
+
+    /**
+     * Iterate over all the objects under a prefix (recursively), in key order.
+     * The pages of the listing are requested while iterating,
+     * so the listing is never held in memory.
+     * @param prefix The prefix, or null to list the whole bucket.
+     */
+    public static Iterator<S3Object> listObjects(S3ClientWrapper client, String bucket, String prefix) {
+        return new ObjectIterator(client, bucket, prefix, null);
+    }
+
+    /**
+     * Iterate over the objects under a prefix which come after a key, in key order.
+     * @param startAfter The listing starts after this key, which doesn't need to exist.
+     */
+    public static Iterator<S3Object> listObjects(S3ClientWrapper client, String bucket, String prefix, String startAfter) {
+        return new ObjectIterator(client, bucket, prefix, startAfter);
+    }
+
+    private static class ObjectIterator implements Iterator<S3Object> {
+        private final S3ClientWrapper client;
+        private final String bucket;
+        private final String prefix;
+        private final String startAfter;
+
+        private Iterator<S3Object> page = null;
+        private String continuationToken = null;
+        private boolean lastPage = false;
+        private long objectCount = 0;
+
+        public ObjectIterator(S3ClientWrapper client, String bucket, String prefix, String startAfter) {
+            this.client = client;
+            this.bucket = bucket;
+            this.prefix = prefix;
+            this.startAfter = startAfter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            // Loop, in case S3 returns an empty page
+            while ((this.page == null || !this.page.hasNext()) && !this.lastPage) {
+                ListObjectsV2Request.Builder pageBuilder = ListObjectsV2Request.builder()
+                        .bucket(this.bucket)
+                        .prefix(this.prefix);
+                if (this.continuationToken != null) {
+                    pageBuilder.continuationToken(this.continuationToken);
+                } else if (this.startAfter != null) {
+                    pageBuilder.startAfter(this.startAfter);
+                }
+
+                ListObjectsV2Response response = ListManager.lsPage(this.client, pageBuilder.build());
+                this.page = response.contents().iterator();
+                this.objectCount += response.contents().size();
+                this.continuationToken = response.nextContinuationToken();
+                this.lastPage = this.continuationToken == null;
+                if (this.lastPage && this.startAfter == null) {
+                    this.client.getListingStatistics().prefixListed(this.bucket, this.prefix, this.objectCount);
+                }
+            }
+            return this.page != null && this.page.hasNext();
+        }
+
+        @Override
+        public S3Object next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return this.page.next();
+        }
     }
 }
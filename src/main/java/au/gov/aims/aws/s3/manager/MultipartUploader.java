@@ -0,0 +1,628 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.manager;
+
+import au.gov.aims.aws.s3.ETagCalculator;
+import au.gov.aims.aws.s3.checksum.ChecksumAlgorithm;
+import au.gov.aims.aws.s3.checksum.ChecksumCalculator;
+import au.gov.aims.aws.s3.checksum.ChecksumInputStream;
+import au.gov.aims.aws.s3.checksum.ChecksumMismatchException;
+import au.gov.aims.aws.s3.checksum.S3Checksums;
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.entity.S3File;
+import au.gov.aims.aws.s3.entity.TransferMetrics;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import au.gov.aims.aws.s3.io.FileRegionInputStream;
+import org.apache.log4j.Logger;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.ContentStreamProvider;
+import software.amazon.awssdk.services.s3.S3Uri;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.ChecksumType;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.ListMultipartUploadsRequest;
+import software.amazon.awssdk.services.s3.model.ListMultipartUploadsResponse;
+import software.amazon.awssdk.services.s3.model.ListPartsRequest;
+import software.amazon.awssdk.services.s3.model.ListPartsResponse;
+import software.amazon.awssdk.services.s3.model.MultipartUpload;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
+import software.amazon.awssdk.services.s3.model.Part;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Resumable multipart upload of a file.
+ *
+ * <p>The upload ID and the ETag of the uploaded parts are recorded in an
+ * {@link UploadJournal}. When the upload of a file is restarted (after a
+ * failure, or after the process was restarted), the parts already uploaded
+ * are listed on S3 and only the missing parts are sent.</p>
+ *
+ * <p>A part which fails with a transient error (network error, throttling,
+ * server error) is sent again on its own, after an exponential backoff delay,
+ * up to the number of attempts of the {@link TransferSettings}. The retries
+ * are counted in the {@link TransferMetrics} of the client.</p>
+ *
+ * <p>Multipart uploads which are never completed keep their parts on S3.
+ * When a stale upload age is set, the uploads of the journal directory older
+ * than that age are aborted before starting a new upload in the same bucket
+ * (at most once an hour per bucket). All the uploads of a bucket, including
+ * the ones started by other applications, are only aborted explicitly with
+ * {@link #abortStaleUploads(S3ClientWrapper, String, long, File)}.</p>
+ *
+ * <p>When the settings define a checksum algorithm, each part is hashed while
+ * the SDK reads it, and the checksum is compared with the one computed by S3.
+ * With a CRC, the checksums of the parts are combined into the checksum of the whole
+ * object (FULL_OBJECT), which S3 verifies when the upload is completed.</p>
+ */
+public class MultipartUploader {
+    private static final Logger LOGGER = Logger.getLogger(MultipartUploader.class);
+    private static final int MB = 1024 * 1024;
+    private static final long STALE_CHECK_INTERVAL = 60 * 60 * 1000L;
+
+    // S3 limit
+    public static final int MAX_PARTS = 10000;
+
+    // Key: bucket, value: last time stale uploads were aborted
+    private static final Map<String, Long> LAST_STALE_CHECK = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * Upload a file using a multipart upload, resuming a previous upload of the same file if possible.
+     * @return The ETag of the uploaded object.
+     */
+    public static String upload(S3ClientWrapper client, File sourceFile, S3Uri destinationUri,
+            Map<String, String> metadata, boolean publicRead, long partSize, TransferSettings settings)
+            throws IOException, InterruptedException {
+
+        String bucket = destinationUri.bucket().orElse(null);
+        String key = destinationUri.key().orElse(null);
+        long fileSize = sourceFile.length();
+
+        File journalFile = UploadJournal.getJournalFile(settings.getJournalDirectory(), bucket, key, sourceFile);
+        ChecksumAlgorithm checksumAlgorithm = settings.getChecksumAlgorithm();
+        UploadJournal journal = MultipartUploader.resume(client, journalFile, sourceFile, checksumAlgorithm);
+        if (journal != null) {
+            // The parts already uploaded dictate the part size, which may differ from the requested one
+            partSize = journal.getPartSize();
+        }
+
+        long partCount = (fileSize + partSize - 1) / partSize;
+        if (partCount > MAX_PARTS) {
+            throw new IllegalArgumentException(String.format("The part size %d MB is too small to upload %s, it would require %d parts.",
+                    partSize / MB, sourceFile, partCount));
+        }
+
+        if (journal == null) {
+            MultipartUploader.abortStaleUploadsIfNeeded(client, bucket, settings);
+
+            CreateMultipartUploadRequest.Builder createRequestBuilder = CreateMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .metadata(S3File.withUploadPartSize(metadata, partSize));
+            if (publicRead) {
+                createRequestBuilder.acl(ObjectCannedACL.PUBLIC_READ);
+            }
+            MultipartUploader.setChecksumAlgorithm(createRequestBuilder, checksumAlgorithm);
+            String uploadId = client.getS3Client().createMultipartUpload(createRequestBuilder.build()).uploadId();
+
+            journal = new UploadJournal(journalFile, bucket, key, uploadId, sourceFile, partSize, checksumAlgorithm);
+            journal.save();
+            LOGGER.debug(String.format("Multipart upload %s started for %s (%d parts)", uploadId, destinationUri, partCount));
+        }
+
+        String eTag;
+        try {
+            MultipartUploader.uploadMissingParts(client, journal, sourceFile, (int)partCount, settings);
+
+            SortedMap<Integer, String> partChecksums = journal.getPartChecksums();
+            List<CompletedPart> completedParts = new ArrayList<CompletedPart>();
+            for (Map.Entry<Integer, String> part : journal.getParts().entrySet()) {
+                CompletedPart.Builder partBuilder = CompletedPart.builder()
+                        .partNumber(part.getKey())
+                        .eTag(part.getValue());
+                if (checksumAlgorithm != null) {
+                    S3Checksums.setChecksum(partBuilder, checksumAlgorithm, partChecksums.get(part.getKey()));
+                }
+                completedParts.add(partBuilder.build());
+            }
+
+            eTag = MultipartUploader.complete(client, bucket, key, journal.getUploadId(), completedParts,
+                    partSize, fileSize, checksumAlgorithm);
+
+            journal.delete();
+        } catch (IOException | RuntimeException ex) {
+            if (journal.getJournalFile() == null) {
+                // The upload can't be resumed, don't leave its parts on S3
+                MultipartUploader.abort(client, bucket, key, journal.getUploadId());
+            }
+            throw ex;
+        }
+
+        if (settings.isVerifyETag()) {
+            String expectedETag = ETagCalculator.getMultipartETag(sourceFile, partSize, settings.getConcurrency());
+            if (eTag == null || !expectedETag.equalsIgnoreCase(eTag.replace("\"", ""))) {
+                throw new IOException(String.format("The uploaded object %s doesn't match the file %s: expected ETag %s, got %s",
+                        destinationUri, sourceFile, expectedETag, eTag));
+            }
+        }
+        return eTag;
+    }
+
+    /**
+     * Load the journal of a previous upload of the file, and check which parts
+     * are already on S3.
+     * @return The journal, or null if the upload can't be resumed.
+     */
+    private static UploadJournal resume(S3ClientWrapper client, File journalFile, File sourceFile,
+            ChecksumAlgorithm checksumAlgorithm) throws IOException {
+        UploadJournal journal = UploadJournal.load(journalFile);
+        if (journal == null) {
+            return null;
+        }
+
+        // The checksum algorithm of a multipart upload is chosen when the upload is created
+        if (journal.getChecksumAlgorithm() != checksumAlgorithm) {
+            LOGGER.info(String.format("The checksum algorithm of the upload of %s changed since its last upload attempt. Restarting the upload.", sourceFile));
+            MultipartUploader.abort(client, journal.getBucket(), journal.getKey(), journal.getUploadId());
+            journal.delete();
+            return null;
+        }
+
+        if (!journal.matches(sourceFile, journal.getPartSize())) {
+            LOGGER.info(String.format("The file %s changed since its last upload attempt. Restarting the upload.", sourceFile));
+            MultipartUploader.abort(client, journal.getBucket(), journal.getKey(), journal.getUploadId());
+            journal.delete();
+            return null;
+        }
+
+        SortedMap<Integer, String> uploadedParts;
+        SortedMap<Integer, String> partChecksums = new TreeMap<Integer, String>();
+        try {
+            uploadedParts = MultipartUploader.listParts(client, journal, sourceFile.length(), partChecksums);
+        } catch (NoSuchUploadException ex) {
+            LOGGER.info(String.format("The upload %s of the file %s no longer exists. Restarting the upload.",
+                    journal.getUploadId(), sourceFile));
+            journal.delete();
+            return null;
+        } catch (S3Exception ex) {
+            if (ex.statusCode() == 404) {
+                journal.delete();
+                return null;
+            }
+            throw ex;
+        }
+
+        // S3 is the reference, the journal may have missed the last parts
+        journal.setParts(uploadedParts, partChecksums);
+        LOGGER.info(String.format("Resuming the upload of %s: %d parts already uploaded.", sourceFile, uploadedParts.size()));
+
+        return journal;
+    }
+
+    // Parts which were uploaded completely, according to S3.
+    // The checksums of the parts are added to partChecksums, when the upload has a checksum algorithm.
+    private static SortedMap<Integer, String> listParts(S3ClientWrapper client, UploadJournal journal, long fileSize,
+            Map<Integer, String> partChecksums) {
+        SortedMap<Integer, String> parts = new TreeMap<Integer, String>();
+
+        Integer partNumberMarker = null;
+        do {
+            ListPartsRequest.Builder requestBuilder = ListPartsRequest.builder()
+                    .bucket(journal.getBucket())
+                    .key(journal.getKey())
+                    .uploadId(journal.getUploadId());
+            if (partNumberMarker != null) {
+                requestBuilder.partNumberMarker(partNumberMarker);
+            }
+
+            ListPartsResponse response = client.getS3Client().listParts(requestBuilder.build());
+            for (Part part : response.parts()) {
+                int partNumber = part.partNumber();
+                long expectedSize = Math.min(journal.getPartSize(), fileSize - (partNumber - 1) * journal.getPartSize());
+                if (part.size() != null && part.size() == expectedSize) {
+                    parts.put(partNumber, part.eTag());
+                    if (journal.getChecksumAlgorithm() != null) {
+                        String checksum = S3Checksums.getChecksum(part, journal.getChecksumAlgorithm());
+                        if (checksum != null) {
+                            partChecksums.put(partNumber, checksum);
+                        }
+                    }
+                }
+            }
+
+            partNumberMarker = Boolean.TRUE.equals(response.isTruncated()) ? response.nextPartNumberMarker() : null;
+        } while (partNumberMarker != null);
+
+        return parts;
+    }
+
+    private static void uploadMissingParts(final S3ClientWrapper client, final UploadJournal journal,
+            final File sourceFile, int partCount, final TransferSettings settings) throws IOException, InterruptedException {
+
+        SortedMap<Integer, String> uploadedParts = journal.getParts();
+        List<Integer> missingParts = new ArrayList<Integer>();
+        for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+            if (!uploadedParts.containsKey(partNumber)) {
+                missingParts.add(partNumber);
+            }
+        }
+        if (missingParts.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(settings.getConcurrency(), missingParts.size()));
+        try {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (final int partNumber : missingParts) {
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws IOException, InterruptedException {
+                        CompletedPart part = MultipartUploader.uploadPart(client, journal, sourceFile, partNumber, settings);
+                        journal.putPart(partNumber, part.eTag(), journal.getChecksumAlgorithm() == null ? null :
+                                S3Checksums.getChecksum(part, journal.getChecksumAlgorithm()));
+                        return part.eTag();
+                    }
+                }));
+            }
+
+            for (Future<String> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IOException(String.format("Error occurred while uploading a part of %s", sourceFile), cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static CompletedPart uploadPart(S3ClientWrapper client, UploadJournal journal, final File sourceFile, int partNumber,
+            TransferSettings settings) throws IOException, InterruptedException {
+
+        final long offset = (partNumber - 1) * journal.getPartSize();
+        final long length = Math.min(journal.getPartSize(), sourceFile.length() - offset);
+
+        LOGGER.debug(String.format("Uploading part %d of %s (%d MB)", partNumber, sourceFile, length / MB));
+        return MultipartUploader.uploadPart(client, journal.getBucket(), journal.getKey(), journal.getUploadId(),
+                partNumber, new ContentStreamProvider() {
+                    @Override
+                    public InputStream newStream() {
+                        try {
+                            return new FileRegionInputStream(sourceFile, offset, length);
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    }
+                }, length, settings);
+    }
+
+    /**
+     * Upload a part, sending it again (after a delay) when a transient error occurs,
+     * so a failed part doesn't fail the whole upload.
+     *
+     * <p>When the settings define a checksum algorithm, the part is hashed while
+     * the SDK reads it, and the checksum is compared with the one computed by S3.
+     * A mismatch is not retried: the content changed while it was uploaded.</p>
+     * @param content Provider of the content of the part. The SDK may read the content
+     *     more than once (retries), the provider must return a new stream every time.
+     * @return The part, with its ETag and its checksum (if any), as expected by
+     *     {@link #complete(S3ClientWrapper, String, String, String, List, long, long, ChecksumAlgorithm)}.
+     * @throws ChecksumMismatchException If the checksum computed by S3 doesn't match the content.
+     */
+    public static CompletedPart uploadPart(S3ClientWrapper client, String bucket, String key, String uploadId, int partNumber,
+            ContentStreamProvider content, long length, TransferSettings settings) throws IOException, InterruptedException {
+
+        TransferMetrics metrics = client.getTransferMetrics();
+        final ChecksumAlgorithm checksumAlgorithm = settings.getChecksumAlgorithm();
+        UploadPartRequest.Builder requestBuilder = UploadPartRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength(length);
+
+        // Last stream returned to the SDK, which hashed the content actually sent
+        final AtomicReference<ChecksumInputStream> lastStream = new AtomicReference<ChecksumInputStream>();
+        if (checksumAlgorithm != null) {
+            requestBuilder.checksumAlgorithm(S3Checksums.toSdkAlgorithm(checksumAlgorithm));
+            final ContentStreamProvider partContent = content;
+            content = new ContentStreamProvider() {
+                @Override
+                public InputStream newStream() {
+                    ChecksumInputStream stream = new ChecksumInputStream(partContent.newStream(), checksumAlgorithm.newHasher());
+                    lastStream.set(stream);
+                    return stream;
+                }
+            };
+        }
+        UploadPartRequest request = requestBuilder.build();
+
+        for (int attempt = 1; ; attempt++) {
+            long startTime = System.currentTimeMillis();
+            try {
+                RequestBody requestBody = RequestBody.fromContentProvider(content, length, "application/octet-stream");
+                UploadPartResponse response = client.getS3Client().uploadPart(request, requestBody);
+                metrics.partUploaded(length, System.currentTimeMillis() - startTime);
+
+                CompletedPart.Builder partBuilder = CompletedPart.builder()
+                        .partNumber(partNumber)
+                        .eTag(response.eTag());
+                if (checksumAlgorithm != null) {
+                    S3Checksums.setChecksum(partBuilder, checksumAlgorithm,
+                            MultipartUploader.verifyChecksum(response, checksumAlgorithm, lastStream.get(), length,
+                                    String.format("part %d of s3://%s/%s", partNumber, bucket, key)));
+                }
+                return partBuilder.build();
+            } catch (RuntimeException ex) {
+                if (attempt >= settings.getPartAttempts() || !MultipartUploader.isRetryable(ex)) {
+                    metrics.partFailed();
+                    throw ex;
+                }
+
+                long delay = MultipartUploader.getRetryDelay(settings, attempt, ThreadLocalRandom.current());
+                LOGGER.warn(String.format("Error occurred while uploading the part %d of s3://%s/%s (attempt %d of %d). Retrying in %d ms.",
+                        partNumber, bucket, key, attempt, settings.getPartAttempts(), delay), ex);
+                metrics.partRetried(length);
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+    // Compare the checksum of the content read by the SDK with the checksum computed by S3.
+    // Returns the checksum of the part, or null if neither is known.
+    private static String verifyChecksum(UploadPartResponse response, ChecksumAlgorithm checksumAlgorithm,
+            ChecksumInputStream stream, long length, String partName) throws ChecksumMismatchException {
+
+        String s3Checksum = S3Checksums.getChecksum(response, checksumAlgorithm);
+        // The SDK may not have read the stream to the end (content sent from a copy, etc)
+        if (stream == null || stream.getBytesRead() != length) {
+            return s3Checksum;
+        }
+
+        String checksum = ChecksumCalculator.toBase64(stream.getChecksum());
+        if (s3Checksum != null && !s3Checksum.equals(checksum)) {
+            throw new ChecksumMismatchException(String.format("The %s checksum of the %s doesn't match: sent %s, S3 computed %s",
+                    checksumAlgorithm.getName(), partName, checksum, s3Checksum));
+        }
+        return checksum;
+    }
+
+    /**
+     * Set the checksum algorithm of a new multipart upload.
+     * The checksum of an object uploaded with a CRC is the CRC of its whole content (FULL_OBJECT),
+     * the checksum of an object uploaded with SHA-256 is the checksum of the checksums of its parts (COMPOSITE).
+     * @param checksumAlgorithm The checksum algorithm, or null.
+     */
+    public static CreateMultipartUploadRequest.Builder setChecksumAlgorithm(CreateMultipartUploadRequest.Builder requestBuilder,
+            ChecksumAlgorithm checksumAlgorithm) {
+        if (checksumAlgorithm != null) {
+            requestBuilder
+                    .checksumAlgorithm(S3Checksums.toSdkAlgorithm(checksumAlgorithm))
+                    .checksumType(checksumAlgorithm.isComposable() ? ChecksumType.FULL_OBJECT : ChecksumType.COMPOSITE);
+        }
+        return requestBuilder;
+    }
+
+    /**
+     * Complete a multipart upload. When the upload has a composable checksum algorithm,
+     * the checksum of the object is computed from the checksums of the parts,
+     * and sent to S3 which verifies it against the content it received.
+     * @param parts The parts, in order, as returned by
+     *     {@link #uploadPart(S3ClientWrapper, String, String, String, int, ContentStreamProvider, long, TransferSettings)}.
+     * @param partSize The size of the parts, except the last one.
+     * @param objectSize The size of the object, in bytes.
+     * @param checksumAlgorithm The checksum algorithm of the upload, or null.
+     * @return The ETag of the object.
+     */
+    public static String complete(S3ClientWrapper client, String bucket, String key, String uploadId,
+            List<CompletedPart> parts, long partSize, long objectSize, ChecksumAlgorithm checksumAlgorithm) {
+
+        CompleteMultipartUploadRequest.Builder requestBuilder = CompleteMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build());
+
+        if (checksumAlgorithm != null && checksumAlgorithm.isComposable()) {
+            List<String> partChecksums = new ArrayList<String>();
+            for (CompletedPart part : parts) {
+                partChecksums.add(S3Checksums.getChecksum(part, checksumAlgorithm));
+            }
+            String checksum = S3Checksums.combine(checksumAlgorithm, partChecksums, partSize, objectSize);
+            if (checksum != null) {
+                S3Checksums.setChecksum(requestBuilder, checksumAlgorithm, checksum)
+                        .checksumType(ChecksumType.FULL_OBJECT)
+                        .mpuObjectSize(objectSize);
+            } else {
+                LOGGER.warn(String.format("The checksum of a part of s3://%s/%s is missing. The %s checksum of the object will not be verified.",
+                        bucket, key, checksumAlgorithm.getName()));
+            }
+        }
+
+        return client.getS3Client().completeMultipartUpload(requestBuilder.build()).eTag();
+    }
+
+    /**
+     * @return The delay before the next attempt, in milliseconds: a random delay
+     *     between 0 and the base delay multiplied by 2 for every previous attempt,
+     *     capped at the maximum delay ("full jitter").
+     */
+    static long getRetryDelay(TransferSettings settings, int attempt, Random random) {
+        long maxDelay = settings.getRetryMaxDelay();
+        long delay = settings.getRetryBaseDelay();
+        for (int i = 1; i < attempt && delay < maxDelay; i++) {
+            delay *= 2;
+        }
+        delay = Math.min(delay, maxDelay);
+        return delay <= 0 ? 0 : (long)(random.nextDouble() * (delay + 1));
+    }
+
+    // Network errors, throttling and server errors are worth another attempt,
+    // other errors (access denied, upload aborted, etc) will fail again.
+    static boolean isRetryable(RuntimeException ex) {
+        if (ex instanceof NoSuchUploadException) {
+            return false;
+        }
+        if (ex instanceof SdkServiceException) {
+            int statusCode = ((SdkServiceException) ex).statusCode();
+            return statusCode >= 500 || statusCode == 429 || statusCode == 408 || ((SdkServiceException) ex).retryable();
+        }
+        return ex instanceof SdkClientException || ex instanceof UncheckedIOException;
+    }
+
+    /**
+     * Abort a multipart upload, deleting its parts. Errors are logged, not thrown.
+     */
+    public static void abort(S3ClientWrapper client, String bucket, String key, String uploadId) {
+        try {
+            client.getS3Client().abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (Exception ex) {
+            LOGGER.warn(String.format("Could not abort the multipart upload %s of s3://%s/%s", uploadId, bucket, key), ex);
+        }
+    }
+
+    private static void abortStaleUploadsIfNeeded(S3ClientWrapper client, String bucket, TransferSettings settings) {
+        long staleUploadAge = settings.getStaleUploadAge();
+        if (staleUploadAge <= 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Long lastCheck = LAST_STALE_CHECK.get(bucket);
+        if (lastCheck != null && now - lastCheck < STALE_CHECK_INTERVAL) {
+            return;
+        }
+        LAST_STALE_CHECK.put(bucket, now);
+
+        try {
+            MultipartUploader.abortStaleJournalUploads(client, bucket, staleUploadAge, settings.getJournalDirectory());
+        } catch (Exception ex) {
+            LOGGER.warn(String.format("Could not abort the stale multipart uploads of the bucket %s", bucket), ex);
+        }
+    }
+
+    /**
+     * Abort the multipart uploads of a bucket recorded in the journal directory
+     * which were started more than maxAge milliseconds ago, and delete their journal.
+     * The uploads which were not started by this application are not touched.
+     * @param journalDirectory The journal directory, or null.
+     * @return The number of aborted uploads.
+     */
+    static int abortStaleJournalUploads(S3ClientWrapper client, String bucket, long maxAge, File journalDirectory) {
+        long oldest = System.currentTimeMillis() - maxAge;
+        int abortedCount = 0;
+
+        for (UploadJournal journal : UploadJournal.list(journalDirectory)) {
+            if (bucket.equals(journal.getBucket()) && journal.getCreated() < oldest) {
+                LOGGER.info(String.format("Aborting stale multipart upload %s of s3://%s/%s, started %s",
+                        journal.getUploadId(), bucket, journal.getKey(), Instant.ofEpochMilli(journal.getCreated())));
+                MultipartUploader.abort(client, bucket, journal.getKey(), journal.getUploadId());
+                journal.delete();
+                abortedCount++;
+            }
+        }
+
+        return abortedCount;
+    }
+
+    /**
+     * Abort the multipart uploads of a bucket which were started more than maxAge milliseconds ago,
+     * and delete their journal.
+     * @param journalDirectory The journal directory, or null.
+     * @return The number of aborted uploads.
+     */
+    public static int abortStaleUploads(S3ClientWrapper client, String bucket, long maxAge, File journalDirectory) {
+        long oldest = System.currentTimeMillis() - maxAge;
+        int abortedCount = 0;
+
+        String keyMarker = null;
+        String uploadIdMarker = null;
+        do {
+            ListMultipartUploadsRequest.Builder requestBuilder = ListMultipartUploadsRequest.builder()
+                    .bucket(bucket);
+            if (keyMarker != null) {
+                requestBuilder.keyMarker(keyMarker).uploadIdMarker(uploadIdMarker);
+            }
+
+            ListMultipartUploadsResponse response = client.getS3Client().listMultipartUploads(requestBuilder.build());
+            for (MultipartUpload upload : response.uploads()) {
+                if (upload.initiated() != null && upload.initiated().toEpochMilli() < oldest) {
+                    LOGGER.info(String.format("Aborting stale multipart upload %s of s3://%s/%s, started %s",
+                            upload.uploadId(), bucket, upload.key(), upload.initiated()));
+                    MultipartUploader.abort(client, bucket, upload.key(), upload.uploadId());
+                    abortedCount++;
+                }
+            }
+
+            if (Boolean.TRUE.equals(response.isTruncated())) {
+                keyMarker = response.nextKeyMarker();
+                uploadIdMarker = response.nextUploadIdMarker();
+            } else {
+                keyMarker = null;
+            }
+        } while (keyMarker != null);
+
+        for (UploadJournal journal : UploadJournal.list(journalDirectory)) {
+            if (bucket.equals(journal.getBucket()) && journal.getCreated() < oldest) {
+                journal.delete();
+            }
+        }
+
+        return abortedCount;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.manager;
+
+import au.gov.aims.aws.s3.entity.TransferMetrics;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+
+/**
+ * Choose the part size of multipart uploads and the range size of ranged downloads.
+ *
+ * <p>By default, the sizes of the {@link TransferSettings} are used. The part size
+ * is increased when needed to upload the object in 10,000 parts or less.</p>
+ *
+ * <p>In adaptive mode, the size is chosen so a part takes about
+ * {@link #TARGET_PART_DURATION} milliseconds to transfer, at the throughput
+ * measured on the previous transfers of the client: large enough to limit the
+ * number of requests, small enough so a failed part doesn't cost much.
+ * The size is also limited so the parts transferred at the same time fit in
+ * a fraction of the available memory (the SDK and the streaming uploads may
+ * buffer a part in memory).</p>
+ */
+public class PartSizePolicy {
+    private static final long MB = 1024L * 1024;
+
+    // Time it should take to transfer a part, in adaptive mode
+    public static final long TARGET_PART_DURATION = 10 * 1000;
+
+    // Boundaries of the adaptive sizes
+    private static final long MIN_ADAPTIVE_PART_SIZE = 8 * MB;
+    private static final long MAX_ADAPTIVE_PART_SIZE = 1024 * MB;
+    private static final long MIN_ADAPTIVE_RANGE_SIZE = MB;
+    private static final long MAX_ADAPTIVE_RANGE_SIZE = 256 * MB;
+
+    // Fraction of the available memory which can be used by the parts in flight
+    private static final int MEMORY_FRACTION = 4;
+
+    // Streamed parts are held in a byte array
+    private static final long MAX_STREAMING_PART_SIZE = 512 * MB;
+
+    /**
+     * @return The part size to use to upload an object of objectSize bytes.
+     */
+    public static long getUploadPartSize(TransferSettings settings, TransferMetrics metrics, long objectSize) {
+        long partSize = settings.getPartSize();
+        if (settings.isAdaptive()) {
+            partSize = PartSizePolicy.getAdaptiveSize(partSize, metrics.getUploadThroughput(),
+                    settings.getConcurrency(), PartSizePolicy.getAvailableMemory(),
+                    MIN_ADAPTIVE_PART_SIZE, MAX_ADAPTIVE_PART_SIZE);
+        }
+
+        // S3 limits: 10,000 parts, between 5 MB and 5 GB each (except the last one)
+        long minPartSize = PartSizePolicy.roundUp((objectSize + MultipartUploader.MAX_PARTS - 1) / MultipartUploader.MAX_PARTS);
+        partSize = Math.max(partSize, Math.max(minPartSize, TransferSettings.MIN_PART_SIZE));
+        return Math.min(partSize, TransferSettings.MAX_PART_SIZE);
+    }
+
+    /**
+     * Streamed parts are buffered in memory: the part size is limited so
+     * the buffers (one per part in flight, plus the one being filled) fit in
+     * a fraction of the available memory, even when not in adaptive mode.
+     * @param expectedSize The expected size of the object, or a negative number if unknown.
+     * @return The part size to use to upload a stream.
+     */
+    public static int getStreamingPartSize(TransferSettings settings, TransferMetrics metrics, long expectedSize) {
+        long partSize = PartSizePolicy.getUploadPartSize(settings, metrics, Math.max(0, expectedSize));
+
+        long memoryLimit = PartSizePolicy.roundUp(PartSizePolicy.getAvailableMemory() / MEMORY_FRACTION / (settings.getConcurrency() + 1));
+        partSize = Math.min(partSize, Math.min(memoryLimit, MAX_STREAMING_PART_SIZE));
+        return (int)Math.max(partSize, TransferSettings.MIN_PART_SIZE);
+    }
+
+    /**
+     * @return The range size to use to download an object of objectSize bytes.
+     */
+    public static long getDownloadRangeSize(TransferSettings settings, TransferMetrics metrics, long objectSize) {
+        long rangeSize = settings.getDownloadRangeSize();
+        if (settings.isAdaptive()) {
+            rangeSize = PartSizePolicy.getAdaptiveSize(rangeSize, metrics.getDownloadThroughput(),
+                    settings.getConcurrency(), PartSizePolicy.getAvailableMemory(),
+                    MIN_ADAPTIVE_RANGE_SIZE, MAX_ADAPTIVE_RANGE_SIZE);
+        }
+
+        // Not a S3 limit, it keeps the download journal small
+        long minRangeSize = (objectSize + MultipartUploader.MAX_PARTS - 1) / MultipartUploader.MAX_PARTS;
+        return Math.max(rangeSize, minRangeSize);
+    }
+
+    /**
+     * @return Number of parts to transfer at the same time: there is no point
+     *     in starting more threads than there are parts.
+     */
+    public static int getConcurrency(TransferSettings settings, long objectSize, long partSize) {
+        long partCount = (objectSize + partSize - 1) / partSize;
+        return (int)Math.max(1, Math.min(settings.getConcurrency(), partCount));
+    }
+
+    /**
+     * @param defaultSize Size used until a throughput is measured.
+     * @param throughput Throughput of a connection, in bytes per second, or 0 if unknown.
+     * @param concurrency Number of parts transferred at the same time.
+     * @param availableMemory Memory available, in bytes.
+     */
+    static long getAdaptiveSize(long defaultSize, double throughput, int concurrency, long availableMemory,
+            long minSize, long maxSize) {
+
+        long size = throughput > 0 ? (long)(throughput * TARGET_PART_DURATION / 1000) : defaultSize;
+
+        long memoryLimit = availableMemory / MEMORY_FRACTION / Math.max(1, concurrency);
+        size = Math.min(size, memoryLimit);
+
+        size = Math.max(minSize, Math.min(maxSize, size));
+        return PartSizePolicy.roundUp(size);
+    }
+
+    // Round up to a MB, to get readable sizes in the logs
+    private static long roundUp(long size) {
+        return (size + MB - 1) / MB * MB;
+    }
+
+    private static long getAvailableMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long usedMemory = runtime.totalMemory() - runtime.freeMemory();
+        return runtime.maxMemory() - usedMemory;
+    }
+}
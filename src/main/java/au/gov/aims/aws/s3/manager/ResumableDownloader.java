@@ -0,0 +1,316 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.manager;
+
+import au.gov.aims.aws.s3.ETagCalculator;
+import au.gov.aims.aws.s3.checksum.ChecksumAlgorithm;
+import au.gov.aims.aws.s3.checksum.ChecksumCalculator;
+import au.gov.aims.aws.s3.checksum.ChecksumMismatchException;
+import au.gov.aims.aws.s3.checksum.Hasher;
+import au.gov.aims.aws.s3.checksum.ObjectChecksum;
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.entity.S3File;
+import au.gov.aims.aws.s3.entity.TransferMetrics;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import org.apache.log4j.Logger;
+import software.amazon.awssdk.services.s3.S3Uri;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Resumable download of an object to a file.
+ *
+ * <p>The object is written to a temporary sibling of the destination file
+ * ".filename.s3part", using ranged GET requests. The ranges already written
+ * are recorded in a {@link DownloadJournal} sidecar ".filename.s3part.properties",
+ * so a retry or a restart only requests the missing ranges. Every request
+ * is made with the ETag of the object (If-Match): if the object changed,
+ * the partial download is discarded. The temporary file is renamed to the
+ * destination file once complete, so the destination file is never left
+ * partially written.</p>
+ *
+ * <p>When the checksum of the object is known, each range is hashed while it is
+ * written, and the checksum of the file is compared with the checksum of the object
+ * before the file is renamed.</p>
+ */
+public class ResumableDownloader {
+    private static final Logger LOGGER = Logger.getLogger(ResumableDownloader.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String TEMPORARY_FILE_SUFFIX = ".s3part";
+    private static final String JOURNAL_FILE_SUFFIX = ".s3part.properties";
+
+    public static File getTemporaryFile(File destinationFile) {
+        return new File(destinationFile.getParentFile(), "." + destinationFile.getName() + TEMPORARY_FILE_SUFFIX);
+    }
+
+    public static File getJournalFile(File destinationFile) {
+        return new File(destinationFile.getParentFile(), "." + destinationFile.getName() + JOURNAL_FILE_SUFFIX);
+    }
+
+    /**
+     * @return True if the file name is the name of a temporary file or a journal of a download in progress.
+     */
+    public static boolean isDownloadFile(String filename) {
+        return filename.startsWith(".") &&
+                (filename.endsWith(TEMPORARY_FILE_SUFFIX) || filename.endsWith(JOURNAL_FILE_SUFFIX) ||
+                filename.endsWith(JOURNAL_FILE_SUFFIX + ".tmp"));
+    }
+
+    /**
+     * @param eTag The ETag of the object. Downloads of objects without ETag can not be resumed.
+     * @param size The size of the object, in bytes.
+     * @param rangeSize Size of the ranged requests. Objects smaller than this are downloaded with a single request.
+     * @param concurrency Number of ranges downloaded at the same time.
+     * @param settings Used to verify the downloaded file, see {@link TransferSettings#setVerifyETag(boolean)}.
+     * @throws S3File.ObjectModifiedException If the object changed during the download.
+     */
+    public static void download(final S3ClientWrapper client, final S3Uri sourceUri, final String eTag, long size,
+            File destinationFile, long rangeSize, int concurrency, TransferSettings settings) throws IOException, InterruptedException {
+        ResumableDownloader.download(client, sourceUri, eTag, size, destinationFile, rangeSize, concurrency, null, settings);
+    }
+
+    /**
+     * @param expectedChecksum The checksum of the whole object, or null to not verify it.
+     * @throws ChecksumMismatchException If the downloaded file doesn't match the checksum.
+     */
+    public static void download(final S3ClientWrapper client, final S3Uri sourceUri, final String eTag, long size,
+            File destinationFile, long rangeSize, int concurrency, ObjectChecksum expectedChecksum,
+            TransferSettings settings) throws IOException, InterruptedException {
+
+        File temporaryFile = ResumableDownloader.getTemporaryFile(destinationFile);
+        File journalFile = ResumableDownloader.getJournalFile(destinationFile);
+        ChecksumAlgorithm checksumAlgorithm = expectedChecksum == null ? null : expectedChecksum.getAlgorithm();
+
+        DownloadJournal journal = DownloadJournal.load(journalFile);
+        if (journal != null && (!journal.matches(eTag, size) || !temporaryFile.isFile())) {
+            LOGGER.info(String.format("The file %s changed since the last download attempt. Restarting the download.", sourceUri));
+            journal.delete();
+            journal = null;
+        }
+        if (journal != null && journal.getChecksumAlgorithm() != checksumAlgorithm) {
+            // The ranges already downloaded were not hashed with the right algorithm
+            LOGGER.info(String.format("The checksum algorithm of the download of %s changed since the last download attempt. Restarting the download.", sourceUri));
+            journal.delete();
+            journal = null;
+        }
+
+        if (journal == null) {
+            Files.deleteIfExists(temporaryFile.toPath());
+            // Small downloads are done with a single request, there is nothing to resume
+            boolean resumable = eTag != null && size > rangeSize;
+            journal = new DownloadJournal(resumable ? journalFile : null, eTag, size, checksumAlgorithm);
+            journal.save();
+        } else {
+            LOGGER.info(String.format("Resuming the download of %s: %d of %d bytes already downloaded.",
+                    sourceUri, journal.getDownloadedBytes(), size));
+        }
+
+        final DownloadJournal finalJournal = journal;
+        final TransferSettings finalSettings = settings;
+        try (final FileChannel channel = FileChannel.open(temporaryFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+
+            List<long[]> missingRanges = journal.getMissingRanges(rangeSize);
+            if (missingRanges.size() <= 1 || concurrency <= 1) {
+                for (long[] range : missingRanges) {
+                    ResumableDownloader.downloadRange(client, sourceUri, eTag, channel, range[0], range[1], journal, settings);
+                }
+            } else {
+                ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, missingRanges.size()));
+                try {
+                    List<Future<Void>> futures = new ArrayList<Future<Void>>();
+                    for (final long[] range : missingRanges) {
+                        futures.add(executor.submit(new Callable<Void>() {
+                            @Override
+                            public Void call() throws IOException, InterruptedException {
+                                ResumableDownloader.downloadRange(client, sourceUri, eTag, channel, range[0], range[1], finalJournal, finalSettings);
+                                return null;
+                            }
+                        }));
+                    }
+
+                    for (Future<Void> future : futures) {
+                        try {
+                            future.get();
+                        } catch (ExecutionException ex) {
+                            Throwable cause = ex.getCause();
+                            if (cause instanceof IOException) {
+                                throw (IOException) cause;
+                            }
+                            if (cause instanceof RuntimeException) {
+                                throw (RuntimeException) cause;
+                            }
+                            throw new IOException(String.format("Error occurred while downloading %s", sourceUri), cause);
+                        }
+                    }
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+
+            channel.force(false);
+        } catch (S3File.ObjectModifiedException ex) {
+            // The downloaded ranges belong to another version of the object
+            journal.delete();
+            Files.deleteIfExists(temporaryFile.toPath());
+            throw ex;
+        }
+
+        if (!journal.isComplete() || temporaryFile.length() != size) {
+            throw new IOException(String.format("The download of %s is incomplete: %d of %d bytes.",
+                    sourceUri, temporaryFile.length(), size));
+        }
+
+        if (expectedChecksum != null) {
+            ResumableDownloader.verifyChecksum(sourceUri, temporaryFile, journal, expectedChecksum, concurrency);
+        }
+
+        if (settings.isVerifyETag() && ETagCalculator.isComparable(eTag)) {
+            // The part size of objects uploaded in parts is recorded in their metadata, if uploaded by this library
+            Long uploadPartSize = ETagCalculator.isMultipart(eTag) ? S3File.getUploadPartSize(client, sourceUri) : null;
+            Boolean matches = ETagCalculator.matches(temporaryFile, eTag, uploadPartSize,
+                    settings.getConcurrency(), settings.getPartSize());
+            if (Boolean.FALSE.equals(matches)) {
+                journal.delete();
+                Files.deleteIfExists(temporaryFile.toPath());
+                throw new IOException(String.format("The downloaded file doesn't match the ETag %s of %s.", eTag, sourceUri));
+            }
+            if (matches == null) {
+                // The downloaded file is kept, to be moved in place when resumed without verifyETag
+                throw new IOException(String.format("The download of %s could not be verified, the part size of ETag %s is unknown. " +
+                        "Download it without verifyETag to accept it.", sourceUri, eTag));
+            }
+        }
+
+        ResumableDownloader.move(temporaryFile, destinationFile);
+        journal.delete();
+    }
+
+    /**
+     * Replace the destination file with the complete temporary file, atomically if possible.
+     */
+    static void move(File temporaryFile, File destinationFile) throws IOException {
+        try {
+            Files.move(temporaryFile.toPath(), destinationFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temporaryFile.toPath(), destinationFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void verifyChecksum(S3Uri sourceUri, File temporaryFile, DownloadJournal journal,
+            ObjectChecksum expectedChecksum, int concurrency) throws IOException {
+
+        byte[] checksum = journal.getChecksum();
+        if (checksum == null) {
+            // SHA-256 checksums of ranges downloaded in parallel can't be combined
+            LOGGER.debug(String.format("The %s checksum of %s was not computed during the download. Reading the file %s.",
+                    expectedChecksum.getAlgorithm().getName(), sourceUri, temporaryFile));
+            checksum = ChecksumCalculator.checksum(temporaryFile, expectedChecksum.getAlgorithm(), concurrency);
+        }
+
+        if (!expectedChecksum.matches(checksum)) {
+            journal.delete();
+            Files.deleteIfExists(temporaryFile.toPath());
+            throw new ChecksumMismatchException(String.format("The downloaded file doesn't match the checksum of %s: expected %s, got %s",
+                    sourceUri, expectedChecksum, new ObjectChecksum(expectedChecksum.getAlgorithm(), checksum)));
+        }
+    }
+
+    // Download a range, retrying from the last byte written when the connection drops.
+    // The ranges are downloaded in parallel with the same client: a failed range waits
+    // and retries, it never reconnects the client under the other ranges.
+    private static void downloadRange(S3ClientWrapper client, S3Uri sourceUri, String eTag,
+            FileChannel channel, long start, long end, DownloadJournal journal, TransferSettings settings)
+            throws IOException, InterruptedException {
+
+        TransferMetrics metrics = client.getTransferMetrics();
+        long startTime = System.currentTimeMillis();
+
+        // The bytes are hashed as they are written, a retry continues the same checksum
+        Hasher hasher = journal.getChecksumAlgorithm() == null ? null : journal.getChecksumAlgorithm().newHasher();
+
+        // Position after the last byte written, updated while the range is written
+        long[] position = { start };
+        for (int attempt = 1; position[0] < end; attempt++) {
+            try {
+                ResumableDownloader.rawDownloadRange(client, sourceUri, eTag, channel, position, end, hasher);
+            } catch (S3File.ObjectModifiedException | FileNotFoundException ex) {
+                throw ex;
+            } catch (IOException | RuntimeException ex) {
+                boolean retryable = !(ex instanceof RuntimeException) || MultipartUploader.isRetryable((RuntimeException) ex);
+                if (attempt >= settings.getPartAttempts() || !retryable) {
+                    metrics.partFailed();
+                    throw ex;
+                }
+                metrics.partRetried(end - position[0]);
+                long delay = MultipartUploader.getRetryDelay(settings, attempt, ThreadLocalRandom.current());
+                LOGGER.warn(String.format("Error occurred while downloading the bytes %d-%d of %s (attempt %d of %d). Retrying in %d ms.",
+                        position[0], end - 1, sourceUri, attempt, settings.getPartAttempts(), delay), ex);
+                Thread.sleep(delay);
+            }
+        }
+
+        metrics.partDownloaded(end - start, System.currentTimeMillis() - startTime);
+        journal.addRange(start, end, hasher == null ? null : hasher.getValue());
+    }
+
+    private static void rawDownloadRange(S3ClientWrapper client, S3Uri sourceUri, String eTag,
+            FileChannel channel, long[] position, long end, Hasher hasher) throws IOException {
+
+        try (InputStream inputStream = S3File.requestS3ObjectRange(client, sourceUri, position[0], end - 1, eTag)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while (position[0] < end && (read = inputStream.read(buffer, 0, (int)Math.min(buffer.length, end - position[0]))) != -1) {
+                // Only the bytes written are hashed, a retry starts after the last byte written
+                int offset = 0;
+                while (offset < read) {
+                    int written = channel.write(ByteBuffer.wrap(buffer, offset, read - offset), position[0]);
+                    if (hasher != null) {
+                        hasher.update(buffer, offset, written);
+                    }
+                    offset += written;
+                    position[0] += written;
+                }
+            }
+        }
+
+        if (position[0] < end) {
+            throw new IOException(String.format("Unexpected end of stream at byte %d of %s.", position[0], sourceUri));
+        }
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.manager;
+
+import au.gov.aims.aws.s3.ETagCalculator;
+import au.gov.aims.aws.s3.S3Utils;
+import au.gov.aims.aws.s3.SortedFileIterator;
+import au.gov.aims.aws.s3.entity.S3Bucket;
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.entity.S3File;
+import au.gov.aims.aws.s3.entity.SyncAction;
+import au.gov.aims.aws.s3.entity.SyncReport;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import org.apache.log4j.Logger;
+import software.amazon.awssdk.services.s3.S3Uri;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.transfer.s3.S3TransferManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synchronise a local directory with a S3 prefix, in either direction.
+ *
+ * <p>The local directory is walked in S3 key order ({@link SortedFileIterator})
+ * and compared with a listing of the prefix, page by page: the two sorted streams
+ * are merged, so neither side is held in memory. Each file present on both sides
+ * is compared using its size and last modified date (or its MD5 and the ETag,
+ * see {@link TransferSettings#setCompareContent(boolean)}). Missing and modified
+ * files are copied, and with {@link TransferSettings#setDeleteExtraneous(boolean)},
+ * the files which only exist at the destination are deleted.</p>
+ *
+ * <p>The actions are run in parallel, by {@link TransferSettings#getConcurrency()}
+ * threads, while the two sides are still being compared. An action which fails
+ * doesn't stop the synchronisation: it's reported in {@link SyncReport#getFailures()}.
+ * In dry run mode, the actions are only reported.</p>
+ */
+public class SyncManager {
+    private static final Logger LOGGER = Logger.getLogger(SyncManager.class);
+
+    /**
+     * Copy the content of a local directory to a S3 prefix.
+     */
+    public static SyncReport push(S3ClientWrapper client, File localDirectory, S3Uri destinationUri) throws IOException, InterruptedException {
+        return SyncManager.push(client, localDirectory, destinationUri, client.getTransferSettings());
+    }
+
+    /**
+     * @param settings Settings for this synchronisation, overriding the client settings.
+     */
+    public static SyncReport push(S3ClientWrapper client, File localDirectory, S3Uri destinationUri, TransferSettings settings) throws IOException, InterruptedException {
+        if (!localDirectory.isDirectory()) {
+            throw new IOException(String.format("The source %s is not a directory.", localDirectory.getAbsolutePath()));
+        }
+        return SyncManager.sync(client, localDirectory, destinationUri, true, settings);
+    }
+
+    /**
+     * Copy the content of a S3 prefix to a local directory.
+     */
+    public static SyncReport pull(S3ClientWrapper client, S3Uri sourceUri, File localDirectory) throws IOException, InterruptedException {
+        return SyncManager.pull(client, sourceUri, localDirectory, client.getTransferSettings());
+    }
+
+    /**
+     * @param settings Settings for this synchronisation, overriding the client settings.
+     */
+    public static SyncReport pull(S3ClientWrapper client, S3Uri sourceUri, File localDirectory, TransferSettings settings) throws IOException, InterruptedException {
+        if (!localDirectory.isDirectory() && !settings.isDryRun() && !localDirectory.mkdirs() && !localDirectory.isDirectory()) {
+            throw new IOException(String.format("Can not create the directory %s", localDirectory.getAbsolutePath()));
+        }
+        return SyncManager.sync(client, localDirectory, sourceUri, false, settings);
+    }
+
+    // push: local directory to S3, otherwise S3 to local directory
+    private static SyncReport sync(final S3ClientWrapper client, File localDirectory, S3Uri s3Uri, final boolean push,
+            final TransferSettings settings) throws IOException, InterruptedException {
+
+        long startTime = System.currentTimeMillis();
+        final SyncReport report = new SyncReport(settings.isDryRun());
+
+        final String bucket = s3Uri.bucket().orElseThrow(() -> new IllegalArgumentException("Missing bucket"));
+        String key = s3Uri.key().orElse("");
+        final String prefix = key.isEmpty() || key.endsWith("/") ? key : key + "/";
+
+        S3TransferManager transferManager = null;
+        boolean bucketIsPublic = false;
+        if (push && !settings.isDryRun()) {
+            if (!BucketManager.bucketExists(client, bucket)) {
+                throw new IOException(String.format("Bucket %s doesn't exist.", bucket));
+            }
+            bucketIsPublic = new S3Bucket(bucket).isPublic(client);
+            transferManager = S3TransferManager.builder()
+                    .s3Client(client.getS3AsyncClient())
+                    .build();
+        }
+
+        int concurrency = settings.getConcurrency();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        // Limit the number of actions waiting in the queue, the comparison is paused when it's full
+        final Semaphore pendingActions = new Semaphore(concurrency * 2);
+        // Remote deletes are sent in batches, once the other actions are done
+        List<SyncAction> remoteDeletes = new ArrayList<SyncAction>();
+        try {
+            Iterator<SortedFileIterator.Entry> localIterator = localDirectory.isDirectory() ?
+                    new SortedFileIterator(localDirectory.toPath()) : null;
+            Iterator<S3Object> remoteIterator = ListManager.listObjects(client, bucket, prefix);
+
+            SortedFileIterator.Entry localEntry = SyncManager.nextLocal(localIterator);
+            S3Object remoteObject = SyncManager.nextRemote(remoteIterator, bucket, prefix);
+
+            while (localEntry != null || remoteObject != null) {
+                int comparison;
+                if (localEntry == null) {
+                    comparison = 1;
+                } else if (remoteObject == null) {
+                    comparison = -1;
+                } else {
+                    comparison = SortedFileIterator.KEY_ORDER.compare(localEntry.getKey(), remoteObject.key().substring(prefix.length()));
+                }
+
+                SyncAction action = SyncManager.getAction(client, localDirectory, bucket, prefix, push, settings,
+                        comparison <= 0 ? localEntry : null, comparison >= 0 ? remoteObject : null);
+                final S3Object actionRemoteObject = comparison >= 0 ? remoteObject : null;
+
+                if (comparison <= 0) {
+                    localEntry = SyncManager.nextLocal(localIterator);
+                }
+                if (comparison >= 0) {
+                    remoteObject = SyncManager.nextRemote(remoteIterator, bucket, prefix);
+                }
+
+                if (action == null) {
+                    continue;
+                }
+                if (action.getType() == SyncAction.Type.SKIP || settings.isDryRun()) {
+                    report.addAction(action);
+                    continue;
+                }
+                if (action.getType() == SyncAction.Type.DELETE_REMOTE) {
+                    remoteDeletes.add(action);
+                    continue;
+                }
+
+                pendingActions.acquire();
+                final SyncAction finalAction = action;
+                final S3TransferManager finalTransferManager = transferManager;
+                final boolean finalBucketIsPublic = bucketIsPublic;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            SyncManager.run(client, finalTransferManager, finalAction, actionRemoteObject, finalBucketIsPublic, settings);
+                            report.addAction(finalAction);
+                        } catch (Throwable ex) {
+                            LOGGER.error(String.format("Synchronisation action failed: %s", finalAction), ex);
+                            report.addFailure(finalAction, ex);
+                        } finally {
+                            pendingActions.release();
+                        }
+                    }
+                });
+            }
+
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+            if (!remoteDeletes.isEmpty()) {
+                SyncManager.deleteRemote(client, bucket, remoteDeletes, report, settings);
+            }
+        } finally {
+            executor.shutdownNow();
+            if (transferManager != null) {
+                try {
+                    transferManager.close();
+                } catch(Exception ex) {
+                    LOGGER.error("Could not close the S3 transfer manager.", ex);
+                }
+            }
+        }
+
+        report.setExecutionTime(System.currentTimeMillis() - startTime);
+        LOGGER.debug(report);
+        return report;
+    }
+
+    /**
+     * @param localEntry The local file, or null if it only exists on S3.
+     * @param remoteObject The S3 object, or null if it only exists locally.
+     * @return The action, or null if there is nothing to do.
+     */
+    private static SyncAction getAction(S3ClientWrapper client, File localDirectory, String bucket, String prefix, boolean push,
+            TransferSettings settings, SortedFileIterator.Entry localEntry, S3Object remoteObject) throws IOException {
+
+        String relativePath = localEntry != null ? localEntry.getKey() : remoteObject.key().substring(prefix.length());
+        File localFile = localEntry != null ? localEntry.getPath().toFile() :
+                new File(localDirectory, relativePath.replace('/', File.separatorChar));
+        S3Uri s3Uri = S3Utils.getS3URI(bucket, prefix + relativePath);
+
+        if (localEntry != null && remoteObject != null) {
+            boolean unchanged = push ?
+                    UploadManager.isUnchanged(client, s3Uri, localFile, remoteObject.size(), remoteObject.lastModified(),
+                            remoteObject.eTag(), settings) :
+                    SyncManager.isLocalUpToDate(client, s3Uri, localEntry, remoteObject, settings);
+
+            if (unchanged) {
+                return new SyncAction(SyncAction.Type.SKIP, relativePath, localFile, s3Uri, 0);
+            }
+            return push ?
+                    new SyncAction(SyncAction.Type.UPLOAD, relativePath, localFile, s3Uri, localEntry.getSize()) :
+                    new SyncAction(SyncAction.Type.DOWNLOAD, relativePath, localFile, s3Uri, remoteObject.size());
+        }
+
+        if (localEntry != null) {
+            if (push) {
+                return new SyncAction(SyncAction.Type.UPLOAD, relativePath, localFile, s3Uri, localEntry.getSize());
+            }
+            return settings.isDeleteExtraneous() ?
+                    new SyncAction(SyncAction.Type.DELETE_LOCAL, relativePath, localFile, s3Uri, 0) : null;
+        }
+
+        if (!push) {
+            return new SyncAction(SyncAction.Type.DOWNLOAD, relativePath, localFile, s3Uri, remoteObject.size());
+        }
+        return settings.isDeleteExtraneous() ?
+                new SyncAction(SyncAction.Type.DELETE_REMOTE, relativePath, localFile, s3Uri, 0) : null;
+    }
+
+    /**
+     * Downloaded files get the date of the S3 object, so they are
+     * up to date when they are at least as recent as the S3 object.
+     * With compareContent, the content is compared instead, when it can be
+     * (see {@link UploadManager#isUnchanged(S3ClientWrapper, S3Uri, File, Long, java.time.Instant, String, TransferSettings)}).
+     */
+    private static boolean isLocalUpToDate(S3ClientWrapper client, S3Uri s3Uri, SortedFileIterator.Entry localEntry,
+            S3Object remoteObject, TransferSettings settings) throws IOException {
+        if (remoteObject.size() == null || remoteObject.size() != localEntry.getSize()) {
+            return false;
+        }
+
+        if (settings.isCompareContent()) {
+            // The object listing doesn't include the user metadata
+            Long uploadPartSize = ETagCalculator.isMultipart(remoteObject.eTag()) ?
+                    S3File.getUploadPartSize(client, s3Uri) : null;
+            Boolean matches = ETagCalculator.matches(localEntry.getPath().toFile(), remoteObject.eTag(), uploadPartSize,
+                    settings.getConcurrency(), settings.getPartSize());
+            if (matches != null) {
+                return matches;
+            }
+            LOGGER.debug(String.format("Could not compare the content of %s with its ETag %s, comparing the dates",
+                    localEntry.getPath(), remoteObject.eTag()));
+        }
+
+        // The S3 date has a precision of a second
+        return remoteObject.lastModified() != null &&
+                localEntry.getLastModified() / 1000 * 1000 >= remoteObject.lastModified().toEpochMilli() / 1000 * 1000;
+    }
+
+    private static void run(S3ClientWrapper client, S3TransferManager transferManager, SyncAction action,
+            S3Object remoteObject, boolean bucketIsPublic, TransferSettings settings) throws IOException, InterruptedException {
+
+        File localFile = action.getLocalFile();
+        S3Uri s3Uri = action.getS3Uri();
+        switch (action.getType()) {
+            case UPLOAD:
+                UploadManager.uploadFile(client, transferManager, localFile, s3Uri, bucketIsPublic, settings);
+                break;
+
+            case DOWNLOAD:
+                File parentDirectory = localFile.getParentFile();
+                if (!parentDirectory.isDirectory() && !parentDirectory.mkdirs() && !parentDirectory.isDirectory()) {
+                    throw new IOException(String.format("Can not create the directory %s", parentDirectory.getAbsolutePath()));
+                }
+                // The files are downloaded in parallel, the ranges of a file are downloaded one after the other
+                long size = remoteObject.size();
+                ResumableDownloader.download(client, s3Uri, remoteObject.eTag(), size, localFile,
+                        PartSizePolicy.getDownloadRangeSize(settings, client.getTransferMetrics(), size), 1, settings);
+                if (remoteObject.lastModified() != null && !localFile.setLastModified(remoteObject.lastModified().toEpochMilli())) {
+                    LOGGER.warn(String.format("Could not change the last modified date of file %s.", localFile.getAbsolutePath()));
+                }
+                break;
+
+            case DELETE_LOCAL:
+                Files.deleteIfExists(localFile.toPath());
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    private static void deleteRemote(S3ClientWrapper client, String bucket, List<SyncAction> actions,
+            SyncReport report, TransferSettings settings) throws InterruptedException {
+
+        List<String> keys = new ArrayList<String>(actions.size());
+        for (SyncAction action : actions) {
+            keys.add(action.getS3Uri().key().orElse(null));
+        }
+
+        Map<String, String> failures = DeleteManager.deleteKeys(client, bucket, keys, settings).getFailures();
+        for (SyncAction action : actions) {
+            String error = failures.get(action.getS3Uri().key().orElse(null));
+            if (error == null) {
+                report.addAction(action);
+            } else {
+                report.addFailure(action, new IOException(String.format("Could not delete %s: %s", action.getS3Uri(), error)));
+            }
+        }
+    }
+
+    private static SortedFileIterator.Entry nextLocal(Iterator<SortedFileIterator.Entry> localIterator) {
+        while (localIterator != null && localIterator.hasNext()) {
+            SortedFileIterator.Entry entry = localIterator.next();
+            String filename = entry.getPath().getFileName().toString();
+            // Downloads in progress
+            if (!ResumableDownloader.isDownloadFile(filename)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static S3Object nextRemote(Iterator<S3Object> remoteIterator, String bucket, String prefix) {
+        while (remoteIterator.hasNext()) {
+            S3Object s3Object = remoteIterator.next();
+            String relativePath = s3Object.key().substring(prefix.length());
+            if (SyncManager.isValidRelativePath(relativePath)) {
+                return s3Object;
+            }
+            if (!relativePath.isEmpty() && !relativePath.endsWith("/")) {
+                LOGGER.warn(String.format("Ignoring the S3 object s3://%s/%s, its key can not be used as a file path.", bucket, s3Object.key()));
+            }
+        }
+        return null;
+    }
+
+    // Reject folder markers ("dir/"), and keys which would be written outside of the local directory
+    private static boolean isValidRelativePath(String relativePath) {
+        if (relativePath.isEmpty() || relativePath.startsWith("/") || relativePath.endsWith("/")) {
+            return false;
+        }
+        for (String segment : relativePath.split("/")) {
+            if (segment.isEmpty() || ".".equals(segment) || "..".equals(segment)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
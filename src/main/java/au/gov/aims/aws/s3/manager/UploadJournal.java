@@ -0,0 +1,324 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.manager;
+
+import au.gov.aims.aws.s3.checksum.ChecksumAlgorithm;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Local record of a multipart upload in progress: its upload ID,
+ * the file being uploaded and the ETag of the parts already uploaded.
+ *
+ * <p>The journal is a small properties file, rewritten (atomically)
+ * after every part. It's deleted once the upload is completed.
+ * When it's absent, the journal only lives in memory.</p>
+ */
+public class UploadJournal {
+    private static final Logger LOGGER = Logger.getLogger(UploadJournal.class);
+
+    private static final String JOURNAL_EXTENSION = ".upload";
+
+    private static final String PROPERTY_BUCKET = "bucket";
+    private static final String PROPERTY_KEY = "key";
+    private static final String PROPERTY_UPLOAD_ID = "uploadId";
+    private static final String PROPERTY_FILE = "file";
+    private static final String PROPERTY_FILE_SIZE = "fileSize";
+    private static final String PROPERTY_FILE_LAST_MODIFIED = "fileLastModified";
+    private static final String PROPERTY_PART_SIZE = "partSize";
+    private static final String PROPERTY_CREATED = "created";
+    private static final String PROPERTY_CHECKSUM_ALGORITHM = "checksumAlgorithm";
+    private static final String PROPERTY_PART_PREFIX = "part.";
+    private static final String PROPERTY_CHECKSUM_PREFIX = "checksum.";
+
+    private final File journalFile;
+
+    private final String bucket;
+    private final String key;
+    private final String uploadId;
+    private final String file;
+    private final long fileSize;
+    private final long fileLastModified;
+    private final long partSize;
+    private final long created;
+    private final ChecksumAlgorithm checksumAlgorithm;
+
+    private final SortedMap<Integer, String> partETags = new TreeMap<Integer, String>();
+    // S3 additional checksum of the parts, encoded in base64
+    private final SortedMap<Integer, String> partChecksums = new TreeMap<Integer, String>();
+
+    public UploadJournal(File journalFile, String bucket, String key, String uploadId, File sourceFile, long partSize) {
+        this(journalFile, bucket, key, uploadId, sourceFile, partSize, null);
+    }
+
+    /**
+     * @param checksumAlgorithm The additional checksum requested when the upload was created, or null.
+     */
+    public UploadJournal(File journalFile, String bucket, String key, String uploadId, File sourceFile, long partSize,
+            ChecksumAlgorithm checksumAlgorithm) {
+        this(journalFile, bucket, key, uploadId, sourceFile.getAbsolutePath(),
+                sourceFile.length(), sourceFile.lastModified(), partSize, System.currentTimeMillis(), checksumAlgorithm);
+    }
+
+    private UploadJournal(File journalFile, String bucket, String key, String uploadId,
+            String file, long fileSize, long fileLastModified, long partSize, long created, ChecksumAlgorithm checksumAlgorithm) {
+        this.journalFile = journalFile;
+        this.bucket = bucket;
+        this.key = key;
+        this.uploadId = uploadId;
+        this.file = file;
+        this.fileSize = fileSize;
+        this.fileLastModified = fileLastModified;
+        this.partSize = partSize;
+        this.created = created;
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
+    /**
+     * @return The journal file of the upload of a file to a S3 key,
+     *     or null if the journal directory is null.
+     */
+    public static File getJournalFile(File journalDirectory, String bucket, String key, File sourceFile) {
+        if (journalDirectory == null) {
+            return null;
+        }
+
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            // SHA-256 is available on every Java platform
+            throw new IllegalStateException(ex);
+        }
+        sha256.update((bucket + '\n' + key + '\n' + sourceFile.getAbsolutePath()).getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder journalId = new StringBuilder();
+        for (byte aByte : sha256.digest()) {
+            journalId.append(Integer.toString((aByte & 0xff) + 0x100, 16).substring(1));
+        }
+        return new File(journalDirectory, journalId + JOURNAL_EXTENSION);
+    }
+
+    /**
+     * @return The journal, or null if the file doesn't exist or can't be read.
+     */
+    public static UploadJournal load(File journalFile) {
+        if (journalFile == null || !journalFile.isFile()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream inputStream = new FileInputStream(journalFile)) {
+            properties.load(inputStream);
+
+            String checksumAlgorithm = properties.getProperty(PROPERTY_CHECKSUM_ALGORITHM);
+            UploadJournal journal = new UploadJournal(journalFile,
+                    properties.getProperty(PROPERTY_BUCKET),
+                    properties.getProperty(PROPERTY_KEY),
+                    properties.getProperty(PROPERTY_UPLOAD_ID),
+                    properties.getProperty(PROPERTY_FILE),
+                    Long.parseLong(properties.getProperty(PROPERTY_FILE_SIZE)),
+                    Long.parseLong(properties.getProperty(PROPERTY_FILE_LAST_MODIFIED)),
+                    Long.parseLong(properties.getProperty(PROPERTY_PART_SIZE)),
+                    Long.parseLong(properties.getProperty(PROPERTY_CREATED)),
+                    checksumAlgorithm == null ? null : ChecksumAlgorithm.valueOf(checksumAlgorithm));
+
+            for (String propertyName : properties.stringPropertyNames()) {
+                if (propertyName.startsWith(PROPERTY_PART_PREFIX)) {
+                    int partNumber = Integer.parseInt(propertyName.substring(PROPERTY_PART_PREFIX.length()));
+                    journal.partETags.put(partNumber, properties.getProperty(propertyName));
+                } else if (propertyName.startsWith(PROPERTY_CHECKSUM_PREFIX)) {
+                    int partNumber = Integer.parseInt(propertyName.substring(PROPERTY_CHECKSUM_PREFIX.length()));
+                    journal.partChecksums.put(partNumber, properties.getProperty(propertyName));
+                }
+            }
+
+            if (journal.bucket == null || journal.key == null || journal.uploadId == null) {
+                throw new IOException("Incomplete journal");
+            }
+            return journal;
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.warn(String.format("Invalid upload journal %s. Ignored.", journalFile), ex);
+            return null;
+        }
+    }
+
+    /**
+     * @return All the readable journals of a directory.
+     */
+    public static List<UploadJournal> list(File journalDirectory) {
+        List<UploadJournal> journals = new ArrayList<UploadJournal>();
+        File[] journalFiles = journalDirectory == null ? null : journalDirectory.listFiles();
+        if (journalFiles == null) {
+            return journals;
+        }
+
+        for (File journalFile : journalFiles) {
+            if (journalFile.getName().endsWith(JOURNAL_EXTENSION)) {
+                UploadJournal journal = UploadJournal.load(journalFile);
+                if (journal != null) {
+                    journals.add(journal);
+                }
+            }
+        }
+        return journals;
+    }
+
+    /**
+     * @return True if the journal was made for that version of the file, uploaded with that part size.
+     */
+    public boolean matches(File sourceFile, long partSize) {
+        return this.file.equals(sourceFile.getAbsolutePath()) &&
+                this.fileSize == sourceFile.length() &&
+                this.fileLastModified == sourceFile.lastModified() &&
+                this.partSize == partSize;
+    }
+
+    public synchronized void putPart(int partNumber, String eTag) throws IOException {
+        this.putPart(partNumber, eTag, null);
+    }
+
+    /**
+     * @param checksum The additional checksum of the part, encoded in base64, or null.
+     */
+    public synchronized void putPart(int partNumber, String eTag, String checksum) throws IOException {
+        this.partETags.put(partNumber, eTag);
+        if (checksum != null) {
+            this.partChecksums.put(partNumber, checksum);
+        }
+        this.save();
+    }
+
+    /**
+     * Replace the parts with the ones reported by S3.
+     */
+    public synchronized void setParts(Map<Integer, String> parts) throws IOException {
+        this.setParts(parts, null);
+    }
+
+    /**
+     * @param checksums The additional checksums of the parts, or null.
+     */
+    public synchronized void setParts(Map<Integer, String> parts, Map<Integer, String> checksums) throws IOException {
+        this.partETags.clear();
+        this.partETags.putAll(parts);
+        this.partChecksums.clear();
+        if (checksums != null) {
+            this.partChecksums.putAll(checksums);
+        }
+        this.save();
+    }
+
+    public synchronized SortedMap<Integer, String> getParts() {
+        return new TreeMap<Integer, String>(this.partETags);
+    }
+
+    public synchronized SortedMap<Integer, String> getPartChecksums() {
+        return new TreeMap<Integer, String>(this.partChecksums);
+    }
+
+    public synchronized void save() throws IOException {
+        if (this.journalFile == null) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty(PROPERTY_BUCKET, this.bucket);
+        properties.setProperty(PROPERTY_KEY, this.key);
+        properties.setProperty(PROPERTY_UPLOAD_ID, this.uploadId);
+        properties.setProperty(PROPERTY_FILE, this.file);
+        properties.setProperty(PROPERTY_FILE_SIZE, String.valueOf(this.fileSize));
+        properties.setProperty(PROPERTY_FILE_LAST_MODIFIED, String.valueOf(this.fileLastModified));
+        properties.setProperty(PROPERTY_PART_SIZE, String.valueOf(this.partSize));
+        properties.setProperty(PROPERTY_CREATED, String.valueOf(this.created));
+        if (this.checksumAlgorithm != null) {
+            properties.setProperty(PROPERTY_CHECKSUM_ALGORITHM, this.checksumAlgorithm.name());
+        }
+        for (Map.Entry<Integer, String> part : this.partETags.entrySet()) {
+            properties.setProperty(PROPERTY_PART_PREFIX + part.getKey(), part.getValue());
+        }
+        for (Map.Entry<Integer, String> checksum : this.partChecksums.entrySet()) {
+            properties.setProperty(PROPERTY_CHECKSUM_PREFIX + checksum.getKey(), checksum.getValue());
+        }
+
+        File directory = this.journalFile.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException(String.format("Can not create the journal directory %s", directory));
+        }
+
+        // Write a temporary file, then rename it, to never leave a truncated journal
+        File tmpFile = new File(directory, this.journalFile.getName() + ".tmp");
+        try (OutputStream outputStream = new FileOutputStream(tmpFile)) {
+            properties.store(outputStream, null);
+        }
+        Files.move(tmpFile.toPath(), this.journalFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public synchronized void delete() {
+        if (this.journalFile != null && this.journalFile.exists() && !this.journalFile.delete()) {
+            LOGGER.warn(String.format("Could not delete the upload journal %s", this.journalFile));
+        }
+    }
+
+    public File getJournalFile() {
+        return this.journalFile;
+    }
+
+    public String getBucket() {
+        return this.bucket;
+    }
+
+    public String getKey() {
+        return this.key;
+    }
+
+    public String getUploadId() {
+        return this.uploadId;
+    }
+
+    public long getPartSize() {
+        return this.partSize;
+    }
+
+    public long getCreated() {
+        return this.created;
+    }
+
+    public ChecksumAlgorithm getChecksumAlgorithm() {
+        return this.checksumAlgorithm;
+    }
+}
@@ -18,63 +18,77 @@
  */
 package au.gov.aims.aws.s3.manager;
 
+import au.gov.aims.aws.s3.ETagCalculator;
 import au.gov.aims.aws.s3.S3Utils;
+import au.gov.aims.aws.s3.checksum.S3Checksums;
+import au.gov.aims.aws.s3.compression.CompressionCodec;
+import au.gov.aims.aws.s3.compression.CompressionPolicy;
 import au.gov.aims.aws.s3.entity.S3Bucket;
 import au.gov.aims.aws.s3.entity.S3ClientWrapper;
 import au.gov.aims.aws.s3.entity.S3File;
 import au.gov.aims.aws.s3.entity.S3List;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import au.gov.aims.aws.s3.io.S3OutputStream;
+import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
 import software.amazon.awssdk.services.s3.S3Uri;
 import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Object;
 import software.amazon.awssdk.transfer.s3.S3TransferManager;
 import software.amazon.awssdk.transfer.s3.model.FileUpload;
 import software.amazon.awssdk.transfer.s3.model.UploadFileRequest;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 public class UploadManager {
     private static final Logger LOGGER = Logger.getLogger(UploadManager.class);
     private static final int MB = 1024 * 1024;
     private static final int S3_ATTEMPT = 5;
-
-    // S3 have a 5 GB limit for file upload in a single request.
-    // Larger files needs to be uploaded by chunks (minimum file size of 5 MB).
-    // The following limit is used to determine if a file should be uploaded at once
-    // or using the multithreaded multipart upload.
-    //   IMPORTANT: Must be between 5 MB and 5 GB
-    private static final long S3_MULTIPART_UPLOAD_FILESIZE_THRESHOLD = 500L * MB;
-
-    // Set the size of upload parts.
-    // - Small parts will result in large amount of requests, increasing S3 PUT cost.
-    // - Large parts may result in less concurrent upload and larger retry when a part fail (?).
-    // Default: 5 MB
-    //   TransferManagerConfiguration.DEFAULT_MINIMUM_UPLOAD_PART_SIZE = 5 * MB;
-    private static final long S3_MULTIPART_UPLOAD_PART_SIZE = 100L * MB;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
 
     public static S3List upload(S3ClientWrapper client, File sourceFile, S3Uri destinationUri) throws IOException, InterruptedException {
+        return UploadManager.upload(client, sourceFile, destinationUri, client.getTransferSettings());
+    }
+
+    /**
+     * Upload a file or a directory.
+     * Files larger than the multipart threshold are uploaded in parts,
+     * and their upload is resumed where it stopped when the upload is retried.
+     * The part size is chosen by the {@link PartSizePolicy}.
+     * With {@link TransferSettings#setSkipUnchanged(boolean)}, only the new and modified
+     * files are uploaded; the other files are listed in {@link S3List#getSkipped()}.
+     * @param settings Settings for this upload, overriding the client settings.
+     */
+    public static S3List upload(S3ClientWrapper client, File sourceFile, S3Uri destinationUri, TransferSettings settings) throws IOException, InterruptedException {
         String bucket = destinationUri.bucket().orElse(null);
         if (!BucketManager.bucketExists(client, bucket)) {
             throw new IOException(String.format("Bucket %s doesn't exist.", bucket));
         }
 
         for (int i=0; i<S3_ATTEMPT; i++) {
+            long generation = client.getGeneration();
             try {
-                return UploadManager.rawUpload(client, sourceFile, destinationUri);
+                return UploadManager.rawUpload(client, sourceFile, destinationUri, settings);
             } catch(Throwable ex) {
                 LOGGER.warn(String.format("Error occurred while trying to upload the file %s on S3: %s. Attempting to reconnect.",
                         sourceFile, destinationUri), ex);
-                client.reconnect();
+                client.reconnect(generation);
             }
         }
         // Try a last time, to throw the exception
-        return UploadManager.rawUpload(client, sourceFile, destinationUri);
+        return UploadManager.rawUpload(client, sourceFile, destinationUri, settings);
     }
 
-    private static S3List rawUpload(S3ClientWrapper client, File sourceFile, S3Uri destinationUri) throws IOException, InterruptedException {
+    private static S3List rawUpload(S3ClientWrapper client, File sourceFile, S3Uri destinationUri, TransferSettings settings) throws IOException, InterruptedException {
         S3List s3List;
 
         S3TransferManager transferManager = null;
@@ -90,7 +104,12 @@ public class UploadManager {
 
             long startTime = System.currentTimeMillis();
 
-            s3List = UploadManager.upload(transferManager, sourceFile, destinationUri, bucketIsPublic);
+            Map<String, S3Object> remoteObjects = null;
+            if (settings.isSkipUnchanged()) {
+                remoteObjects = UploadManager.listRemoteObjects(client, sourceFile, destinationUri);
+            }
+
+            s3List = UploadManager.upload(client, transferManager, sourceFile, destinationUri, bucketIsPublic, settings, remoteObjects);
 
             long endTime = System.currentTimeMillis();
 
@@ -110,7 +129,9 @@ public class UploadManager {
 
 
     // Internal upload (recursive)
-    private static S3List upload(S3TransferManager transferManager, File sourceFile, S3Uri destinationUri, boolean bucketIsPublic) throws IOException, InterruptedException {
+    // remoteObjects: the objects already on S3, or null to upload every file
+    private static S3List upload(S3ClientWrapper client, S3TransferManager transferManager, File sourceFile, S3Uri destinationUri,
+            boolean bucketIsPublic, TransferSettings settings, Map<String, S3Object> remoteObjects) throws IOException, InterruptedException {
         S3List s3List = new S3List();
 
         String bucket = destinationUri.bucket().orElse(null);
@@ -127,7 +148,7 @@ public class UploadManager {
 
                 for (File childFile : childFiles) {
                     s3List.putAll(
-                        UploadManager.upload(transferManager, childFile, childDestinationUri, bucketIsPublic));
+                        UploadManager.upload(client, transferManager, childFile, childDestinationUri, bucketIsPublic, settings, remoteObjects));
                 }
             }
 
@@ -142,21 +163,75 @@ public class UploadManager {
                 destinationUri = S3Utils.getS3URI(bucket, key, sourceFile.getName());
             }
 
+            if (remoteObjects != null) {
+                S3Object remoteObject = remoteObjects.get(destinationUri.key().orElse(null));
+                if (remoteObject != null && UploadManager.isUnchanged(client, destinationUri, sourceFile,
+                        remoteObject.size(), remoteObject.lastModified(), remoteObject.eTag(), settings)) {
+
+                    LOGGER.debug(String.format("Skipping file %s, %s is up to date", sourceFile, destinationUri));
+                    S3File s3File = new S3File(destinationUri);
+                    s3File.setLocalFile(sourceFile);
+                    s3List.putSkipped(s3File);
+                    return s3List;
+                }
+            }
+
+            UploadManager.uploadFile(client, transferManager, sourceFile, destinationUri, bucketIsPublic, settings);
+
+            S3File s3File = new S3File(destinationUri);
+            s3File.setLocalFile(sourceFile);
+
+            s3List.putFile(s3File);
+
+        } else {
+            throw new IOException(String.format("Can not upload the file %s, it's not a normal file.", sourceFile.getAbsolutePath()));
+        }
+
+        return s3List;
+    }
+
+    /**
+     * Upload a single file to a S3 key, in parts if it's larger than the multipart threshold.
+     */
+    static void uploadFile(S3ClientWrapper client, S3TransferManager transferManager, File sourceFile, S3Uri destinationUri,
+            boolean bucketIsPublic, TransferSettings settings) throws IOException, InterruptedException {
+        String bucket = destinationUri.bucket().orElse(null);
+
+        Map<String, String> customMetadata = new HashMap<String, String>();
+        customMetadata.put(S3File.USER_METADATA_LAST_MODIFIED_KEY, ""+sourceFile.lastModified());
 
+        CompressionCodec codec = UploadManager.getCompressionCodec(sourceFile, settings);
+        if (codec != null) {
+            UploadManager.uploadCompressedFile(client, sourceFile, destinationUri, bucketIsPublic, customMetadata, codec, settings);
+        } else if (sourceFile.length() > settings.getMultipartThreshold()) {
             // File too big, uploading it in chunks
             // http://docs.aws.amazon.com/AmazonS3/latest/dev/UploadingObjects.html
 
-            Map<String, String> customMetadata = new HashMap<String, String>();
-            customMetadata.put(S3File.USER_METADATA_LAST_MODIFIED_KEY, ""+sourceFile.lastModified());
+            long partSize = PartSizePolicy.getUploadPartSize(settings, client.getTransferMetrics(), sourceFile.length());
 
+            LOGGER.debug(String.format("Uploading file %s (%d MB) to %s using a multipart upload, parts of %d MB",
+                sourceFile,
+                sourceFile.length() / MB,
+                destinationUri,
+                partSize / MB));
+
+            MultipartUploader.upload(client, sourceFile, destinationUri, customMetadata,
+                bucketIsPublic, partSize, settings);
+
+            LOGGER.debug("Upload completed.");
+        } else {
             PutObjectRequest.Builder putObjectRequestBuilder = PutObjectRequest.builder()
                 .bucket(bucket)
-                .key(key)
+                .key(destinationUri.key().orElse(null))
                 .metadata(customMetadata);
 
             if (bucketIsPublic) {
                 putObjectRequestBuilder.acl(ObjectCannedACL.PUBLIC_READ);
             }
+            if (settings.getChecksumAlgorithm() != null) {
+                // Computed by the SDK while the file is sent, and verified by S3
+                putObjectRequestBuilder.checksumAlgorithm(S3Checksums.toSdkAlgorithm(settings.getChecksumAlgorithm()));
+            }
 
             PutObjectRequest putObjectRequest = putObjectRequestBuilder.build();
 
@@ -177,20 +252,212 @@ public class UploadManager {
             LOGGER.debug("Upload started...");
 
             // Wait for the upload to finish before continuing.
-            fileUpload.completionFuture().join();
+            String eTag = fileUpload.completionFuture().join().response().eTag();
+
+            // The TransferManager may upload large files in parts of unknown size
+            if (settings.isVerifyETag() && ETagCalculator.isComparable(eTag) && !eTag.contains("-") &&
+                    !Boolean.TRUE.equals(ETagCalculator.matches(sourceFile, eTag, settings.getConcurrency()))) {
+                throw new IOException(String.format("The uploaded object %s doesn't match the file %s: ETag %s",
+                        destinationUri, sourceFile, eTag));
+            }
 
             LOGGER.debug("Upload completed.");
+        }
+        client.objectWritten(destinationUri);
+    }
 
-            S3File s3File = new S3File(destinationUri);
-            s3File.setLocalFile(sourceFile);
+    /**
+     * Compress a file while it's uploaded. The size of the compressed content is unknown,
+     * it's uploaded with a {@link S3OutputStream} (in parts if it's large).
+     */
+    private static void uploadCompressedFile(S3ClientWrapper client, File sourceFile, S3Uri destinationUri,
+            boolean bucketIsPublic, Map<String, String> customMetadata, CompressionCodec codec, TransferSettings settings)
+            throws IOException {
+
+        LOGGER.debug(String.format("Uploading file %s (%d MB) to %s, compressed with %s",
+            sourceFile,
+            sourceFile.length() / MB,
+            destinationUri,
+            codec.getName()));
+
+        // The compressed content is smaller than the file, the part size chosen for the file is large enough
+        S3OutputStream s3OutputStream = new S3OutputStream(client, destinationUri, bucketIsPublic, sourceFile.length(),
+                customMetadata, codec.getName(), settings);
+        try (InputStream inputStream = new FileInputStream(sourceFile)) {
+            OutputStream compressedOutputStream = codec.compress(s3OutputStream);
+            IOUtils.copyLarge(inputStream, compressedOutputStream, new byte[STREAM_BUFFER_SIZE]);
+            // Write the end of the compressed content, and upload the object
+            compressedOutputStream.close();
+        } catch (IOException | RuntimeException ex) {
+            s3OutputStream.abort();
+            throw ex;
+        }
 
-            s3List.putFile(s3File);
+        client.getTransferMetrics().fileCompressed(sourceFile.length(), s3OutputStream.getSize());
+        LOGGER.debug(String.format("Upload completed: %d bytes compressed to %d bytes.", sourceFile.length(), s3OutputStream.getSize()));
+    }
+
+    /**
+     * @return The codec used to compress the file when it's uploaded, or null if it's uploaded as is.
+     */
+    static CompressionCodec getCompressionCodec(File sourceFile, TransferSettings settings) {
+        CompressionPolicy compressionPolicy = settings.getCompressionPolicy();
+        return compressionPolicy == null ? null : compressionPolicy.getCodec(sourceFile.getName(), sourceFile.length());
+    }
+
+    /**
+     * List the objects under the destination of a file or a directory,
+     * with a single (paginated) listing.
+     * @return The objects, indexed by key.
+     */
+    private static Map<String, S3Object> listRemoteObjects(S3ClientWrapper client, File sourceFile, S3Uri destinationUri) {
+        String bucket = destinationUri.bucket().orElse(null);
+        String key = destinationUri.key().orElse(null);
 
+        // Same destination as the upload
+        String prefix;
+        if (sourceFile.isDirectory()) {
+            prefix = S3Utils.getS3URI(bucket, key, sourceFile.getName() + "/").key().orElse(null);
+        } else if (S3Utils.getFilename(destinationUri) == null) {
+            prefix = S3Utils.getS3URI(bucket, key, sourceFile.getName()).key().orElse(null);
         } else {
-            throw new IOException(String.format("Can not upload the file %s, it's not a normal file.", sourceFile.getAbsolutePath()));
+            prefix = key;
+        }
+
+        Map<String, S3Object> remoteObjects = new HashMap<String, S3Object>();
+        Iterator<S3Object> objectIterator = ListManager.listObjects(client, bucket, prefix);
+        while (objectIterator.hasNext()) {
+            S3Object s3Object = objectIterator.next();
+            remoteObjects.put(s3Object.key(), s3Object);
         }
 
+        LOGGER.debug(String.format("%d objects found under s3://%s/%s", remoteObjects.size(), bucket, prefix));
+        return remoteObjects;
+    }
+
+    static boolean isUnchanged(File sourceFile, Long remoteSize, Instant remoteLastModified, String remoteETag,
+            TransferSettings settings) throws IOException {
+        return UploadManager.isUnchanged(null, null, sourceFile, remoteSize, remoteLastModified, remoteETag, settings);
+    }
+
+    /**
+     * @param client Used to request the part size recorded with an object uploaded in parts,
+     *     or null to only try the candidate part sizes (see {@link ETagCalculator#matches(File, String, int, long...)}).
+     * @param remoteUri The S3 object, used with the client.
+     * @param remoteSize The size of the S3 object.
+     * @param remoteLastModified The date the S3 object was uploaded.
+     * @param remoteETag The ETag of the S3 object.
+     * @param settings With compareContent, the ETag of the file is compared with
+     *     the ETag of the S3 object, instead of the dates.
+     *     The dates are still compared when the content can't be compared: files compressed
+     *     by the compression policy, ETags which are not a MD5 (SSE-KMS, SSE-C), and objects
+     *     uploaded in parts of an unknown size (not uploaded by this library).
+     * @return True if the S3 object is up to date.
+     */
+    static boolean isUnchanged(S3ClientWrapper client, S3Uri remoteUri, File sourceFile, Long remoteSize,
+            Instant remoteLastModified, String remoteETag, TransferSettings settings) throws IOException {
+
+        boolean compressed = UploadManager.getCompressionCodec(sourceFile, settings) != null;
+        // The size and the ETag of a compressed object can't be compared with the file
+        if (!compressed && (remoteSize == null || remoteSize != sourceFile.length())) {
+            return false;
+        }
+
+        if (settings.isCompareContent() && !compressed) {
+            // The object listing doesn't include the user metadata
+            Long uploadPartSize = client != null && ETagCalculator.isMultipart(remoteETag) ?
+                    S3File.getUploadPartSize(client, remoteUri) : null;
+            Boolean matches = ETagCalculator.matches(sourceFile, remoteETag, uploadPartSize,
+                    settings.getConcurrency(), settings.getPartSize());
+            if (matches != null) {
+                return matches;
+            }
+            LOGGER.debug(String.format("Could not compare the content of %s with its ETag %s, comparing the dates",
+                    sourceFile, remoteETag));
+        }
+
+        // The S3 date has a precision of a second
+        return remoteLastModified != null &&
+                remoteLastModified.toEpochMilli() >= sourceFile.lastModified() / 1000 * 1000;
+    }
+
+    /**
+     * Open a stream to upload content of unknown length, without writing it to disk first.
+     * The object is created when the stream is closed.
+     * @see S3OutputStream
+     */
+    public static S3OutputStream openOutputStream(S3ClientWrapper client, S3Uri destinationUri) throws IOException {
+        return UploadManager.openOutputStream(client, destinationUri, -1, client.getTransferSettings());
+    }
+
+    /**
+     * @param expectedSize The expected size of the content, in bytes, or -1 if unknown.
+     * @param settings Settings for this upload, overriding the client settings.
+     */
+    public static S3OutputStream openOutputStream(S3ClientWrapper client, S3Uri destinationUri, long expectedSize, TransferSettings settings) throws IOException {
+        String bucketName = destinationUri.bucket().orElse(null);
+        if (!BucketManager.bucketExists(client, bucketName)) {
+            throw new IOException(String.format("Bucket %s doesn't exist.", bucketName));
+        }
+        if (S3Utils.getFilename(destinationUri) == null) {
+            throw new IOException(String.format("Invalid destination %s, expected a file.", destinationUri));
+        }
+
+        S3Bucket bucket = new S3Bucket(bucketName);
+        return new S3OutputStream(client, destinationUri, bucket.isPublic(client), expectedSize, settings);
+    }
+
+    /**
+     * Upload the content of a stream. The stream is read until its end, but not closed.
+     * Large content is uploaded in parts while the stream is read.
+     */
+    public static S3List upload(S3ClientWrapper client, InputStream inputStream, S3Uri destinationUri) throws IOException {
+        return UploadManager.upload(client, inputStream, destinationUri, -1, client.getTransferSettings());
+    }
+
+    /**
+     * @param expectedSize The expected size of the content, in bytes, or -1 if unknown.
+     * @param settings Settings for this upload, overriding the client settings.
+     */
+    public static S3List upload(S3ClientWrapper client, InputStream inputStream, S3Uri destinationUri, long expectedSize, TransferSettings settings) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        S3OutputStream outputStream = UploadManager.openOutputStream(client, destinationUri, expectedSize, settings);
+        try {
+            IOUtils.copyLarge(inputStream, outputStream, new byte[STREAM_BUFFER_SIZE]);
+        } catch (IOException | RuntimeException ex) {
+            outputStream.abort();
+            throw ex;
+        }
+        outputStream.close();
+
+        S3List s3List = new S3List();
+        s3List.putFile(new S3File(destinationUri));
+        s3List.setExecutionTime(System.currentTimeMillis() - startTime);
         return s3List;
     }
 
+    /**
+     * Abort the multipart uploads of a bucket older than the stale upload age of the client settings.
+     * The parts of multipart uploads which were never completed are kept (and charged) by S3.
+     * Nothing is aborted when the stale upload age is 0 (default).
+     * @return The number of aborted uploads.
+     */
+    public static int abortStaleUploads(S3ClientWrapper client, String bucket) {
+        long staleUploadAge = client.getTransferSettings().getStaleUploadAge();
+        if (staleUploadAge <= 0) {
+            return 0;
+        }
+        return UploadManager.abortStaleUploads(client, bucket, staleUploadAge);
+    }
+
+    /**
+     * Abort all the multipart uploads of a bucket started more than maxAge milliseconds ago,
+     * including the uploads started by other applications.
+     * @return The number of aborted uploads.
+     */
+    public static int abortStaleUploads(S3ClientWrapper client, String bucket, long maxAge) {
+        TransferSettings settings = client.getTransferSettings();
+        return MultipartUploader.abortStaleUploads(client, bucket, maxAge, settings.getJournalDirectory());
+    }
 }
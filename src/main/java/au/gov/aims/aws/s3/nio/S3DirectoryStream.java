@@ -0,0 +1,177 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.nio;
+
+import au.gov.aims.aws.s3.S3Utils;
+import au.gov.aims.aws.s3.cache.MetadataCache;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedDirectoryStreamException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Entries of a S3 "directory", streamed one listing page at a time.
+ *
+ * <p>The metadata returned with each page is added to the file system
+ * metadata cache, so reading the attributes of the entries
+ * (as done by {@code Files.walk}) doesn't send a HEAD request per object.</p>
+ */
+public class S3DirectoryStream implements DirectoryStream<Path> {
+    private final S3FileSystem fileSystem;
+    private final S3Path directory;
+    private final String prefix;
+    private final Filter<? super Path> filter;
+
+    private final ArrayDeque<Path> pageEntries = new ArrayDeque<Path>();
+    private String continuationToken;
+    private boolean lastPage = false;
+
+    private boolean open = true;
+    private boolean iteratorReturned = false;
+
+    S3DirectoryStream(S3FileSystem fileSystem, S3Path directory, Filter<? super Path> filter) {
+        this.fileSystem = fileSystem;
+        this.directory = directory.toAbsolutePath();
+        String key = this.directory.getKey();
+        this.prefix = key.isEmpty() ? key : key + "/";
+        this.filter = filter;
+    }
+
+    /**
+     * Request the next listing page and queue its entries.
+     * @return False if the page was empty.
+     */
+    boolean fetchPage() throws IOException {
+        ListObjectsV2Request.Builder pageBuilder = ListObjectsV2Request.builder()
+                .bucket(this.fileSystem.getBucket())
+                .prefix(this.prefix)
+                .delimiter("/");
+        if (this.continuationToken != null) {
+            pageBuilder.continuationToken(this.continuationToken);
+        }
+
+        ListObjectsV2Response page = this.fileSystem.listPage(pageBuilder.build());
+        MetadataCache metadataCache = this.fileSystem.getMetadataCache();
+        String bucket = this.fileSystem.getBucket();
+
+        boolean empty = true;
+        for (S3Object s3Object : page.contents()) {
+            empty = false;
+            String key = s3Object.key();
+            // Directory marker
+            if (key.equals(this.prefix)) {
+                continue;
+            }
+
+            metadataCache.putFile(S3Utils.getS3URI(bucket, key), s3Object.size(),
+                    s3Object.lastModified() == null ? null : s3Object.lastModified().toEpochMilli(),
+                    s3Object.eTag());
+            this.addEntry(key.substring(this.prefix.length()));
+        }
+
+        for (CommonPrefix commonPrefix : page.commonPrefixes()) {
+            empty = false;
+            String directoryKey = commonPrefix.prefix();
+            metadataCache.putDirectory(S3Utils.getS3URI(bucket, directoryKey));
+
+            String name = directoryKey.substring(this.prefix.length());
+            if (name.endsWith("/")) {
+                name = name.substring(0, name.length() - 1);
+            }
+            this.addEntry(name);
+        }
+
+        this.continuationToken = page.nextContinuationToken();
+        this.lastPage = this.continuationToken == null;
+
+        return !empty;
+    }
+
+    private void addEntry(String name) throws IOException {
+        if (name.isEmpty()) {
+            return;
+        }
+        Path entry = this.directory.resolve(name);
+        if (this.filter == null || this.filter.accept(entry)) {
+            this.pageEntries.add(entry);
+        }
+    }
+
+    @Override
+    public synchronized Iterator<Path> iterator() {
+        if (!this.open) {
+            throw new ClosedDirectoryStreamException();
+        }
+        if (this.iteratorReturned) {
+            throw new IllegalStateException("The iterator has already been returned.");
+        }
+        this.iteratorReturned = true;
+
+        return new Iterator<Path>() {
+            @Override
+            public boolean hasNext() {
+                synchronized (S3DirectoryStream.this) {
+                    while (S3DirectoryStream.this.open &&
+                            S3DirectoryStream.this.pageEntries.isEmpty() &&
+                            !S3DirectoryStream.this.lastPage) {
+                        try {
+                            S3DirectoryStream.this.fetchPage();
+                        } catch (IOException ex) {
+                            throw new DirectoryIteratorException(ex);
+                        } catch (UncheckedIOException ex) {
+                            throw new DirectoryIteratorException(ex.getCause());
+                        }
+                    }
+                    return S3DirectoryStream.this.open && !S3DirectoryStream.this.pageEntries.isEmpty();
+                }
+            }
+
+            @Override
+            public Path next() {
+                synchronized (S3DirectoryStream.this) {
+                    if (!this.hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return S3DirectoryStream.this.pageEntries.poll();
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public synchronized void close() {
+        this.open = false;
+        this.pageEntries.clear();
+    }
+}
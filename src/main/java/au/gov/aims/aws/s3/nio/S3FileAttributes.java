@@ -0,0 +1,134 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.nio;
+
+import au.gov.aims.aws.s3.cache.MetadataCache;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Basic attributes of a S3 object or directory.
+ * Directories have no size nor dates, since they only exist as key prefixes.
+ */
+public class S3FileAttributes implements BasicFileAttributes {
+    private static final FileTime EPOCH = FileTime.fromMillis(0);
+
+    private final String key;
+    private final boolean directory;
+    private final long size;
+    private final FileTime lastModifiedTime;
+    private final String eTag;
+
+    S3FileAttributes(String key, boolean directory, Long size, Long lastModified, String eTag) {
+        this.key = key;
+        this.directory = directory;
+        this.size = size == null ? 0 : size;
+        this.lastModifiedTime = lastModified == null ? EPOCH : FileTime.fromMillis(lastModified);
+        this.eTag = eTag;
+    }
+
+    S3FileAttributes(String key, MetadataCache.Entry entry) {
+        this(key, entry.getType() == MetadataCache.Type.DIRECTORY,
+                entry.getSize(), entry.getLastModified(), entry.getETag());
+    }
+
+    @Override
+    public FileTime lastModifiedTime() {
+        return this.lastModifiedTime;
+    }
+
+    @Override
+    public FileTime lastAccessTime() {
+        return this.lastModifiedTime;
+    }
+
+    @Override
+    public FileTime creationTime() {
+        return this.lastModifiedTime;
+    }
+
+    @Override
+    public boolean isRegularFile() {
+        return !this.directory;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return this.directory;
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+        return false;
+    }
+
+    @Override
+    public boolean isOther() {
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return this.size;
+    }
+
+    @Override
+    public Object fileKey() {
+        return this.key;
+    }
+
+    /**
+     * @return The ETag of the object, or null for directories.
+     */
+    public String eTag() {
+        return this.eTag;
+    }
+
+    /**
+     * Attributes by name, as returned by {@code Files.readAttributes(path, "basic:*")}.
+     */
+    Map<String, Object> toMap(String attributes) {
+        Map<String, Object> allAttributes = new HashMap<String, Object>();
+        allAttributes.put("lastModifiedTime", this.lastModifiedTime());
+        allAttributes.put("lastAccessTime", this.lastAccessTime());
+        allAttributes.put("creationTime", this.creationTime());
+        allAttributes.put("size", this.size());
+        allAttributes.put("isRegularFile", this.isRegularFile());
+        allAttributes.put("isDirectory", this.isDirectory());
+        allAttributes.put("isSymbolicLink", this.isSymbolicLink());
+        allAttributes.put("isOther", this.isOther());
+        allAttributes.put("fileKey", this.fileKey());
+
+        Map<String, Object> selectedAttributes = new HashMap<String, Object>();
+        for (String attribute : attributes.split(",")) {
+            attribute = attribute.trim();
+            if ("*".equals(attribute)) {
+                selectedAttributes.putAll(allAttributes);
+            } else if (allAttributes.containsKey(attribute)) {
+                selectedAttributes.put(attribute, allAttributes.get(attribute));
+            } else {
+                throw new IllegalArgumentException(String.format("Unsupported attribute: %s", attribute));
+            }
+        }
+        return selectedAttributes;
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.nio;
+
+import au.gov.aims.aws.s3.cache.MetadataCache;
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.entity.S3File;
+import au.gov.aims.aws.s3.io.S3SeekableByteChannel;
+import au.gov.aims.aws.s3.manager.ListManager;
+import org.apache.log4j.Logger;
+import software.amazon.awssdk.services.s3.S3Uri;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+
+import java.io.IOException;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.Collections;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Read-only file system over a S3 bucket.
+ *
+ * <p>Object attributes are kept in a {@link MetadataCache}, shared with
+ * the client when it has one. The cache is filled by HEAD requests and by
+ * directory listings. Note that listings only return the S3 last modified date,
+ * while a HEAD request returns the "lastmodified" user metadata
+ * set by the UploadManager, when available.</p>
+ */
+public class S3FileSystem extends FileSystem {
+    private static final Logger LOGGER = Logger.getLogger(S3FileSystem.class);
+
+    private final S3FileSystemProvider provider;
+    private final S3ClientWrapper client;
+    private final String bucket;
+    private final MetadataCache metadataCache;
+    // True if the client was created for the file system, and must be closed with it
+    private final boolean ownsClient;
+
+    private volatile boolean open = true;
+
+    S3FileSystem(S3FileSystemProvider provider, S3ClientWrapper client, String bucket) {
+        this(provider, client, bucket, false);
+    }
+
+    S3FileSystem(S3FileSystemProvider provider, S3ClientWrapper client, String bucket, boolean ownsClient) {
+        this.provider = provider;
+        this.client = client;
+        this.bucket = bucket;
+        this.ownsClient = ownsClient;
+
+        MetadataCache clientMetadataCache = client == null ? null : client.getMetadataCache();
+        this.metadataCache = clientMetadataCache == null ? new MetadataCache() : clientMetadataCache;
+    }
+
+    public S3ClientWrapper getClient() {
+        return this.client;
+    }
+
+    public String getBucket() {
+        return this.bucket;
+    }
+
+    public MetadataCache getMetadataCache() {
+        return this.metadataCache;
+    }
+
+    /**
+     * Get the attributes of an object or a directory,
+     * from the metadata cache when possible.
+     * @throws NoSuchFileException If there is no object nor directory at that path.
+     */
+    public S3FileAttributes readAttributes(S3Path path) throws IOException {
+        this.ensureOpen();
+
+        S3Path absolutePath = path.toAbsolutePath();
+        String key = absolutePath.getKey();
+        if (key.isEmpty()) {
+            // The root of the bucket
+            return new S3FileAttributes(key, true, null, null, null);
+        }
+
+        S3Uri s3Uri = absolutePath.getS3Uri();
+        MetadataCache.Entry entry = this.metadataCache.get(s3Uri);
+        if (entry == null) {
+            entry = this.fetchMetadata(absolutePath);
+        }
+
+        if (entry.getType() == MetadataCache.Type.MISSING) {
+            throw new NoSuchFileException(path.toString());
+        }
+        return new S3FileAttributes(key, entry);
+    }
+
+    private MetadataCache.Entry fetchMetadata(S3Path absolutePath) throws IOException {
+        S3Uri s3Uri = absolutePath.getS3Uri();
+
+        HeadObjectResponse objectMetadata = this.headObject(s3Uri);
+        if (objectMetadata != null) {
+            S3File s3File = new S3File(s3Uri, objectMetadata);
+            this.metadataCache.putFile(s3Uri,
+                    s3File.getFileSize(this.client),
+                    s3File.getLastModified(this.client),
+                    s3File.getETag(this.client));
+        } else {
+            // Not an object, check if it's a prefix
+            ListObjectsV2Response page = this.listPage(ListObjectsV2Request.builder()
+                    .bucket(this.bucket)
+                    .prefix(absolutePath.getKey() + "/")
+                    .maxKeys(1)
+                    .build());
+
+            if (page.contents().isEmpty() && page.commonPrefixes().isEmpty()) {
+                this.metadataCache.putMissing(s3Uri);
+            } else {
+                this.metadataCache.putDirectory(s3Uri);
+            }
+        }
+
+        return this.metadataCache.get(s3Uri);
+    }
+
+    HeadObjectResponse headObject(S3Uri s3Uri) throws IOException {
+        try {
+            return S3File.getS3ObjectMetadataIfExists(this.client, s3Uri);
+        } catch (RuntimeException ex) {
+            throw new IOException(String.format("Error occurred while accessing the file on S3: %s", s3Uri), ex);
+        }
+    }
+
+    ListObjectsV2Response listPage(ListObjectsV2Request pageRequest) throws IOException {
+        try {
+            return ListManager.lsPage(this.client, pageRequest);
+        } catch (RuntimeException ex) {
+            throw new IOException(String.format("Error occurred while listing files on S3: s3://%s/%s",
+                    pageRequest.bucket(), pageRequest.prefix()), ex);
+        }
+    }
+
+    /**
+     * Stream the entries of a directory.
+     * @throws NotDirectoryException If the path is a file.
+     * @throws NoSuchFileException If the directory doesn't exist.
+     */
+    public DirectoryStream<Path> newDirectoryStream(S3Path directory, DirectoryStream.Filter<? super Path> filter) throws IOException {
+        this.ensureOpen();
+
+        S3DirectoryStream directoryStream = new S3DirectoryStream(this, directory, filter);
+
+        // Request the first page right away, to report missing directories
+        boolean empty = !directoryStream.fetchPage();
+        if (empty && !directory.toAbsolutePath().getKey().isEmpty()) {
+            directoryStream.close();
+
+            S3FileAttributes attributes = this.readAttributes(directory);
+            if (!attributes.isDirectory()) {
+                throw new NotDirectoryException(directory.toString());
+            }
+        }
+
+        return directoryStream;
+    }
+
+    /**
+     * Open a read-only channel on an object, using the size and ETag from the metadata cache.
+     */
+    public S3SeekableByteChannel newByteChannel(S3Path path) throws IOException {
+        S3FileAttributes attributes = this.readAttributes(path);
+        if (attributes.isDirectory()) {
+            throw new FileSystemException(path.toString(), null, "Is a directory");
+        }
+
+        return new S3SeekableByteChannel(this.client, path.toAbsolutePath().getS3Uri(),
+                attributes.size(), attributes.eTag(),
+                S3SeekableByteChannel.DEFAULT_BLOCK_SIZE,
+                S3SeekableByteChannel.DEFAULT_CACHE_BLOCKS,
+                S3SeekableByteChannel.DEFAULT_MAX_READ_AHEAD_BLOCKS);
+    }
+
+    @Override
+    public S3FileSystemProvider provider() {
+        return this.provider;
+    }
+
+    @Override
+    public void close() {
+        if (this.open) {
+            this.open = false;
+            this.provider.removeFileSystem(this);
+            if (this.ownsClient && this.client != null) {
+                try {
+                    this.client.close();
+                } catch (IOException ex) {
+                    LOGGER.warn(String.format("Could not close the client of the file system s3://%s", this.bucket), ex);
+                }
+            }
+            LOGGER.debug(String.format("File system closed: s3://%s", this.bucket));
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this.open;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public String getSeparator() {
+        return "/";
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        return Collections.<Path>singletonList(new S3Path(this, "/"));
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return Collections.singleton("basic");
+    }
+
+    @Override
+    public S3Path getPath(String first, String... more) {
+        StringBuilder path = new StringBuilder(first);
+        for (String name : more) {
+            if (!name.isEmpty()) {
+                path.append('/').append(name);
+            }
+        }
+        return new S3Path(this, path.toString());
+    }
+
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        int colonIndex = syntaxAndPattern.indexOf(':');
+        if (colonIndex <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid pattern: %s", syntaxAndPattern));
+        }
+
+        String syntax = syntaxAndPattern.substring(0, colonIndex);
+        String pattern = syntaxAndPattern.substring(colonIndex + 1);
+
+        final Pattern regex;
+        if ("glob".equalsIgnoreCase(syntax)) {
+            regex = Pattern.compile(S3FileSystem.globToRegex(pattern));
+        } else if ("regex".equalsIgnoreCase(syntax)) {
+            regex = Pattern.compile(pattern);
+        } else {
+            throw new UnsupportedOperationException(String.format("Unsupported pattern syntax: %s", syntax));
+        }
+
+        return new PathMatcher() {
+            @Override
+            public boolean matches(Path path) {
+                return regex.matcher(path.toString()).matches();
+            }
+        };
+    }
+
+    /**
+     * Convert a glob to a regular expression.
+     * Supports "*" (within a directory), "**" (across directories), "?", "[...]" and "{a,b}".
+     */
+    static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        boolean inGroup = false;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*':
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        regex.append(".*");
+                        i++;
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                    break;
+                case '?':
+                    regex.append("[^/]");
+                    break;
+                case '[':
+                    int closeIndex = glob.indexOf(']', i + 1);
+                    if (closeIndex < 0) {
+                        regex.append("\\[");
+                    } else {
+                        String characterClass = glob.substring(i + 1, closeIndex);
+                        if (characterClass.startsWith("!")) {
+                            characterClass = "^" + characterClass.substring(1);
+                        }
+                        regex.append('[').append(characterClass.replace("\\", "\\\\")).append(']');
+                        i = closeIndex;
+                    }
+                    break;
+                case '{':
+                    inGroup = true;
+                    regex.append("(?:");
+                    break;
+                case '}':
+                    if (inGroup) {
+                        inGroup = false;
+                        regex.append(')');
+                    } else {
+                        regex.append("\\}");
+                    }
+                    break;
+                case ',':
+                    regex.append(inGroup ? "|" : ",");
+                    break;
+                case '\\':
+                    if (i + 1 < glob.length()) {
+                        i++;
+                        regex.append(Pattern.quote(String.valueOf(glob.charAt(i))));
+                    }
+                    break;
+                default:
+                    if ("().+^$|".indexOf(c) >= 0) {
+                        regex.append('\\');
+                    }
+                    regex.append(c);
+            }
+        }
+        return regex.toString();
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        throw new UnsupportedOperationException("S3 file systems have no user principals.");
+    }
+
+    @Override
+    public WatchService newWatchService() {
+        throw new UnsupportedOperationException("S3 file systems can not be watched.");
+    }
+
+    private void ensureOpen() {
+        if (!this.open) {
+            throw new ClosedFileSystemException();
+        }
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.nio;
+
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.io.S3SeekableInputStream;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * NIO file system provider for "s3://bucket/key" URIs.
+ *
+ * <p>There is one file system per bucket. The {@link S3ClientWrapper} used by
+ * a file system is given in the environment map, with the key {@link #CLIENT_ENV_KEY},
+ * or with {@link #getFileSystem(S3ClientWrapper, String)}. File systems
+ * created implicitly by {@code Paths.get(URI)} use the default credentials.</p>
+ *
+ * <p>The file systems are read-only: use the UploadManager to write objects.</p>
+ */
+public class S3FileSystemProvider extends FileSystemProvider {
+    private static final Logger LOGGER = Logger.getLogger(S3FileSystemProvider.class);
+
+    public static final String SCHEME = "s3";
+    public static final String CLIENT_ENV_KEY = "client";
+
+    private static S3FileSystemProvider defaultProvider;
+
+    // Key: bucket
+    private final Map<String, S3FileSystem> fileSystems = new HashMap<String, S3FileSystem>();
+
+    /**
+     * @return The installed provider, or a shared instance if the provider
+     *     is not registered with the class loader.
+     */
+    public static synchronized S3FileSystemProvider getInstance() {
+        if (defaultProvider == null) {
+            for (FileSystemProvider provider : FileSystemProvider.installedProviders()) {
+                if (provider instanceof S3FileSystemProvider) {
+                    defaultProvider = (S3FileSystemProvider) provider;
+                }
+            }
+            if (defaultProvider == null) {
+                defaultProvider = new S3FileSystemProvider();
+            }
+        }
+        return defaultProvider;
+    }
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public S3FileSystem newFileSystem(URI uri, Map<String, ?> env) {
+        Object client = env == null ? null : env.get(CLIENT_ENV_KEY);
+        if (client != null && !(client instanceof S3ClientWrapper)) {
+            throw new IllegalArgumentException(String.format("Invalid client: %s", client.getClass().getName()));
+        }
+        String bucket = S3FileSystemProvider.getBucket(uri);
+        if (client != null) {
+            return this.newFileSystem((S3ClientWrapper) client, bucket);
+        }
+
+        // The file system owns the client, it's closed with the file system
+        S3ClientWrapper ownClient = new S3ClientWrapper();
+        try {
+            return this.newFileSystem(ownClient, bucket, true);
+        } catch (RuntimeException ex) {
+            S3FileSystemProvider.closeClient(ownClient);
+            throw ex;
+        }
+    }
+
+    public S3FileSystem newFileSystem(S3ClientWrapper client, String bucket) {
+        return this.newFileSystem(client, bucket, false);
+    }
+
+    private synchronized S3FileSystem newFileSystem(S3ClientWrapper client, String bucket, boolean ownsClient) {
+        if (this.fileSystems.containsKey(bucket)) {
+            throw new FileSystemAlreadyExistsException(String.format("s3://%s", bucket));
+        }
+        S3FileSystem fileSystem = new S3FileSystem(this, client, bucket, ownsClient);
+        this.fileSystems.put(bucket, fileSystem);
+        return fileSystem;
+    }
+
+    @Override
+    public synchronized S3FileSystem getFileSystem(URI uri) {
+        S3FileSystem fileSystem = this.fileSystems.get(S3FileSystemProvider.getBucket(uri));
+        if (fileSystem == null) {
+            throw new FileSystemNotFoundException(uri.toString());
+        }
+        return fileSystem;
+    }
+
+    /**
+     * Get the file system of a bucket, creating it if needed.
+     * If the bucket file system was created with another client,
+     * a new file system which is not registered with the provider is returned.
+     */
+    public synchronized S3FileSystem getFileSystem(S3ClientWrapper client, String bucket) {
+        S3FileSystem fileSystem = this.fileSystems.get(bucket);
+        if (fileSystem == null) {
+            return this.newFileSystem(client, bucket);
+        }
+        if (fileSystem.getClient() != client) {
+            return new S3FileSystem(this, client, bucket);
+        }
+        return fileSystem;
+    }
+
+    synchronized void removeFileSystem(S3FileSystem fileSystem) {
+        if (this.fileSystems.get(fileSystem.getBucket()) == fileSystem) {
+            this.fileSystems.remove(fileSystem.getBucket());
+        }
+    }
+
+    @Override
+    public S3Path getPath(URI uri) {
+        String bucket = S3FileSystemProvider.getBucket(uri);
+        S3FileSystem fileSystem;
+        synchronized (this) {
+            fileSystem = this.fileSystems.get(bucket);
+            if (fileSystem == null) {
+                fileSystem = this.newFileSystem(new S3ClientWrapper(), bucket, true);
+            }
+        }
+
+        String path = uri.getPath();
+        return fileSystem.getPath(path == null || path.isEmpty() ? "/" : path);
+    }
+
+    private static void closeClient(S3ClientWrapper client) {
+        try {
+            client.close();
+        } catch (IOException ex) {
+            LOGGER.warn("Could not close the S3 client.", ex);
+        }
+    }
+
+    private static String getBucket(URI uri) {
+        if (!SCHEME.equals(uri.getScheme())) {
+            throw new IllegalArgumentException(String.format("Not a S3 URI: %s", uri));
+        }
+        String bucket = uri.getAuthority();
+        if (bucket == null || bucket.isEmpty()) {
+            throw new IllegalArgumentException(String.format("Missing bucket: %s", uri));
+        }
+        return bucket;
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attributes) throws IOException {
+        for (OpenOption option : options) {
+            if (option != StandardOpenOption.READ && option != LinkOption.NOFOLLOW_LINKS) {
+                throw new ReadOnlyFileSystemException();
+            }
+        }
+        S3Path s3Path = S3FileSystemProvider.toS3Path(path);
+        return s3Path.getFileSystem().newByteChannel(s3Path);
+    }
+
+    @Override
+    public InputStream newInputStream(Path path, OpenOption... options) throws IOException {
+        for (OpenOption option : options) {
+            if (option != StandardOpenOption.READ && option != LinkOption.NOFOLLOW_LINKS) {
+                throw new UnsupportedOperationException(String.format("Unsupported option: %s", option));
+            }
+        }
+        S3Path s3Path = S3FileSystemProvider.toS3Path(path);
+        return new S3SeekableInputStream(s3Path.getFileSystem().newByteChannel(s3Path));
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
+        S3Path s3Path = S3FileSystemProvider.toS3Path(dir);
+        return s3Path.getFileSystem().newDirectoryStream(s3Path, filter);
+    }
+
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attributes) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void delete(Path path) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void copy(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void move(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public boolean isSameFile(Path path, Path path2) {
+        return path.toAbsolutePath().equals(path2.toAbsolutePath());
+    }
+
+    @Override
+    public boolean isHidden(Path path) {
+        return false;
+    }
+
+    @Override
+    public FileStore getFileStore(Path path) {
+        throw new UnsupportedOperationException("S3 file systems have no file store.");
+    }
+
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        S3Path s3Path = S3FileSystemProvider.toS3Path(path);
+        // Throws NoSuchFileException if the file doesn't exist
+        s3Path.getFileSystem().readAttributes(s3Path);
+
+        for (AccessMode mode : modes) {
+            if (mode != AccessMode.READ) {
+                throw new AccessDeniedException(path.toString(), null, String.format("%s access is not supported", mode));
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+        if (type == BasicFileAttributeView.class) {
+            return (V) new S3FileAttributeView(S3FileSystemProvider.toS3Path(path));
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options) throws IOException {
+        if (type != BasicFileAttributes.class && type != S3FileAttributes.class) {
+            throw new UnsupportedOperationException(String.format("Unsupported attributes: %s", type.getName()));
+        }
+        S3Path s3Path = S3FileSystemProvider.toS3Path(path);
+        return (A) s3Path.getFileSystem().readAttributes(s3Path);
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+        String attributeNames = attributes;
+        int colonIndex = attributes.indexOf(':');
+        if (colonIndex >= 0) {
+            String view = attributes.substring(0, colonIndex);
+            if (!"basic".equals(view)) {
+                throw new UnsupportedOperationException(String.format("Unsupported attribute view: %s", view));
+            }
+            attributeNames = attributes.substring(colonIndex + 1);
+        }
+
+        S3Path s3Path = S3FileSystemProvider.toS3Path(path);
+        return s3Path.getFileSystem().readAttributes(s3Path).toMap(attributeNames);
+    }
+
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    private static S3Path toS3Path(Path path) {
+        if (path == null) {
+            throw new NullPointerException("Path is null.");
+        }
+        if (!(path instanceof S3Path)) {
+            throw new ProviderMismatchException(String.format("Not a S3 path: %s", path));
+        }
+        return (S3Path) path;
+    }
+
+    private static class S3FileAttributeView implements BasicFileAttributeView {
+        private final S3Path path;
+
+        public S3FileAttributeView(S3Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public String name() {
+            return "basic";
+        }
+
+        @Override
+        public BasicFileAttributes readAttributes() throws IOException {
+            return this.path.getFileSystem().readAttributes(this.path);
+        }
+
+        @Override
+        public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) {
+            throw new ReadOnlyFileSystemException();
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.nio;
+
+import au.gov.aims.aws.s3.S3Utils;
+import software.amazon.awssdk.services.s3.S3Uri;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Path to an object, or a "directory" (a key prefix), in a bucket.
+ *
+ * <p>Absolute paths start with "/", which is the root of the bucket.
+ * The key of the object is the absolute path without the leading "/".
+ * Paths are purely lexical: creating a path doesn't send any request to S3.</p>
+ */
+public class S3Path implements Path {
+    private static final String SEPARATOR = "/";
+
+    private final S3FileSystem fileSystem;
+    private final String path;
+    private final String[] names;
+
+    S3Path(S3FileSystem fileSystem, String path) {
+        this.fileSystem = fileSystem;
+        this.path = S3Path.clean(path);
+
+        String relativePath = this.path.startsWith(SEPARATOR) ? this.path.substring(1) : this.path;
+        this.names = relativePath.isEmpty() ? new String[0] : relativePath.split(SEPARATOR);
+    }
+
+    // Remove duplicated and trailing slashes
+    private static String clean(String path) {
+        String cleanPath = path.replaceAll("/{2,}", SEPARATOR);
+        if (cleanPath.length() > 1 && cleanPath.endsWith(SEPARATOR)) {
+            cleanPath = cleanPath.substring(0, cleanPath.length() - 1);
+        }
+        return cleanPath;
+    }
+
+    /**
+     * @return The S3 key of the object. The key of the root is the empty string.
+     */
+    public String getKey() {
+        String absolutePath = this.toAbsolutePath().path;
+        return absolutePath.substring(1);
+    }
+
+    /**
+     * @return The URI of the object denoted by this path.
+     */
+    public S3Uri getS3Uri() {
+        return S3Utils.getS3URI(this.fileSystem.getBucket(), this.getKey());
+    }
+
+    /**
+     * @return The URI of the directory denoted by this path, with a trailing slash.
+     */
+    public S3Uri getDirectoryS3Uri() {
+        String key = this.getKey();
+        return S3Utils.getS3URI(this.fileSystem.getBucket(), key.isEmpty() ? key : key + SEPARATOR);
+    }
+
+    @Override
+    public S3FileSystem getFileSystem() {
+        return this.fileSystem;
+    }
+
+    @Override
+    public boolean isAbsolute() {
+        return this.path.startsWith(SEPARATOR);
+    }
+
+    @Override
+    public S3Path getRoot() {
+        return this.isAbsolute() ? new S3Path(this.fileSystem, SEPARATOR) : null;
+    }
+
+    @Override
+    public S3Path getFileName() {
+        if (this.names.length == 0) {
+            return null;
+        }
+        return new S3Path(this.fileSystem, this.names[this.names.length - 1]);
+    }
+
+    @Override
+    public S3Path getParent() {
+        if (this.names.length == 0) {
+            return null;
+        }
+        if (this.names.length == 1) {
+            return this.getRoot();
+        }
+        String parentPath = S3Path.join(this.names, 0, this.names.length - 1);
+        return new S3Path(this.fileSystem, this.isAbsolute() ? SEPARATOR + parentPath : parentPath);
+    }
+
+    @Override
+    public int getNameCount() {
+        return this.names.length;
+    }
+
+    @Override
+    public S3Path getName(int index) {
+        if (index < 0 || index >= this.names.length) {
+            throw new IllegalArgumentException(String.format("Invalid name index: %d", index));
+        }
+        return new S3Path(this.fileSystem, this.names[index]);
+    }
+
+    @Override
+    public S3Path subpath(int beginIndex, int endIndex) {
+        if (beginIndex < 0 || endIndex > this.names.length || beginIndex >= endIndex) {
+            throw new IllegalArgumentException(String.format("Invalid sub path: %d-%d", beginIndex, endIndex));
+        }
+        return new S3Path(this.fileSystem, S3Path.join(this.names, beginIndex, endIndex));
+    }
+
+    @Override
+    public boolean startsWith(Path other) {
+        S3Path otherPath = this.checkPath(other);
+        if (otherPath.isAbsolute() != this.isAbsolute() || otherPath.names.length > this.names.length) {
+            return false;
+        }
+        for (int i = 0; i < otherPath.names.length; i++) {
+            if (!otherPath.names[i].equals(this.names[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean startsWith(String other) {
+        return this.startsWith(new S3Path(this.fileSystem, other));
+    }
+
+    @Override
+    public boolean endsWith(Path other) {
+        S3Path otherPath = this.checkPath(other);
+        if (otherPath.isAbsolute()) {
+            return this.equals(otherPath);
+        }
+        if (otherPath.names.length > this.names.length) {
+            return false;
+        }
+        int offset = this.names.length - otherPath.names.length;
+        for (int i = 0; i < otherPath.names.length; i++) {
+            if (!otherPath.names[i].equals(this.names[offset + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endsWith(String other) {
+        return this.endsWith(new S3Path(this.fileSystem, other));
+    }
+
+    @Override
+    public S3Path normalize() {
+        List<String> normalizedNames = new ArrayList<String>();
+        for (String name : this.names) {
+            if (".".equals(name)) {
+                continue;
+            }
+            if ("..".equals(name) && !normalizedNames.isEmpty() && !"..".equals(normalizedNames.get(normalizedNames.size() - 1))) {
+                normalizedNames.remove(normalizedNames.size() - 1);
+                continue;
+            }
+            if ("..".equals(name) && this.isAbsolute()) {
+                // Can't go above the root
+                continue;
+            }
+            normalizedNames.add(name);
+        }
+
+        String normalizedPath = S3Path.join(normalizedNames.toArray(new String[0]), 0, normalizedNames.size());
+        return new S3Path(this.fileSystem, this.isAbsolute() ? SEPARATOR + normalizedPath : normalizedPath);
+    }
+
+    @Override
+    public S3Path resolve(Path other) {
+        S3Path otherPath = this.checkPath(other);
+        if (otherPath.isAbsolute()) {
+            return otherPath;
+        }
+        if (otherPath.names.length == 0) {
+            return this;
+        }
+        if (this.path.isEmpty()) {
+            return otherPath;
+        }
+        return new S3Path(this.fileSystem, this.path + SEPARATOR + otherPath.path);
+    }
+
+    @Override
+    public S3Path resolve(String other) {
+        return this.resolve(new S3Path(this.fileSystem, other));
+    }
+
+    @Override
+    public Path resolveSibling(Path other) {
+        S3Path parent = this.getParent();
+        return parent == null ? this.checkPath(other) : parent.resolve(other);
+    }
+
+    @Override
+    public Path resolveSibling(String other) {
+        return this.resolveSibling(new S3Path(this.fileSystem, other));
+    }
+
+    @Override
+    public S3Path relativize(Path other) {
+        S3Path otherPath = this.checkPath(other);
+        if (otherPath.isAbsolute() != this.isAbsolute()) {
+            throw new IllegalArgumentException("Both paths must be absolute, or both relative.");
+        }
+
+        int common = 0;
+        while (common < this.names.length && common < otherPath.names.length &&
+                this.names[common].equals(otherPath.names[common])) {
+            common++;
+        }
+
+        List<String> relativeNames = new ArrayList<String>();
+        for (int i = common; i < this.names.length; i++) {
+            relativeNames.add("..");
+        }
+        relativeNames.addAll(Arrays.asList(otherPath.names).subList(common, otherPath.names.length));
+
+        return new S3Path(this.fileSystem, S3Path.join(relativeNames.toArray(new String[0]), 0, relativeNames.size()));
+    }
+
+    @Override
+    public URI toUri() {
+        return this.getS3Uri().uri();
+    }
+
+    @Override
+    public S3Path toAbsolutePath() {
+        if (this.isAbsolute()) {
+            return this;
+        }
+        return new S3Path(this.fileSystem, SEPARATOR + this.path);
+    }
+
+    @Override
+    public S3Path toRealPath(LinkOption... options) {
+        return this.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public File toFile() {
+        throw new UnsupportedOperationException("S3 paths can not be converted to a File.");
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) {
+        throw new UnsupportedOperationException("S3 paths can not be watched.");
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>... events) {
+        throw new UnsupportedOperationException("S3 paths can not be watched.");
+    }
+
+    @Override
+    public Iterator<Path> iterator() {
+        List<Path> nameList = new ArrayList<Path>();
+        for (int i = 0; i < this.names.length; i++) {
+            nameList.add(this.getName(i));
+        }
+        return nameList.iterator();
+    }
+
+    @Override
+    public int compareTo(Path other) {
+        return this.path.compareTo(this.checkPath(other).path);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || this.getClass() != other.getClass()) {
+            return false;
+        }
+
+        S3Path otherPath = (S3Path) other;
+        return this.fileSystem.getBucket().equals(otherPath.fileSystem.getBucket()) &&
+                this.path.equals(otherPath.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.fileSystem.getBucket().hashCode() * 31 + this.path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.path;
+    }
+
+    private S3Path checkPath(Path other) {
+        if (other == null) {
+            throw new NullPointerException("Path is null.");
+        }
+        if (!(other instanceof S3Path)) {
+            throw new ProviderMismatchException(String.format("Not a S3 path: %s", other));
+        }
+        return (S3Path) other;
+    }
+
+    private static String join(String[] names, int beginIndex, int endIndex) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = beginIndex; i < endIndex; i++) {
+            if (i > beginIndex) {
+                sb.append(SEPARATOR);
+            }
+            sb.append(names[i]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+public class ETagCalculatorTest {
+
+    @Test
+    public void testMd5() throws Exception {
+        File file = File.createTempFile("etag", ".bin");
+        try {
+            Assert.assertEquals("Wrong MD5 of an empty file.", "d41d8cd98f00b204e9800998ecf8427e", ETagCalculator.getMd5(file));
+
+            byte[] content = new byte[3 * 1024 * 1024 + 17];
+            new Random(42).nextBytes(content);
+            FileUtils.writeByteArrayToFile(file, content);
+            Assert.assertEquals("Wrong MD5.", Md5.md5sum(file), ETagCalculator.getMd5(file));
+        } finally {
+            Assert.assertTrue("Could not delete the file.", file.delete());
+        }
+    }
+
+    @Test
+    public void testMultipartETag() throws Exception {
+        File file = File.createTempFile("etag", ".bin");
+        try {
+            byte[] content = new byte[2500000];
+            new Random(42).nextBytes(content);
+            FileUtils.writeByteArrayToFile(file, content);
+
+            int partSize = 1000000;
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            for (int position = 0; position < content.length; position += partSize) {
+                md5.update(MessageDigest.getInstance("MD5").digest(
+                        Arrays.copyOfRange(content, position, Math.min(content.length, position + partSize))));
+            }
+            StringBuilder expected = new StringBuilder();
+            for (byte aByte : md5.digest()) {
+                expected.append(String.format("%02x", aByte));
+            }
+            expected.append("-3");
+
+            Assert.assertEquals("Wrong ETag.", expected.toString(), ETagCalculator.getMultipartETag(file, partSize, 1));
+            Assert.assertEquals("Wrong ETag computed in parallel.", expected.toString(), ETagCalculator.getMultipartETag(file, partSize, 4));
+
+            Assert.assertEquals("The part size should be found.", Boolean.TRUE,
+                    ETagCalculator.matches(file, "\"" + expected + "\"", 2, 123, partSize));
+            Assert.assertNull("The part size can not be found.",
+                    ETagCalculator.matches(file, "\"00000000000000000000000000000000-3\"", 2));
+            Assert.assertEquals("Single part ETag mismatch.", Boolean.FALSE,
+                    ETagCalculator.matches(file, "00000000000000000000000000000000", 2));
+            Assert.assertNull("Not a MD5 (SSE-KMS).", ETagCalculator.matches(file, "\"not-a-md5\"", 2));
+
+            // With the part size recorded at upload, the result is definite
+            Assert.assertEquals("The recorded part size should match.", Boolean.TRUE,
+                    ETagCalculator.matches(file, "\"" + expected + "\"", (long) partSize, 2));
+            Assert.assertEquals("The content differs.", Boolean.FALSE,
+                    ETagCalculator.matches(file, "\"00000000000000000000000000000000-3\"", (long) partSize, 2));
+            Assert.assertEquals("The number of parts differs.", Boolean.FALSE,
+                    ETagCalculator.matches(file, "\"" + expected + "\"", 500000L, 2));
+            Assert.assertTrue("Multipart ETag.", ETagCalculator.isMultipart("\"" + expected + "\""));
+            Assert.assertFalse("Single part ETag.", ETagCalculator.isMultipart("00000000000000000000000000000000"));
+        } finally {
+            Assert.assertTrue("Could not delete the file.", file.delete());
+        }
+    }
+
+    @Test
+    public void testPartCount() {
+        Assert.assertEquals("Single part ETag.", 0, ETagCalculator.getPartCount("d41d8cd98f00b204e9800998ecf8427e"));
+        Assert.assertEquals("Multipart ETag.", 12, ETagCalculator.getPartCount("d41d8cd98f00b204e9800998ecf8427e-12"));
+        Assert.assertEquals("Invalid part count.", -1, ETagCalculator.getPartCount("d41d8cd98f00b204e9800998ecf8427e-x"));
+        Assert.assertEquals("Invalid MD5.", -1, ETagCalculator.getPartCount("d41d8cd98f00b204"));
+
+        long mb = 1024 * 1024;
+        Assert.assertEquals("Wrong candidates.", Arrays.asList(8 * mb, 6990507L, 7 * mb),
+                ETagCalculator.getCandidatePartSizes(20 * mb + 1, 3, 8 * mb, 100 * mb));
+    }
+}
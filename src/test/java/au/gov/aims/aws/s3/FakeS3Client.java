@@ -0,0 +1,72 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3;
+
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * In-memory stand-in for S3, used by the tests which can't use the test bucket.
+ * The tests implement {@link #invoke(Object, Method, Object[])}, which receives
+ * the calls made to both the synchronous and the asynchronous S3 clients.
+ */
+public abstract class FakeS3Client implements InvocationHandler {
+
+    /**
+     * @return A client which sends its requests to this fake.
+     */
+    public S3ClientWrapper getClient() {
+        final S3Client s3Client = (S3Client) Proxy.newProxyInstance(
+                S3Client.class.getClassLoader(), new Class[]{ S3Client.class }, this);
+        final S3AsyncClient s3AsyncClient = (S3AsyncClient) Proxy.newProxyInstance(
+                S3AsyncClient.class.getClassLoader(), new Class[]{ S3AsyncClient.class }, this);
+
+        return new S3ClientWrapper("ap-southeast-2", "accessKey", "secretKey") {
+            @Override
+            public S3Client getS3Client() {
+                return s3Client;
+            }
+
+            @Override
+            public S3AsyncClient getS3AsyncClient() {
+                return s3AsyncClient;
+            }
+        };
+    }
+
+    /**
+     * @return The fake used by a client created with {@link #getClient()}.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends FakeS3Client> T get(S3ClientWrapper client) {
+        return (T) Proxy.getInvocationHandler(client.getS3Client());
+    }
+
+    /**
+     * @return The exception to throw for the requests the fake doesn't implement.
+     */
+    protected static UnsupportedOperationException unsupported(Method method) {
+        return new UnsupportedOperationException(method.getName());
+    }
+}
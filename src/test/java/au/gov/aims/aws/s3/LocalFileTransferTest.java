@@ -0,0 +1,124 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+public class LocalFileTransferTest {
+    // Last modified date set on the source files, rounded to the second for file systems with low precision
+    private static final long LAST_MODIFIED = 1500000000000L;
+
+    @Test
+    public void testCopy() throws Exception {
+        File tempDir = Files.createTempDirectory("s3wrapper_transfer_").toFile();
+        try {
+            File source = LocalFileTransferTest.createFile(new File(tempDir, "source.bin"), 3 * 1024 * 1024 + 17);
+            File destination = new File(tempDir, "sub/dir/destination.bin");
+
+            LocalFileTransfer.transfer(source, destination, LocalFileTransfer.Mode.COPY);
+
+            Assert.assertTrue("The source file was removed.", source.exists());
+            Assert.assertTrue("The destination file was not created.", destination.exists());
+            Assert.assertArrayEquals("The copied file content is different.",
+                    Files.readAllBytes(source.toPath()), Files.readAllBytes(destination.toPath()));
+            Assert.assertFalse("The copy is a link to the source.", Files.isSameFile(source.toPath(), destination.toPath()));
+            Assert.assertEquals("The last modified date was not preserved.", LAST_MODIFIED, destination.lastModified());
+
+            // Overwrite with a smaller file
+            File smallSource = LocalFileTransferTest.createFile(new File(tempDir, "small.bin"), 100);
+            LocalFileTransfer.transfer(smallSource, destination);
+            Assert.assertEquals("The destination file was not truncated.", 100, destination.length());
+        } finally {
+            FileUtils.deleteDirectory(tempDir);
+        }
+    }
+
+    @Test
+    public void testLink() throws Exception {
+        File tempDir = Files.createTempDirectory("s3wrapper_transfer_").toFile();
+        try {
+            File source = LocalFileTransferTest.createFile(new File(tempDir, "source.bin"), 1024);
+            File destination = LocalFileTransferTest.createFile(new File(tempDir, "destination.bin"), 10);
+
+            LocalFileTransfer.transfer(source, destination, LocalFileTransfer.Mode.LINK);
+
+            Assert.assertTrue("The source file was removed.", source.exists());
+            Assert.assertArrayEquals("The linked file content is different.",
+                    Files.readAllBytes(source.toPath()), Files.readAllBytes(destination.toPath()));
+            Assert.assertEquals("The last modified date was not preserved.", LAST_MODIFIED, destination.lastModified());
+        } finally {
+            FileUtils.deleteDirectory(tempDir);
+        }
+    }
+
+    @Test
+    public void testMove() throws Exception {
+        File tempDir = Files.createTempDirectory("s3wrapper_transfer_").toFile();
+        try {
+            File source = LocalFileTransferTest.createFile(new File(tempDir, "source.bin"), 1024);
+            byte[] content = Files.readAllBytes(source.toPath());
+            File destination = new File(tempDir, "moved/destination.bin");
+
+            LocalFileTransfer.transfer(source, destination, LocalFileTransfer.Mode.MOVE);
+
+            Assert.assertFalse("The source file was not moved.", source.exists());
+            Assert.assertArrayEquals("The moved file content is different.",
+                    content, Files.readAllBytes(destination.toPath()));
+            Assert.assertEquals("The last modified date was not preserved.", LAST_MODIFIED, destination.lastModified());
+        } finally {
+            FileUtils.deleteDirectory(tempDir);
+        }
+    }
+
+    @Test
+    public void testFileWrapperLocalDownload() throws Exception {
+        File tempDir = Files.createTempDirectory("s3wrapper_transfer_").toFile();
+        try {
+            File source = LocalFileTransferTest.createFile(new File(tempDir, "source.bin"), 2048);
+            File destination = new File(tempDir, "download/source.bin");
+
+            FileWrapper fileWrapper = new FileWrapper(source.toURI(), destination);
+            File downloadedFile = fileWrapper.downloadFile(null, false, LocalFileTransfer.Mode.LINK);
+
+            Assert.assertEquals("Wrong downloaded file.", destination, downloadedFile);
+            Assert.assertArrayEquals("The downloaded file content is different.",
+                    Files.readAllBytes(source.toPath()), Files.readAllBytes(destination.toPath()));
+            Assert.assertFalse("The downloaded file should be up to date.", fileWrapper.isOutdated(null));
+
+            Assert.assertTrue("The downloaded file was not deleted.", fileWrapper.cleanup());
+            Assert.assertTrue("The original file was deleted.", source.exists());
+        } finally {
+            FileUtils.deleteDirectory(tempDir);
+        }
+    }
+
+    private static File createFile(File file, int size) throws Exception {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        FileUtils.writeByteArrayToFile(file, content);
+        file.setLastModified(LAST_MODIFIED);
+        return file;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FilenameFilter;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LocalFileWalkerTest {
+
+    @Test
+    public void testListBucketFiles() throws Exception {
+        URL bucketFilesUrl = LocalFileWalkerTest.class.getClassLoader().getResource("bucket_files");
+        File bucketFilesDir = new File(bucketFilesUrl.toURI());
+
+        List<File> files = LocalFileWalker.listFiles(bucketFilesDir, null, null, false);
+        Assert.assertNotNull("The file list is null", files);
+        Assert.assertEquals("Wrong number of files in the bucket directory.", 3, files.size());
+
+        List<File> recursiveFiles = LocalFileWalker.listFiles(bucketFilesDir, null, null, true);
+        Assert.assertEquals("The recursive listing is different from File.listFiles.",
+                LocalFileWalkerTest.legacyListFiles(bucketFilesDir, null, null), recursiveFiles);
+        Assert.assertEquals("Wrong number of files in the bucket directory tree.", 9, recursiveFiles.size());
+    }
+
+    @Test
+    public void testSameResultAsLegacyListing() throws Exception {
+        File rootDir = Files.createTempDirectory("s3wrapper_walker_").toFile();
+        try {
+            LocalFileWalkerTest.createTree(rootDir, 3, 4);
+
+            FilenameFilter txtFilter = new FilenameFilter() {
+                @Override
+                public boolean accept(File dir, String name) {
+                    return name.endsWith(".txt");
+                }
+            };
+            FileFilter dirFilter = new FileFilter() {
+                @Override
+                public boolean accept(File file) {
+                    return file.isDirectory();
+                }
+            };
+
+            List<File> expected = LocalFileWalkerTest.legacyListFiles(rootDir, null, null);
+            Assert.assertEquals("Sequential listing differs from legacy listing.",
+                    expected, LocalFileWalker.listFiles(rootDir, null, null, true, false));
+            Assert.assertEquals("Parallel listing differs from legacy listing.",
+                    expected, LocalFileWalker.listFiles(rootDir, null, null, true, true));
+
+            expected = LocalFileWalkerTest.legacyListFiles(rootDir, txtFilter, null);
+            Assert.assertEquals("Filtered parallel listing differs from legacy listing.",
+                    expected, LocalFileWalker.listFiles(rootDir, txtFilter, null, true, true));
+
+            expected = LocalFileWalkerTest.legacyListFiles(rootDir, null, dirFilter);
+            Assert.assertEquals("Directory parallel listing differs from legacy listing.",
+                    expected, LocalFileWalker.listFiles(rootDir, null, dirFilter, true, true));
+
+            // The FileWrapper must give the same result using the walker
+            FileWrapper rootFileWrapper = new FileWrapper((URI)null, rootDir);
+            List<FileWrapper> fileWrappers = rootFileWrapper.listFiles(null, txtFilter, true, true);
+            Assert.assertNotNull("The file wrapper list is null", fileWrappers);
+            List<File> wrappedFiles = new ArrayList<File>();
+            for (FileWrapper fileWrapper : fileWrappers) {
+                wrappedFiles.add(fileWrapper.getFile());
+            }
+            Assert.assertEquals("FileWrapper listing differs from legacy listing.",
+                    LocalFileWalkerTest.legacyListFiles(rootDir, txtFilter, null), wrappedFiles);
+        } finally {
+            FileUtils.deleteDirectory(rootDir);
+        }
+    }
+
+    @Test
+    public void testNotADirectory() throws Exception {
+        File file = File.createTempFile("s3wrapper_walker_", ".txt");
+        try {
+            Assert.assertNull("Listing a file must return null.", LocalFileWalker.listFiles(file, null, null, true));
+            Assert.assertNull("Listing a missing directory must return null.",
+                    LocalFileWalker.listFiles(new File(file, "missing"), null, null, true));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void createTree(File dir, int depth, int width) throws Exception {
+        for (int i=0; i<width; i++) {
+            FileUtils.writeStringToFile(new File(dir, "file_" + i + ".txt"), "content " + i, StandardCharsets.UTF_8);
+            FileUtils.writeStringToFile(new File(dir, "file_" + i + ".bin"), "binary " + i, StandardCharsets.UTF_8);
+        }
+        if (depth > 0) {
+            for (int i=0; i<width; i++) {
+                File subDir = new File(dir, "dir_" + i);
+                subDir.mkdirs();
+                LocalFileWalkerTest.createTree(subDir, depth - 1, width);
+            }
+        }
+    }
+
+    // Equivalent of the listing done by FileWrapper before the LocalFileWalker was introduced.
+    private static List<File> legacyListFiles(File file, FilenameFilter filenameFilter, FileFilter fileFilter) {
+        List<File> result = new ArrayList<File>();
+
+        File[] files;
+        if (filenameFilter != null) {
+            files = file.listFiles(filenameFilter);
+        } else if (fileFilter != null) {
+            files = file.listFiles(fileFilter);
+        } else {
+            files = file.listFiles();
+        }
+        if (files != null) {
+            for (File childFile : files) {
+                result.add(childFile);
+            }
+        }
+
+        File[] dirs = file.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File parent, String filename) {
+                return new File(parent, filename).isDirectory();
+            }
+        });
+        if (dirs != null) {
+            for (File dir : dirs) {
+                result.addAll(LocalFileWalkerTest.legacyListFiles(dir, filenameFilter, fileFilter));
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3;
+
+import org.junit.Assert;
+import org.junit.Test;
+import software.amazon.awssdk.services.s3.S3Uri;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightTest {
+
+    @Test
+    public void testConcurrentCallsShareResult() throws Exception {
+        final SingleFlight singleFlight = new SingleFlight();
+        final S3Uri s3Uri = S3Utils.getS3URI("bucket", "data/file.txt");
+        final AtomicInteger callCount = new AtomicInteger(0);
+        final CountDownLatch release = new CountDownLatch(1);
+        final int threadCount = 8;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < threadCount; i++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        return singleFlight.execute("exists", s3Uri, new Callable<Integer>() {
+                            @Override
+                            public Integer call() throws Exception {
+                                release.await();
+                                return callCount.incrementAndGet();
+                            }
+                        });
+                    }
+                }));
+            }
+
+            // Wait for every thread to join the call in progress
+            long timeout = System.currentTimeMillis() + 5000;
+            while (singleFlight.getSharedCount() < threadCount - 1 && System.currentTimeMillis() < timeout) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<Integer> future : futures) {
+                Assert.assertEquals("Every thread should get the result of the single call.", Integer.valueOf(1), future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals("The call should be executed once.", 1, callCount.get());
+        Assert.assertEquals("No call should be in progress.", 0, singleFlight.getInFlightCount());
+
+        // The next call is executed again
+        Integer result = singleFlight.execute("exists", s3Uri, new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return callCount.incrementAndGet();
+            }
+        });
+        Assert.assertEquals("A later call should be executed.", Integer.valueOf(2), result);
+    }
+
+    @Test
+    public void testExceptionIsShared() throws Exception {
+        final SingleFlight singleFlight = new SingleFlight();
+        final S3Uri s3Uri = S3Utils.getS3URI("bucket", "data/missing.txt");
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> leader = executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return singleFlight.execute("download", s3Uri, new Callable<Object>() {
+                        @Override
+                        public Object call() throws Exception {
+                            started.countDown();
+                            release.await();
+                            throw new FileNotFoundException("data/missing.txt");
+                        }
+                    });
+                }
+            });
+            Assert.assertTrue("The call should start.", started.await(5, TimeUnit.SECONDS));
+
+            Thread releaser = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (singleFlight.getSharedCount() < 1) {
+                            Thread.sleep(5);
+                        }
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    release.countDown();
+                }
+            };
+            releaser.start();
+
+            try {
+                singleFlight.execute("download", s3Uri, new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        Assert.fail("The call in progress should be shared.");
+                        return null;
+                    }
+                });
+                Assert.fail("The exception of the call in progress should be thrown.");
+            } catch (FileNotFoundException ex) {
+                // Expected
+            }
+            releaser.join(5000);
+
+            try {
+                leader.get(5, TimeUnit.SECONDS);
+                Assert.fail("The leader should fail.");
+            } catch (ExecutionException ex) {
+                Assert.assertTrue("Wrong exception.", ex.getCause() instanceof FileNotFoundException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWritesToSameTargetAreSerialised() throws Exception {
+        final SingleFlight singleFlight = new SingleFlight();
+        final File target = new File("/tmp/target.txt");
+        final AtomicInteger running = new AtomicInteger(0);
+        final AtomicInteger maxRunning = new AtomicInteger(0);
+        final int threadCount = 6;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < threadCount; i++) {
+                final S3Uri s3Uri = S3Utils.getS3URI("bucket", "data/file" + i + ".txt");
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws IOException {
+                        return singleFlight.execute("download", s3Uri, target, new Callable<String>() {
+                            @Override
+                            public String call() throws InterruptedException {
+                                int count = running.incrementAndGet();
+                                maxRunning.set(Math.max(maxRunning.get(), count));
+                                Thread.sleep(20);
+                                running.decrementAndGet();
+                                return s3Uri.key().orElse(null);
+                            }
+                        });
+                    }
+                }));
+            }
+
+            for (int i = 0; i < threadCount; i++) {
+                Assert.assertEquals("Each object should be downloaded.", "data/file" + i + ".txt", futures.get(i).get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals("The downloads to the same file should not overlap.", 1, maxRunning.get());
+        Assert.assertEquals("Every download should be executed.", threadCount, singleFlight.getExecutedCount());
+    }
+
+    @Test
+    public void testExclusiveCallIsNotShared() throws Exception {
+        final SingleFlight singleFlight = new SingleFlight();
+        final S3Uri s3Uri = S3Utils.getS3URI("bucket", "data/file.txt");
+        final File target = new File("/tmp/target.txt");
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> leader = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return singleFlight.execute("download", s3Uri, target, new Callable<String>() {
+                        @Override
+                        public String call() throws Exception {
+                            started.countDown();
+                            release.await();
+                            return "cached";
+                        }
+                    });
+                }
+            });
+            Assert.assertTrue("The call should start.", started.await(5, TimeUnit.SECONDS));
+
+            Thread releaser = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    release.countDown();
+                }
+            };
+            releaser.start();
+
+            String result = singleFlight.execute("download", s3Uri, target, true, new Callable<String>() {
+                @Override
+                public String call() {
+                    Assert.assertEquals("The exclusive call should run after the call in progress.", 0, release.getCount());
+                    return "forced";
+                }
+            });
+            releaser.join(5000);
+
+            Assert.assertEquals("The exclusive call should be executed.", "forced", result);
+            Assert.assertEquals("Wrong result for the first call.", "cached", leader.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals("The exclusive call should not share the call in progress.", 0, singleFlight.getSharedCount());
+        Assert.assertEquals("Both calls should be executed.", 2, singleFlight.getExecutedCount());
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SortedFileIteratorTest {
+
+    @Test
+    public void testKeyOrder() throws Exception {
+        File root = Files.createTempDirectory("sorted").toFile();
+        try {
+            for (String path : new String[]{ "a/b.txt", "a.txt", "a-b/c.txt", "B.txt", "a/c/d.txt", "a/ca.txt" }) {
+                FileUtils.writeStringToFile(new File(root, path), path, StandardCharsets.UTF_8);
+            }
+            Assert.assertTrue("Could not create the empty directory.", new File(root, "empty").mkdir());
+
+            List<String> keys = new ArrayList<String>();
+            SortedFileIterator iterator = new SortedFileIterator(root.toPath());
+            while (iterator.hasNext()) {
+                SortedFileIterator.Entry entry = iterator.next();
+                keys.add(entry.getKey());
+                Assert.assertEquals("Wrong size for " + entry.getKey(), entry.getKey().length(), entry.getSize());
+            }
+
+            // Same order as a S3 listing: '-' < '.' < '/'
+            Assert.assertEquals("Wrong order.",
+                    Arrays.asList("B.txt", "a-b/c.txt", "a.txt", "a/b.txt", "a/c/d.txt", "a/ca.txt"), keys);
+        } finally {
+            FileUtils.deleteDirectory(root);
+        }
+    }
+
+    @Test
+    public void testKeyOrderComparator() {
+        Assert.assertTrue("'.' is before '/'.", SortedFileIterator.KEY_ORDER.compare("a.txt", "a/b.txt") < 0);
+        Assert.assertTrue("Prefixes come first.", SortedFileIterator.KEY_ORDER.compare("a", "ab") < 0);
+        // U+FFFD is before U+1F600 in UTF-8, but not in UTF-16
+        Assert.assertTrue("Keys must be compared by code point.",
+                SortedFileIterator.KEY_ORDER.compare("\uFFFD", "\uD83D\uDE00") < 0);
+        Assert.assertEquals("Same keys.", 0, SortedFileIterator.KEY_ORDER.compare("a/b", "a/b"));
+    }
+}
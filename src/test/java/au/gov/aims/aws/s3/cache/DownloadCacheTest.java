@@ -0,0 +1,159 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.cache;
+
+import au.gov.aims.aws.s3.LocalFileTransfer;
+import au.gov.aims.aws.s3.S3Utils;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import software.amazon.awssdk.services.s3.S3Uri;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DownloadCacheTest {
+
+    @Test
+    public void testHitAndMiss() throws Exception {
+        File tempDir = Files.createTempDirectory("s3wrapper_cache_").toFile();
+        try {
+            DownloadCache cache = new DownloadCache(new File(tempDir, "cache"), 1024 * 1024);
+            S3Uri s3Uri = S3Utils.getS3URI("mybucket", "dir/file.txt");
+            CountingLoader loader = new CountingLoader(100);
+
+            File destination1 = new File(tempDir, "job1/file.txt");
+            Assert.assertFalse("First access must be a miss.", cache.get(s3Uri, "etag1", 100L, destination1, loader));
+            File destination2 = new File(tempDir, "job2/file.txt");
+            Assert.assertTrue("Second access must be a hit.", cache.get(s3Uri, "etag1", 100L, destination2, loader));
+
+            Assert.assertEquals("The object must be downloaded once.", 1, loader.count.get());
+            Assert.assertArrayEquals("The cached file content is different.",
+                    Files.readAllBytes(destination1.toPath()), Files.readAllBytes(destination2.toPath()));
+
+            // A new ETag is a new version of the object
+            Assert.assertFalse("A new ETag must be a miss.", cache.get(s3Uri, "etag2", 100L, destination2, loader));
+            Assert.assertEquals("The new version must be downloaded.", 2, loader.count.get());
+
+            Assert.assertEquals("Wrong hit count.", 1, cache.getHitCount());
+            Assert.assertEquals("Wrong miss count.", 2, cache.getMissCount());
+            Assert.assertEquals("Wrong cache size.", 200, cache.getSize());
+
+            // A new instance on the same directory sees the existing entries
+            DownloadCache otherCache = new DownloadCache(new File(tempDir, "cache"), 1024 * 1024);
+            Assert.assertEquals("Wrong cache size seen by another instance.", 200, otherCache.getSize());
+            Assert.assertTrue("The entry must be shared.", otherCache.get(s3Uri, "etag1", 100L, destination2, loader));
+        } finally {
+            FileUtils.deleteDirectory(tempDir);
+        }
+    }
+
+    @Test
+    public void testLRUEviction() throws Exception {
+        File tempDir = Files.createTempDirectory("s3wrapper_cache_").toFile();
+        try {
+            DownloadCache cache = new DownloadCache(new File(tempDir, "cache"), 250,
+                    DownloadCache.EvictionPolicy.LRU, LocalFileTransfer.Mode.LINK);
+            CountingLoader loader = new CountingLoader(100);
+            File destination = new File(tempDir, "file.bin");
+
+            S3Uri uri1 = S3Utils.getS3URI("mybucket", "file1.bin");
+            S3Uri uri2 = S3Utils.getS3URI("mybucket", "file2.bin");
+            S3Uri uri3 = S3Utils.getS3URI("mybucket", "file3.bin");
+
+            cache.get(uri1, "etag", 100L, destination, loader);
+            Thread.sleep(5);
+            cache.get(uri2, "etag", 100L, destination, loader);
+            Thread.sleep(5);
+            // Access file1, file2 is now the least recently used
+            cache.get(uri1, "etag", 100L, destination, loader);
+            Thread.sleep(5);
+            cache.get(uri3, "etag", 100L, destination, loader);
+
+            Assert.assertEquals("Wrong eviction count.", 1, cache.getEvictionCount());
+            Assert.assertEquals("Wrong evicted bytes.", 100, cache.getEvictedBytes());
+            Assert.assertEquals("Wrong cache size.", 200, cache.getSize());
+
+            int loadCount = loader.count.get();
+            Assert.assertTrue("file1 must still be cached.", cache.get(uri1, "etag", 100L, destination, loader));
+            Assert.assertTrue("file3 must still be cached.", cache.get(uri3, "etag", 100L, destination, loader));
+            Assert.assertEquals("Cached files were downloaded again.", loadCount, loader.count.get());
+        } finally {
+            FileUtils.deleteDirectory(tempDir);
+        }
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        File tempDir = Files.createTempDirectory("s3wrapper_cache_").toFile();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final DownloadCache cache = new DownloadCache(new File(tempDir, "cache"), 1024 * 1024);
+            final S3Uri s3Uri = S3Utils.getS3URI("mybucket", "shared.bin");
+            final CountingLoader loader = new CountingLoader(1000);
+
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+            for (int i=0; i<16; i++) {
+                final File destination = new File(tempDir, "job" + i + "/shared.bin");
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return cache.get(s3Uri, "etag", 1000L, destination, loader);
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                future.get();
+            }
+
+            Assert.assertEquals("The object must be downloaded once.", 1, loader.count.get());
+            Assert.assertEquals("Wrong hit count.", 15, cache.getHitCount());
+        } finally {
+            executor.shutdown();
+            FileUtils.deleteDirectory(tempDir);
+        }
+    }
+
+    private static class CountingLoader implements DownloadCache.Loader {
+        private final AtomicInteger count = new AtomicInteger(0);
+        private final int size;
+
+        public CountingLoader(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public void load(File file) throws IOException {
+            byte[] content = new byte[this.size];
+            int index = this.count.incrementAndGet();
+            for (int i=0; i<content.length; i++) {
+                content[i] = (byte)(index + i);
+            }
+            FileUtils.writeByteArrayToFile(file, content);
+        }
+    }
+}
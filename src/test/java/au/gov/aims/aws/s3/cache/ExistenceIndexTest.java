@@ -0,0 +1,124 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.cache;
+
+import au.gov.aims.aws.s3.FakeS3Client;
+import au.gov.aims.aws.s3.S3Utils;
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.entity.S3File;
+import org.junit.Assert;
+import org.junit.Test;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ExistenceIndexTest {
+
+    @Test
+    public void testExists() throws Exception {
+        S3ClientWrapper client = ExistenceIndexTest.getClient("data/a.txt", "data/b.txt", "data/dir/c.txt", "other/d.txt");
+        ExistenceIndex index = new ExistenceIndex();
+        client.setExistenceIndex(index);
+
+        Assert.assertEquals("Wrong number of indexed keys.", 3, index.index(client, S3Utils.getS3URI("bucket", "data/")));
+
+        Assert.assertTrue("data/a.txt should exist.", S3File.fileExists(client, S3Utils.getS3URI("bucket", "data/a.txt")));
+        Assert.assertTrue("data/dir/c.txt should exist.", S3File.fileExists(client, S3Utils.getS3URI("bucket", "data/dir/c.txt")));
+        Assert.assertFalse("data/missing.txt should not exist.", S3File.fileExists(client, S3Utils.getS3URI("bucket", "data/missing.txt")));
+        Assert.assertFalse("A prefix is not an object.", S3File.fileExists(client, S3Utils.getS3URI("bucket", "data/dir/")));
+        Assert.assertNull("other/ is not indexed.", index.exists(S3Utils.getS3URI("bucket", "other/d.txt")));
+        Assert.assertNull("Other buckets are not indexed.", index.exists(S3Utils.getS3URI("bucket2", "data/a.txt")));
+    }
+
+    @Test
+    public void testMutations() throws Exception {
+        S3ClientWrapper client = ExistenceIndexTest.getClient("data/a.txt");
+        ExistenceIndex index = new ExistenceIndex();
+        client.setExistenceIndex(index);
+        index.index(client, S3Utils.getS3URI("bucket", "data/"));
+
+        client.objectWritten(S3Utils.getS3URI("bucket", "data/new.txt"));
+        client.objectDeleted(S3Utils.getS3URI("bucket", "data/a.txt"));
+
+        Assert.assertTrue("The written object should exist.", index.exists(S3Utils.getS3URI("bucket", "data/new.txt")));
+        Assert.assertFalse("The deleted object should not exist.", index.exists(S3Utils.getS3URI("bucket", "data/a.txt")));
+
+        client.objectWritten(S3Utils.getS3URI("bucket", "data/a.txt"));
+        Assert.assertTrue("The object written again should exist.", index.exists(S3Utils.getS3URI("bucket", "data/a.txt")));
+
+        client.setExistenceIndex(null);
+        client.objectDeleted(S3Utils.getS3URI("bucket", "data/a.txt"));
+        Assert.assertTrue("A removed index should not be notified.", index.exists(S3Utils.getS3URI("bucket", "data/a.txt")));
+    }
+
+    @Test
+    public void testStaleness() throws Exception {
+        S3ClientWrapper client = ExistenceIndexTest.getClient("data/a.txt");
+        ExistenceIndex index = new ExistenceIndex(1, ExistenceIndex.DEFAULT_FALSE_POSITIVE_RATE);
+        index.index(client, S3Utils.getS3URI("bucket", "data/"));
+
+        Thread.sleep(10);
+        Assert.assertFalse("The index should be stale.", index.isIndexed(S3Utils.getS3URI("bucket", "data/a.txt")));
+        Assert.assertNull("A stale index should not be used.", index.exists(S3Utils.getS3URI("bucket", "data/a.txt")));
+        Assert.assertEquals("Wrong miss count.", 1, index.getMissCount());
+    }
+
+    @Test
+    public void testBloomFilter() {
+        BloomFilter bloomFilter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            bloomFilter.put("data/file" + i + ".txt");
+        }
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertTrue("No false negative allowed.", bloomFilter.mightContain("data/file" + i + ".txt"));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (bloomFilter.mightContain("data/missing" + i + ".txt")) {
+                falsePositives++;
+            }
+        }
+        Assert.assertTrue("Too many false positives: " + falsePositives, falsePositives < 300);
+    }
+
+    // A client which lists the keys in a single page, and fails on any other request
+    private static S3ClientWrapper getClient(final String ... keys) {
+        return new FakeS3Client() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("listObjectsV2".equals(method.getName())) {
+                    ListObjectsV2Request request = (ListObjectsV2Request) args[0];
+                    List<S3Object> contents = new ArrayList<S3Object>();
+                    for (String key : keys) {
+                        if (key.startsWith(request.prefix())) {
+                            contents.add(S3Object.builder().key(key).size(1L).build());
+                        }
+                    }
+                    return ListObjectsV2Response.builder().contents(contents).isTruncated(false).build();
+                }
+                throw FakeS3Client.unsupported(method);
+            }
+        }.getClient();
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.cache;
+
+import au.gov.aims.aws.s3.FakeS3Client;
+import au.gov.aims.aws.s3.FileWrapper;
+import au.gov.aims.aws.s3.S3Utils;
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.entity.S3List;
+import au.gov.aims.aws.s3.manager.ListManager;
+import org.junit.Assert;
+import org.junit.Test;
+import software.amazon.awssdk.services.s3.S3Uri;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ListingIndexTest {
+    private static final String[] KEYS = {
+        "data/a.txt", "data/b.csv", "data/dir/c.txt", "data/dir/sub/d.txt", "data/dir2/e.txt", "data/z.txt", "other/f.txt"
+    };
+
+    @Test
+    public void testListFromIndex() throws Exception {
+        FakeS3 fakeS3 = new FakeS3(KEYS);
+        S3ClientWrapper client = fakeS3.getClient();
+        S3ClientWrapper indexedClient = new FakeS3(KEYS).getClient();
+        ListingIndex index = new ListingIndex();
+        indexedClient.setListingIndex(index);
+
+        Assert.assertEquals("Wrong number of indexed keys.", 6, index.index(indexedClient, S3Utils.getS3URI("bucket", "data/")));
+        FakeS3 indexedFakeS3 = FakeS3Client.get(indexedClient);
+        int requestCount = indexedFakeS3.requestCount.get();
+
+        String[] uris = { "data/", "data/dir/", "data/dir/sub/", "data/missing/", "data/*.txt" };
+        for (String uri : uris) {
+            for (boolean recursive : new boolean[]{ false, true }) {
+                FileWrapper directory = new FileWrapper(S3Utils.getS3URI("bucket", uri), new File("/tmp/data"));
+                Assert.assertEquals(String.format("Wrong listing of %s, recursive: %s", uri, recursive),
+                        ListingIndexTest.toKeys(directory.listFiles(client, recursive)),
+                        ListingIndexTest.toKeys(directory.listFiles(indexedClient, recursive)));
+            }
+        }
+
+        FilenameFilter filter = new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith("dir") || name.endsWith(".csv");
+            }
+        };
+        FileWrapper directory = new FileWrapper(S3Utils.getS3URI("bucket", "data/"), new File("/tmp/data"));
+        Assert.assertEquals("Wrong filtered listing.",
+                ListingIndexTest.toKeys(directory.listFiles(client, filter)),
+                ListingIndexTest.toKeys(directory.listFiles(indexedClient, filter)));
+
+        Assert.assertEquals("The indexed listings should not request S3.", requestCount, indexedFakeS3.requestCount.get());
+
+        // Not indexed
+        ListManager.ls(indexedClient, S3Utils.getS3URI("bucket", "other/"));
+        Assert.assertEquals("The listing of other/ should request S3.", requestCount + 1, indexedFakeS3.requestCount.get());
+    }
+
+    @Test
+    public void testMutations() throws Exception {
+        S3ClientWrapper client = new FakeS3(KEYS).getClient();
+        ListingIndex index = new ListingIndex();
+        client.setListingIndex(index);
+        index.index(client, S3Utils.getS3URI("bucket", "data/"));
+
+        client.objectWritten(S3Utils.getS3URI("bucket", "data/dir3/new.txt"));
+        client.objectWritten(S3Utils.getS3URI("bucket", "data/a.txt"));
+        client.objectDeleted(S3Utils.getS3URI("bucket", "data/dir2/e.txt"));
+        client.objectDeleted(S3Utils.getS3URI("bucket", "data/b.csv"));
+
+        S3List s3List = ListManager.ls(client, S3Utils.getS3URI("bucket", "data/"));
+        Assert.assertEquals("Wrong directories.", new TreeSet<String>(Arrays.asList("data/dir/", "data/dir3/")),
+                new TreeSet<String>(s3List.getDirs().keySet()));
+        Assert.assertEquals("Wrong files.", new TreeSet<String>(Arrays.asList("data/a.txt", "data/z.txt")),
+                new TreeSet<String>(s3List.getFiles().keySet()));
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        S3ClientWrapper client = new FakeS3(KEYS).getClient();
+        ListingIndex index = new ListingIndex(1);
+        client.setListingIndex(index);
+        index.index(client, S3Utils.getS3URI("bucket", "data/"));
+        FakeS3 fakeS3 = FakeS3Client.get(client);
+
+        // Changed by another client
+        fakeS3.keys.add("data/y.txt");
+        Thread.sleep(10);
+
+        S3List s3List = ListManager.ls(client, S3Utils.getS3URI("bucket", "data/"));
+        Assert.assertTrue("The expired index should be refreshed.", s3List.getFiles().containsKey("data/y.txt"));
+        Assert.assertEquals("Wrong refresh count.", 1, index.getRefreshCount());
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        S3ClientWrapper client = new FakeS3(KEYS).getClient();
+        ListingIndex index = new ListingIndex();
+        client.setListingIndex(index);
+        S3Uri prefixUri = S3Utils.getS3URI("bucket", "data/");
+        index.index(client, prefixUri);
+        client.objectDeleted(S3Utils.getS3URI("bucket", "data/b.csv"));
+
+        File snapshotFile = File.createTempFile("listing", ".snapshot");
+        snapshotFile.deleteOnExit();
+        Assert.assertEquals("Wrong number of saved objects.", 5, index.save(prefixUri, snapshotFile));
+
+        // Warm start, with keys added by another client
+        FakeS3 fakeS3 = new FakeS3(KEYS);
+        fakeS3.keys.add("data/zz.txt");
+        S3ClientWrapper newClient = fakeS3.getClient();
+        ListingIndex newIndex = new ListingIndex();
+        newClient.setListingIndex(newIndex);
+        Assert.assertEquals("Wrong loaded prefix.", prefixUri, newIndex.load(snapshotFile));
+
+        S3List s3List = ListManager.ls(newClient, S3Utils.getS3URI("bucket", "data/"), true);
+        Assert.assertEquals("Wrong listing from the snapshot.",
+                new TreeSet<String>(Arrays.asList("data/a.txt", "data/dir/c.txt", "data/dir/sub/d.txt", "data/dir2/e.txt", "data/z.txt")),
+                new TreeSet<String>(s3List.getFiles().keySet()));
+        Assert.assertEquals("The snapshot listing should not request S3.", 0, fakeS3.requestCount.get());
+
+        ListObjectsV2Response page = newIndex.list(newClient, "bucket", "data/dir/", null);
+        S3Object s3Object = page.contents().get(0);
+        Assert.assertEquals("Wrong key.", "data/dir/c.txt", s3Object.key());
+        Assert.assertEquals("Wrong size.", Long.valueOf("data/dir/c.txt".length()), s3Object.size());
+        Assert.assertEquals("Wrong ETag.", "\"" + "data/dir/c.txt".hashCode() + "\"", s3Object.eTag());
+
+        Assert.assertEquals("Wrong number of refreshed keys.", 1, newIndex.refresh(newClient, prefixUri));
+        Assert.assertEquals("The refresh should start after the last key.", Arrays.asList("data/z.txt"), fakeS3.startAfters);
+        s3List = ListManager.ls(newClient, S3Utils.getS3URI("bucket", "data/"));
+        Assert.assertTrue("The refreshed key should be listed.", s3List.getFiles().containsKey("data/zz.txt"));
+    }
+
+    private static List<String> toKeys(List<FileWrapper> fileWrappers) {
+        List<String> keys = new ArrayList<String>();
+        if (fileWrappers != null) {
+            for (FileWrapper fileWrapper : fileWrappers) {
+                keys.add(fileWrapper.getS3URI().toString());
+            }
+        }
+        return keys;
+    }
+
+    // A bucket listed in a single page, which honours the prefix and the delimiter
+    private static class FakeS3 extends FakeS3Client {
+        private final Set<String> keys;
+        private final AtomicInteger requestCount = new AtomicInteger(0);
+        private final List<String> startAfters = new ArrayList<String>();
+        private S3ClientWrapper client;
+
+        public FakeS3(String ... keys) {
+            this.keys = new TreeSet<String>(Arrays.asList(keys));
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (!"listObjectsV2".equals(method.getName())) {
+                throw FakeS3Client.unsupported(method);
+            }
+            this.requestCount.incrementAndGet();
+
+            ListObjectsV2Request request = (ListObjectsV2Request) args[0];
+            String prefix = request.prefix() == null ? "" : request.prefix();
+            List<S3Object> contents = new ArrayList<S3Object>();
+            Set<String> commonPrefixes = new LinkedHashSet<String>();
+            String startAfter = request.startAfter();
+            this.startAfters.add(startAfter);
+            for (String key : this.keys) {
+                if (key.startsWith(prefix) && (startAfter == null || key.compareTo(startAfter) > 0)) {
+                    int delimiterIndex = request.delimiter() == null ? -1 : key.indexOf(request.delimiter(), prefix.length());
+                    if (delimiterIndex < 0) {
+                        contents.add(S3Object.builder().key(key).size((long)key.length())
+                                .lastModified(Instant.ofEpochMilli(1000L * key.length())).eTag("\"" + key.hashCode() + "\"").build());
+                    } else {
+                        commonPrefixes.add(key.substring(0, delimiterIndex + 1));
+                    }
+                }
+            }
+            List<CommonPrefix> commonPrefixList = new ArrayList<CommonPrefix>();
+            for (String commonPrefix : commonPrefixes) {
+                commonPrefixList.add(CommonPrefix.builder().prefix(commonPrefix).build());
+            }
+            return ListObjectsV2Response.builder().contents(contents).commonPrefixes(commonPrefixList).isTruncated(false).build();
+        }
+    }
+}
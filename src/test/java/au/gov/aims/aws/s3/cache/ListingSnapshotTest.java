@@ -0,0 +1,72 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.cache;
+
+import au.gov.aims.aws.s3.SortedFileIterator;
+import org.junit.Assert;
+import org.junit.Test;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ListingSnapshotTest {
+
+    @Test
+    public void testLookup() throws Exception {
+        // Keys outside of the basic multilingual plane sort after the other keys, as in S3
+        List<String> keys = new ArrayList<String>(Arrays.asList(
+                "a", "a/b", "a/c/d", "a\u00e9", "a\uffff", "a\ud83d\ude00", "b", "\u4e2d\u6587"));
+        Collections.sort(keys, SortedFileIterator.KEY_ORDER);
+
+        ListingSnapshot.Builder builder = new ListingSnapshot.Builder();
+        for (int i = 0; i < keys.size(); i++) {
+            builder.add(keys.get(i), i, i == 0 ? -1 : 1000L * i, i % 2 == 0 ? "\"etag" + i + "\"" : null);
+        }
+        ListingSnapshot snapshot = builder.build("bucket", "", 1234L);
+
+        File snapshotFile = File.createTempFile("listing", ".snapshot");
+        snapshotFile.deleteOnExit();
+        snapshot.save(snapshotFile);
+        ListingSnapshot loaded = ListingSnapshot.load(snapshotFile);
+
+        for (ListingSnapshot checked : new ListingSnapshot[]{ snapshot, loaded }) {
+            Assert.assertEquals("Wrong bucket.", "bucket", checked.getBucket());
+            Assert.assertEquals("Wrong creation time.", 1234L, checked.getCreated());
+            Assert.assertEquals("Wrong size.", keys.size(), checked.size());
+            for (int i = 0; i < keys.size(); i++) {
+                Assert.assertEquals("Wrong key.", keys.get(i), checked.getKey(i));
+                Assert.assertEquals("Wrong lower bound.", i, checked.lowerBound(keys.get(i)));
+            }
+            Assert.assertEquals("Wrong lower bound of a missing key.", keys.indexOf("a/b"), checked.lowerBound("a/"));
+            Assert.assertEquals("Wrong skip.", keys.indexOf("a\u00e9"), checked.skip("a/", keys.indexOf("a/b")));
+
+            S3Object first = checked.getObject(0);
+            Assert.assertNull("The unknown last modified date should be null.", first.lastModified());
+            Assert.assertEquals("Wrong ETag.", "\"etag0\"", first.eTag());
+            S3Object second = checked.getObject(1);
+            Assert.assertEquals("Wrong object size.", Long.valueOf(1), second.size());
+            Assert.assertEquals("Wrong last modified date.", 1000L, second.lastModified().toEpochMilli());
+            Assert.assertNull("The missing ETag should be null.", second.eTag());
+        }
+    }
+}
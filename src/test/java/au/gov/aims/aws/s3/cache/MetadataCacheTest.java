@@ -0,0 +1,79 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.cache;
+
+import au.gov.aims.aws.s3.S3Utils;
+import org.junit.Assert;
+import org.junit.Test;
+import software.amazon.awssdk.services.s3.S3Uri;
+
+public class MetadataCacheTest {
+
+    @Test
+    public void testPutAndGet() {
+        MetadataCache cache = new MetadataCache(60000, 10);
+        S3Uri fileUri = S3Utils.getS3URI("mybucket", "data/file.nc");
+        S3Uri directoryUri = S3Utils.getS3URI("mybucket", "data/");
+
+        Assert.assertNull("The cache should be empty.", cache.get(fileUri));
+
+        cache.putFile(fileUri, 100L, 1000L, "etag");
+        cache.putDirectory(directoryUri);
+
+        MetadataCache.Entry entry = cache.get(fileUri);
+        Assert.assertEquals("Wrong type.", MetadataCache.Type.FILE, entry.getType());
+        Assert.assertEquals("Wrong size.", Long.valueOf(100), entry.getSize());
+        Assert.assertEquals("Wrong ETag.", "etag", entry.getETag());
+
+        // With or without trailing slash
+        Assert.assertEquals("Wrong type.", MetadataCache.Type.DIRECTORY, cache.get(S3Utils.getS3URI("mybucket", "data")).getType());
+
+        cache.remove(fileUri);
+        Assert.assertNull("The entry should be removed.", cache.get(fileUri));
+        Assert.assertEquals("Wrong hit count.", 2, cache.getHitCount());
+        Assert.assertEquals("Wrong miss count.", 2, cache.getMissCount());
+    }
+
+    @Test
+    public void testExpiration() {
+        MetadataCache cache = new MetadataCache(0, 10);
+        S3Uri s3Uri = S3Utils.getS3URI("mybucket", "missing.nc");
+
+        cache.putMissing(s3Uri);
+        Assert.assertNull("The entry should be expired.", cache.get(s3Uri));
+        Assert.assertEquals("Expired entries must be removed.", 0, cache.getEntryCount());
+    }
+
+    @Test
+    public void testEviction() {
+        MetadataCache cache = new MetadataCache(60000, 2);
+        S3Uri uri1 = S3Utils.getS3URI("mybucket", "file1.nc");
+        S3Uri uri2 = S3Utils.getS3URI("mybucket", "file2.nc");
+        S3Uri uri3 = S3Utils.getS3URI("mybucket", "file3.nc");
+
+        cache.putFile(uri1, 1L, 1L, "etag");
+        cache.putFile(uri2, 1L, 1L, "etag");
+        cache.get(uri1);
+        cache.putFile(uri3, 1L, 1L, "etag");
+
+        Assert.assertNotNull("file1 must still be cached.", cache.get(uri1));
+        Assert.assertNull("file2 must be evicted.", cache.get(uri2));
+        Assert.assertEquals("Wrong eviction count.", 1, cache.getEvictionCount());
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.cache;
+
+import au.gov.aims.aws.s3.FakeS3Client;
+import au.gov.aims.aws.s3.S3Utils;
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import au.gov.aims.aws.s3.io.S3OutputStream;
+import au.gov.aims.aws.s3.manager.DeleteManager;
+import au.gov.aims.aws.s3.manager.DownloadManager;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Uri;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ObjectByteCacheTest {
+
+    @Test
+    public void testPutAndGet() {
+        ObjectByteCache cache = new ObjectByteCache(1000, 100, 60000);
+        S3Uri s3Uri = S3Utils.getS3URI("mybucket", "config/settings.json");
+
+        Assert.assertNull("The cache should be empty.", cache.get(s3Uri));
+        Assert.assertTrue("The object should be cached.", cache.put(s3Uri, "etag1", new byte[50]));
+
+        ObjectByteCache.Entry entry = cache.get(s3Uri);
+        Assert.assertNotNull("The cached entry is missing.", entry);
+        Assert.assertEquals("Wrong ETag.", "etag1", entry.getETag());
+        Assert.assertEquals("Wrong content length.", 50, entry.getContent().length);
+        Assert.assertTrue("A new entry must be fresh.", cache.isFresh(entry));
+        Assert.assertEquals("Wrong cache size.", 50, cache.getSize());
+
+        // Replace the entry
+        Assert.assertTrue("The object should be cached.", cache.put(s3Uri, "etag2", new byte[20]));
+        Assert.assertEquals("Wrong ETag after update.", "etag2", cache.get(s3Uri).getETag());
+        Assert.assertEquals("Wrong cache size after update.", 20, cache.getSize());
+
+        // Objects larger than the per-object limit are not cached
+        S3Uri largeUri = S3Utils.getS3URI("mybucket", "data/large.nc");
+        Assert.assertFalse("Large objects must not be cached.", cache.put(largeUri, "etag", new byte[101]));
+        Assert.assertNull("Large objects must not be cached.", cache.get(largeUri));
+    }
+
+    @Test
+    public void testEviction() {
+        ObjectByteCache cache = new ObjectByteCache(250, 100, 60000);
+        S3Uri uri1 = S3Utils.getS3URI("mybucket", "file1.json");
+        S3Uri uri2 = S3Utils.getS3URI("mybucket", "file2.json");
+        S3Uri uri3 = S3Utils.getS3URI("mybucket", "file3.json");
+
+        cache.put(uri1, "etag", new byte[100]);
+        cache.put(uri2, "etag", new byte[100]);
+        // Access file1, file2 is now the least recently used
+        cache.get(uri1);
+        cache.put(uri3, "etag", new byte[100]);
+
+        Assert.assertNotNull("file1 must still be cached.", cache.get(uri1));
+        Assert.assertNull("file2 must be evicted.", cache.get(uri2));
+        Assert.assertNotNull("file3 must be cached.", cache.get(uri3));
+        Assert.assertEquals("Wrong cache size.", 200, cache.getSize());
+        Assert.assertEquals("Wrong eviction count.", 1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testValidation() {
+        ObjectByteCache cache = new ObjectByteCache(1000, 100, 0);
+        S3Uri s3Uri = S3Utils.getS3URI("mybucket", "index.json");
+
+        cache.put(s3Uri, "etag", new byte[10]);
+        ObjectByteCache.Entry entry = cache.get(s3Uri);
+        Assert.assertFalse("Entries must be validated every time.", cache.isFresh(entry));
+
+        cache.validated(entry);
+        Assert.assertEquals("Wrong validation count.", 1, cache.getValidationCount());
+    }
+
+    @Test
+    public void testReadAfterWrite() throws Exception {
+        S3ClientWrapper client = new FakeS3().getClient();
+        client.setObjectByteCache(new ObjectByteCache(1000, 100, 60000));
+        S3Uri s3Uri = S3Utils.getS3URI("mybucket", "config/settings.json");
+
+        ObjectByteCacheTest.write(client, s3Uri, "version 1");
+        Assert.assertEquals("Wrong content.", "version 1",
+                new String(DownloadManager.readBytes(client, s3Uri), StandardCharsets.UTF_8));
+
+        // The cached content is still fresh, but the client changed the object
+        ObjectByteCacheTest.write(client, s3Uri, "version 2");
+        Assert.assertEquals("The written content should be read.", "version 2",
+                new String(DownloadManager.readBytes(client, s3Uri), StandardCharsets.UTF_8));
+
+        DeleteManager.delete(client, s3Uri);
+        try {
+            DownloadManager.readBytes(client, s3Uri);
+            Assert.fail("The deleted object should not be read from the cache.");
+        } catch (FileNotFoundException ex) {
+            // Expected
+        }
+    }
+
+    private static void write(S3ClientWrapper client, S3Uri s3Uri, String content) throws Exception {
+        try (S3OutputStream outputStream = new S3OutputStream(client, s3Uri, false, -1, new TransferSettings())) {
+            outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // Stores the objects in memory, with single part uploads
+    private static class FakeS3 extends FakeS3Client {
+        private final Map<String, byte[]> objects = new HashMap<String, byte[]>();
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if ("putObject".equals(methodName)) {
+                PutObjectRequest request = (PutObjectRequest) args[0];
+                try (InputStream inputStream = ((RequestBody) args[1]).contentStreamProvider().newStream()) {
+                    this.objects.put(request.key(), IOUtils.toByteArray(inputStream));
+                }
+                return PutObjectResponse.builder().eTag(FakeS3.getETag(this.objects.get(request.key()))).build();
+            }
+            if ("getObject".equals(methodName)) {
+                GetObjectRequest request = (GetObjectRequest) args[0];
+                byte[] content = this.objects.get(request.key());
+                if (content == null) {
+                    throw NoSuchKeyException.builder().statusCode(404).message("Not found").build();
+                }
+                GetObjectResponse response = GetObjectResponse.builder()
+                        .eTag(FakeS3.getETag(content))
+                        .contentLength((long)content.length)
+                        .build();
+                return new ResponseInputStream<GetObjectResponse>(response, AbortableInputStream.create(new ByteArrayInputStream(content)));
+            }
+            if ("deleteObject".equals(methodName)) {
+                this.objects.remove(((DeleteObjectRequest) args[0]).key());
+                return DeleteObjectResponse.builder().build();
+            }
+            throw FakeS3Client.unsupported(method);
+        }
+
+        private static String getETag(byte[] content) {
+            return "\"" + new String(content, StandardCharsets.UTF_8).hashCode() + "\"";
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.checksum;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the checksum algorithms on a 512 MB file (mostly in the OS cache after the warmup).
+ * Not run with the unit tests. To run it from the IDE, run the main method.
+ * Compare with "legacyMd5", the implementation of Md5.md5sum before the ChecksumCalculator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ChecksumBenchmark {
+    private static final int FILE_SIZE = 512 * 1024 * 1024;
+
+    @Param({ "MD5", "SHA256", "CRC32", "CRC32C", "CRC64NVME" })
+    public ChecksumAlgorithm algorithm;
+
+    @Param({ "1", "4" })
+    public int concurrency;
+
+    private File file;
+    private File directory;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.file = File.createTempFile("checksumBenchmark", ".bin");
+        this.directory = Files.createTempDirectory("checksumBenchmark").toFile();
+
+        Random random = new Random(42);
+        byte[] buffer = new byte[1024 * 1024];
+        try (OutputStream outputStream = Files.newOutputStream(this.file.toPath())) {
+            for (int i = 0; i < FILE_SIZE / buffer.length; i++) {
+                random.nextBytes(buffer);
+                outputStream.write(buffer);
+            }
+        }
+
+        // 64 files of 8 MB
+        for (int i = 0; i < 64; i++) {
+            byte[] content = new byte[8 * 1024 * 1024];
+            random.nextBytes(content);
+            Files.write(new File(this.directory, String.format("file%02d.bin", i)).toPath(), content);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(this.file.toPath());
+        File[] files = this.directory.listFiles();
+        if (files != null) {
+            for (File directoryFile : files) {
+                Files.deleteIfExists(directoryFile.toPath());
+            }
+        }
+        Files.deleteIfExists(this.directory.toPath());
+    }
+
+    @Benchmark
+    public byte[] file() throws IOException {
+        return ChecksumCalculator.checksum(this.file, this.algorithm, this.concurrency);
+    }
+
+    @Benchmark
+    public Object directory() throws IOException {
+        return ChecksumCalculator.checksumDirectory(this.directory, this.algorithm, this.concurrency);
+    }
+
+    @Benchmark
+    public byte[] legacyMd5() throws Exception {
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        try (InputStream inputStream = new FileInputStream(this.file)) {
+            byte[] buffer = new byte[1024];
+            int numRead;
+            while ((numRead = inputStream.read(buffer)) > 0) {
+                md5.update(buffer, 0, numRead);
+            }
+        }
+        return md5.digest();
+    }
+
+    public static void main(String ... args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ChecksumBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
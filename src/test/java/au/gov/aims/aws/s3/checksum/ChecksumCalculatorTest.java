@@ -0,0 +1,117 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.checksum;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Random;
+
+public class ChecksumCalculatorTest {
+    private static final byte[] CHECK_INPUT = "123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void testCheckValues() {
+        Assert.assertEquals("Wrong MD5.", "25f9e794323b453885f5181f1b624d0b", ChecksumCalculatorTest.hash(ChecksumAlgorithm.MD5, CHECK_INPUT));
+        Assert.assertEquals("Wrong SHA-256.", "15e2b0d3c33891ebb0f1ef609ec419420c20e320ce94c65fbc8c3312448eb225",
+                ChecksumCalculatorTest.hash(ChecksumAlgorithm.SHA256, CHECK_INPUT));
+        Assert.assertEquals("Wrong CRC32.", "cbf43926", ChecksumCalculatorTest.hash(ChecksumAlgorithm.CRC32, CHECK_INPUT));
+        Assert.assertEquals("Wrong CRC32C.", "e3069283", ChecksumCalculatorTest.hash(ChecksumAlgorithm.CRC32C, CHECK_INPUT));
+        Assert.assertEquals("Wrong CRC64NVME.", "ae8b14860a799888", ChecksumCalculatorTest.hash(ChecksumAlgorithm.CRC64NVME, CHECK_INPUT));
+
+        // The Java implementations, used when the JDK doesn't provide one
+        Assert.assertEquals("Wrong Java CRC32.", 0xcbf43926L, Crc.CRC32.update(0, CHECK_INPUT, 0, CHECK_INPUT.length));
+        Assert.assertEquals("Wrong Java CRC32C.", 0xe3069283L, Crc.CRC32C.update(0, CHECK_INPUT, 0, CHECK_INPUT.length));
+    }
+
+    @Test
+    public void testCombine() {
+        byte[] content = new byte[100003];
+        new Random(42).nextBytes(content);
+
+        for (ChecksumAlgorithm algorithm : ChecksumAlgorithm.values()) {
+            if (!algorithm.isComposable()) {
+                continue;
+            }
+            Hasher expected = algorithm.newHasher();
+            expected.update(ByteBuffer.wrap(content));
+
+            int split = 12345;
+            Hasher first = algorithm.newHasher();
+            first.update(content, 0, split);
+            ByteBuffer directBuffer = ByteBuffer.allocateDirect(content.length - split);
+            directBuffer.put(content, split, content.length - split);
+            directBuffer.flip();
+            Hasher second = algorithm.newHasher();
+            second.update(directBuffer);
+
+            Assert.assertEquals(String.format("Wrong combined %s.", algorithm),
+                    ChecksumCalculator.toHex(expected.getValue()),
+                    ChecksumCalculator.toHex(algorithm.combine(first.getValue(), second.getValue(), content.length - split)));
+        }
+    }
+
+    @Test
+    public void testParallelChecksum() throws Exception {
+        File file = File.createTempFile("checksum", ".bin");
+        try {
+            byte[] content = new byte[1000000 + 7];
+            new Random(42).nextBytes(content);
+            FileUtils.writeByteArrayToFile(file, content);
+
+            for (ChecksumAlgorithm algorithm : ChecksumAlgorithm.values()) {
+                Hasher hasher = algorithm.newHasher();
+                hasher.update(content, 0, content.length);
+                Assert.assertEquals(String.format("Wrong %s computed in chunks.", algorithm),
+                        ChecksumCalculator.toHex(hasher.getValue()),
+                        ChecksumCalculator.toHex(ChecksumCalculator.checksum(file, algorithm, 4, 65536)));
+            }
+        } finally {
+            Assert.assertTrue("Could not delete the file.", file.delete());
+        }
+    }
+
+    @Test
+    public void testChecksumDirectory() throws Exception {
+        File directory = Files.createTempDirectory("checksum").toFile();
+        try {
+            FileUtils.writeStringToFile(new File(directory, "b/file.txt"), "123456789", StandardCharsets.US_ASCII);
+            FileUtils.writeStringToFile(new File(directory, "a.txt"), "", StandardCharsets.US_ASCII);
+
+            Map<String, byte[]> checksums = ChecksumCalculator.checksumDirectory(directory, ChecksumAlgorithm.CRC32C, 2);
+            Assert.assertArrayEquals("Wrong files.", new Object[]{ "a.txt", "b/file.txt" }, checksums.keySet().toArray());
+            Assert.assertEquals("Wrong checksum of an empty file.", "00000000", ChecksumCalculator.toHex(checksums.get("a.txt")));
+            Assert.assertEquals("Wrong checksum.", "4waSgw==", ChecksumCalculator.toBase64(checksums.get("b/file.txt")));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    private static String hash(ChecksumAlgorithm algorithm, byte[] bytes) {
+        Hasher hasher = algorithm.newHasher();
+        hasher.update(bytes, 0, bytes.length);
+        return ChecksumCalculator.toHex(hasher.getValue());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.compression;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class CompressionPolicyTest {
+
+    @Test
+    public void testGetCodec() {
+        CompressionPolicy policy = new CompressionPolicy().setMinSize(100);
+
+        Assert.assertEquals("CSV files should be compressed with gzip.", GzipCodec.NAME, policy.getCodec("data.csv", 1000).getName());
+        Assert.assertNotNull("The extension should not be case sensitive.", policy.getCodec("DATA.JSON", 1000));
+        Assert.assertNull("Small files should not be compressed.", policy.getCodec("data.csv", 99));
+        Assert.assertNull("NetCDF files should not be compressed.", policy.getCodec("data.nc", 1000));
+        Assert.assertNull("Files without extension should not be compressed.", policy.getCodec("README", 1000));
+
+        policy.setCodec(".nc", GzipCodec.NAME).setCodec("csv", null);
+        Assert.assertNotNull("The NetCDF files should be compressed.", policy.getCodec("data.nc", 1000));
+        Assert.assertNull("The CSV files should no longer be compressed.", policy.getCodec("data.csv", 1000));
+
+        policy.setCodec("cdl", "unknown-codec");
+        try {
+            policy.getCodec("data.cdl", 1000);
+            Assert.fail("A codec which is not registered should be rejected.");
+        } catch (IllegalStateException ex) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testCodecs() throws Exception {
+        Assert.assertNotNull("Gzip should always be available.", CompressionCodecs.getCodec("gzip"));
+        Assert.assertSame("x-gzip is an alias of gzip.", CompressionCodecs.getCodec("gzip"), CompressionCodecs.getCodec(" X-GZIP "));
+        Assert.assertNull("Unknown Content-Encoding.", CompressionCodecs.getCodec("br"));
+        Assert.assertNull("No Content-Encoding.", CompressionCodecs.getCodec(null));
+
+        CompressionCodecs.register(new IdentityCodec());
+        Assert.assertNotNull("The codec should be registered.", CompressionCodecs.getCodec("identity-test"));
+        Assert.assertNotNull("The codec should be usable in a policy.",
+                new CompressionPolicy("identity-test", "txt").getCodec("file.txt", 10000));
+
+        byte[] content = "station,time,temperature\n".concat(new String(new char[1000]).replace("\0", "1,2026-01-01,25.4\n"))
+                .getBytes(StandardCharsets.UTF_8);
+        CompressionCodec gzip = CompressionCodecs.getCodec(GzipCodec.NAME);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream outputStream = gzip.compress(compressed)) {
+            outputStream.write(content);
+        }
+        Assert.assertTrue("The content should be compressed.", compressed.size() < content.length / 10);
+
+        try (InputStream inputStream = gzip.decompress(new ByteArrayInputStream(compressed.toByteArray()))) {
+            Assert.assertArrayEquals("Wrong decompressed content.", content, IOUtils.toByteArray(inputStream));
+        }
+    }
+
+    private static class IdentityCodec implements CompressionCodec {
+        @Override
+        public String getName() {
+            return "identity-test";
+        }
+
+        @Override
+        public OutputStream compress(OutputStream outputStream) {
+            return outputStream;
+        }
+
+        @Override
+        public InputStream decompress(InputStream inputStream) {
+            return inputStream;
+        }
+    }
+}
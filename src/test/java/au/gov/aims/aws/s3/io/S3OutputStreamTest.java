@@ -0,0 +1,223 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.io;
+
+import au.gov.aims.aws.s3.FakeS3Client;
+import au.gov.aims.aws.s3.S3Utils;
+import au.gov.aims.aws.s3.checksum.ChecksumAlgorithm;
+import au.gov.aims.aws.s3.checksum.ChecksumCalculator;
+import au.gov.aims.aws.s3.checksum.ChecksumMismatchException;
+import au.gov.aims.aws.s3.checksum.Hasher;
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.entity.S3File;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.model.ChecksumType;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class S3OutputStreamTest {
+    private static final int MB = 1024 * 1024;
+
+    @Test
+    public void testMultipartUpload() throws Exception {
+        FakeS3 fakeS3 = new FakeS3();
+        S3ClientWrapper client = fakeS3.getClient();
+        TransferSettings settings = new TransferSettings().setPartSize(5 * MB).setConcurrency(2);
+
+        byte[] content = new byte[12 * MB + 123];
+        new Random(42).nextBytes(content);
+
+        S3OutputStream outputStream = new S3OutputStream(client, S3Utils.getS3URI("bucket", "data/file.bin"), false, -1, settings);
+        outputStream.write(content, 0, 1000);
+        outputStream.write(content[1000]);
+        outputStream.write(ByteBuffer.wrap(content, 1001, content.length - 1001));
+        outputStream.close();
+
+        Assert.assertEquals("Wrong size.", content.length, outputStream.getSize());
+        Assert.assertEquals("A multipart upload was expected.", 0, fakeS3.putCount);
+        Assert.assertEquals("Wrong number of parts.", 3, fakeS3.completedParts);
+        Assert.assertArrayEquals("Wrong uploaded content.", content, fakeS3.getUploadedContent());
+        Assert.assertEquals("Wrong ETag.", "multipart-etag", outputStream.getETag());
+        Assert.assertEquals("Wrong number of parts in the metrics.", 3, client.getTransferMetrics().getPartsTransferred());
+        Assert.assertEquals("The part size should be recorded, to verify the ETag.", Long.valueOf(5 * MB),
+                S3File.getUploadPartSize(fakeS3.createRequest.metadata()));
+    }
+
+    @Test
+    public void testSmallUpload() throws Exception {
+        FakeS3 fakeS3 = new FakeS3();
+        TransferSettings settings = new TransferSettings().setPartSize(5 * MB);
+
+        try (S3OutputStream outputStream = new S3OutputStream(fakeS3.getClient(), S3Utils.getS3URI("bucket", "file.txt"), false, -1, settings)) {
+            outputStream.write("small content".getBytes("UTF-8"));
+        }
+
+        Assert.assertEquals("A single PUT was expected.", 1, fakeS3.putCount);
+        Assert.assertEquals("No multipart upload was expected.", 0, fakeS3.uploadedParts.size());
+        Assert.assertEquals("Wrong uploaded content.", "small content", new String(fakeS3.putContent, "UTF-8"));
+    }
+
+    @Test
+    public void testMultipartUploadWithChecksum() throws Exception {
+        FakeS3 fakeS3 = new FakeS3();
+        TransferSettings settings = new TransferSettings().setPartSize(5 * MB).setConcurrency(2)
+                .setChecksumAlgorithm(ChecksumAlgorithm.CRC32C);
+
+        byte[] content = new byte[12 * MB + 123];
+        new Random(42).nextBytes(content);
+
+        try (S3OutputStream outputStream = new S3OutputStream(fakeS3.getClient(), S3Utils.getS3URI("bucket", "file.bin"), false, -1, settings)) {
+            outputStream.write(content);
+        }
+
+        Hasher hasher = ChecksumAlgorithm.CRC32C.newHasher();
+        hasher.update(content, 0, content.length);
+        CompleteMultipartUploadRequest request = fakeS3.completeRequest;
+        Assert.assertEquals("Wrong checksum type.", ChecksumType.FULL_OBJECT, request.checksumType());
+        Assert.assertEquals("The checksum of the object should be combined from the checksums of the parts.",
+                ChecksumCalculator.toBase64(hasher.getValue()), request.checksumCRC32C());
+        Assert.assertEquals("Wrong object size.", Long.valueOf(content.length), request.mpuObjectSize());
+        for (CompletedPart part : request.multipartUpload().parts()) {
+            Assert.assertNotNull(String.format("Missing checksum for part %d.", part.partNumber()), part.checksumCRC32C());
+        }
+    }
+
+    @Test
+    public void testChecksumMismatch() throws Exception {
+        FakeS3 fakeS3 = new FakeS3();
+        fakeS3.corruptChecksums = true;
+        TransferSettings settings = new TransferSettings().setPartSize(5 * MB)
+                .setChecksumAlgorithm(ChecksumAlgorithm.CRC32C);
+
+        S3OutputStream outputStream = new S3OutputStream(fakeS3.getClient(), S3Utils.getS3URI("bucket", "file.bin"), false, -1, settings);
+        outputStream.write(new byte[6 * MB]);
+        try {
+            outputStream.close();
+            Assert.fail("The checksum mismatch should fail the upload.");
+        } catch (ChecksumMismatchException ex) {
+            // Expected
+        }
+
+        Assert.assertEquals("The upload should be aborted.", 1, fakeS3.abortCount);
+        Assert.assertNull("The upload should not be completed.", fakeS3.completeRequest);
+    }
+
+    @Test
+    public void testAbort() throws Exception {
+        FakeS3 fakeS3 = new FakeS3();
+        TransferSettings settings = new TransferSettings().setPartSize(5 * MB);
+
+        S3OutputStream outputStream = new S3OutputStream(fakeS3.getClient(), S3Utils.getS3URI("bucket", "file.bin"), false, -1, settings);
+        outputStream.write(new byte[6 * MB]);
+        outputStream.abort();
+
+        Assert.assertEquals("The upload should be aborted.", 1, fakeS3.abortCount);
+        Assert.assertEquals("The upload should not be completed.", 0, fakeS3.completedParts);
+        Assert.assertFalse("The stream should be closed.", outputStream.isOpen());
+    }
+
+    // Minimal in-memory implementation of the multipart upload API
+    private static class FakeS3 extends FakeS3Client {
+        private final Map<Integer, byte[]> uploadedParts = new TreeMap<Integer, byte[]>();
+        private byte[] putContent;
+        private int putCount = 0;
+        private int abortCount = 0;
+        private int completedParts = 0;
+        private CompleteMultipartUploadRequest completeRequest;
+        private CreateMultipartUploadRequest createRequest;
+        // Return a wrong checksum for every part
+        private boolean corruptChecksums = false;
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if ("createMultipartUpload".equals(methodName)) {
+                this.createRequest = (CreateMultipartUploadRequest) args[0];
+                return CreateMultipartUploadResponse.builder().uploadId("upload-id").build();
+            }
+            if ("uploadPart".equals(methodName)) {
+                UploadPartRequest request = (UploadPartRequest) args[0];
+                byte[] part = FakeS3.read((RequestBody) args[1]);
+                this.uploadedParts.put(request.partNumber(), part);
+
+                UploadPartResponse.Builder responseBuilder = UploadPartResponse.builder().eTag("etag-" + request.partNumber());
+                if (request.checksumAlgorithm() != null) {
+                    Hasher hasher = ChecksumAlgorithm.CRC32C.newHasher();
+                    hasher.update(part, 0, this.corruptChecksums ? part.length - 1 : part.length);
+                    responseBuilder.checksumCRC32C(ChecksumCalculator.toBase64(hasher.getValue()));
+                }
+                return responseBuilder.build();
+            }
+            if ("completeMultipartUpload".equals(methodName)) {
+                CompleteMultipartUploadRequest request = (CompleteMultipartUploadRequest) args[0];
+                int expectedPartNumber = 1;
+                for (CompletedPart part : request.multipartUpload().parts()) {
+                    Assert.assertEquals("Parts must be sorted.", Integer.valueOf(expectedPartNumber++), part.partNumber());
+                    Assert.assertEquals("Wrong part ETag.", "etag-" + part.partNumber(), part.eTag());
+                }
+                this.completedParts = request.multipartUpload().parts().size();
+                this.completeRequest = request;
+                return CompleteMultipartUploadResponse.builder().eTag("multipart-etag").build();
+            }
+            if ("abortMultipartUpload".equals(methodName)) {
+                this.abortCount++;
+                return AbortMultipartUploadResponse.builder().build();
+            }
+            if ("putObject".equals(methodName)) {
+                this.putCount++;
+                this.putContent = FakeS3.read((RequestBody) args[1]);
+                return PutObjectResponse.builder().eTag("put-etag").build();
+            }
+            throw FakeS3Client.unsupported(method);
+        }
+
+        public synchronized byte[] getUploadedContent() {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            for (byte[] part : this.uploadedParts.values()) {
+                content.write(part, 0, part.length);
+            }
+            return content.toByteArray();
+        }
+
+        private static byte[] read(RequestBody requestBody) throws Exception {
+            try (InputStream inputStream = requestBody.contentStreamProvider().newStream()) {
+                return IOUtils.toByteArray(inputStream);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.io;
+
+import au.gov.aims.aws.s3.S3Utils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class S3SeekableByteChannelTest {
+
+    @Test
+    public void testSequentialRead() throws Exception {
+        byte[] content = createContent(1000);
+        InMemoryChannel channel = new InMemoryChannel(content, 100, 10, 4);
+
+        byte[] read;
+        try (InputStream inputStream = new S3SeekableInputStream(channel)) {
+            read = IOUtils.toByteArray(inputStream);
+        }
+
+        Assert.assertArrayEquals("Wrong content.", content, read);
+        Assert.assertEquals("Every byte must be transferred once.", 1000, channel.getBytesTransferred());
+        // Read ahead grows 1, 2, 4, 4 blocks: 0-1, 2-4, 5-9
+        Assert.assertTrue(String.format("Too many requests: %s", channel.ranges),
+                channel.getRequestCount() <= 4);
+    }
+
+    @Test
+    public void testRandomRead() throws Exception {
+        byte[] content = createContent(1000);
+        InMemoryChannel channel = new InMemoryChannel(content, 100, 10, 4);
+
+        ByteBuffer buffer = ByteBuffer.allocate(20);
+        channel.position(750);
+        Assert.assertEquals("Wrong number of bytes read.", 20, channel.read(buffer));
+        Assert.assertEquals("Wrong byte.", content[750], buffer.get(0));
+        Assert.assertEquals("Only the block containing the bytes must be requested.", "700-799", channel.ranges.get(0));
+
+        // Same block, served from the cache
+        buffer.clear();
+        channel.position(710);
+        channel.read(buffer);
+        Assert.assertEquals("The block must be served from the cache.", 1, channel.getRequestCount());
+
+        // Read across 3 blocks: one request for the 2 missing blocks
+        buffer = ByteBuffer.allocate(250);
+        channel.position(550);
+        Assert.assertEquals("Wrong number of bytes read.", 250, channel.read(buffer));
+        Assert.assertEquals("Missing blocks must be coalesced.", "500-699", channel.ranges.get(1));
+        Assert.assertEquals("Wrong number of requests.", 2, channel.getRequestCount());
+        for (int i = 0; i < 250; i++) {
+            Assert.assertEquals(String.format("Wrong byte at %d.", 550 + i), content[550 + i], buffer.get(i));
+        }
+
+        // End of file
+        channel.position(1000);
+        Assert.assertEquals("Expected end of file.", -1, channel.read(ByteBuffer.allocate(10)));
+    }
+
+    @Test
+    public void testLastPartialBlock() throws Exception {
+        byte[] content = createContent(250);
+        InMemoryChannel channel = new InMemoryChannel(content, 100, 4, 0);
+
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        channel.position(200);
+        Assert.assertEquals("Wrong number of bytes read.", 50, channel.read(buffer));
+        Assert.assertEquals("Wrong range.", "200-249", channel.ranges.get(0));
+    }
+
+    private static byte[] createContent(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte)(i * 31);
+        }
+        return content;
+    }
+
+    private static class InMemoryChannel extends S3SeekableByteChannel {
+        private final byte[] content;
+        private final List<String> ranges = new ArrayList<String>();
+
+        public InMemoryChannel(byte[] content, int blockSize, int cacheBlocks, int maxReadAheadBlocks) {
+            super(null, S3Utils.getS3URI("mybucket", "data/file.bin"), (long)content.length, "etag",
+                    blockSize, cacheBlocks, maxReadAheadBlocks);
+            this.content = content;
+        }
+
+        @Override
+        protected InputStream openRange(long start, long end) {
+            this.ranges.add(start + "-" + end);
+            return new ByteArrayInputStream(this.content, (int)start, (int)(end - start + 1));
+        }
+    }
+}
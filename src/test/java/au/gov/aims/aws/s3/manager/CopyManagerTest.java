@@ -0,0 +1,252 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.manager;
+
+import au.gov.aims.aws.s3.FakeS3Client;
+import au.gov.aims.aws.s3.S3Utils;
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.entity.S3List;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import org.junit.Assert;
+import org.junit.Test;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CopyObjectResponse;
+import software.amazon.awssdk.services.s3.model.CopyPartResult;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetBucketAclResponse;
+import software.amazon.awssdk.services.s3.model.HeadBucketResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.MetadataDirective;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyResponse;
+
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class CopyManagerTest {
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    public void testCopyObject() throws Exception {
+        FakeS3 fakeS3 = new FakeS3(CopyManagerTest.s3Object("data/a.txt", 100));
+
+        S3List s3List = CopyManager.copy(fakeS3.getClient(),
+                S3Utils.getS3URI("bucket", "data/a.txt"), S3Utils.getS3URI("bucket", "backup/"));
+
+        Assert.assertEquals("Wrong number of copied files.", 1, s3List.getFiles().size());
+        Assert.assertEquals("Wrong number of CopyObject requests.", 1, fakeS3.copyRequests.size());
+        CopyObjectRequest request = fakeS3.copyRequests.get(0);
+        Assert.assertEquals("Wrong destination key.", "backup/a.txt", request.destinationKey());
+        Assert.assertEquals("The metadata must be copied.", MetadataDirective.COPY, request.metadataDirective());
+        Assert.assertEquals("The copy must be conditional to the ETag of the source.", "\"etag\"", request.copySourceIfMatch());
+        Assert.assertTrue("Nothing should be deleted by a copy.", fakeS3.deletedKeys.isEmpty());
+    }
+
+    @Test
+    public void testMultipartCopy() throws Exception {
+        FakeS3 fakeS3 = new FakeS3(CopyManagerTest.s3Object("data/large.nc", 12 * MB));
+        TransferSettings settings = new TransferSettings()
+                .setMultipartThreshold(5 * MB)
+                .setPartSize(5 * MB)
+                .setConcurrency(2);
+
+        CopyManager.copy(fakeS3.getClient(),
+                S3Utils.getS3URI("bucket", "data/large.nc"), S3Utils.getS3URI("bucket", "other/large.nc"), settings);
+
+        Assert.assertTrue("A large object should not be copied with CopyObject.", fakeS3.copyRequests.isEmpty());
+        Assert.assertEquals("The metadata of the source must be set on the copy.",
+                "1700000000000", fakeS3.createRequest.metadata().get("lastmodified"));
+
+        List<String> ranges = new ArrayList<String>();
+        for (UploadPartCopyRequest request : fakeS3.partRequests) {
+            ranges.add(request.partNumber() + ":" + request.copySourceRange());
+        }
+        Collections.sort(ranges);
+        Assert.assertEquals("Wrong part ranges.", Arrays.asList(
+                "1:bytes=0-5242879",
+                "2:bytes=5242880-10485759",
+                "3:bytes=10485760-12582911"), ranges);
+        Assert.assertEquals("Wrong number of completed parts.", 3,
+                fakeS3.completeRequest.multipartUpload().parts().size());
+    }
+
+    @Test
+    public void testMovePrefix() throws Exception {
+        FakeS3 fakeS3 = new FakeS3(
+            CopyManagerTest.s3Object("data/a.txt", 10),
+            CopyManagerTest.s3Object("data/dir/b.txt", 20),
+            CopyManagerTest.s3Object("other/c.txt", 30)
+        );
+
+        S3List s3List = CopyManager.move(fakeS3.getClient(),
+                S3Utils.getS3URI("bucket", "data/"), S3Utils.getS3URI("bucket", "archive/2024"));
+
+        Assert.assertEquals("Wrong number of moved files.", 2, s3List.getFiles().size());
+        List<String> destinationKeys = new ArrayList<String>();
+        for (CopyObjectRequest request : fakeS3.copyRequests) {
+            destinationKeys.add(request.destinationKey());
+        }
+        Collections.sort(destinationKeys);
+        Assert.assertEquals("Wrong destination keys.", Arrays.asList("archive/2024/a.txt", "archive/2024/dir/b.txt"), destinationKeys);
+
+        Collections.sort(fakeS3.deletedKeys);
+        Assert.assertEquals("The sources should be deleted in a single batch.", 1, fakeS3.deleteBatchCount);
+        Assert.assertEquals("Wrong deleted keys.", Arrays.asList("data/a.txt", "data/dir/b.txt"), fakeS3.deletedKeys);
+    }
+
+    @Test
+    public void testRetryWithoutReconnect() throws Exception {
+        FakeS3 fakeS3 = new FakeS3(
+            CopyManagerTest.s3Object("data/a.txt", 10),
+            CopyManagerTest.s3Object("data/b.txt", 20),
+            CopyManagerTest.s3Object("data/c.txt", 30)
+        );
+        fakeS3.throttledKeys.add("copy/b.txt");
+        S3ClientWrapper client = fakeS3.getClient();
+        TransferSettings settings = new TransferSettings().setConcurrency(3).setRetryDelay(1, 1);
+
+        S3List s3List = CopyManager.copy(client, S3Utils.getS3URI("bucket", "data/"), S3Utils.getS3URI("bucket", "copy/"), settings);
+
+        Assert.assertEquals("Wrong number of copied files.", 3, s3List.getFiles().size());
+        Assert.assertEquals("The throttled copy should be sent again.", 4, fakeS3.copyRequests.size());
+        Assert.assertEquals("A failed copy must not reconnect the client shared with the other copies.", 0, client.getGeneration());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCopyIntoItself() throws Exception {
+        FakeS3 fakeS3 = new FakeS3(CopyManagerTest.s3Object("data/a.txt", 10));
+        CopyManager.copy(fakeS3.getClient(), S3Utils.getS3URI("bucket", "data/"), S3Utils.getS3URI("bucket", "data/copy/"));
+    }
+
+    private static S3Object s3Object(String key, long size) {
+        return S3Object.builder()
+                .key(key)
+                .size(size)
+                .lastModified(Instant.ofEpochMilli(1700000000000L))
+                .eTag("\"etag\"")
+                .build();
+    }
+
+    private static class FakeS3 extends FakeS3Client {
+        private final List<S3Object> objects;
+        private final List<CopyObjectRequest> copyRequests = new ArrayList<CopyObjectRequest>();
+        private final List<UploadPartCopyRequest> partRequests = new ArrayList<UploadPartCopyRequest>();
+        private final List<String> deletedKeys = new ArrayList<String>();
+        // Copies to these keys fail the first time
+        private final Set<String> throttledKeys = new HashSet<String>();
+        private CreateMultipartUploadRequest createRequest;
+        private CompleteMultipartUploadRequest completeRequest;
+        private int deleteBatchCount = 0;
+
+        public FakeS3(S3Object ... objects) {
+            this.objects = Arrays.asList(objects);
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if ("headBucket".equals(methodName)) {
+                return HeadBucketResponse.builder().build();
+            }
+            if ("getBucketAcl".equals(methodName)) {
+                return GetBucketAclResponse.builder().build();
+            }
+            if ("headObject".equals(methodName)) {
+                HeadObjectRequest request = (HeadObjectRequest) args[0];
+                for (S3Object object : this.objects) {
+                    if (object.key().equals(request.key())) {
+                        Map<String, String> metadata = new HashMap<String, String>();
+                        metadata.put("lastmodified", "1700000000000");
+                        return HeadObjectResponse.builder()
+                                .contentLength(object.size())
+                                .eTag(object.eTag())
+                                .contentType("application/x-netcdf")
+                                .metadata(metadata)
+                                .build();
+                    }
+                }
+                throw new UnsupportedOperationException("Missing object: " + request.key());
+            }
+            if ("listObjectsV2".equals(methodName)) {
+                ListObjectsV2Request request = (ListObjectsV2Request) args[0];
+                String prefix = request.prefix() == null ? "" : request.prefix();
+                List<S3Object> contents = new ArrayList<S3Object>();
+                for (S3Object object : this.objects) {
+                    if (object.key().startsWith(prefix)) {
+                        contents.add(object);
+                    }
+                }
+                return ListObjectsV2Response.builder().contents(contents).isTruncated(false).build();
+            }
+            if ("copyObject".equals(methodName)) {
+                CopyObjectRequest request = (CopyObjectRequest) args[0];
+                this.copyRequests.add(request);
+                if (this.throttledKeys.remove(request.destinationKey())) {
+                    throw S3Exception.builder().statusCode(503).message("Slow Down").build();
+                }
+                return CopyObjectResponse.builder().build();
+            }
+            if ("createMultipartUpload".equals(methodName)) {
+                this.createRequest = (CreateMultipartUploadRequest) args[0];
+                return CreateMultipartUploadResponse.builder().uploadId("upload-id").build();
+            }
+            if ("uploadPartCopy".equals(methodName)) {
+                UploadPartCopyRequest request = (UploadPartCopyRequest) args[0];
+                this.partRequests.add(request);
+                return UploadPartCopyResponse.builder()
+                        .copyPartResult(CopyPartResult.builder().eTag("etag-" + request.partNumber()).build())
+                        .build();
+            }
+            if ("completeMultipartUpload".equals(methodName)) {
+                this.completeRequest = (CompleteMultipartUploadRequest) args[0];
+                return CompleteMultipartUploadResponse.builder().eTag("multipart-etag").build();
+            }
+            if ("deleteObjects".equals(methodName)) {
+                this.deleteBatchCount++;
+                for (ObjectIdentifier object : ((DeleteObjectsRequest) args[0]).delete().objects()) {
+                    this.deletedKeys.add(object.key());
+                }
+                return DeleteObjectsResponse.builder().build();
+            }
+            if ("close".equals(methodName)) {
+                return null;
+            }
+            throw FakeS3Client.unsupported(method);
+        }
+    }
+}
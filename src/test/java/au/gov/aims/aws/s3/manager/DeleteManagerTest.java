@@ -0,0 +1,134 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.manager;
+
+import au.gov.aims.aws.s3.FakeS3Client;
+import au.gov.aims.aws.s3.FileWrapper;
+import au.gov.aims.aws.s3.S3Utils;
+import au.gov.aims.aws.s3.entity.DeleteReport;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import org.junit.Assert;
+import org.junit.Test;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class DeleteManagerTest {
+
+    @Test
+    public void testBatches() throws Exception {
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < 2500; i++) {
+            keys.add(String.format("data/file%04d.txt", i));
+        }
+
+        FakeS3 fakeS3 = new FakeS3();
+        DeleteReport report = DeleteManager.deleteKeys(fakeS3.getClient(), "bucket", keys, new TransferSettings().setConcurrency(2));
+
+        Assert.assertFalse("Unexpected failures: " + report.getFailures(), report.hasFailures());
+        Assert.assertEquals("Wrong number of deleted objects.", 2500, report.getDeletedCount());
+        Assert.assertEquals("Wrong number of requests.", 3, report.getRequestCount());
+        Collections.sort(fakeS3.batchSizes);
+        Assert.assertEquals("Wrong batch sizes.", "[500, 1000, 1000]", fakeS3.batchSizes.toString());
+        Assert.assertEquals("Every key should be deleted.", new HashSet<String>(keys), fakeS3.deletedKeys);
+        Assert.assertNotNull("The throughput should be known.", report.getThroughput());
+    }
+
+    @Test
+    public void testRetryFailedKeys() throws Exception {
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) {
+            keys.add("key" + i);
+        }
+
+        FakeS3 fakeS3 = new FakeS3();
+        fakeS3.slowDownKeys.add("key3");
+        fakeS3.slowDownKeys.add("key7");
+        fakeS3.deniedKeys.add("key5");
+
+        TransferSettings settings = new TransferSettings().setRetryDelay(1, 1);
+        DeleteReport report = DeleteManager.deleteKeys(fakeS3.getClient(), "bucket", keys, settings);
+
+        Assert.assertEquals("Wrong number of deleted objects.", 9, report.getDeletedCount());
+        Assert.assertEquals("Only the denied key should fail.", Collections.singleton("key5"), report.getFailures().keySet());
+        Assert.assertEquals("Only the throttled keys should be sent again.", "[10, 2]", fakeS3.batchSizes.toString());
+        Assert.assertEquals("Wrong number of retried keys.", 2, report.getRetriedCount());
+    }
+
+    @Test
+    public void testRejectBucketUri() throws Exception {
+        FakeS3 fakeS3 = new FakeS3();
+        try {
+            DeleteManager.delete(fakeS3.getClient(), S3Utils.getS3URI("bucket"));
+            Assert.fail("Deleting a bucket URI must be rejected.");
+        } catch (IllegalArgumentException ex) {
+            // Expected
+        }
+
+        try {
+            new FileWrapper(new URI("s3://bucket"), null).delete(fakeS3.getClient());
+            Assert.fail("Deleting a bucket URI must be rejected.");
+        } catch (IllegalArgumentException ex) {
+            // Expected
+        }
+        Assert.assertTrue("Nothing should be deleted.", fakeS3.deletedKeys.isEmpty());
+    }
+
+    // Deletes every key, except the denied keys, and the throttled keys the first time they are sent
+    private static class FakeS3 extends FakeS3Client {
+        private final Set<String> deletedKeys = new HashSet<String>();
+        private final Set<String> slowDownKeys = new HashSet<String>();
+        private final Set<String> deniedKeys = new HashSet<String>();
+        private final List<Integer> batchSizes = new ArrayList<Integer>();
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if ("deleteObjects".equals(methodName)) {
+                List<ObjectIdentifier> objects = ((DeleteObjectsRequest) args[0]).delete().objects();
+                this.batchSizes.add(objects.size());
+                List<S3Error> errors = new ArrayList<S3Error>();
+                for (ObjectIdentifier object : objects) {
+                    String key = object.key();
+                    if (this.slowDownKeys.remove(key)) {
+                        errors.add(S3Error.builder().key(key).code("SlowDown").message("Reduce your request rate.").build());
+                    } else if (this.deniedKeys.contains(key)) {
+                        errors.add(S3Error.builder().key(key).code("AccessDenied").message("Access Denied").build());
+                    } else {
+                        this.deletedKeys.add(key);
+                    }
+                }
+                return DeleteObjectsResponse.builder().errors(errors).build();
+            }
+            if ("close".equals(methodName)) {
+                return null;
+            }
+            throw FakeS3Client.unsupported(method);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.manager;
+
+import au.gov.aims.aws.s3.checksum.ChecksumAlgorithm;
+import au.gov.aims.aws.s3.checksum.Hasher;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+public class DownloadJournalTest {
+
+    @Test
+    public void testMissingRanges() throws Exception {
+        DownloadJournal journal = new DownloadJournal(null, "etag", 100);
+        Assert.assertEquals("Wrong number of ranges for an empty journal.", 4, journal.getMissingRanges(30).size());
+
+        journal.addRange(10, 20);
+        journal.addRange(20, 40);
+        journal.addRange(60, 70);
+        Assert.assertEquals("Adjacent ranges should be merged.", 40, journal.getDownloadedBytes());
+
+        List<long[]> missingRanges = journal.getMissingRanges(30);
+        Assert.assertEquals("Wrong number of missing ranges.", 3, missingRanges.size());
+        Assert.assertArrayEquals("Wrong first missing range.", new long[]{ 0, 10 }, missingRanges.get(0));
+        Assert.assertArrayEquals("Wrong second missing range.", new long[]{ 40, 60 }, missingRanges.get(1));
+        Assert.assertArrayEquals("Wrong last missing range.", new long[]{ 70, 100 }, missingRanges.get(2));
+        Assert.assertFalse("The journal should not be complete.", journal.isComplete());
+
+        journal.addRange(0, 15);
+        journal.addRange(35, 100);
+        Assert.assertTrue("The journal should be complete.", journal.isComplete());
+        Assert.assertTrue("There should be no missing range.", journal.getMissingRanges(30).isEmpty());
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        File tmpDir = Files.createTempDirectory("journal").toFile();
+        try {
+            File journalFile = new File(tmpDir, ".data.bin.s3part.properties");
+            Assert.assertNull("The journal should not exist yet.", DownloadJournal.load(journalFile));
+
+            DownloadJournal journal = new DownloadJournal(journalFile, "etag", 1000);
+            journal.addRange(0, 100);
+            journal.addRange(500, 600);
+
+            DownloadJournal loaded = DownloadJournal.load(journalFile);
+            Assert.assertNotNull("The journal should be loaded.", loaded);
+            Assert.assertTrue("The journal should match the object.", loaded.matches("etag", 1000));
+            Assert.assertFalse("The ETag changed.", loaded.matches("other", 1000));
+            Assert.assertFalse("The size changed.", loaded.matches("etag", 999));
+            Assert.assertEquals("Wrong downloaded bytes.", 200, loaded.getDownloadedBytes());
+
+            loaded.delete();
+            Assert.assertFalse("The journal should be deleted.", journalFile.exists());
+        } finally {
+            FileUtils.deleteDirectory(tmpDir);
+        }
+    }
+
+    @Test
+    public void testRangeChecksums() throws Exception {
+        byte[] content = new byte[1000];
+        new Random(42).nextBytes(content);
+
+        File tmpDir = Files.createTempDirectory("journal").toFile();
+        try {
+            File journalFile = new File(tmpDir, ".data.bin.s3part.properties");
+            DownloadJournal journal = new DownloadJournal(journalFile, "etag", content.length, ChecksumAlgorithm.CRC64NVME);
+
+            // Ranges downloaded out of order
+            journal.addRange(600, 1000, DownloadJournalTest.checksum(ChecksumAlgorithm.CRC64NVME, content, 600, 1000));
+            journal.addRange(0, 300, DownloadJournalTest.checksum(ChecksumAlgorithm.CRC64NVME, content, 0, 300));
+            Assert.assertNull("The checksum should be unknown until the download is complete.", journal.getChecksum());
+
+            // The checksums should survive a restart
+            journal = DownloadJournal.load(journalFile);
+            Assert.assertNotNull("The journal should be loaded.", journal);
+            Assert.assertEquals("Wrong checksum algorithm.", ChecksumAlgorithm.CRC64NVME, journal.getChecksumAlgorithm());
+            journal.addRange(300, 600, DownloadJournalTest.checksum(ChecksumAlgorithm.CRC64NVME, content, 300, 600));
+
+            Assert.assertTrue("The journal should be complete.", journal.isComplete());
+            Assert.assertArrayEquals("The checksums of the ranges should be combined.",
+                    DownloadJournalTest.checksum(ChecksumAlgorithm.CRC64NVME, content, 0, content.length), journal.getChecksum());
+        } finally {
+            FileUtils.deleteDirectory(tmpDir);
+        }
+
+        // SHA-256 checksums can't be combined
+        DownloadJournal journal = new DownloadJournal(null, "etag", content.length, ChecksumAlgorithm.SHA256);
+        journal.addRange(0, 500, DownloadJournalTest.checksum(ChecksumAlgorithm.SHA256, content, 0, 500));
+        journal.addRange(500, 1000, DownloadJournalTest.checksum(ChecksumAlgorithm.SHA256, content, 500, 1000));
+        Assert.assertTrue("The journal should be complete.", journal.isComplete());
+        Assert.assertNull("The SHA-256 of the ranges can't be combined.", journal.getChecksum());
+
+        journal = new DownloadJournal(null, "etag", content.length, ChecksumAlgorithm.SHA256);
+        journal.addRange(0, 1000, DownloadJournalTest.checksum(ChecksumAlgorithm.SHA256, content, 0, 1000));
+        Assert.assertNotNull("The SHA-256 of a single range should be known.", journal.getChecksum());
+    }
+
+    private static byte[] checksum(ChecksumAlgorithm algorithm, byte[] content, int start, int end) {
+        Hasher hasher = algorithm.newHasher();
+        hasher.update(content, start, end - start);
+        return hasher.getValue();
+    }
+}
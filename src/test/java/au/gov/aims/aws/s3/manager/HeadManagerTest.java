@@ -0,0 +1,220 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.manager;
+
+import au.gov.aims.aws.s3.FakeS3Client;
+import au.gov.aims.aws.s3.S3Utils;
+import au.gov.aims.aws.s3.cache.MetadataCache;
+import au.gov.aims.aws.s3.entity.HeadResult;
+import au.gov.aims.aws.s3.entity.ListingStatistics;
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import org.junit.Assert;
+import org.junit.Test;
+import software.amazon.awssdk.services.s3.S3Uri;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+
+public class HeadManagerTest {
+
+    @Test
+    public void testHeadObjects() throws Exception {
+        FakeS3 fakeS3 = new FakeS3("a.txt", "b.txt", "d.txt");
+        fakeS3.throttledKeys.add("b.txt");
+        S3ClientWrapper client = fakeS3.getClient();
+        client.setMetadataCache(new MetadataCache());
+
+        List<S3Uri> s3Uris = Arrays.asList(
+                S3Utils.getS3URI("bucket", "d.txt"),
+                S3Utils.getS3URI("bucket", "a.txt"),
+                S3Utils.getS3URI("bucket", "c.txt"),
+                S3Utils.getS3URI("bucket", "b.txt"));
+        TransferSettings settings = new TransferSettings().setRequestConcurrency(2).setRetryDelay(1, 1);
+        Map<S3Uri, HeadResult> results = HeadManager.headObjects(client, s3Uris, settings);
+
+        Assert.assertEquals("The results should be in the order of the request.", s3Uris, new ArrayList<S3Uri>(results.keySet()));
+        Assert.assertTrue("a.txt should exist.", results.get(s3Uris.get(1)).exists());
+        Assert.assertFalse("c.txt should not exist.", results.get(s3Uris.get(2)).exists());
+        Assert.assertFalse("A missing object is not a failure.", results.get(s3Uris.get(2)).isFailed());
+        Assert.assertTrue("The throttled request should be sent again.", results.get(s3Uris.get(3)).exists());
+        Assert.assertEquals("Wrong size.", Long.valueOf(5), results.get(s3Uris.get(0)).getMetadata().contentLength());
+
+        MetadataCache.Entry entry = client.getMetadataCache().get(s3Uris.get(1));
+        Assert.assertNotNull("The metadata should be cached.", entry);
+        Assert.assertEquals("Wrong cached size.", Long.valueOf(5), entry.getSize());
+        Assert.assertEquals("Wrong cached type.", MetadataCache.Type.MISSING, client.getMetadataCache().get(s3Uris.get(2)).getType());
+        Assert.assertTrue("Too many requests in flight: " + fakeS3.maxInFlight, fakeS3.maxInFlight <= 2);
+    }
+
+    @Test
+    public void testExistUsesCache() throws Exception {
+        FakeS3 fakeS3 = new FakeS3("a.txt");
+        S3ClientWrapper client = fakeS3.getClient();
+        client.setMetadataCache(new MetadataCache());
+        client.getMetadataCache().putMissing(S3Utils.getS3URI("bucket", "cached.txt"));
+
+        Map<S3Uri, Boolean> existence = HeadManager.exist(client, Arrays.asList(
+                S3Utils.getS3URI("bucket", "a.txt"),
+                S3Utils.getS3URI("bucket", "cached.txt"),
+                S3Utils.getS3URI("bucket", "b.txt")));
+
+        Assert.assertEquals("Wrong existence.", "[true, false, false]", existence.values().toString());
+        Assert.assertEquals("Cached objects should not be requested.", 2, fakeS3.requestCount);
+    }
+
+    @Test
+    public void testChooseStrategy() {
+        ListingStatistics statistics = new ListingStatistics();
+        TransferSettings settings = new TransferSettings().setRequestConcurrency(64);
+
+        Assert.assertEquals("A few keys in a huge prefix should be requested with HEAD.", HeadManager.Strategy.HEAD,
+                HeadManager.chooseStrategy(10, 1000000L, statistics, settings));
+        Assert.assertEquals("Most keys of a prefix should be found with a listing.", HeadManager.Strategy.LIST,
+                HeadManager.chooseStrategy(20000, 25000L, statistics, settings));
+        Assert.assertEquals("A prefix never listed should be requested with HEAD.", HeadManager.Strategy.HEAD,
+                HeadManager.chooseStrategy(20000, null, statistics, settings));
+
+        // Slow HEAD requests make the listing worth it
+        for (int i = 0; i < 50; i++) {
+            statistics.headCompleted(500);
+        }
+        Assert.assertEquals("Wrong strategy with slow HEAD requests.", HeadManager.Strategy.LIST,
+                HeadManager.chooseStrategy(20000, null, statistics, settings));
+    }
+
+    @Test
+    public void testExistWithListing() throws Exception {
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < 1500; i++) {
+            keys.add(String.format("data/file%04d.txt", i));
+        }
+        FakeS3 fakeS3 = new FakeS3(keys.toArray(new String[0]));
+        S3ClientWrapper client = fakeS3.getClient();
+        client.getListingStatistics().prefixListed("bucket", "data/", 1500);
+
+        List<S3Uri> s3Uris = new ArrayList<S3Uri>();
+        for (int i = 1000; i < 1500; i++) {
+            s3Uris.add(S3Utils.getS3URI("bucket", String.format("data/file%04d.txt", i)));
+        }
+        s3Uris.add(S3Utils.getS3URI("bucket", "data/missing.txt"));
+
+        TransferSettings settings = new TransferSettings().setRequestConcurrency(4);
+        Map<S3Uri, Boolean> existence = HeadManager.exist(client, s3Uris, settings);
+
+        Assert.assertEquals("No HEAD request should be sent.", 0, fakeS3.requestCount);
+        Assert.assertEquals("The listing should start just before the first requested key.", "data/file1000.tx", fakeS3.startAfter);
+        Assert.assertEquals("Wrong number of results.", 501, existence.size());
+        Assert.assertTrue("data/file1200.txt should exist.", existence.get(S3Utils.getS3URI("bucket", "data/file1200.txt")));
+        Assert.assertFalse("data/missing.txt should not exist.", existence.get(S3Utils.getS3URI("bucket", "data/missing.txt")));
+    }
+
+    // Responds immediately, except for the throttled keys which fail the first time
+    private static class FakeS3 extends FakeS3Client {
+        private final Set<String> keys;
+        private final Set<String> throttledKeys = new HashSet<String>();
+        private final List<CompletableFuture<HeadObjectResponse>> pending = new ArrayList<CompletableFuture<HeadObjectResponse>>();
+        private int requestCount = 0;
+        private String startAfter = null;
+        private int maxInFlight = 0;
+
+        public FakeS3(String ... keys) {
+            this.keys = new HashSet<String>(Arrays.asList(keys));
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if ("headObject".equals(methodName)) {
+                HeadObjectRequest request = (HeadObjectRequest) args[0];
+                CompletableFuture<HeadObjectResponse> future = new CompletableFuture<HeadObjectResponse>();
+                synchronized (this) {
+                    this.requestCount++;
+                    this.pending.add(future);
+                    this.maxInFlight = Math.max(this.maxInFlight, this.pending.size());
+                }
+
+                // Complete the request from another thread, like the SDK
+                final String key = request.key();
+                final CompletableFuture<HeadObjectResponse> finalFuture = future;
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (FakeS3.this) {
+                            FakeS3.this.pending.remove(finalFuture);
+                        }
+                        FakeS3.this.complete(key, finalFuture);
+                    }
+                }).start();
+                return future;
+            }
+            if ("listObjectsV2".equals(methodName)) {
+                // A single page, in key order
+                ListObjectsV2Request request = (ListObjectsV2Request) args[0];
+                synchronized (this) {
+                    this.startAfter = request.startAfter();
+                }
+                List<S3Object> contents = new ArrayList<S3Object>();
+                for (String key : new TreeSet<String>(this.keys)) {
+                    if (key.startsWith(request.prefix()) && (request.startAfter() == null || key.compareTo(request.startAfter()) > 0)) {
+                        contents.add(S3Object.builder().key(key).size(5L).eTag("\"etag\"").build());
+                    }
+                }
+                return ListObjectsV2Response.builder().contents(contents).isTruncated(false).build();
+            }
+            if ("close".equals(methodName)) {
+                return null;
+            }
+            throw FakeS3Client.unsupported(method);
+        }
+
+        private void complete(String key, CompletableFuture<HeadObjectResponse> future) {
+            boolean throttled;
+            synchronized (this) {
+                throttled = this.throttledKeys.remove(key);
+            }
+            if (throttled) {
+                future.completeExceptionally(S3Exception.builder().statusCode(503).message("Slow Down").build());
+            } else if (this.keys.contains(key)) {
+                future.complete(HeadObjectResponse.builder()
+                        .contentLength(5L)
+                        .eTag("\"etag\"")
+                        .lastModified(Instant.ofEpochMilli(1700000000000L))
+                        .build());
+            } else {
+                future.completeExceptionally(NoSuchKeyException.builder().statusCode(404).message("Not Found").build());
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.manager;
+
+import au.gov.aims.aws.s3.ETagCalculator;
+import au.gov.aims.aws.s3.Md5;
+import au.gov.aims.aws.s3.compression.CompressionPolicy;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+public class IncrementalUploadTest {
+
+    @Test
+    public void testIsUnchanged() throws Exception {
+        File file = File.createTempFile("incremental", ".txt");
+        try {
+            FileUtils.writeStringToFile(file, "some content", StandardCharsets.UTF_8);
+            long size = file.length();
+            long lastModified = 1700000000000L;
+            Assert.assertTrue("Could not set the last modified date.", file.setLastModified(lastModified + 123));
+            String md5 = Md5.md5sum(file);
+
+            TransferSettings dates = new TransferSettings();
+            TransferSettings content = new TransferSettings().setCompareContent(true);
+
+            Instant uploaded = Instant.ofEpochMilli(lastModified + 60000);
+            Assert.assertTrue("The object uploaded after the last modification is up to date.",
+                    UploadManager.isUnchanged(file, size, uploaded, "\"other\"", dates));
+            Assert.assertTrue("The S3 date precision is a second.",
+                    UploadManager.isUnchanged(file, size, Instant.ofEpochMilli(lastModified), null, dates));
+            Assert.assertFalse("The file was modified after the upload.",
+                    UploadManager.isUnchanged(file, size, Instant.ofEpochMilli(lastModified - 60000), null, dates));
+            Assert.assertFalse("The size changed.",
+                    UploadManager.isUnchanged(file, size + 1, uploaded, null, dates));
+
+            Assert.assertTrue("The content is the same.",
+                    UploadManager.isUnchanged(file, size, Instant.ofEpochMilli(lastModified - 60000), "\"" + md5 + "\"", content));
+            Assert.assertFalse("The content changed.",
+                    UploadManager.isUnchanged(file, size, uploaded, "\"00000000000000000000000000000000\"", content));
+
+            // The compressed object is smaller than the file, and its ETag is the MD5 of the compressed content
+            TransferSettings compressed = new TransferSettings().setCompareContent(true)
+                    .setCompressionPolicy(new CompressionPolicy().setMinSize(0));
+            Assert.assertTrue("Compressed objects should be compared by date.",
+                    UploadManager.isUnchanged(file, size / 2, uploaded, "\"00000000000000000000000000000000\"", compressed));
+            Assert.assertFalse("The file was modified after the compressed upload.",
+                    UploadManager.isUnchanged(file, size / 2, Instant.ofEpochMilli(lastModified - 60000), null, compressed));
+            Assert.assertTrue("Multipart ETags should fall back to the dates.",
+                    UploadManager.isUnchanged(file, size, uploaded, "\"00000000000000000000000000000000-3\"", content));
+
+            // 3 parts of 4 bytes: the part size is found from the number of parts
+            String multipartETag = ETagCalculator.getMultipartETag(file, 4, 1);
+            Assert.assertTrue("The content of the multipart object is the same.",
+                    UploadManager.isUnchanged(file, size, Instant.ofEpochMilli(lastModified - 60000), "\"" + multipartETag + "\"", content));
+        } finally {
+            Assert.assertTrue("Could not delete the file.", file.delete());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.manager;
+
+import au.gov.aims.aws.s3.FakeS3Client;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class MultipartUploaderTest {
+
+    @Test
+    public void testRetryDelay() {
+        TransferSettings settings = new TransferSettings().setRetryDelay(100, 1000);
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100; i++) {
+            long firstDelay = MultipartUploader.getRetryDelay(settings, 1, random);
+            Assert.assertTrue("The first delay must be at most the base delay: " + firstDelay, firstDelay >= 0 && firstDelay <= 100);
+
+            long thirdDelay = MultipartUploader.getRetryDelay(settings, 3, random);
+            Assert.assertTrue("The third delay must be at most 4 times the base delay: " + thirdDelay, thirdDelay >= 0 && thirdDelay <= 400);
+
+            long lastDelay = MultipartUploader.getRetryDelay(settings, 50, random);
+            Assert.assertTrue("The delay must be capped: " + lastDelay, lastDelay >= 0 && lastDelay <= 1000);
+        }
+
+        Assert.assertEquals("No delay expected.", 0,
+                MultipartUploader.getRetryDelay(new TransferSettings().setRetryDelay(0, 0), 3, random));
+    }
+
+    @Test
+    public void testRetryable() {
+        Assert.assertTrue("I/O errors should be retried.",
+                MultipartUploader.isRetryable(new UncheckedIOException(new IOException("Connection reset"))));
+        Assert.assertFalse("Programming errors should not be retried.",
+                MultipartUploader.isRetryable(new IllegalStateException("Invalid state")));
+    }
+
+    @Test
+    public void testAbortStaleJournalUploads() throws Exception {
+        File tmpDir = Files.createTempDirectory("journal").toFile();
+        try {
+            File sourceFile = new File(tmpDir, "data.bin");
+            FileUtils.writeStringToFile(sourceFile, "some content", StandardCharsets.UTF_8);
+            File journalDirectory = new File(tmpDir, "journal");
+
+            // Upload started a long time ago
+            File staleJournalFile = UploadJournal.getJournalFile(journalDirectory, "mybucket", "data/old.bin", sourceFile);
+            FileUtils.writeStringToFile(staleJournalFile,
+                    "bucket=mybucket\nkey=data/old.bin\nuploadId=upload-old\nfile=" + sourceFile.getAbsolutePath().replace("\\", "/") +
+                    "\nfileSize=12\nfileLastModified=0\npartSize=5\ncreated=0\n", StandardCharsets.UTF_8);
+
+            // Upload in progress
+            File recentJournalFile = UploadJournal.getJournalFile(journalDirectory, "mybucket", "data/new.bin", sourceFile);
+            new UploadJournal(recentJournalFile, "mybucket", "data/new.bin", "upload-new", sourceFile, 5).save();
+
+            // The uploads of the bucket are never listed: the ones started by other applications must be left alone
+            FakeS3 fakeS3 = new FakeS3();
+            int abortedCount = MultipartUploader.abortStaleJournalUploads(fakeS3.getClient(), "mybucket", 60 * 60 * 1000L, journalDirectory);
+
+            Assert.assertEquals("Wrong number of aborted uploads.", 1, abortedCount);
+            Assert.assertEquals("Only the stale upload should be aborted.", "[upload-old]", fakeS3.abortedUploadIds.toString());
+            Assert.assertFalse("The stale journal should be deleted.", staleJournalFile.exists());
+            Assert.assertTrue("The recent journal should be kept.", recentJournalFile.exists());
+
+            Assert.assertEquals("Other buckets must not be touched.", 0,
+                    MultipartUploader.abortStaleJournalUploads(fakeS3.getClient(), "otherbucket", 0, journalDirectory));
+        } finally {
+            FileUtils.deleteDirectory(tmpDir);
+        }
+    }
+
+    @Test
+    public void testStaleUploadsDisabledByDefault() {
+        Assert.assertEquals("Stale uploads must not be aborted unless requested.", 0, new TransferSettings().getStaleUploadAge());
+    }
+
+    private static class FakeS3 extends FakeS3Client {
+        private final List<String> abortedUploadIds = new ArrayList<String>();
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("abortMultipartUpload".equals(method.getName())) {
+                this.abortedUploadIds.add(((AbortMultipartUploadRequest) args[0]).uploadId());
+                return AbortMultipartUploadResponse.builder().build();
+            }
+            throw FakeS3Client.unsupported(method);
+        }
+    }
+}
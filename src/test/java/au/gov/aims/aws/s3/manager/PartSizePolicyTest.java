@@ -0,0 +1,84 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.manager;
+
+import au.gov.aims.aws.s3.entity.TransferMetrics;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PartSizePolicyTest {
+    private static final long MB = 1024L * 1024;
+    private static final long GB = 1024 * MB;
+
+    @Test
+    public void testUploadPartSize() {
+        TransferSettings settings = new TransferSettings().setPartSize(50 * MB);
+        TransferMetrics metrics = new TransferMetrics();
+
+        Assert.assertEquals("The configured part size should be used.", 50 * MB,
+                PartSizePolicy.getUploadPartSize(settings, metrics, 10 * GB));
+
+        // 1 TB in parts of 50 MB would require more than 10,000 parts
+        long partSize = PartSizePolicy.getUploadPartSize(settings, metrics, 1024 * GB);
+        Assert.assertTrue("The part size should be increased: " + partSize, partSize > 50 * MB);
+        Assert.assertTrue("The upload must fit in 10,000 parts.",
+                (1024 * GB + partSize - 1) / partSize <= MultipartUploader.MAX_PARTS);
+
+        Assert.assertEquals("The part size must not exceed the S3 limit.", TransferSettings.MAX_PART_SIZE,
+                PartSizePolicy.getUploadPartSize(settings, metrics, 100000 * GB));
+    }
+
+    @Test
+    public void testAdaptiveSize() {
+        long memory = 64 * GB;
+
+        Assert.assertEquals("The default size should be used until the throughput is measured.", 100 * MB,
+                PartSizePolicy.getAdaptiveSize(100 * MB, 0, 4, memory, 8 * MB, GB));
+
+        // 10 MB/s: a part should take about 10 seconds
+        Assert.assertEquals("Wrong size for the measured throughput.", 100 * MB,
+                PartSizePolicy.getAdaptiveSize(16 * MB, 10 * MB, 4, memory, 8 * MB, GB));
+
+        Assert.assertEquals("The size should not be smaller than the minimum.", 8 * MB,
+                PartSizePolicy.getAdaptiveSize(16 * MB, 1000, 4, memory, 8 * MB, GB));
+        Assert.assertEquals("The size should not be larger than the maximum.", GB,
+                PartSizePolicy.getAdaptiveSize(16 * MB, 10 * GB, 4, memory, 8 * MB, GB));
+
+        // 400 MB available: the 4 parts in flight can use 100 MB
+        Assert.assertEquals("The size should be limited by the available memory.", 25 * MB,
+                PartSizePolicy.getAdaptiveSize(16 * MB, 100 * MB, 4, 400 * MB, 8 * MB, GB));
+    }
+
+    @Test
+    public void testMeasuredThroughput() {
+        TransferMetrics metrics = new TransferMetrics();
+        metrics.partUploaded(10 * MB, 10);
+        Assert.assertEquals("Parts transferred too fast should not be measured.", 0, metrics.getUploadThroughput(), 0);
+
+        metrics.partUploaded(10 * MB, 1000);
+        Assert.assertEquals("Wrong upload throughput.", 10 * MB, metrics.getUploadThroughput(), 1);
+        Assert.assertEquals("The download throughput should not be measured.", 0, metrics.getDownloadThroughput(), 0);
+        Assert.assertEquals("Wrong number of parts.", 2, metrics.getPartsTransferred());
+
+        TransferSettings settings = new TransferSettings().setAdaptive(true);
+        long partSize = PartSizePolicy.getUploadPartSize(settings, metrics, 10 * GB);
+        Assert.assertTrue("The part size should be adapted to the throughput: " + partSize, partSize <= 100 * MB);
+    }
+}
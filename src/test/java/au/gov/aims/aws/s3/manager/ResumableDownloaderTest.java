@@ -0,0 +1,158 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.manager;
+
+import au.gov.aims.aws.s3.ETagCalculator;
+import au.gov.aims.aws.s3.FakeS3Client;
+import au.gov.aims.aws.s3.S3Utils;
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.entity.S3File;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Uri;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class ResumableDownloaderTest {
+
+    @Test
+    public void testRetryRangeWithoutReconnect() throws Exception {
+        byte[] content = new byte[1000];
+        new Random(42).nextBytes(content);
+
+        FakeS3 fakeS3 = new FakeS3(content);
+        fakeS3.failingRanges.add(300L);
+        fakeS3.failingRanges.add(700L);
+        S3ClientWrapper client = fakeS3.getClient();
+
+        File tmpDir = Files.createTempDirectory("download").toFile();
+        try {
+            File destinationFile = new File(tmpDir, "data.bin");
+            TransferSettings settings = new TransferSettings().setRetryDelay(1, 1).setVerifyETag(false);
+            ResumableDownloader.download(client, S3Utils.getS3URI("bucket", "data/data.bin"), "\"etag\"", content.length,
+                    destinationFile, 100, 4, settings);
+
+            Assert.assertArrayEquals("Wrong downloaded content.", content, FileUtils.readFileToByteArray(destinationFile));
+            Assert.assertEquals("The failed ranges should be requested again.", 12, fakeS3.requestCount);
+            Assert.assertEquals("A failed range must not reconnect the client shared with the other ranges.", 0, client.getGeneration());
+        } finally {
+            FileUtils.deleteDirectory(tmpDir);
+        }
+    }
+
+    @Test
+    public void testVerifyMultipartETag() throws Exception {
+        byte[] content = new byte[1000];
+        new Random(42).nextBytes(content);
+
+        File tmpDir = Files.createTempDirectory("download").toFile();
+        try {
+            File sourceFile = new File(tmpDir, "source.bin");
+            FileUtils.writeByteArrayToFile(sourceFile, content);
+            String eTag = "\"" + ETagCalculator.getMultipartETag(sourceFile, 300, 1) + "\"";
+
+            FakeS3 fakeS3 = new FakeS3(content);
+            fakeS3.metadata.put(S3File.USER_METADATA_PART_SIZE_KEY, "300");
+            S3ClientWrapper client = fakeS3.getClient();
+            S3Uri s3Uri = S3Utils.getS3URI("bucket", "data/data.bin");
+            TransferSettings settings = new TransferSettings().setVerifyETag(true);
+
+            // The part size is recorded in the object metadata
+            File destinationFile = new File(tmpDir, "data.bin");
+            ResumableDownloader.download(client, s3Uri, eTag, content.length, destinationFile, 100, 4, settings);
+            Assert.assertArrayEquals("Wrong downloaded content.", content, FileUtils.readFileToByteArray(destinationFile));
+
+            // The part size is unknown, the download can't be verified
+            fakeS3.metadata.clear();
+            File unverifiedFile = new File(tmpDir, "unverified.bin");
+            try {
+                ResumableDownloader.download(client, s3Uri, eTag, content.length, unverifiedFile, 100, 4, settings);
+                Assert.fail("A download which can't be verified must fail.");
+            } catch (IOException ex) {
+                Assert.assertFalse("The unverified file must not be moved in place.", unverifiedFile.exists());
+            }
+
+            // Resumed without verifyETag, it's not downloaded again
+            int requestCount = fakeS3.requestCount;
+            ResumableDownloader.download(client, s3Uri, eTag, content.length, unverifiedFile, 100, 4,
+                    new TransferSettings().setVerifyETag(false));
+            Assert.assertArrayEquals("Wrong downloaded content.", content, FileUtils.readFileToByteArray(unverifiedFile));
+            Assert.assertEquals("The downloaded file should be kept.", requestCount, fakeS3.requestCount);
+        } finally {
+            FileUtils.deleteDirectory(tmpDir);
+        }
+    }
+
+    // Returns the requested range, except the failing ranges which fail the first time they are requested
+    private static class FakeS3 extends FakeS3Client {
+        private final byte[] content;
+        private final Set<Long> failingRanges = new HashSet<Long>();
+        private final Map<String, String> metadata = new HashMap<String, String>();
+        private int requestCount = 0;
+
+        public FakeS3(byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("getObject".equals(method.getName())) {
+                this.requestCount++;
+                GetObjectRequest request = (GetObjectRequest) args[0];
+                String[] range = request.range().substring("bytes=".length()).split("-");
+                long start = Long.parseLong(range[0]);
+                long end = Long.parseLong(range[1]);
+                if (this.failingRanges.remove(start)) {
+                    throw S3Exception.builder().statusCode(503).message("Slow Down").build();
+                }
+
+                GetObjectResponse response = GetObjectResponse.builder()
+                        .eTag(request.ifMatch())
+                        .contentLength(end - start + 1)
+                        .build();
+                return new ResponseInputStream<GetObjectResponse>(response,
+                        AbortableInputStream.create(new ByteArrayInputStream(this.content, (int) start, (int) (end - start + 1))));
+            }
+            if ("headObject".equals(method.getName())) {
+                return HeadObjectResponse.builder()
+                        .contentLength((long) this.content.length)
+                        .metadata(new HashMap<String, String>(this.metadata))
+                        .build();
+            }
+            throw FakeS3Client.unsupported(method);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.manager;
+
+import au.gov.aims.aws.s3.FakeS3Client;
+import au.gov.aims.aws.s3.S3Utils;
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import au.gov.aims.aws.s3.entity.SyncAction;
+import au.gov.aims.aws.s3.entity.SyncReport;
+import au.gov.aims.aws.s3.entity.TransferSettings;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class SyncManagerTest {
+    private static final long LAST_MODIFIED = 1700000000000L;
+
+    @Test
+    public void testDryRunPush() throws Exception {
+        File directory = Files.createTempDirectory("sync").toFile();
+        try {
+            File unchanged = SyncManagerTest.createFile(directory, "a.txt", "aaa");
+            SyncManagerTest.createFile(directory, "dir/b.txt", "bbbb");
+            SyncManagerTest.createFile(directory, "modified.txt", "new content");
+
+            FakeS3 fakeS3 = new FakeS3(
+                SyncManagerTest.s3Object("prefix/a.txt", 3, LAST_MODIFIED + 60000),
+                SyncManagerTest.s3Object("prefix/extra.txt", 5, LAST_MODIFIED),
+                SyncManagerTest.s3Object("prefix/modified.txt", 3, LAST_MODIFIED + 60000)
+            );
+            Assert.assertTrue("Could not set the last modified date.", unchanged.setLastModified(LAST_MODIFIED));
+
+            TransferSettings settings = new TransferSettings().setDryRun(true).setDeleteExtraneous(true);
+            SyncReport report = SyncManager.push(fakeS3.getClient(), directory, S3Utils.getS3URI("bucket", "prefix"), settings);
+
+            Assert.assertEquals("Wrong files to upload.", Arrays.asList("dir/b.txt", "modified.txt"),
+                    SyncManagerTest.getPaths(report, SyncAction.Type.UPLOAD));
+            Assert.assertEquals("Wrong files to skip.", Arrays.asList("a.txt"),
+                    SyncManagerTest.getPaths(report, SyncAction.Type.SKIP));
+            Assert.assertEquals("Wrong files to delete.", Arrays.asList("extra.txt"),
+                    SyncManagerTest.getPaths(report, SyncAction.Type.DELETE_REMOTE));
+            Assert.assertEquals("Nothing is transferred in dry run mode.", 0, report.getBytesTransferred());
+            Assert.assertTrue("Nothing should be deleted in dry run mode.", fakeS3.deletedKeys.isEmpty());
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testDryRunPull() throws Exception {
+        File directory = Files.createTempDirectory("sync").toFile();
+        try {
+            File upToDate = SyncManagerTest.createFile(directory, "a.txt", "aaa");
+            Assert.assertTrue("Could not set the last modified date.", upToDate.setLastModified(LAST_MODIFIED));
+            File outdated = SyncManagerTest.createFile(directory, "b.txt", "bbb");
+            Assert.assertTrue("Could not set the last modified date.", outdated.setLastModified(LAST_MODIFIED - 60000));
+
+            FakeS3 fakeS3 = new FakeS3(
+                SyncManagerTest.s3Object("a.txt", 3, LAST_MODIFIED),
+                SyncManagerTest.s3Object("b.txt", 3, LAST_MODIFIED),
+                SyncManagerTest.s3Object("c/", 0, LAST_MODIFIED),
+                SyncManagerTest.s3Object("c/d.txt", 10, LAST_MODIFIED),
+                SyncManagerTest.s3Object("c/../../evil.txt", 10, LAST_MODIFIED)
+            );
+
+            TransferSettings settings = new TransferSettings().setDryRun(true);
+            SyncReport report = SyncManager.pull(fakeS3.getClient(), S3Utils.getS3URI("bucket", ""), directory, settings);
+
+            Assert.assertEquals("Wrong files to download.", Arrays.asList("b.txt", "c/d.txt"),
+                    SyncManagerTest.getPaths(report, SyncAction.Type.DOWNLOAD));
+            Assert.assertEquals("Wrong files to skip.", Arrays.asList("a.txt"),
+                    SyncManagerTest.getPaths(report, SyncAction.Type.SKIP));
+            Assert.assertFalse("Nothing should be downloaded in dry run mode.", new File(directory, "c").exists());
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testPullDeleteExtraneous() throws Exception {
+        File directory = Files.createTempDirectory("sync").toFile();
+        try {
+            File upToDate = SyncManagerTest.createFile(directory, "a.txt", "aaa");
+            Assert.assertTrue("Could not set the last modified date.", upToDate.setLastModified(LAST_MODIFIED));
+            File extraneous = SyncManagerTest.createFile(directory, "dir/extra.txt", "extra");
+            File partialDownload = SyncManagerTest.createFile(directory, ".z.txt.s3part", "partial");
+
+            FakeS3 fakeS3 = new FakeS3(
+                SyncManagerTest.s3Object("data/a.txt", 3, LAST_MODIFIED)
+            );
+
+            TransferSettings settings = new TransferSettings().setDeleteExtraneous(true);
+            SyncReport report = SyncManager.pull(fakeS3.getClient(), S3Utils.getS3URI("bucket", "data/"), directory, settings);
+
+            Assert.assertFalse("Unexpected failures: " + report.getFailures(), report.hasFailures());
+            Assert.assertEquals("Wrong deleted files.", Arrays.asList("dir/extra.txt"),
+                    SyncManagerTest.getPaths(report, SyncAction.Type.DELETE_LOCAL));
+            Assert.assertFalse("The extraneous file should be deleted.", extraneous.exists());
+            Assert.assertTrue("The up to date file should be kept.", upToDate.exists());
+            Assert.assertTrue("Partial downloads should be ignored.", partialDownload.exists());
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testPullRetryWithoutReconnect() throws Exception {
+        File directory = Files.createTempDirectory("sync").toFile();
+        try {
+            FakeS3 fakeS3 = new FakeS3(
+                SyncManagerTest.s3Object("data/a.txt", 10, LAST_MODIFIED),
+                SyncManagerTest.s3Object("data/b.txt", 10, LAST_MODIFIED),
+                SyncManagerTest.s3Object("data/c.txt", 10, LAST_MODIFIED)
+            );
+            fakeS3.throttledKeys.add("data/b.txt");
+            S3ClientWrapper client = fakeS3.getClient();
+
+            TransferSettings settings = new TransferSettings().setConcurrency(3).setRetryDelay(1, 1).setVerifyETag(false);
+            SyncReport report = SyncManager.pull(client, S3Utils.getS3URI("bucket", "data/"), directory, settings);
+
+            Assert.assertFalse("Unexpected failures: " + report.getFailures(), report.hasFailures());
+            List<String> downloadedPaths = SyncManagerTest.getPaths(report, SyncAction.Type.DOWNLOAD);
+            Collections.sort(downloadedPaths);
+            Assert.assertEquals("Wrong downloaded files.", Arrays.asList("a.txt", "b.txt", "c.txt"), downloadedPaths);
+            Assert.assertEquals("Wrong downloaded content.", "data/b.txt",
+                    FileUtils.readFileToString(new File(directory, "b.txt"), StandardCharsets.UTF_8));
+            Assert.assertEquals("A failed download must not reconnect the client shared with the other downloads.", 0, client.getGeneration());
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    private static File createFile(File directory, String path, String content) throws Exception {
+        File file = new File(directory, path);
+        FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static S3Object s3Object(String key, long size, long lastModified) {
+        return S3Object.builder()
+                .key(key)
+                .size(size)
+                .lastModified(Instant.ofEpochMilli(lastModified))
+                .eTag("\"etag\"")
+                .build();
+    }
+
+    private static List<String> getPaths(SyncReport report, SyncAction.Type type) {
+        List<String> paths = new ArrayList<String>();
+        for (SyncAction action : report.getActions(type)) {
+            paths.add(action.getRelativePath());
+        }
+        return paths;
+    }
+
+    // Returns a single page of objects, filtered by prefix
+    private static class FakeS3 extends FakeS3Client {
+        private final List<S3Object> objects;
+        private final List<String> deletedKeys = new ArrayList<String>();
+        // Downloads of these keys fail the first time
+        private final Set<String> throttledKeys = new HashSet<String>();
+
+        public FakeS3(S3Object ... objects) {
+            this.objects = Arrays.asList(objects);
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if ("listObjectsV2".equals(methodName)) {
+                ListObjectsV2Request request = (ListObjectsV2Request) args[0];
+                String prefix = request.prefix() == null ? "" : request.prefix();
+                List<S3Object> contents = new ArrayList<S3Object>();
+                for (S3Object object : this.objects) {
+                    if (object.key().startsWith(prefix)) {
+                        contents.add(object);
+                    }
+                }
+                return ListObjectsV2Response.builder().contents(contents).isTruncated(false).build();
+            }
+            if ("getObject".equals(methodName)) {
+                // The content of an object is its key
+                GetObjectRequest request = (GetObjectRequest) args[0];
+                if (this.throttledKeys.remove(request.key())) {
+                    throw S3Exception.builder().statusCode(503).message("Slow Down").build();
+                }
+                byte[] content = request.key().getBytes(StandardCharsets.UTF_8);
+                GetObjectResponse response = GetObjectResponse.builder().eTag(request.ifMatch()).contentLength((long) content.length).build();
+                return new ResponseInputStream<GetObjectResponse>(response, AbortableInputStream.create(new ByteArrayInputStream(content)));
+            }
+            if ("deleteObject".equals(methodName)) {
+                this.deletedKeys.add(args[0].toString());
+                return null;
+            }
+            if ("close".equals(methodName)) {
+                return null;
+            }
+            throw FakeS3Client.unsupported(method);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.manager;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+public class UploadJournalTest {
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        File tmpDir = Files.createTempDirectory("journal").toFile();
+        try {
+            File sourceFile = new File(tmpDir, "data.bin");
+            FileUtils.writeStringToFile(sourceFile, "some content", StandardCharsets.UTF_8);
+
+            File journalDirectory = new File(tmpDir, "journal");
+            File journalFile = UploadJournal.getJournalFile(journalDirectory, "mybucket", "data/data.bin", sourceFile);
+            Assert.assertEquals("The journal file must be stable.", journalFile,
+                    UploadJournal.getJournalFile(journalDirectory, "mybucket", "data/data.bin", sourceFile));
+            Assert.assertNull("The journal should not exist yet.", UploadJournal.load(journalFile));
+
+            UploadJournal journal = new UploadJournal(journalFile, "mybucket", "data/data.bin", "upload-1", sourceFile, 5);
+            journal.save();
+            journal.putPart(2, "etag2");
+            journal.putPart(1, "etag1");
+
+            UploadJournal loaded = UploadJournal.load(journalFile);
+            Assert.assertNotNull("The journal should be loaded.", loaded);
+            Assert.assertEquals("Wrong upload ID.", "upload-1", loaded.getUploadId());
+            Assert.assertEquals("Wrong key.", "data/data.bin", loaded.getKey());
+            Assert.assertEquals("Wrong parts.", journal.getParts(), loaded.getParts());
+            Assert.assertEquals("Parts must be sorted.", Integer.valueOf(1), loaded.getParts().firstKey());
+
+            Assert.assertTrue("The journal should match the file.", loaded.matches(sourceFile, 5));
+            Assert.assertFalse("The part size changed.", loaded.matches(sourceFile, 10));
+            Assert.assertEquals("Wrong number of journals.", 1, UploadJournal.list(journalDirectory).size());
+
+            // The file is modified
+            FileUtils.writeStringToFile(sourceFile, "some other content", StandardCharsets.UTF_8);
+            Assert.assertFalse("The journal should not match a modified file.", loaded.matches(sourceFile, 5));
+
+            SortedMap<Integer, String> parts = new TreeMap<Integer, String>();
+            parts.put(1, "etag1");
+            loaded.setParts(parts);
+            Assert.assertEquals("Wrong parts.", parts, UploadJournal.load(journalFile).getParts());
+
+            loaded.delete();
+            Assert.assertFalse("The journal should be deleted.", journalFile.exists());
+        } finally {
+            FileUtils.deleteDirectory(tmpDir);
+        }
+    }
+
+    @Test
+    public void testInvalidJournal() throws Exception {
+        File journalFile = File.createTempFile("journal", ".upload");
+        try {
+            FileUtils.writeStringToFile(journalFile, "bucket=mybucket\n", StandardCharsets.UTF_8);
+            Assert.assertNull("Incomplete journals must be ignored.", UploadJournal.load(journalFile));
+        } finally {
+            Assert.assertTrue("Could not delete the journal.", journalFile.delete());
+        }
+    }
+}
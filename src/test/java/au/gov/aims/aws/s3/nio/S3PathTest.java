@@ -0,0 +1,125 @@
+/*
+ *  Copyright (C) 2026 Australian Institute of Marine Science
+ *
+ *  Contact: Gael Lafond <g.lafond@aims.gov.au>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package au.gov.aims.aws.s3.nio;
+
+import au.gov.aims.aws.s3.entity.S3ClientWrapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+
+public class S3PathTest {
+
+    private static S3FileSystem createFileSystem() {
+        return new S3FileSystemProvider().newFileSystem(null, "mybucket");
+    }
+
+    @Test
+    public void testPathElements() {
+        S3FileSystem fileSystem = createFileSystem();
+        S3Path path = fileSystem.getPath("/data//2026/", "file.nc");
+
+        Assert.assertEquals("Wrong path.", "/data/2026/file.nc", path.toString());
+        Assert.assertEquals("Wrong key.", "data/2026/file.nc", path.getKey());
+        Assert.assertTrue("The path should be absolute.", path.isAbsolute());
+        Assert.assertEquals("Wrong name count.", 3, path.getNameCount());
+        Assert.assertEquals("Wrong file name.", "file.nc", path.getFileName().toString());
+        Assert.assertEquals("Wrong parent.", "/data/2026", path.getParent().toString());
+        Assert.assertEquals("Wrong root.", "/", path.getRoot().toString());
+        Assert.assertEquals("Wrong sub path.", "2026/file.nc", path.subpath(1, 3).toString());
+        Assert.assertEquals("Wrong URI.", URI.create("s3://mybucket/data/2026/file.nc"), path.toUri());
+        Assert.assertEquals("Wrong directory key.", "data/2026/", path.getParent().getDirectoryS3Uri().key().orElse(null));
+
+        Assert.assertNull("The root has no parent.", path.getRoot().getParent());
+        Assert.assertEquals("The root key must be empty.", "", path.getRoot().getKey());
+    }
+
+    @Test
+    public void testPathOperations() {
+        S3FileSystem fileSystem = createFileSystem();
+        S3Path directory = fileSystem.getPath("/data/2026");
+
+        Assert.assertEquals("Wrong resolved path.", "/data/2026/01/file.nc", directory.resolve("01/file.nc").toString());
+        Assert.assertEquals("Absolute paths must not be resolved.", "/other", directory.resolve("/other").toString());
+        Assert.assertEquals("Wrong sibling.", "/data/2025", directory.resolveSibling("2025").toString());
+        Assert.assertEquals("Wrong normalised path.", "/data/file.nc", fileSystem.getPath("/data/./2026/../file.nc").normalize().toString());
+        Assert.assertEquals("Wrong relative path.", "../2025/file.nc", directory.relativize(fileSystem.getPath("/data/2025/file.nc")).toString());
+
+        Assert.assertTrue("Wrong startsWith.", directory.resolve("file.nc").startsWith("/data"));
+        Assert.assertFalse("Wrong startsWith.", directory.startsWith("/dat"));
+        Assert.assertTrue("Wrong endsWith.", directory.endsWith("data/2026"));
+        Assert.assertEquals("Paths must be equal.", fileSystem.getPath("/data/2026/"), directory);
+
+        int count = 0;
+        for (Path name : directory) {
+            Assert.assertFalse("Names must be relative.", name.isAbsolute());
+            count++;
+        }
+        Assert.assertEquals("Wrong number of names.", 2, count);
+    }
+
+    @Test
+    public void testPathMatcher() {
+        S3FileSystem fileSystem = createFileSystem();
+
+        PathMatcher matcher = fileSystem.getPathMatcher("glob:/data/*.{nc,json}");
+        Assert.assertTrue("Should match.", matcher.matches(fileSystem.getPath("/data/file.nc")));
+        Assert.assertTrue("Should match.", matcher.matches(fileSystem.getPath("/data/file.json")));
+        Assert.assertFalse("\"*\" must not match across directories.", matcher.matches(fileSystem.getPath("/data/2026/file.nc")));
+
+        matcher = fileSystem.getPathMatcher("glob:/data/**/file?.nc");
+        Assert.assertTrue("Should match.", matcher.matches(fileSystem.getPath("/data/2026/01/file1.nc")));
+        Assert.assertFalse("Should not match.", matcher.matches(fileSystem.getPath("/data/2026/01/file10.nc")));
+
+        matcher = fileSystem.getPathMatcher("regex:.*\\.nc");
+        Assert.assertTrue("Should match.", matcher.matches(fileSystem.getPath("/data/file.nc")));
+    }
+
+    @Test
+    public void testCloseOwnedClient() throws IOException {
+        S3FileSystemProvider provider = new S3FileSystemProvider();
+
+        ClosingClient sharedClient = new ClosingClient();
+        provider.newFileSystem(sharedClient, "sharedbucket").close();
+        Assert.assertFalse("A client given to the file system must not be closed with it.", sharedClient.closed);
+
+        ClosingClient ownedClient = new ClosingClient();
+        S3FileSystem fileSystem = new S3FileSystem(provider, ownedClient, "ownedbucket", true);
+        fileSystem.close();
+        Assert.assertTrue("The client owned by the file system must be closed with it.", ownedClient.closed);
+        Assert.assertFalse("The file system should be closed.", fileSystem.isOpen());
+    }
+
+    private static class ClosingClient extends S3ClientWrapper {
+        private boolean closed = false;
+
+        public ClosingClient() {
+            super("ap-southeast-2", "accessKey", "secretKey");
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.closed = true;
+            super.close();
+        }
+    }
+}